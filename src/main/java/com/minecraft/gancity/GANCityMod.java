@@ -1,10 +1,16 @@
 package com.minecraft.gancity;
 
+import com.minecraft.gancity.ai.CombatSpatialGrid;
+import com.minecraft.gancity.ai.ElitePackCoordinator;
 import com.minecraft.gancity.ai.MobBehaviorAI;
+import com.minecraft.gancity.ai.TerrainCoverCache;
+import com.minecraft.gancity.ai.TieredMobRegistry;
 import com.minecraft.gancity.ai.VillagerDialogueAI;
 import com.minecraft.gancity.command.GANCityCommand;
 import com.minecraft.gancity.compat.ModCompatibility;
 import com.minecraft.gancity.mca.MCAIntegration;
+import com.minecraft.gancity.network.ModNetwork;
+import com.minecraft.gancity.network.TierParticleBatcher;
 import com.mojang.logging.LogUtils;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraftforge.common.MinecraftForge;
@@ -12,6 +18,10 @@ import net.minecraftforge.event.RegisterCommandsEvent;
 import net.minecraftforge.event.server.ServerStartingEvent;
 import net.minecraftforge.event.server.ServerStoppingEvent;
 import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.EntityJoinLevelEvent;
+import net.minecraftforge.event.entity.EntityLeaveLevelEvent;
+import net.minecraftforge.event.level.BlockEvent;
+import net.minecraftforge.event.level.ChunkEvent;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.eventbus.api.IEventBus;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
@@ -55,6 +65,11 @@ public class GANCityMod {
     private static volatile boolean enableCrossMobLearning = true;
     private static volatile float crossMobRewardMultiplier = 3.0f;
     private static volatile boolean enableContextualDifficulty = true;
+    private static volatile String inferenceBackend = "djl";
+    private static volatile boolean batchedDecisions = true;
+    private static volatile boolean asyncInference = false;
+    private static volatile boolean adaptiveThinkBudget = true;
+    private static volatile float thinkBudgetMs = 5.0f;
 
     private static volatile boolean enableFederatedLearning = true;
     private static volatile String cloudApiEndpoint = DEFAULT_CLOUDFLARE_ENDPOINT;
@@ -67,6 +82,7 @@ public class GANCityMod {
     
     // Auto-save tracking (10 minutes = 12000 ticks)
     private static final int AUTO_SAVE_INTERVAL_TICKS = 12000;
+    private static final int AUTO_SAVE_RETRY_TICKS = 200;  // previous save still writing: retry in 10s
     private static int tickCounter = 0;
     private static long lastSaveTime = 0;
 
@@ -84,6 +100,9 @@ public class GANCityMod {
         System.out.println("=== MCA AI Enhanced: commonSetup START ===");
         LOGGER.info("MCA AI Enhanced - Deferring initialization to avoid classloading deadlock");
         
+        // Network channel (tier particle batches) - plain Forge types, safe to register here
+        ModNetwork.register();
+        
         event.enqueueWork(() -> {
             try {
                 LOGGER.info("MCA AI Enhanced - Initializing AI systems (SERVER-ONLY)...");
@@ -144,7 +163,13 @@ public class GANCityMod {
         
         if (mobBehaviorAI != null) {
             mobBehaviorAI.saveModel();
+            mobBehaviorAI.awaitPendingSaves();
         }
+        CombatSpatialGrid.clear();
+        TerrainCoverCache.clear();
+        TieredMobRegistry.clear();
+        ElitePackCoordinator.clear();
+        TierParticleBatcher.clear();
     }
     
     @SubscribeEvent
@@ -156,6 +181,11 @@ public class GANCityMod {
             
             tickCounter++;
             
+            // Evaluate every decision queued by combat goals this tick in one batch
+            if (mobBehaviorAI != null) {
+                mobBehaviorAI.processDecisionBatch(event.getServer() != null ? event.getServer().getAverageTickTime() : 0.0f);
+            }
+            
             // Auto-save every 10 minutes (12000 ticks)
             if (tickCounter >= AUTO_SAVE_INTERVAL_TICKS) {
                 tickCounter = 0;
@@ -166,6 +196,47 @@ public class GANCityMod {
         }
     }
     
+    @SubscribeEvent
+    public void onEntityJoinLevel(EntityJoinLevelEvent event) {
+        // Track the mob in its level's spatial grid (ally queries)
+        if (!event.getLevel().isClientSide() && event.getEntity() instanceof net.minecraft.world.entity.Mob mob) {
+            CombatSpatialGrid.track(mob);
+        }
+    }
+    
+    @SubscribeEvent
+    public void onEntityLeaveLevel(EntityLeaveLevelEvent event) {
+        if (!event.getLevel().isClientSide() && event.getEntity() instanceof net.minecraft.world.entity.Mob mob) {
+            CombatSpatialGrid.untrack(mob);
+            TieredMobRegistry.unregister(mob);
+        }
+        
+        // Free the mob's AI handle slot (death, chunk unload, dimension change)
+        if (mobBehaviorAI != null && !event.getLevel().isClientSide()
+                && event.getEntity() instanceof net.minecraft.world.entity.Mob) {
+            try {
+                mobBehaviorAI.releaseMob(event.getEntity().getUUID().toString());
+            } catch (Exception e) {
+                LOGGER.debug("Failed to release mob handle: {}", e.getMessage());
+            }
+        }
+    }
+    
+    @SubscribeEvent
+    public void onBlockChanged(BlockEvent.NeighborNotifyEvent event) {
+        // Fires for every neighbour update too - the cache only drops the section if the cover bits changed
+        if (!event.getLevel().isClientSide()) {
+            TerrainCoverCache.invalidate(event.getLevel(), event.getPos(), event.getState());
+        }
+    }
+    
+    @SubscribeEvent
+    public void onChunkUnload(ChunkEvent.Unload event) {
+        if (!event.getLevel().isClientSide()) {
+            TerrainCoverCache.unloadChunk(event.getLevel(), event.getChunk().getPos().x, event.getChunk().getPos().z);
+        }
+    }
+    
     private void performAutoSave() {
         if (mobBehaviorAI == null) {
             return;
@@ -174,29 +245,18 @@ public class GANCityMod {
         long currentTime = System.currentTimeMillis();
         long timeSinceLastSave = (currentTime - lastSaveTime) / 1000; // seconds
         
-        LOGGER.info("═══════════════════════════════════════════════════════");
-        LOGGER.info("[AUTO-SAVE] Starting periodic save (last save: {}s ago)", timeSinceLastSave);
-        LOGGER.info("═══════════════════════════════════════════════════════");
-        
         try {
-            // 1. Save models locally
-            LOGGER.info("[AUTO-SAVE] Step 1/2: Saving ML models locally...");
-            mobBehaviorAI.saveModel();
-            LOGGER.info("[AUTO-SAVE] ✓ Local models saved");
-            
-            // 2. Sync with Cloudflare (upload + download)
-            LOGGER.info("[AUTO-SAVE] Step 2/2: Syncing with Cloudflare...");
-            mobBehaviorAI.syncWithCloudflare();
-            LOGGER.info("[AUTO-SAVE] ✓ Cloudflare sync completed");
-            
-            lastSaveTime = currentTime;
-            LOGGER.info("═══════════════════════════════════════════════════════");
-            LOGGER.info("[AUTO-SAVE] ✓ All operations completed successfully!");
-            LOGGER.info("═══════════════════════════════════════════════════════");
+            // Capture on this tick; models, replay buffer and Cloudflare sync are
+            // written on the auto-save thread
+            if (mobBehaviorAI.requestAutoSave()) {
+                LOGGER.info("[AUTO-SAVE] Snapshot queued for background save (last save: {}s ago)", timeSinceLastSave);
+                lastSaveTime = currentTime;
+            } else {
+                LOGGER.warn("[AUTO-SAVE] Previous save still running, retrying in {} ticks", AUTO_SAVE_RETRY_TICKS);
+                tickCounter = AUTO_SAVE_INTERVAL_TICKS - AUTO_SAVE_RETRY_TICKS;
+            }
         } catch (Exception e) {
-            LOGGER.error("═══════════════════════════════════════════════════════");
             LOGGER.error("[AUTO-SAVE] ✗ Failed: {}", e.getMessage());
-            LOGGER.error("═══════════════════════════════════════════════════════");
         }
     }
 
@@ -242,6 +302,22 @@ public class GANCityMod {
                     } catch (Exception e) {
                         LOGGER.warn("Could not enable contextual difficulty: {}", e.getMessage());
                     }
+                    
+                    // Inference backend (djl = native PyTorch, java = pure-Java MLP)
+                    try {
+                        mobBehaviorAI.setInferenceBackend(inferenceBackend);
+                    } catch (Exception e) {
+                        LOGGER.warn("Could not set inference backend: {}", e.getMessage());
+                    }
+                    
+                    // Per-tick batched decisions (one forward pass for all fighting mobs)
+                    try {
+                        mobBehaviorAI.setBatchedDecisions(batchedDecisions);
+                        mobBehaviorAI.setAsyncInference(asyncInference);
+                        mobBehaviorAI.setThinkBudget(adaptiveThinkBudget, thinkBudgetMs);
+                    } catch (Exception e) {
+                        LOGGER.warn("Could not configure batched decisions: {}", e.getMessage());
+                    }
                 }
             }
         }
@@ -350,6 +426,11 @@ public class GANCityMod {
                 enableCrossMobLearning = parseBoolean(kv, "enableCrossMobLearning", true);
                 crossMobRewardMultiplier = parseFloat(kv, "crossMobRewardMultiplier", 3.0f);
                 enableContextualDifficulty = parseBoolean(kv, "enableContextualDifficulty", true);
+                inferenceBackend = parseString(kv, "inferenceBackend", "djl");
+                batchedDecisions = parseBoolean(kv, "batchedDecisions", true);
+                asyncInference = parseBoolean(kv, "asyncInference", false);
+                adaptiveThinkBudget = parseBoolean(kv, "adaptiveThinkBudget", true);
+                thinkBudgetMs = parseFloat(kv, "thinkBudgetMs", 5.0f);
 
                 enableFederatedLearning = parseBoolean(kv, "enableFederatedLearning", true);
                 cloudApiEndpoint = parseString(kv, "cloudApiEndpoint", DEFAULT_CLOUDFLARE_ENDPOINT);
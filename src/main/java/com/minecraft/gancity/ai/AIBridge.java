@@ -1,6 +1,7 @@
 package com.minecraft.gancity.ai;
 
 import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.player.Player;
 
 /**
  * Lightweight bridge between mixin and AI system
@@ -8,6 +9,19 @@ import net.minecraft.world.entity.Mob;
  */
 public class AIBridge {
     
+    /**
+     * Typed bridge for the combat goals, or null while the AI system is unavailable
+     * Goals resolve this once at construction (the only reflective step) and then call it directly
+     */
+    public static CombatGoalBridge goalBridge() {
+        try {
+            var behaviorAI = com.minecraft.gancity.GANCityMod.getMobBehaviorAI();
+            return behaviorAI != null ? bridgeFor(behaviorAI) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
     /**
      * Select action for mob without loading heavy ML classes during construction
      */
@@ -59,4 +73,80 @@ public class AIBridge {
                                           boolean mobKilled) {
         // Combat outcomes are tracked via episodes, no need for duplicate recording
     }
+    
+    /**
+     * CombatGoalBridge backed by the live MobBehaviorAI instance
+     */
+    static CombatGoalBridge bridgeFor(MobBehaviorAI behaviorAI) {
+        return new BehaviorAIGoalBridge(behaviorAI);
+    }
+    
+    private static final class BehaviorAIGoalBridge implements CombatGoalBridge {
+        private final MobBehaviorAI behaviorAI;
+        // Outcome states are only read during recordCombatOutcome, so one object serves every mob
+        private final MobBehaviorAI.MobState outcomeState = new MobBehaviorAI.MobState(1.0f, 1.0f, 0.0f);
+        
+        BehaviorAIGoalBridge(MobBehaviorAI behaviorAI) {
+            this.behaviorAI = behaviorAI;
+        }
+        
+        @Override
+        public void startCombat(String mobId, String mobType, int tickCount) {
+            behaviorAI.startCombatSequence(mobId);
+            behaviorAI.startCombatEpisode(mobId, mobType, tickCount);
+        }
+        
+        @Override
+        public void endCombat(String mobId, String mobType, String outcome,
+                              boolean targetKilled, boolean mobKilled, int tickCount, String playerId) {
+            behaviorAI.endCombatSequence(mobId, mobType, outcome);
+            behaviorAI.endCombatEpisode(mobId, targetKilled, mobKilled, tickCount, playerId);
+        }
+        
+        @Override
+        public void recordTacticalSample(String mobId, Mob mob, Player target, float damageThisTick) {
+            behaviorAI.recordTacticalSample(mobId, mob, target, damageThisTick);
+        }
+        
+        @Override
+        public String requestAction(String mobType, String mobId, Mob mob,
+                                    float health, float targetHealth, float distance,
+                                    boolean isNight, String biome, float combatTime, boolean canClimbWalls) {
+            // Per-mob reusable state - the AI copies what it keeps
+            MobBehaviorAI.MobState state = behaviorAI.inputState(mobId).set(health, targetHealth, distance);
+            state.isNight = isNight;
+            state.biome = biome;
+            state.combatTime = combatTime;
+            state.canClimbWalls = canClimbWalls;
+            return behaviorAI.requestMobAction(mobType, state, mobId, mob);
+        }
+        
+        @Override
+        public float thinkIntervalScale() {
+            return behaviorAI.getThinkIntervalScale();
+        }
+        
+        @Override
+        public String pollAction(String mobId) {
+            return behaviorAI.pollMobAction(mobId);
+        }
+        
+        @Override
+        public void trackAction(String mobId, String mobType, String action, double reward, Mob mob) {
+            behaviorAI.trackActionInSequence(mobId, action, reward);
+            // Federated learning: per-action outcomes
+            behaviorAI.recordPerActionOutcome(mobType, action, reward, mob);
+        }
+        
+        @Override
+        public void recordCombatOutcome(String mobId, Mob mob, boolean playerDied, boolean mobDied,
+                                        float health, float targetHealth, float distance,
+                                        boolean isNight, String biome, float combatTime) {
+            MobBehaviorAI.MobState finalState = outcomeState.set(health, targetHealth, distance);
+            finalState.isNight = isNight;
+            finalState.biome = biome;
+            finalState.combatTime = combatTime;
+            behaviorAI.recordCombatOutcome(mobId, playerDied, mobDied, finalState, 0.0f, 0.0f, mob);
+        }
+    }
 }
@@ -0,0 +1,294 @@
+package com.minecraft.gancity.ai;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dense int ordinals for every action name (tactical and legacy)
+ *
+ * PERFORMANCE: Action strings are resolved once, at the API boundary
+ * - ordinals [0, TACTICAL_COUNT) are TacticalAction.ordinal(), so tactical masks fit one long
+ * - the ten core legacy actions follow in DQN output order (see coreIndex())
+ * - any other name (mob profiles, curriculum, perception, borrowed federated tactics)
+ *   is interned on first sight and keeps its ordinal for the life of the server
+ * - action sets are BitSets over ordinals (a long[] of words - one word covers every
+ *   tactical and core action), so filtering / intersection is word-wide bit arithmetic
+ *   instead of List copies and equals()/indexOf() scans; model output indices still
+ *   count valid actions in profile order (see nth()/rank())
+ * - everything selection needs per action (validity rule, weighting keywords,
+ *   tactical translation) is derived from the name once, at intern time
+ *
+ * Interning is synchronized; lookups and the published masks are lock-free.
+ */
+public final class ActionRegistry {
+
+    public static final int NO_ACTION = -1;
+    public static final int TACTICAL_COUNT = TacticalActionSpace.TacticalAction.values().length;
+
+    // Legacy action vocabulary shared by the DQN, curriculum and genome (output index order)
+    private static final String[] CORE_ACTIONS = {
+        "straight_charge", "circle_strafe", "kite_backward", "retreat", "ambush",
+        "group_rush", "find_cover", "strafe_shoot", "leap_attack", "fake_retreat"
+    };
+    public static final int CORE_START = TACTICAL_COUNT;
+    public static final int CORE_COUNT = CORE_ACTIONS.length;
+
+    // Keyword flags used by rule-based weighting (derived from the action name)
+    public static final int FLAG_AGGRESSIVE = 1;       // "rush" / "charge"
+    public static final int FLAG_DEFENSIVE = 1 << 1;   // "retreat" / "kite"
+    public static final int FLAG_CLOSE = 1 << 2;       // "melee" / "rush"
+    public static final int FLAG_RANGED = 1 << 3;      // "range" / "approach"
+
+    private static final ConcurrentHashMap<String, Integer> ORDINALS = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64];
+    private static volatile int[] flags = new int[64];
+    private static volatile byte[] tactical = new byte[64];
+    private static volatile int size = 0;
+
+    // State-dependent validity masks (see isActionValid in MobBehaviorAI)
+    private static volatile BitSet needsDistanceMask = new BitSet();   // only valid beyond 3 blocks
+    private static volatile BitSet needsCloseMask = new BitSet();      // only valid within 10 blocks
+    private static volatile BitSet needsLowGroundMask = new BitSet();  // only valid without high ground
+    private static volatile BitSet needsClimbMask = new BitSet();      // only valid for wall climbers
+
+    public static final int DEFAULT_ATTACK;
+
+    static {
+        for (TacticalActionSpace.TacticalAction action : TacticalActionSpace.TacticalAction.values()) {
+            intern(action.id);
+        }
+        for (String action : CORE_ACTIONS) {
+            intern(action);
+        }
+        DEFAULT_ATTACK = intern("default_attack");
+    }
+
+    private ActionRegistry() {
+    }
+
+    /**
+     * Ordinal for an action name, assigning one on first sight
+     */
+    public static int intern(String action) {
+        Integer ordinal = ORDINALS.get(action);
+        return ordinal != null ? ordinal : register(action);
+    }
+
+    /**
+     * Ordinal for an action name, or NO_ACTION if it was never interned
+     */
+    public static int ordinalOf(String action) {
+        if (action == null) {
+            return NO_ACTION;
+        }
+        Integer ordinal = ORDINALS.get(action);
+        return ordinal != null ? ordinal : NO_ACTION;
+    }
+
+    public static int ordinalOf(TacticalActionSpace.TacticalAction action) {
+        return action.ordinal();
+    }
+
+    private static synchronized int register(String action) {
+        Integer existing = ORDINALS.get(action);
+        if (existing != null) {
+            return existing;
+        }
+        int ordinal = size;
+        String[] newNames = names;
+        int[] newFlags = flags;
+        byte[] newTactical = tactical;
+        if (ordinal >= newNames.length) {
+            newNames = Arrays.copyOf(newNames, newNames.length * 2);
+            newFlags = Arrays.copyOf(newFlags, newNames.length);
+            newTactical = Arrays.copyOf(newTactical, newNames.length);
+        }
+        newNames[ordinal] = action;
+        newFlags[ordinal] = deriveFlags(action);
+        newTactical[ordinal] = (byte) deriveTactical(action).ordinal();
+        names = newNames;
+        flags = newFlags;
+        tactical = newTactical;
+
+        // Validity masks are copy-on-write so readers never see a half-updated set
+        switch (action) {
+            case "kite_backward":
+            case "retreat_reload":
+                needsDistanceMask = withBit(needsDistanceMask, ordinal);
+                break;
+            case "suicide_rush":
+            case "group_rush":
+                needsCloseMask = withBit(needsCloseMask, ordinal);
+                break;
+            case "find_high_ground":
+                needsLowGroundMask = withBit(needsLowGroundMask, ordinal);
+                break;
+            case "ceiling_drop":
+            case "wall_climb_attack":
+                needsClimbMask = withBit(needsClimbMask, ordinal);
+                break;
+            default:
+                break;
+        }
+
+        size = ordinal + 1;
+        ORDINALS.put(action, ordinal);
+        return ordinal;
+    }
+
+    private static BitSet withBit(BitSet mask, int bit) {
+        BitSet copy = (BitSet) mask.clone();
+        copy.set(bit);
+        return copy;
+    }
+
+    private static int deriveFlags(String action) {
+        int f = 0;
+        if (action.contains("rush") || action.contains("charge")) f |= FLAG_AGGRESSIVE;
+        if (action.contains("retreat") || action.contains("kite")) f |= FLAG_DEFENSIVE;
+        if (action.contains("melee") || action.contains("rush")) f |= FLAG_CLOSE;
+        if (action.contains("range") || action.contains("approach")) f |= FLAG_RANGED;
+        return f;
+    }
+
+    /**
+     * Legacy action -> tactical equivalent (formerly MobBehaviorAI.translateToTacticalAction)
+     */
+    private static TacticalActionSpace.TacticalAction deriveTactical(String action) {
+        switch (action.toLowerCase()) {
+            case "aggressive_chase":
+            case "rush":
+                return TacticalActionSpace.TacticalAction.RUSH_PLAYER;
+            case "circle_strafe":
+            case "flank":
+                return TacticalActionSpace.TacticalAction.STRAFE_AGGRESSIVE;
+            case "retreat":
+            case "flee":
+                return TacticalActionSpace.TacticalAction.RETREAT_AND_HEAL;
+            case "shield_counter":
+                return TacticalActionSpace.TacticalAction.PUNISH_SHIELD_DROP;
+            case "dodge":
+                return TacticalActionSpace.TacticalAction.DODGE_WEAVE;
+            case "group_call":
+                return TacticalActionSpace.TacticalAction.CALL_REINFORCEMENTS;
+            case "feint":
+                return TacticalActionSpace.TacticalAction.FEINT_RETREAT;
+            case "defensive_wait":
+            case "patient":
+                return TacticalActionSpace.TacticalAction.WAIT_FOR_OPENING;
+            default:
+                return TacticalActionSpace.TacticalAction.DEFAULT_MELEE;
+        }
+    }
+
+    public static String name(int ordinal) {
+        return ordinal >= 0 && ordinal < size ? names[ordinal] : null;
+    }
+
+    public static int size() {
+        return size;
+    }
+
+    public static int flags(int ordinal) {
+        return ordinal >= 0 && ordinal < size ? flags[ordinal] : 0;
+    }
+
+    /**
+     * Tactical equivalent of any action (DEFAULT_MELEE for NO_ACTION)
+     */
+    public static TacticalActionSpace.TacticalAction toTactical(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            return TacticalActionSpace.TacticalAction.DEFAULT_MELEE;
+        }
+        return TacticalActionSpace.TacticalAction.values()[tactical[ordinal]];
+    }
+
+    /**
+     * DQN output index for a core legacy action, or NO_ACTION
+     */
+    public static int coreIndex(int ordinal) {
+        int index = ordinal - CORE_START;
+        return index >= 0 && index < CORE_COUNT ? index : NO_ACTION;
+    }
+
+    /**
+     * Ordinal for a DQN output index
+     */
+    public static int coreOrdinal(int index) {
+        return CORE_START + index;
+    }
+
+    /**
+     * Drop every action that cannot be used in the given state (in place)
+     */
+    public static void removeInvalid(BitSet actions, float distanceToTarget, boolean hasHighGround, boolean canClimbWalls) {
+        if (distanceToTarget <= 3.0f) {
+            actions.andNot(needsDistanceMask);
+        }
+        if (distanceToTarget >= 10.0f) {
+            actions.andNot(needsCloseMask);
+        }
+        if (hasHighGround) {
+            actions.andNot(needsLowGroundMask);
+        }
+        if (!canClimbWalls) {
+            actions.andNot(needsClimbMask);
+        }
+    }
+
+    /**
+     * Ordinal set for a list of names (interning unknown names)
+     */
+    public static BitSet setOf(Collection<String> actions) {
+        BitSet set = new BitSet(size);
+        for (String action : actions) {
+            set.set(intern(action));
+        }
+        return set;
+    }
+
+    /**
+     * Bitmask over TacticalAction ordinals
+     */
+    public static long tacticalMask(Collection<TacticalActionSpace.TacticalAction> actions) {
+        long mask = 0L;
+        for (TacticalActionSpace.TacticalAction action : actions) {
+            mask |= 1L << action.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * The n-th (0-based) ordinal of order[0, length) that is in actions, or NO_ACTION
+     * Model output indices count valid actions in profile order, not ordinal order
+     */
+    public static int nth(int[] order, int length, BitSet actions, int n) {
+        for (int i = 0; i < length; i++) {
+            int ordinal = order[i];
+            if (actions.get(ordinal) && n-- == 0) {
+                return ordinal;
+            }
+        }
+        return NO_ACTION;
+    }
+
+    /**
+     * Position of an ordinal among the ordinals of order[0, length) in actions (inverse of nth),
+     * or NO_ACTION
+     */
+    public static int rank(int[] order, int length, BitSet actions, int ordinal) {
+        if (ordinal < 0 || !actions.get(ordinal)) {
+            return NO_ACTION;
+        }
+        int rank = 0;
+        for (int i = 0; i < length; i++) {
+            if (order[i] == ordinal) {
+                return rank;
+            }
+            if (actions.get(order[i])) {
+                rank++;
+            }
+        }
+        return NO_ACTION;
+    }
+}
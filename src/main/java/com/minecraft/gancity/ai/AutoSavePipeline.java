@@ -0,0 +1,322 @@
+package com.minecraft.gancity.ai;
+
+import com.minecraft.gancity.ml.DoubleDQN;
+import com.minecraft.gancity.ml.ModelPersistence;
+import com.minecraft.gancity.ml.ModelShard;
+import com.minecraft.gancity.ml.PrioritizedReplayBuffer;
+import com.minecraft.gancity.ml.WeightJournal;
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMaps;
+import org.slf4j.Logger;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind auto-save: cheap capture on the server thread, disk and network work on one I/O thread
+ *
+ * PERFORMANCE: Keeps serialization, fsync and upload out of the server tick
+ * - capture takes references and small copies only: the replay buffer's ring position,
+ *   the dirty mob types with their versions, one ModelShard per dirty mob type
+ *   (built from the aggregator's copy-on-write weight snapshot) and, if the DQN trained
+ *   since the last save, a parameter copy of its networks (DoubleDQN.checkpoint())
+ * - the MobAI-AutoSave thread then writes the DQN checkpoint, the dirty shards and the
+ *   replay rows that were live at capture, each fsynced and renamed into place, then
+ *   hands the upload to MobAI-Upload and waits at most UPLOAD_TIMEOUT_SECONDS for it -
+ *   none of it under the DQN's training lock
+ * - backpressure: one periodic save in flight at a time; submit() refuses while the
+ *   previous save is still running and the caller retries later, so a slow disk or
+ *   upload never queues saves up behind each other
+ * - the shutdown save (submitFinal) is never refused: it queues behind the running
+ *   save, and awaitIdle() reports whether it reached the disk; it cancels a running
+ *   upload and makes queued saves skip theirs, so a hung network cannot hold up server
+ *   stop, and both threads are shut down once it has been written
+ * - written shards are cleared with markClean(mobType, version): a mob type that
+ *   changed again during the write, or whose shard failed, stays dirty
+ * - capture rotates the WeightJournal first and stamps the shards with the closed
+ *   generation; once every dirty shard is on disk the journal segments up to that
+ *   generation are compacted away
+ *
+ * submit() / submitFinal() are server-thread only; the save itself runs on MobAI-AutoSave.
+ */
+public final class AutoSavePipeline {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final long UPLOAD_TIMEOUT_SECONDS = 60;
+
+    private ExecutorService ioExecutor = newExecutor("MobAI-AutoSave");  // Server thread swaps it after a stop
+    private volatile ExecutorService uploadExecutor = newExecutor("MobAI-Upload");
+    private volatile Future<Boolean> inFlight = null;
+    private volatile Future<?> runningUpload = null;
+    private volatile boolean stopping = false;
+    private volatile int savedDqnSteps = -1;
+
+    // Server thread
+    private long submitted = 0;
+    private long refusedBusy = 0;
+    private long lastCaptureNanos = 0;
+
+    // Auto-save thread
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong uploadsAbandoned = new AtomicLong();
+    private volatile long lastWriteMillis = 0;
+
+    private static ExecutorService newExecutor(String name) {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            t.setUncaughtExceptionHandler((thread, throwable) -> {
+                LOGGER.error("Uncaught exception in {} thread: {}", name, throwable.getMessage());
+            });
+            return t;
+        });
+    }
+
+    /**
+     * Builds the shards of the given dirty mob types (server thread, during capture)
+     */
+    public interface ShardSource {
+        List<ModelShard> capture(Set<String> mobTypes, long journalGeneration);
+    }
+
+    /**
+     * Everything one save needs, captured on the server thread
+     */
+    private static final class Capture {
+        final DoubleDQN.Checkpoint dqn;                   // null if unchanged since the last save
+        final int dqnSteps;
+        final List<ModelShard> shards;                    // dirty mob types only
+        final Object2LongMap<String> dirtyVersions;
+        final PrioritizedReplayBuffer replayBuffer;
+        final PrioritizedReplayBuffer.SaveMark replayMark;  // null if the buffer is empty
+        final WeightJournal journal;                      // null if not journaling
+        final long journalGeneration;                     // newest segment the shards cover
+        final Runnable upload;                            // null to skip
+
+        Capture(DoubleDQN.Checkpoint dqn, int dqnSteps, List<ModelShard> shards, Object2LongMap<String> dirtyVersions,
+                PrioritizedReplayBuffer replayBuffer, PrioritizedReplayBuffer.SaveMark replayMark,
+                WeightJournal journal, long journalGeneration, Runnable upload) {
+            this.dqn = dqn;
+            this.dqnSteps = dqnSteps;
+            this.shards = shards;
+            this.dirtyVersions = dirtyVersions;
+            this.replayBuffer = replayBuffer;
+            this.replayMark = replayMark;
+            this.journal = journal;
+            this.journalGeneration = journalGeneration;
+            this.upload = upload;
+        }
+    }
+
+    /**
+     * True while the previous save is still being written
+     */
+    public boolean isBusy() {
+        Future<?> running = inFlight;
+        return running != null && !running.isDone();
+    }
+
+    /**
+     * Capture a save on the calling (server) thread and hand it to the auto-save thread
+     * Any argument may be null when that system is not running
+     *
+     * @param shardSource builds the shards of the dirty mob types (called here, on the server thread)
+     * @param journal rotated at capture and compacted once the shards are written, or null
+     * @param upload run on the auto-save thread after the local files are written, or null
+     * @return false if the previous save is still running (nothing was captured)
+     */
+    public boolean submit(ModelPersistence persistence, DoubleDQN dqn, PrioritizedReplayBuffer replayBuffer,
+                          DirtyFlagTracker dirtyFlags, ShardSource shardSource, WeightJournal journal,
+                          Runnable upload) {
+        if (isBusy()) {
+            refusedBusy++;
+            return false;
+        }
+        if (ioExecutor.isShutdown()) {
+            // Server started again after a stop (singleplayer world reload)
+            ioExecutor = newExecutor("MobAI-AutoSave");
+            uploadExecutor = newExecutor("MobAI-Upload");
+            stopping = false;
+        }
+        capture(persistence, dqn, replayBuffer, dirtyFlags, shardSource, journal, upload);
+        return true;
+    }
+
+    /**
+     * Shutdown save: capture now and queue behind any save still running (never refused)
+     * Uploads still pending are cancelled or skipped; the I/O threads exit once it is written
+     * Pair with awaitIdle() to learn whether it was written
+     */
+    public void submitFinal(ModelPersistence persistence, DoubleDQN dqn, PrioritizedReplayBuffer replayBuffer,
+                            DirtyFlagTracker dirtyFlags, ShardSource shardSource, WeightJournal journal) {
+        stopping = true;
+        Future<?> upload = runningUpload;
+        if (upload != null) {
+            upload.cancel(true);
+        }
+        capture(persistence, dqn, replayBuffer, dirtyFlags, shardSource, journal, null);
+        ioExecutor.shutdown();  // Queued saves, this one included, still run
+        uploadExecutor.shutdownNow();
+    }
+
+    private void capture(ModelPersistence persistence, DoubleDQN dqn, PrioritizedReplayBuffer replayBuffer,
+                         DirtyFlagTracker dirtyFlags, ShardSource shardSource, WeightJournal journal,
+                         Runnable upload) {
+        long start = System.nanoTime();
+        int dqnSteps = dqn != null ? dqn.trainingSteps() : -1;
+        DoubleDQN.Checkpoint changedDqn = dqn != null && dqnSteps != savedDqnSteps ? dqn.checkpoint() : null;
+        long journalGeneration = journal != null ? journal.rotate() : 0L;
+        Object2LongMap<String> dirty = dirtyFlags != null ? dirtyFlags.getDirtyVersions() : Object2LongMaps.emptyMap();
+        List<ModelShard> shards = shardSource != null && !dirty.isEmpty()
+            ? shardSource.capture(dirty.keySet(), journalGeneration) : Collections.emptyList();
+        PrioritizedReplayBuffer.SaveMark mark = replayBuffer != null ? replayBuffer.markForSave() : null;
+        if (mark != null && mark.count == 0) {
+            mark = null;
+        }
+        Capture capture = new Capture(changedDqn, dqnSteps, shards, dirty, replayBuffer, mark,
+            journal, journalGeneration, upload);
+        lastCaptureNanos = System.nanoTime() - start;
+
+        submitted++;
+        // Single thread, FIFO: a capture queued behind a running save is written after it
+        inFlight = ioExecutor.submit(() -> write(persistence, capture, dirtyFlags));
+    }
+
+    private boolean write(ModelPersistence persistence, Capture capture, DirtyFlagTracker dirtyFlags) {
+        long start = System.nanoTime();
+        boolean ok = true;
+        boolean shardsSaved = false;
+        try {
+            if (capture.dqn != null) {
+                if (persistence.saveDoubleDQN(capture.dqn)) {
+                    savedDqnSteps = capture.dqnSteps;
+                } else {
+                    ok = false;
+                }
+            }
+            if (!capture.shards.isEmpty()) {
+                Set<String> written = persistence.saveShards(capture.shards);
+                for (String mobType : written) {
+                    dirtyFlags.markClean(mobType, capture.dirtyVersions.getLong(mobType));
+                }
+                ok &= written.size() == capture.shards.size();
+            }
+            shardsSaved = ok;
+            if (capture.replayMark != null) {
+                ok &= persistence.saveReplayBuffer(capture.replayBuffer, capture.replayMark);
+            }
+        } catch (Exception e) {
+            ok = false;
+            LOGGER.error("Auto-save failed: {}", e.getMessage());
+        }
+
+        if (shardsSaved && capture.journal != null) {
+            capture.journal.compact(capture.journalGeneration);
+        }
+
+        if (capture.upload != null) {
+            ok &= upload(capture.upload);
+        }
+
+        lastWriteMillis = (System.nanoTime() - start) / 1_000_000;
+        (ok ? completed : failed).incrementAndGet();
+        LOGGER.info("[AUTO-SAVE] {} in {} ms (dqn: {}, shards: {} dirty mob types, replay: {} transitions)",
+            ok ? "Completed" : "Finished with errors", lastWriteMillis,
+            capture.dqn != null ? "saved" : "unchanged",
+            capture.shards.size(),
+            capture.replayMark != null ? capture.replayMark.count : 0);
+        return ok;
+    }
+
+    /**
+     * Run an upload on MobAI-Upload and wait for it, at most UPLOAD_TIMEOUT_SECONDS
+     * Skipped once the server is stopping; submitFinal() cancels one already running
+     *
+     * @return false if the upload failed or timed out
+     */
+    private boolean upload(Runnable upload) {
+        if (stopping) {
+            LOGGER.info("[AUTO-SAVE] Skipping upload, server stopping");
+            return true;
+        }
+        Future<?> task;
+        try {
+            task = uploadExecutor.submit(upload);
+        } catch (RejectedExecutionException e) {
+            return true;  // Shut down by submitFinal() in the meantime
+        }
+        runningUpload = task;
+        if (stopping) {
+            task.cancel(true);  // submitFinal() ran before the task was published
+        }
+        try {
+            task.get(UPLOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return true;
+        } catch (CancellationException e) {
+            LOGGER.info("[AUTO-SAVE] Upload cancelled, server stopping");
+            return true;
+        } catch (TimeoutException e) {
+            // The stuck thread may ignore the interrupt; later uploads get a fresh one
+            task.cancel(true);
+            uploadExecutor.shutdownNow();
+            if (!stopping) {
+                uploadExecutor = newExecutor("MobAI-Upload");
+            }
+            uploadsAbandoned.incrementAndGet();
+            LOGGER.warn("Auto-save upload timed out after {} s, abandoned", UPLOAD_TIMEOUT_SECONDS);
+            return false;
+        } catch (ExecutionException e) {
+            LOGGER.warn("Auto-save upload failed: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.cancel(true);
+            return false;
+        } finally {
+            runningUpload = null;
+        }
+    }
+
+    /**
+     * Block until the most recently submitted save has finished (server stopping)
+     * No timeout: the shutdown save must not be abandoned half-way (uploads, the only
+     * network wait, are cancelled or skipped once it has been submitted)
+     *
+     * @return true if that save wrote everything (or nothing was ever submitted)
+     */
+    public boolean awaitIdle() {
+        Future<Boolean> running = inFlight;
+        if (running == null) {
+            return true;
+        }
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while waiting for the auto-save to finish");
+            return false;
+        } catch (ExecutionException e) {
+            LOGGER.error("Auto-save failed: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            return false;
+        }
+    }
+
+    public String getStats() {
+        return String.format("Auto-save: %d submitted (%d refused busy), %d ok / %d failed, %d uploads timed out | capture %.2f ms, last write %d ms",
+            submitted, refusedBusy, completed.get(), failed.get(), uploadsAbandoned.get(),
+            lastCaptureNanos / 1_000_000.0, lastWriteMillis);
+    }
+}
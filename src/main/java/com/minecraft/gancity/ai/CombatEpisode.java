@@ -265,15 +265,22 @@ public class CombatEpisode {
      * Returns: what tactics were used in what situations, and did they work?
      */
     public Map<String, Float> extractTacticalWeights(EpisodeOutcome outcome) {
-        Map<String, Float> weights = new HashMap<>();
+        return toNamedWeights(tacticalWeightRow(outcome));
+    }
+    
+    /**
+     * Tactical weights indexed by TacticalAction ordinal (NaN = tactic unused)
+     */
+    public float[] tacticalWeightRow(EpisodeOutcome outcome) {
+        float[] weights = unusedRow();
         
         // Weight each tactic by how often it was used and episode success
         float successMultiplier = outcome.wasSuccessful() ? 1.5f : 0.5f;
+        float weight = (1.0f / samples.size()) * successMultiplier;
         
         for (TacticalSample sample : samples) {
-            String tacticId = sample.action.id;
-            float weight = (1.0f / samples.size()) * successMultiplier;
-            weights.put(tacticId, weights.getOrDefault(tacticId, 0.0f) + weight);
+            int tactic = sample.action.ordinal();
+            weights[tactic] = Float.isNaN(weights[tactic]) ? weight : weights[tactic] + weight;
         }
         
         return weights;
@@ -282,44 +289,55 @@ public class CombatEpisode {
     /**
      * Get situational tactics: what tactics were used in specific situations?
      * This enables context-aware learning
+     * Returns: situation category name -> tactic -> weight (export / federation view)
      */
     public Map<String, Map<String, Float>> extractSituationalTactics(EpisodeOutcome outcome) {
+        float[][] table = situationalTacticTable(outcome);
         Map<String, Map<String, Float>> situationalTactics = new HashMap<>();
+        for (int category = 0; category < table.length; category++) {
+            if (table[category] != null) {
+                situationalTactics.put(SituationCode.categoryName(category), toNamedWeights(table[category]));
+            }
+        }
+        return situationalTactics;
+    }
+    
+    /**
+     * Situational tactics indexed [SituationCode category][TacticalAction ordinal]
+     * Rows for situations that never occurred are null, unused tactics are NaN
+     */
+    public float[][] situationalTacticTable(EpisodeOutcome outcome) {
+        float[][] table = new float[SituationCode.CATEGORY_COUNT][];
         
         float successMultiplier = outcome.wasSuccessful() ? 1.0f : -0.5f;
         
         for (TacticalSample sample : samples) {
-            // Categorize situation
-            String situation = categorizeSituation(sample.state);
-            String tactic = sample.action.id;
-            
-            situationalTactics.putIfAbsent(situation, new HashMap<>());
-            Map<String, Float> tacticMap = situationalTactics.get(situation);
-            tacticMap.put(tactic, tacticMap.getOrDefault(tactic, 0.0f) + successMultiplier);
+            // Situation was encoded when the state was built
+            int category = SituationCode.category(sample.state.situationCode);
+            if (table[category] == null) {
+                table[category] = unusedRow();
+            }
+            float[] row = table[category];
+            int tactic = sample.action.ordinal();
+            row[tactic] = Float.isNaN(row[tactic]) ? successMultiplier : row[tactic] + successMultiplier;
         }
         
-        return situationalTactics;
+        return table;
     }
     
-    /**
-     * Categorize tactical state into discrete situations
-     * Examples: "low_health", "target_low_health", "outnumbered", etc.
-     */
-    private String categorizeSituation(TacticalActionSpace.TacticalState state) {
-        if (state.selfLowHealth) {
-            return "low_health";
-        } else if (state.targetLowHealth) {
-            return "target_low_health";
-        } else if (state.targetHasShield) {
-            return "target_shielding";
-        } else if (state.nearbyAllies >= 2) {
-            return "group_combat";
-        } else if (state.distanceToTarget < 3) {
-            return "close_range";
-        } else if (state.distanceToTarget > 8) {
-            return "long_range";
-        } else {
-            return "neutral";
+    private static float[] unusedRow() {
+        float[] row = new float[ActionRegistry.TACTICAL_COUNT];
+        Arrays.fill(row, Float.NaN);
+        return row;
+    }
+    
+    private static Map<String, Float> toNamedWeights(float[] row) {
+        Map<String, Float> weights = new HashMap<>();
+        for (int tactic = 0; tactic < row.length; tactic++) {
+            if (!Float.isNaN(row[tactic])) {
+                weights.put(TacticalActionSpace.actionAt(tactic).id, row[tactic]);
+            }
         }
+        return weights;
     }
 }
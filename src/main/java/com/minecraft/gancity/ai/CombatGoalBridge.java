@@ -0,0 +1,64 @@
+package com.minecraft.gancity.ai;
+
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.player.Player;
+
+/**
+ * Typed calls from the combat goals in MobAIEnhancementMixin into the AI system
+ *
+ * PERFORMANCE: Replaces per-call getMethod()/getField()/Method.invoke()
+ * - resolved once when a goal is constructed (see AIBridge.goalBridge())
+ * - plain interface dispatch on the hot path, primitives passed unboxed
+ * - signatures only use Minecraft and JDK types, so referencing this interface
+ *   from the mixin never links MobBehaviorAI / ml.* / DJL early
+ */
+public interface CombatGoalBridge {
+
+    /**
+     * Combat started: open the action sequence and the tactical episode
+     */
+    void startCombat(String mobId, String mobType, int tickCount);
+
+    /**
+     * Combat ended: close the action sequence and the tactical episode
+     */
+    void endCombat(String mobId, String mobType, String outcome,
+                   boolean targetKilled, boolean mobKilled, int tickCount, String playerId);
+
+    /**
+     * Periodic tactical sample against a player target
+     */
+    void recordTacticalSample(String mobId, Mob mob, Player target, float damageThisTick);
+
+    /**
+     * Ask for the next action
+     * @return the action immediately, or null if it was queued for the per-tick batch
+     *         (collect it with {@link #pollAction(String)})
+     */
+    String requestAction(String mobType, String mobId, Mob mob,
+                         float health, float targetHealth, float distance,
+                         boolean isNight, String biome, float combatTime, boolean canClimbWalls);
+
+    /**
+     * Multiplier for the goal's AI update interval (1 when the server is healthy,
+     * larger while ThinkBudget is throttling)
+     */
+    float thinkIntervalScale();
+
+    /**
+     * Batched decision for this mob, or null while still pending
+     */
+    String pollAction(String mobId);
+
+    /**
+     * Credit an action that was just replaced
+     */
+    void trackAction(String mobId, String mobType, String action, double reward, Mob mob);
+
+    /**
+     * Final combat outcome for learning
+     */
+    void recordCombatOutcome(String mobId, Mob mob, boolean playerDied, boolean mobDied,
+                             float health, float targetHealth, float distance,
+                             boolean isNight, String biome, float combatTime);
+}
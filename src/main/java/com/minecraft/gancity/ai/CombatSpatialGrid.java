@@ -0,0 +1,211 @@
+package com.minecraft.gancity.ai;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Per-level spatial hash of AI-managed mobs, rebuilt once per tick
+ *
+ * PERFORMANCE: Replaces per-mob level().getEntitiesOfClass() ally scans
+ * - membership is maintained by entity join/leave events, so a rebuild never walks
+ *   the level's entity sections
+ * - the first query in a tick buckets every tracked mob into 8x8 block columns
+ *   (counting sort into one flat array, no per-cell lists)
+ * - box queries only visit the cells the box overlaps (columns, Y ignored), then
+ *   check each occupant's bounding box
+ *
+ * NOT thread-safe: server thread only.
+ */
+public final class CombatSpatialGrid {
+
+    private static final int CELL_SHIFT = 3;  // 8 block columns
+    // Mobs move a little between the rebuild and a query later in the same tick
+    private static final double CELL_PADDING = 1.0;
+
+    private static final Map<Level, CombatSpatialGrid> GRIDS = new WeakHashMap<>();
+
+    private static long rebuilds = 0;
+    private static long queries = 0;
+
+    private final ReferenceOpenHashSet<Mob> members = new ReferenceOpenHashSet<>();
+    private long builtAt = Long.MIN_VALUE;
+
+    // Cell key -> dense cell index, rebuilt every tick
+    private final Long2IntOpenHashMap cellIndex = new Long2IntOpenHashMap();
+    private int[] cellStart = new int[64];
+    private int[] cellCount = new int[64];
+    private Mob[] sorted = new Mob[64];
+    private Mob[] scratch = new Mob[64];
+    private int[] scratchCells = new int[64];
+
+    private CombatSpatialGrid() {
+        cellIndex.defaultReturnValue(-1);
+    }
+
+    /**
+     * Start tracking a mob (EntityJoinLevelEvent)
+     */
+    public static void track(Mob mob) {
+        Level level = mob.level();
+        if (level.isClientSide()) {
+            return;
+        }
+        GRIDS.computeIfAbsent(level, l -> new CombatSpatialGrid()).members.add(mob);
+    }
+
+    /**
+     * Stop tracking a mob (EntityLeaveLevelEvent)
+     */
+    public static void untrack(Mob mob) {
+        CombatSpatialGrid grid = GRIDS.get(mob.level());
+        if (grid != null) {
+            grid.members.remove(mob);
+        }
+    }
+
+    public static void clear() {
+        GRIDS.clear();
+    }
+
+    /**
+     * Grid for a level, rebuilt if this is the first query of the tick
+     * @return null on the client or for levels with no tracked mobs
+     */
+    public static CombatSpatialGrid get(Level level) {
+        if (level == null || level.isClientSide()) {
+            return null;
+        }
+        CombatSpatialGrid grid = GRIDS.get(level);
+        if (grid == null) {
+            return null;
+        }
+        long now = level.getGameTime();
+        if (grid.builtAt != now) {
+            grid.rebuild();
+            grid.builtAt = now;
+        }
+        return grid;
+    }
+
+    /**
+     * Mobs whose bounding box intersects the given radius around a mob (the mob itself excluded)
+     * Falls back to a level entity scan when the grid is unavailable
+     */
+    public static List<Mob> nearbyMobs(Mob mob, double radius, Predicate<Mob> filter) {
+        AABB box = mob.getBoundingBox().inflate(radius);
+        CombatSpatialGrid grid = get(mob.level());
+        if (grid == null) {
+            return mob.level().getEntitiesOfClass(Mob.class, box, m -> m != mob && filter.test(m));
+        }
+        List<Mob> result = new ArrayList<>();
+        grid.collect(box, mob, filter, result);
+        return result;
+    }
+
+    private void rebuild() {
+        rebuilds++;
+        cellIndex.clear();
+
+        int n = members.size();
+        if (scratch.length < n) {
+            int size = Math.max(n, scratch.length * 2);
+            scratch = new Mob[size];
+            sorted = new Mob[size];
+            scratchCells = new int[size];
+        }
+
+        // Pass 1: assign cells and count occupants
+        int live = 0;
+        int cells = 0;
+        for (Mob mob : members) {
+            if (mob.isRemoved() || mob.isDeadOrDying()) {
+                continue;
+            }
+            long key = cellKey(mob.getBlockX() >> CELL_SHIFT, mob.getBlockZ() >> CELL_SHIFT);
+            int cell = cellIndex.get(key);
+            if (cell < 0) {
+                cell = cells++;
+                if (cell >= cellCount.length) {
+                    growCells(cellCount.length * 2);
+                }
+                cellIndex.put(key, cell);
+                cellCount[cell] = 0;
+            }
+            cellCount[cell]++;
+            scratch[live] = mob;
+            scratchCells[live] = cell;
+            live++;
+        }
+
+        // Pass 2: prefix sums, then place mobs contiguously per cell
+        int offset = 0;
+        for (int c = 0; c < cells; c++) {
+            cellStart[c] = offset;
+            offset += cellCount[c];
+            cellCount[c] = 0;
+        }
+        for (int i = 0; i < live; i++) {
+            Mob mob = scratch[i];
+            int cell = scratchCells[i];
+            sorted[cellStart[cell] + cellCount[cell]++] = mob;
+            scratch[i] = null;
+        }
+        // Drop references to mobs from larger previous ticks
+        Arrays.fill(sorted, live, sorted.length, null);
+    }
+
+    private void growCells(int size) {
+        cellStart = Arrays.copyOf(cellStart, size);
+        cellCount = Arrays.copyOf(cellCount, size);
+    }
+
+    /**
+     * Add every mob (other than exclude) whose bounding box intersects box and passes filter
+     */
+    public void collect(AABB box, Mob exclude, Predicate<Mob> filter, List<Mob> out) {
+        queries++;
+        int minX = floorCell(box.minX - CELL_PADDING);
+        int maxX = floorCell(box.maxX + CELL_PADDING);
+        int minZ = floorCell(box.minZ - CELL_PADDING);
+        int maxZ = floorCell(box.maxZ + CELL_PADDING);
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cz = minZ; cz <= maxZ; cz++) {
+                int cell = cellIndex.get(cellKey(cx, cz));
+                if (cell < 0) {
+                    continue;
+                }
+                int end = cellStart[cell] + cellCount[cell];
+                for (int i = cellStart[cell]; i < end; i++) {
+                    Mob mob = sorted[i];
+                    if (mob != exclude && !mob.isDeadOrDying()
+                            && mob.getBoundingBox().intersects(box) && filter.test(mob)) {
+                        out.add(mob);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int floorCell(double coord) {
+        return ((int) Math.floor(coord)) >> CELL_SHIFT;
+    }
+
+    private static long cellKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    public static String getStats() {
+        int tracked = 0;
+        for (CombatSpatialGrid grid : GRIDS.values()) {
+            tracked += grid.members.size();
+        }
+        return String.format("Spatial grid: %d mobs in %d levels | %d rebuilds, %d queries",
+            tracked, GRIDS.size(), rebuilds, queries);
+    }
+}
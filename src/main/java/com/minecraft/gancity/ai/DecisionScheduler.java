@@ -0,0 +1,244 @@
+package com.minecraft.gancity.ai;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.world.entity.Mob;
+
+import java.util.*;
+
+/**
+ * Per-tick batched action selection
+ *
+ * PERFORMANCE: One batched forward pass per server tick instead of one per mob
+ * - combat goals enqueue a decision request (latest request per mob wins)
+ * - MobBehaviorAI.processDecisionBatch() drains the queue once per tick, packs every
+ *   feature vector into one [n, inputSize] matrix and evaluates it in a single call
+ * - results are read back by the goal on the following tick; until then the mob
+ *   keeps its previous action
+ * - feature / Q-value matrices are reused between ticks
+ * - Request / Result objects are pooled; a re-enqueue overwrites the pending request
+ *   in place, so steady-state enqueue / drain / poll allocates nothing
+ * - drain takes a quota (ThinkBudget); when more mobs are queued than it allows, the
+ *   closest-to-target, highest-tier requests go first and the rest wait for a later
+ *   tick, gaining priority for every tick they wait
+ *
+ * NOT thread-safe: server thread only.
+ */
+public class DecisionScheduler {
+
+    // Results not collected within this many ticks belong to mobs that stopped fighting
+    private static final int RESULT_TTL_TICKS = 100;
+
+    // Priority is a distance in blocks (lower = sooner): tier offsets and the per-tick
+    // ageing credit keep far / low-tier mobs from starving under a tight quota
+    private static final float ELITE_PRIORITY_OFFSET = -8.0f;
+    private static final float ROOKIE_PRIORITY_OFFSET = 8.0f;
+    private static final float WAIT_PRIORITY_CREDIT = 4.0f;
+    private static final Comparator<Request> BY_PRIORITY = (a, b) -> Float.compare(a.priority, b.priority);
+
+    private final Object2ObjectLinkedOpenHashMap<String, Request> pending = new Object2ObjectLinkedOpenHashMap<>();
+    private final Object2ObjectOpenHashMap<String, Result> results = new Object2ObjectOpenHashMap<>();
+    private final List<Request> drained = new ArrayList<>();
+    private final ArrayDeque<Request> requestPool = new ArrayDeque<>();
+    private final ArrayDeque<Result> resultPool = new ArrayDeque<>();
+
+    private float[] featureMatrix = new float[0];
+    private float[] qValueMatrix = new float[0];
+
+    private long tick = 0;
+    private long batches = 0;
+    private long decisions = 0;
+    private int largestBatch = 0;
+    private int lastDeferred = 0;
+
+    /**
+     * Queued decision for one mob (pooled)
+     * The request owns its state object; the caller's state is copied into it at
+     * enqueue time so later goal mutations do not leak in
+     */
+    static final class Request {
+        String mobType;
+        final MobBehaviorAI.MobState state = new MobBehaviorAI.MobState(1.0f, 1.0f, 0.0f);
+        String mobId;
+        Mob mobEntity;
+        int waitedTicks;
+        float priority;
+        float difficulty;  // Set when its features are packed (MobBehaviorAI.packFeatures)
+
+        private Request set(String mobType, MobBehaviorAI.MobState source, String mobId, Mob mobEntity) {
+            this.mobType = mobType;
+            this.state.copyFrom(source);
+            this.mobId = mobId;
+            this.mobEntity = mobEntity;
+            return this;
+        }
+    }
+
+    private static final class Result {
+        String action;
+        long tick;
+    }
+
+    /**
+     * Queue a decision for the next batch; replaces any request already pending for this mob
+     */
+    public void enqueue(String mobType, MobBehaviorAI.MobState state, String mobId, Mob mobEntity) {
+        Request request = pending.get(mobId);
+        if (request == null) {
+            request = requestPool.isEmpty() ? new Request() : requestPool.pop();
+            pending.put(mobId, request);
+        }
+        request.set(mobType, state, mobId, mobEntity);
+    }
+
+    /**
+     * Take the decided action for a mob, or null if its batch has not run yet
+     */
+    public String poll(String mobId) {
+        Result result = results.remove(mobId);
+        if (result == null) {
+            return null;
+        }
+        String action = result.action;
+        releaseResult(result);
+        return action;
+    }
+
+    public boolean isPending(String mobId) {
+        return pending.containsKey(mobId);
+    }
+
+    /**
+     * Advance one tick and hand out this tick's requests (in enqueue order)
+     * The returned list is reused - valid until the next call
+     */
+    List<Request> drain() {
+        return drain(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Advance one tick and hand out at most quota requests
+     * Within the quota requests keep enqueue order; over it, the best-priority ones are
+     * returned and the rest stay pending (see deferredLastDrain())
+     */
+    List<Request> drain(int quota) {
+        tick++;
+        drained.clear();
+        while (!pending.isEmpty()) {
+            Request request = pending.removeFirst();  // Enqueue order, no iterator
+            if (request.mobEntity == null || request.mobEntity.isAlive()) {
+                drained.add(request);
+            } else {
+                releaseRequest(request);
+            }
+        }
+
+        lastDeferred = 0;
+        if (drained.size() > quota) {
+            for (int i = 0; i < drained.size(); i++) {
+                Request request = drained.get(i);
+                request.priority = priorityOf(request);
+            }
+            drained.sort(BY_PRIORITY);
+            for (int i = drained.size() - 1; i >= quota; i--) {
+                Request request = drained.remove(i);
+                request.waitedTicks++;
+                pending.putAndMoveToFirst(request.mobId, request);
+                lastDeferred++;
+            }
+        }
+
+        if (tick % RESULT_TTL_TICKS == 0 && !results.isEmpty()) {
+            ObjectIterator<Result> iterator = results.values().iterator();
+            while (iterator.hasNext()) {
+                Result result = iterator.next();
+                if (tick - result.tick > RESULT_TTL_TICKS) {
+                    iterator.remove();
+                    releaseResult(result);
+                }
+            }
+        }
+        if (!drained.isEmpty()) {
+            batches++;
+            decisions += drained.size();
+            largestBatch = Math.max(largestBatch, drained.size());
+        }
+        return drained;
+    }
+
+    /**
+     * Requests held back by the last drain's quota
+     */
+    int deferredLastDrain() {
+        return lastDeferred;
+    }
+
+    private static float priorityOf(Request request) {
+        float priority = request.state.distanceToTarget - request.waitedTicks * WAIT_PRIORITY_CREDIT;
+        TacticTier tier = request.mobEntity != null ? TieredMobRegistry.tierOf(request.mobEntity) : null;
+        if (tier == TacticTier.ELITE) {
+            priority += ELITE_PRIORITY_OFFSET;
+        } else if (tier == TacticTier.ROOKIE) {
+            priority += ROOKIE_PRIORITY_OFFSET;
+        }
+        return priority;
+    }
+
+    void complete(String mobId, String action) {
+        Result result = results.get(mobId);
+        if (result == null) {
+            result = resultPool.isEmpty() ? new Result() : resultPool.pop();
+            results.put(mobId, result);
+        }
+        result.action = action;
+        result.tick = tick;
+    }
+
+    /**
+     * Return finished requests to the pool (after complete() has been called for each)
+     */
+    void recycle(List<Request> finished) {
+        for (int i = 0; i < finished.size(); i++) {
+            releaseRequest(finished.get(i));
+        }
+    }
+
+    private void releaseRequest(Request request) {
+        request.mobType = null;
+        request.mobId = null;
+        request.mobEntity = null;
+        request.waitedTicks = 0;
+        requestPool.push(request);
+    }
+
+    private void releaseResult(Result result) {
+        result.action = null;
+        resultPool.push(result);
+    }
+
+    /**
+     * Reusable packed feature matrix with room for n rows
+     */
+    float[] featureMatrix(int n, int width) {
+        if (featureMatrix.length < n * width) {
+            featureMatrix = new float[n * width];
+        }
+        return featureMatrix;
+    }
+
+    /**
+     * Reusable packed Q-value matrix with room for n rows
+     */
+    float[] qValueMatrix(int n, int width) {
+        if (qValueMatrix.length < n * width) {
+            qValueMatrix = new float[n * width];
+        }
+        return qValueMatrix;
+    }
+
+    public String getStats() {
+        return String.format("Batched decisions: %d in %d batches (avg %.1f, max %d per tick)",
+            decisions, batches, batches > 0 ? (double) decisions / batches : 0.0, largestBatch);
+    }
+}
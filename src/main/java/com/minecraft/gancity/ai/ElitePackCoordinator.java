@@ -0,0 +1,239 @@
+package com.minecraft.gancity.ai;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.entity.monster.Enemy;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Per-level elite pack assignment, recomputed once per tick
+ *
+ * PERFORMANCE: Replaces a 16-block ally scan + leader stream in every elite's goal
+ * - hostile (Enemy) elites come from TieredMobRegistry and are bucketed into
+ *   16-block cells, so neighbour tests only look at the 3x3x3 cells around each elite
+ * - elites within PACK_RADIUS of each other that target the same player are merged
+ *   with union-find (path halving, union by size)
+ * - elites without a target join the pack of the nearest targeting elite in range
+ *   (they never bridge two packs, so a pack always hunts one player)
+ * - one leader per pack (highest health among members on the target) is elected
+ *   once, so every member sees the same answer; goals read it with leaderOf()
+ *
+ * NOT thread-safe: server thread only.
+ */
+public final class ElitePackCoordinator {
+
+    public static final double PACK_RADIUS = 16.0;
+    private static final double PACK_RADIUS_SQ = PACK_RADIUS * PACK_RADIUS;
+    private static final int CELL_SHIFT = 4;  // 16 block cells
+
+    private static final Map<Level, ElitePackCoordinator> COORDINATORS = new WeakHashMap<>();
+
+    private static long rebuilds = 0;
+    private static long packsFormed = 0;
+
+    private long builtAt = Long.MIN_VALUE;
+    private int count = 0;
+
+    private final Reference2IntOpenHashMap<Mob> indexOf = new Reference2IntOpenHashMap<>();
+    private final Long2IntOpenHashMap cellHead = new Long2IntOpenHashMap();
+    private Mob[] members = new Mob[16];
+    private Player[] targets = new Player[16];  // player target, or null (untargeted / other)
+    private int[] cellNext = new int[16];        // singly linked bucket chains
+    private int[] parent = new int[16];
+    private int[] packSize = new int[16];
+    private Mob[] leaders = new Mob[16];          // indexed by pack root
+
+    private ElitePackCoordinator() {
+        indexOf.defaultReturnValue(-1);
+        cellHead.defaultReturnValue(-1);
+    }
+
+    /**
+     * Coordinator for a level, rebuilt if this is the first query of the tick
+     * @return null on the client
+     */
+    public static ElitePackCoordinator get(Level level) {
+        if (level == null || level.isClientSide()) {
+            return null;
+        }
+        ElitePackCoordinator coordinator = COORDINATORS.computeIfAbsent(level, l -> new ElitePackCoordinator());
+        long now = level.getGameTime();
+        if (coordinator.builtAt != now) {
+            coordinator.rebuild(TieredMobRegistry.get(level));
+            coordinator.builtAt = now;
+        }
+        return coordinator;
+    }
+
+    public static void clear() {
+        COORDINATORS.clear();
+    }
+
+    /**
+     * Leader of the mob's pack, or null if the mob leads its pack or has none
+     */
+    public Mob leaderOf(Mob mob) {
+        int index = indexOf.getInt(mob);
+        if (index < 0) {
+            return null;
+        }
+        Mob leader = leaders[find(index)];
+        return leader != mob ? leader : null;
+    }
+
+    private void rebuild(TieredMobRegistry registry) {
+        rebuilds++;
+        indexOf.clear();
+        cellHead.clear();
+        Arrays.fill(members, 0, count, null);
+        Arrays.fill(targets, 0, count, null);
+        Arrays.fill(leaders, 0, count, null);
+        count = 0;
+        if (registry == null || registry.eliteCount() == 0) {
+            return;
+        }
+
+        int n = registry.eliteCount();
+        if (members.length < n) {
+            int size = Math.max(n, members.length * 2);
+            members = new Mob[size];
+            targets = new Player[size];
+            cellNext = new int[size];
+            parent = new int[size];
+            packSize = new int[size];
+            leaders = new Mob[size];
+        }
+
+        // Live elites into dense arrays + 16-block buckets
+        for (int i = 0; i < n; i++) {
+            Mob mob = registry.elite(i);
+            // Only hostile elites form packs (tiered neutral mobs never coordinate)
+            if (mob.isRemoved() || mob.isDeadOrDying() || !(mob instanceof Enemy)) {
+                continue;
+            }
+            int index = count++;
+            members[index] = mob;
+            LivingEntity target = mob.getTarget();
+            targets[index] = target instanceof Player player && player.isAlive() ? player : null;
+            parent[index] = index;
+            packSize[index] = 1;
+            indexOf.put(mob, index);
+
+            long key = cellKey(mob.getBlockX() >> CELL_SHIFT, mob.getBlockY() >> CELL_SHIFT, mob.getBlockZ() >> CELL_SHIFT);
+            cellNext[index] = cellHead.get(key);
+            cellHead.put(key, index);
+        }
+
+        // Pass 1: union elites hunting the same player within range
+        for (int i = 0; i < count; i++) {
+            if (targets[i] == null) {
+                continue;
+            }
+            Mob mob = members[i];
+            int cx = mob.getBlockX() >> CELL_SHIFT;
+            int cy = mob.getBlockY() >> CELL_SHIFT;
+            int cz = mob.getBlockZ() >> CELL_SHIFT;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        for (int j = cellHead.get(cellKey(cx + dx, cy + dy, cz + dz)); j >= 0; j = cellNext[j]) {
+                            if (j > i && targets[j] == targets[i] && mob.distanceToSqr(members[j]) < PACK_RADIUS_SQ) {
+                                union(i, j);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // Pass 2: untargeted elites join the nearest hunting elite's pack
+        for (int i = 0; i < count; i++) {
+            if (targets[i] != null || members[i].getTarget() != null) {
+                continue;
+            }
+            Mob mob = members[i];
+            int cx = mob.getBlockX() >> CELL_SHIFT;
+            int cy = mob.getBlockY() >> CELL_SHIFT;
+            int cz = mob.getBlockZ() >> CELL_SHIFT;
+            int nearest = -1;
+            double nearestSq = PACK_RADIUS_SQ;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        for (int j = cellHead.get(cellKey(cx + dx, cy + dy, cz + dz)); j >= 0; j = cellNext[j]) {
+                            if (targets[j] == null) {
+                                continue;
+                            }
+                            double distSq = mob.distanceToSqr(members[j]);
+                            if (distSq < nearestSq) {
+                                nearestSq = distSq;
+                                nearest = j;
+                            }
+                        }
+                    }
+                }
+            }
+            if (nearest >= 0) {
+                // Attach under the pack root directly - i stays a leaf, so it can't bridge packs
+                int root = find(nearest);
+                parent[i] = root;
+                packSize[root]++;
+            }
+        }
+
+        // Leader election: strongest member already on the pack's player
+        for (int i = 0; i < count; i++) {
+            if (targets[i] == null) {
+                continue;
+            }
+            int root = find(i);
+            Mob current = leaders[root];
+            if (current == null || members[i].getHealth() > current.getHealth()) {
+                leaders[root] = members[i];
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (parent[i] == i && packSize[i] > 1) {
+                packsFormed++;
+            }
+        }
+    }
+
+    private int find(int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return;
+        }
+        if (packSize[rootA] < packSize[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootB] = rootA;
+        packSize[rootA] += packSize[rootB];
+    }
+
+    private static long cellKey(int cx, int cy, int cz) {
+        return ((long) (cx & 0x3FFFFF) << 42) | ((long) (cz & 0x3FFFFF) << 20) | (cy & 0xFFFFF);
+    }
+
+    public static String getStats() {
+        return String.format("Elite packs: %d rebuilds, %d packs formed", rebuilds, packsFormed);
+    }
+}
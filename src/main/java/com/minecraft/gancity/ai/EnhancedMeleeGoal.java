@@ -38,6 +38,10 @@ public class EnhancedMeleeGoal extends Goal {
     private float initialMobHealth;
     private float initialTargetHealth;
     private int combatTicks = 0;
+    // Reused for every decision / outcome (the AI copies what it keeps)
+    private final MobBehaviorAI.MobState aiState = new MobBehaviorAI.MobState(1.0f, 1.0f, 0.0f);
+    private Object cachedBiomeHolder = null;
+    private String cachedBiome = "unknown";
     
     private static final int AI_UPDATE_INTERVAL = 20;
     
@@ -196,14 +200,14 @@ public class EnhancedMeleeGoal extends Goal {
     private void recordCombatOutcome() {
         if (behaviorAI == null || target == null) return;
         
-        MobBehaviorAI.MobState finalState = new MobBehaviorAI.MobState(
+        MobBehaviorAI.MobState finalState = aiState.set(
             mob.getHealth() / mob.getMaxHealth(),
             target.getHealth() / target.getMaxHealth(),
             (float) mob.distanceTo(target)
         );
         finalState.combatTime = combatTicks / 20.0f;
         finalState.isNight = !mob.level().isDay();
-        finalState.biome = mob.level().getBiome(mob.blockPosition()).toString();
+        finalState.biome = currentBiome();
         
         boolean mobDied = !mob.isAlive();
         boolean playerDied = !target.isAlive();
@@ -217,14 +221,14 @@ public class EnhancedMeleeGoal extends Goal {
                 return;
             }
             
-            MobBehaviorAI.MobState state = new MobBehaviorAI.MobState(
+            MobBehaviorAI.MobState state = aiState.set(
                 mob.getHealth() / mob.getMaxHealth(),
                 target.getHealth() / target.getMaxHealth(),
                 (float) mob.distanceTo(target)
             );
         
         state.isNight = !mob.level().isDay();
-        state.biome = mob.level().getBiome(mob.blockPosition()).toString();
+        state.biome = currentBiome();
         state.combatTime = combatTicks / 20.0f;
         
         if (mob instanceof Spider) {
@@ -257,6 +261,18 @@ public class EnhancedMeleeGoal extends Goal {
         }
     }
     
+    /**
+     * Biome string for the mob's position, only rebuilt when the biome holder changes
+     */
+    private String currentBiome() {
+        Object holder = mob.level().getBiome(mob.blockPosition());
+        if (holder != cachedBiomeHolder) {
+            cachedBiomeHolder = holder;
+            cachedBiome = holder.toString();
+        }
+        return cachedBiome;
+    }
+    
     private double calculateActionReward() {
         double reward = 0.0;
         
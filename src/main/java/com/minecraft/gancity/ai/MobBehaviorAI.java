@@ -5,6 +5,9 @@ import com.minecraft.gancity.GANCityMod;
 import com.minecraft.gancity.event.MobTierAssignmentHandler;
 import com.minecraft.gancity.ml.*;
 import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import net.minecraft.world.entity.player.Player;
 import org.slf4j.Logger;
 
@@ -40,6 +43,14 @@ public class MobBehaviorAI {
     private TacticKnowledgeBase tacticKnowledgeBase;
     private ModelPersistence modelPersistence;
     
+    // Write-behind saves: mob types whose weights, tier experience or knowledge changed
+    // since their shard was last written
+    private final DirtyFlagTracker shardDirtyFlags = new DirtyFlagTracker();
+    private final AutoSavePipeline autoSave = new AutoSavePipeline();
+    // Tactical updates since the last shard save (crash recovery)
+    private WeightJournal weightJournal;
+    private boolean knowledgeRestored = false;  // The knowledge base outlives ML re-initialization
+    
     // XGBoost for lightweight gradient boosting
     private XGBoostTacticPredictor xgboost;
     
@@ -55,12 +66,26 @@ public class MobBehaviorAI {
     // CRITICAL: Performance optimizer (prevents lag with 70+ learning mobs)
     private PerformanceOptimizer performanceOptimizer;
     
+    // PERFORMANCE: Per-tick batched decisions (one forward pass for every fighting mob)
+    private final DecisionScheduler decisionScheduler = new DecisionScheduler();
+    private boolean batchedDecisionsEnabled = true;
+    private float[] batchedQValues = null;  // Set only while processDecisionBatch() runs
+    private int batchedRow = -1;
+    
+    // PERFORMANCE: MSPT-aware decision quota (far / low-tier mobs wait when the server lags)
+    private final ThinkBudget thinkBudget = new ThinkBudget();
+    
+    // PERFORMANCE: Pipelined inference - batch snapshotted at tick N, evaluated off-thread, applied at N+1
+    private boolean asyncInferenceEnabled = false;
+    private InFlightBatch inFlightBatch = null;
+    
     // Cross-mob emergent learning settings
     private boolean crossMobLearningEnabled = false;
     private float crossMobRewardMultiplier = 3.0f;
     
     // Contextual AI difficulty scaling (Mob Control inspired)
     private boolean contextualDifficultyEnabled = true;
+    private String inferenceBackend = "djl";  // "djl" (native) or "java" (FlatQNetwork)
     private static final float NIGHT_DIFFICULTY_MULT = 1.3f;
     private static final float STORM_DIFFICULTY_MULT = 1.2f;
     private static final float THUNDERSTORM_DIFFICULTY_MULT = 1.5f;
@@ -69,6 +94,7 @@ public class MobBehaviorAI {
     private static final float END_DIFFICULTY_MULT = 2.0f;
     private static final int STRUCTURE_SEARCH_RADIUS = 64;
     
+    private final boolean persistent;  // false = throwaway instance (tests/benchmarks)
     private boolean mlEnabled = true;  // Always enabled; uses rule-based fallback until DJL initializes
     private boolean initializationAttempted = false;  // Track if we've tried loading DJL
     
@@ -80,15 +106,45 @@ public class MobBehaviorAI {
     private static final long RETRY_BACKOFF_MULTIPLIER = 2;  // Exponential backoff (1m, 2m, 4m, 8m, 16m)
     
     private final Map<String, MobBehaviorProfile> behaviorProfiles = new HashMap<>();
-    private final Map<String, MobState> lastStateCache = new HashMap<>();
-    private final Map<String, String> lastActionCache = new HashMap<>();
-    private final Map<String, VisualPerception.VisualState> lastVisualCache = new HashMap<>();
-    private final Map<String, GeneticBehaviorEvolution.BehaviorGenome> activeGenomes = new HashMap<>();
+    
+    // PERFORMANCE: Per-mob state indexed by dense int handle instead of HashMap<String, ...>
+    // Slots are recycled when the entity unloads (releaseMob), arrays grow with the registry
+    private final MobHandleRegistry mobHandles = new MobHandleRegistry(256);
+    private MobState[] lastStateCache = new MobState[mobHandles.capacity()];  // null = no decision to learn from
+    // Reusable per-slot MobState objects: lastStateSlots backs lastStateCache, inputStateSlots
+    // is what goals fill before asking for a decision (kept across slot reuse, never freed)
+    private MobState[] lastStateSlots = new MobState[mobHandles.capacity()];
+    private MobState[] inputStateSlots = new MobState[mobHandles.capacity()];
+    private int[] lastActionCache = newIntSlots(mobHandles.capacity(), ActionRegistry.NO_ACTION);  // Action ordinals
+    private VisualPerception.VisualState[] lastVisualCache = new VisualPerception.VisualState[mobHandles.capacity()];
+    private GeneticBehaviorEvolution.BehaviorGenome[] activeGenomes = new GeneticBehaviorEvolution.BehaviorGenome[mobHandles.capacity()];
     private final Random random = new Random();
     private float difficultyMultiplier = 1.0f;
     
+    // Action-set scratch for selection (server thread only)
+    private final BitSet validActionScratch = new BitSet();
+    private final BitSet allActionScratch = new BitSet();
+    // Candidate order behind validActionScratch: profile list order, then borrowed tactics.
+    // Model output indices (forest, XGBoost, cached Q) count valid actions in this order.
+    private int[] validOrder = new int[32];
+    private int validOrderLength = 0;
+    private final BitSet visualRecommendationScratch = new BitSet();
+    private float[] actionWeightScratch = new float[16];
+    
+    // Feature buffers for the think cycle (server thread only)
+    private static final int FEATURE_COUNT = 22;  // state(10) + visual(9) + genome(3)
+    private final float[] featureScratch = new float[FEATURE_COUNT];
+    private final double[] forestFeatureScratch = new double[FEATURE_COUNT];
+    private float[] qValueScratch = new float[0];
+    
+    // Borrowed cross-mob tactics, refreshed every BORROWED_REFRESH_TICKS instead of per decision
+    private static final int BORROWED_REFRESH_TICKS = 100;
+    private List<FederatedLearning.GlobalTactic> borrowedTactics = Collections.emptyList();
+    private int borrowedTacticsTick = NEVER_THOUGHT;
+    
     // Action frequency throttling (prevents thinking every tick)
-    private final Map<String, Integer> mobLastThinkTick = new HashMap<>();
+    private int[] mobLastThinkTick = newIntSlots(mobHandles.capacity(), NEVER_THOUGHT);
+    private static final int NEVER_THOUGHT = Integer.MIN_VALUE;
     private static final int THINK_INTERVAL = 15;  // Think every 15 ticks (0.75s)
     private int globalTick = 0;
     
@@ -98,8 +154,8 @@ public class MobBehaviorAI {
     private static final int CORRELATION_SAMPLE_SIZE = 10;  // Samples before suggesting
 
     // Sequence tracking for advanced ML (v2.0.0)
-    private final Map<String, List<ActionRecord>> activeSequences = new HashMap<>();
-    private final Map<String, Long> combatStartTimes = new HashMap<>();
+    private final Int2ObjectOpenHashMap<List<ActionRecord>> activeSequences = new Int2ObjectOpenHashMap<>();
+    private long[] combatStartTimes = new long[mobHandles.capacity()];  // 0 = no active sequence
     private static final int MAX_SEQUENCE_LENGTH = 10;  // Track up to 10 actions per combat
     
     // Meta-learning recommendations cache
@@ -115,10 +171,10 @@ public class MobBehaviorAI {
     
     // TACTICAL SYSTEM - Federation that actually works
     private TacticalWeightAggregator tacticalAggregator;
-    private final Map<String, CombatEpisode> activeEpisodes = new HashMap<>();  // Track ongoing combat
+    private final Int2ObjectOpenHashMap<CombatEpisode> activeEpisodes = new Int2ObjectOpenHashMap<>();  // Track ongoing combat
     private boolean tacticalSystemEnabled = true;
     private int episodeSampleInterval = 10;  // Sample tactical state every 10 ticks (0.5s)
-    private final Map<String, Integer> episodeTickCounters = new HashMap<>();  // Track when to sample
+    private int[] episodeTickCounters = new int[mobHandles.capacity()];  // Track when to sample
     
     // Variant family grouping (cross-learning within families)
     private static final Map<String, List<String>> VARIANT_FAMILIES = new HashMap<>();
@@ -136,6 +192,15 @@ public class MobBehaviorAI {
         VARIANT_FAMILIES.put("slime", Arrays.asList("slime", "magma_cube"));
         VARIANT_FAMILIES.put("golem", Arrays.asList("iron_golem", "snow_golem"));
     }
+    // Variant -> family base, so the per-decision tier lookup is one hash probe
+    private static final Map<String, String> FAMILY_BASE_OF = new HashMap<>();
+    static {
+        for (Map.Entry<String, List<String>> family : VARIANT_FAMILIES.entrySet()) {
+            for (String variant : family.getValue()) {
+                FAMILY_BASE_OF.put(variant, family.getKey());
+            }
+        }
+    }
     
     // Dynamic think costs per mob type
     private static final Map<String, Integer> BASE_THINK_COSTS = new HashMap<>();
@@ -172,11 +237,25 @@ public class MobBehaviorAI {
     }
 
     public MobBehaviorAI() {
+        this(true);
+    }
+
+    /**
+     * @param persistent false for a throwaway instance (tests/benchmarks): no model directory,
+     *                   no journal, no shard restore and no lazy DJL init, so nothing it does
+     *                   reaches disk or the shared models
+     */
+    MobBehaviorAI(boolean persistent) {
+        this.persistent = persistent;
         initializeDefaultProfiles();
-        // Non-DJL systems must be available even if DJL fails to load.
-        // This ensures federation/telemetry can still collect real outcomes.
-        initializeNonDjlSystems();
-        // Don't initialize ML systems at startup - lazy load when needed
+        if (persistent) {
+            // Non-DJL systems must be available even if DJL fails to load.
+            // This ensures federation/telemetry can still collect real outcomes.
+            initializeNonDjlSystems();
+            // Don't initialize ML systems at startup - lazy load when needed
+        } else {
+            mlEnabled = false;
+        }
     }
 
     /**
@@ -188,13 +267,19 @@ public class MobBehaviorAI {
         try {
             if (tacticKnowledgeBase == null) {
                 tacticKnowledgeBase = new TacticKnowledgeBase();
+                tacticKnowledgeBase.setDirtyTracker(shardDirtyFlags);
             }
             if (modelPersistence == null) {
                 modelPersistence = new ModelPersistence();
             }
+            if (weightJournal == null) {
+                weightJournal = new WeightJournal(modelPersistence.getModelPath().resolve("journal"));
+            }
             if (tacticalAggregator == null) {
                 tacticalAggregator = new TacticalWeightAggregator();
                 HeuristicTacticSeeding.seedWithDifficulty(tacticalAggregator, difficultyMultiplier);
+                restoreShards();
+                tacticalAggregator.setJournal(weightJournal);
             }
         } catch (Throwable t) {
             // Never hard-fail construction; AI will degrade gracefully.
@@ -327,6 +412,7 @@ public class MobBehaviorAI {
             
             // Core learning - 22 input features (state + visual + genome)
             doubleDQN = new DoubleDQN();  // Uses default 22 state features, 10 actions
+            doubleDQN.setInferenceBackend(DoubleDQN.InferenceBackend.fromConfig(inferenceBackend));
             replayBuffer = new PrioritizedReplayBuffer(10000);
             
             // Multi-agent coordination
@@ -345,7 +431,10 @@ public class MobBehaviorAI {
             taskChainSystem = new TaskChainSystem();
             reflexModule = new ReflexModule();
             autonomousGoals = new AutonomousGoals();
-            tacticKnowledgeBase = new TacticKnowledgeBase();
+            if (tacticKnowledgeBase == null) {
+                tacticKnowledgeBase = new TacticKnowledgeBase();
+                tacticKnowledgeBase.setDirtyTracker(shardDirtyFlags);
+            }
             modelPersistence = new ModelPersistence();
             
             // XGBoost for gradient boosting (lightweight, explainable)
@@ -366,6 +455,8 @@ public class MobBehaviorAI {
             
             // Load saved models if available
             modelPersistence.loadAll(doubleDQN, replayBuffer, tacticKnowledgeBase);
+            restoreShards();
+            tacticalAggregator.setJournal(weightJournal);
             
             // SUCCESS: ML fully initialized
             mlEnabled = true;
@@ -524,6 +615,17 @@ public class MobBehaviorAI {
         }
     }
     
+    /**
+     * Select where DQN action selection runs: "djl" (native PyTorch) or "java" (pure-Java MLP)
+     * Training always uses DJL; the java backend only replaces the per-decision forward pass
+     */
+    public void setInferenceBackend(String backend) {
+        this.inferenceBackend = backend != null ? backend : "djl";
+        if (doubleDQN != null) {
+            doubleDQN.setInferenceBackend(DoubleDQN.InferenceBackend.fromConfig(this.inferenceBackend));
+        }
+    }
+    
     /**
      * Calculate contextual difficulty multiplier based on environment
      * Inspired by Mob Control's conditional spawn system
@@ -1086,14 +1188,89 @@ public class MobBehaviorAI {
         LOGGER.info("Initialized behavior profiles for {} mob types (ALL vanilla Minecraft mobs covered)", behaviorProfiles.size());
     }
 
+    /**
+     * Handle for a mob, assigning a slot (and growing the per-mob arrays) on first sight
+     */
+    private int mobHandle(String mobId) {
+        int handle = mobHandles.acquire(mobId);
+        if (handle >= lastActionCache.length) {
+            int capacity = mobHandles.capacity();
+            lastStateCache = Arrays.copyOf(lastStateCache, capacity);
+            lastStateSlots = Arrays.copyOf(lastStateSlots, capacity);
+            inputStateSlots = Arrays.copyOf(inputStateSlots, capacity);
+            int oldActions = lastActionCache.length;
+            lastActionCache = Arrays.copyOf(lastActionCache, capacity);
+            Arrays.fill(lastActionCache, oldActions, capacity, ActionRegistry.NO_ACTION);
+            lastVisualCache = Arrays.copyOf(lastVisualCache, capacity);
+            activeGenomes = Arrays.copyOf(activeGenomes, capacity);
+            combatStartTimes = Arrays.copyOf(combatStartTimes, capacity);
+            episodeTickCounters = Arrays.copyOf(episodeTickCounters, capacity);
+            int oldLength = mobLastThinkTick.length;
+            mobLastThinkTick = Arrays.copyOf(mobLastThinkTick, capacity);
+            Arrays.fill(mobLastThinkTick, oldLength, capacity, NEVER_THOUGHT);
+        }
+        return handle;
+    }
+    
+    /**
+     * Reusable state object for a mob's next decision request
+     * Fill it (MobState.set) and pass it straight to requestMobAction / selectMobAction;
+     * the AI copies what it keeps, so the same object can be refilled every think
+     */
+    public MobState inputState(String mobId) {
+        int handle = mobHandle(mobId);
+        MobState state = inputStateSlots[handle];
+        if (state == null) {
+            state = new MobState(1.0f, 1.0f, 0.0f);
+            inputStateSlots[handle] = state;
+        }
+        return state;
+    }
+    
+    private GeneticBehaviorEvolution.BehaviorGenome genomeFor(int handle) {
+        GeneticBehaviorEvolution.BehaviorGenome genome = activeGenomes[handle];
+        if (genome == null) {
+            genome = geneticEvolution.selectGenome();
+            activeGenomes[handle] = genome;
+        }
+        return genome;
+    }
+    
+    private static int[] newIntSlots(int capacity, int initial) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, initial);
+        return slots;
+    }
+    
+    /**
+     * Free all per-mob state for an entity that left the level (death, unload, dimension change)
+     * Called from GANCityMod's EntityLeaveLevelEvent handler
+     */
+    public void releaseMob(String mobId) {
+        int handle = mobHandles.release(mobId);
+        if (handle == MobHandleRegistry.NO_HANDLE) {
+            return;
+        }
+        lastStateCache[handle] = null;
+        lastActionCache[handle] = ActionRegistry.NO_ACTION;
+        lastVisualCache[handle] = null;
+        activeGenomes[handle] = null;
+        mobLastThinkTick[handle] = NEVER_THOUGHT;
+        combatStartTimes[handle] = 0L;
+        episodeTickCounters[handle] = 0;
+        activeSequences.remove(handle);
+        activeEpisodes.remove(handle);
+    }
+
     /**
      * Select next action for a specific mob instance with visual perception
      * PERFORMANCE: Throttled to think every 15 ticks (15x speedup)
      */
     public String selectMobAction(String mobType, MobState state, String mobId, Player target) {
         // DIAGNOSTIC: Log every 100 calls to confirm this method runs
-        if (globalTick % 100 == 0) {
-            LOGGER.info("[ML-DEBUG] selectMobAction called {} times, mlEnabled={}, doubleDQN={}, lastInitAttempt={}ms ago",
+        // (guarded - the varargs array and boxing would otherwise allocate on the think path)
+        if (globalTick % 100 == 0 && LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[ML-DEBUG] selectMobAction called {} times, mlEnabled={}, doubleDQN={}, lastInitAttempt={}ms ago",
                 globalTick, mlEnabled, (doubleDQN != null ? "LOADED" : "NULL"), 
                 (System.currentTimeMillis() - lastInitAttemptTime));
         }
@@ -1102,14 +1279,16 @@ public class MobBehaviorAI {
         // Use dynamic think interval based on mob type and tier
         globalTick++;
         int thinkInterval = tierSystemEnabled ? getThinkInterval(mobType) : THINK_INTERVAL;
+        thinkInterval = (int) (thinkInterval * thinkBudget.intervalScale());  // back off while the server lags
         
-        Integer lastThink = mobLastThinkTick.get(mobId);
-        if (lastThink != null && (globalTick - lastThink) < thinkInterval) {
+        int handle = mobHandle(mobId);
+        int lastThink = mobLastThinkTick[handle];
+        if (lastThink != NEVER_THOUGHT && (globalTick - lastThink) < thinkInterval) {
             // Use last action - don't compute new one yet
-            String cached = lastActionCache.get(mobId);
-            return cached != null ? cached : "default_attack";
+            int cached = lastActionCache[handle];
+            return cached != ActionRegistry.NO_ACTION ? ActionRegistry.name(cached) : "default_attack";
         }
-        mobLastThinkTick.put(mobId, globalTick);
+        mobLastThinkTick[handle] = globalTick;
         
         // Tick performance optimizer once per game tick
         if (performanceOptimizer != null && globalTick % 20 == 0) {
@@ -1128,8 +1307,8 @@ public class MobBehaviorAI {
         
         // DIAGNOSTIC: Log the condition check
         long timeSinceLastAttempt = System.currentTimeMillis() - lastInitAttemptTime;
-        if (globalTick % 20 == 0) { // Log every second
-            LOGGER.info("[ML-DEBUG] Init check: mlEnabled={}, doubleDQN={}, timeSinceLastAttempt={}ms, threshold=5000ms",
+        if (globalTick % 20 == 0 && LOGGER.isDebugEnabled()) { // Log every second
+            LOGGER.debug("[ML-DEBUG] Init check: mlEnabled={}, doubleDQN={}, timeSinceLastAttempt={}ms, threshold=5000ms",
                 mlEnabled, (doubleDQN != null ? "LOADED" : "NULL"), timeSinceLastAttempt);
         }
         
@@ -1139,17 +1318,15 @@ public class MobBehaviorAI {
             LOGGER.info("[ML-DEBUG] After init attempt: doubleDQN={}", (doubleDQN != null ? "LOADED" : "STILL NULL"));
         }
 
-        String selectedAction;
+        int selectedAction;
         
         if (mlEnabled && doubleDQN != null) {
             // Analyze player visually
-            VisualPerception.VisualState visual = visualPerception.analyzePlayer(target);
-            lastVisualCache.put(mobId, visual);
+            VisualPerception.VisualState visual = target != null ? visualPerception.analyzePlayer(target) : null;
+            lastVisualCache[handle] = visual;
             
             // Get or create genome for this mob
-            GeneticBehaviorEvolution.BehaviorGenome genome = activeGenomes.computeIfAbsent(
-                mobId, k -> geneticEvolution.selectGenome()
-            );
+            GeneticBehaviorEvolution.BehaviorGenome genome = genomeFor(handle);
             
             // Use advanced ML systems for action selection with caching
             selectedAction = selectActionWithAdvancedML(profile, state, visual, genome, mobId);
@@ -1165,8 +1342,8 @@ public class MobBehaviorAI {
             // Accuracy check: chance the AI successfully executes its best tactic
             if (random.nextFloat() > tier.accuracy) {
                 // Failed accuracy check - use a random/fallback action instead
-                List<String> actions = profile.getActions();
-                selectedAction = actions.get(random.nextInt(actions.size()));
+                int[] actions = profile.getActionOrdinals();
+                selectedAction = actions[random.nextInt(actions.length)];
                 
                 // Log occasionally for debugging (1% chance)
                 if (random.nextFloat() < 0.01f) {
@@ -1176,11 +1353,16 @@ public class MobBehaviorAI {
             }
         }
         
-        // Cache state and action for learning when outcome is recorded
-        lastStateCache.put(mobId, state.copy());
-        lastActionCache.put(mobId, selectedAction);
+        // Cache state and action for learning when outcome is recorded (copied into the slot's own object)
+        MobState cachedState = lastStateSlots[handle];
+        if (cachedState == null) {
+            cachedState = new MobState(state.health, state.targetHealth, state.distanceToTarget);
+            lastStateSlots[handle] = cachedState;
+        }
+        lastStateCache[handle] = cachedState.copyFrom(state);
+        lastActionCache[handle] = selectedAction;
         
-        return selectedAction;
+        return ActionRegistry.name(selectedAction);
     }
     
     /**
@@ -1188,7 +1370,13 @@ public class MobBehaviorAI {
      * Uses ML model if enabled, otherwise rule-based
      */
     public String selectMobAction(String mobType, MobState state) {
-        return selectMobAction(mobType, state, UUID.randomUUID().toString(), null);
+        // One-off ID: release its slot straight away so anonymous calls don't pin handles
+        String mobId = UUID.randomUUID().toString();
+        try {
+            return selectMobAction(mobType, state, mobId, null);
+        } finally {
+            releaseMob(mobId);
+        }
     }
     
     /**
@@ -1208,72 +1396,320 @@ public class MobBehaviorAI {
      * @return Selected action
      */
     public String selectMobActionWithEntity(String mobType, MobState state, String mobId, net.minecraft.world.entity.Mob mobEntity) {
+        return selectWithDifficulty(mobType, state, mobId, decisionDifficulty(mobEntity));
+    }
+    
+    /**
+     * Difficulty a decision for this mob runs with: tier difficulty combined with the
+     * contextual difficulty if enabled, otherwise with the base setting
+     * (batched rows are packed with it too, so out[8] matches the per-mob path)
+     */
+    private float decisionDifficulty(net.minecraft.world.entity.Mob mobEntity) {
         // Get mob's tactic tier for difficulty adjustment
         TacticTier tier = TacticTier.VETERAN; // default
         if (mobEntity != null && MobTierAssignmentHandler.hasTier(mobEntity)) {
             tier = MobTierAssignmentHandler.getTierFromMob(mobEntity);
         }
         
-        // Apply contextual difficulty if enabled
+        // Combine contextual and tier difficulty if enabled
         if (contextualDifficultyEnabled && mobEntity != null) {
-            float originalDifficulty = difficultyMultiplier;
-            
-            // Combine contextual and tier difficulty
-            float contextDifficulty = getContextualDifficulty(mobEntity);
-            float tierDifficulty = tier.getDifficultyMultiplier();
-            difficultyMultiplier = contextDifficulty * tierDifficulty;
-            
-            // Select action with modified difficulty
-            String action = selectMobAction(mobType, state, mobId, (net.minecraft.world.entity.player.Player) null);
-            
+            return getContextualDifficulty(mobEntity) * tier.getDifficultyMultiplier();
+        }
+        
+        // Apply only tier difficulty
+        return difficultyMultiplier * tier.getDifficultyMultiplier();
+    }
+    
+    /**
+     * Select an action with difficultyMultiplier temporarily set to difficulty
+     */
+    private String selectWithDifficulty(String mobType, MobState state, String mobId, float difficulty) {
+        float originalDifficulty = difficultyMultiplier;
+        difficultyMultiplier = difficulty;
+        try {
+            return selectMobAction(mobType, state, mobId, (net.minecraft.world.entity.player.Player) null);
+        } finally {
             // Restore original difficulty
             difficultyMultiplier = originalDifficulty;
+        }
+    }
+
+    /**
+     * Queue a decision for the next per-tick batch
+     * @return the action right away when batching is disabled, otherwise null -
+     *         collect the result with {@link #pollMobAction(String)} on a later tick
+     */
+    public String requestMobAction(String mobType, MobState state, String mobId, net.minecraft.world.entity.Mob mobEntity) {
+        if (!batchedDecisionsEnabled) {
+            if (!thinkBudget.tryAcquire()) {
+                // Over this tick's quota - keep the current action
+                int cached = lastActionCache[mobHandle(mobId)];
+                return cached != ActionRegistry.NO_ACTION ? ActionRegistry.name(cached) : "default_attack";
+            }
+            long start = System.nanoTime();
+            String action = selectMobActionWithEntity(mobType, state, mobId, mobEntity);
+            thinkBudget.recordDecisions(1, System.nanoTime() - start, false);
             return action;
         }
+        mobHandle(mobId);  // Held while queued: finishDecisions skips mobs released in the meantime
+        decisionScheduler.enqueue(mobType, state, mobId, mobEntity);
+        return null;
+    }
+    
+    /**
+     * Action decided for a queued request, or null while it is still pending
+     */
+    public String pollMobAction(String mobId) {
+        return decisionScheduler.poll(mobId);
+    }
+    
+    /**
+     * Run every decision queued this tick through one batched forward pass
+     * Called once per server tick (end phase) from GANCityMod
+     * 
+     * Pipeline mode: the batch is snapshotted here, evaluated on the inference thread,
+     * and committed at the next tick boundary where it has finished (normally N+1).
+     * Commits only ever happen here, never mid-tick, so mobs switch actions at a
+     * deterministic point and keep their lastActionCache entry until then.
+     * 
+     * Budget: at most ThinkBudget's quota of requests is taken per tick (sized from
+     * averageTickMs and the measured cost per decision); the rest wait in the queue.
+     * 
+     * @param averageTickMs the server's average tick time (MinecraftServer.getAverageTickTime())
+     */
+    public void processDecisionBatch(float averageTickMs) {
+        thinkBudget.beginTick(averageTickMs);
+        long start = System.nanoTime();
+        int decided = runDecisionBatch();
+        thinkBudget.recordDecisions(decided, System.nanoTime() - start, true);
+    }
+    
+    /**
+     * @return number of decisions committed on the server thread this tick
+     */
+    private int runDecisionBatch() {
+        if (asyncInferenceEnabled && performanceOptimizer != null && doubleDQN != null) {
+            performanceOptimizer.releaseStaleInferenceSession(doubleDQN);
+        }
+        int committed = 0;
+        if (inFlightBatch != null) {
+            if (!inFlightBatch.future.isDone()) {
+                return 0;  // Still running - new requests wait in the queue
+            }
+            InFlightBatch finished = inFlightBatch;
+            inFlightBatch = null;
+            committed = finished.requests.size();
+            finishDecisions(finished.requests, finished.succeeded() ? finished.qValues : null);
+            decisionScheduler.recycle(finished.requests);
+        }
+        
+        List<DecisionScheduler.Request> requests = decisionScheduler.drain(Math.max(0, thinkBudget.remaining() - committed));
+        thinkBudget.recordDeferred(decisionScheduler.deferredLastDrain());
+        int n = requests.size();
+        if (n == 0) {
+            return committed;
+        }
+        
+        DoubleDQN dqn = doubleDQN;
+        if (!mlEnabled || dqn == null) {
+            finishDecisions(requests, null);
+            decisionScheduler.recycle(requests);
+            return committed + n;
+        }
+        
+        if (asyncInferenceEnabled && performanceOptimizer != null) {
+            // Immutable snapshot owned by the worker: nothing it reads is touched by the server thread
+            float[] features = packFeatures(requests, new float[n * dqn.getInputSize()], dqn);
+            float[] qValues = new float[n * dqn.getOutputSize()];
+            List<DecisionScheduler.Request> snapshot = new ArrayList<>(requests);
+            try {
+                java.util.concurrent.Future<?> future = performanceOptimizer.submitInference(
+                    () -> dqn.predictQValuesBatch(features, n, qValues)
+                );
+                inFlightBatch = new InFlightBatch(snapshot, qValues, future);
+                return committed;
+            } catch (java.util.concurrent.RejectedExecutionException e) {
+                LOGGER.debug("Inference pool unavailable, deciding on server thread");
+            }
+        }
         
-        // Apply only tier difficulty
-        float originalDifficulty = difficultyMultiplier;
-        difficultyMultiplier *= tier.getDifficultyMultiplier();
-        String action = selectMobAction(mobType, state, mobId, (net.minecraft.world.entity.player.Player) null);
-        difficultyMultiplier = originalDifficulty;
+        decideOnServerThread(requests, dqn);
+        return committed + n;
+    }
+    
+    /**
+     * Evaluate a drained batch on the server thread with the scheduler's reusable matrices
+     * and return its requests to the pool
+     */
+    private void decideOnServerThread(List<DecisionScheduler.Request> requests, DoubleDQN dqn) {
+        int n = requests.size();
+        float[] qValues = null;
+        if (mlEnabled && dqn != null) {
+            try {
+                float[] features = packFeatures(requests, decisionScheduler.featureMatrix(n, dqn.getInputSize()), dqn);
+                qValues = decisionScheduler.qValueMatrix(n, dqn.getOutputSize());
+                dqn.predictQValuesBatch(features, n, qValues);
+            } catch (Exception e) {
+                LOGGER.debug("Batched inference skipped: {}", e.getMessage());
+                qValues = null;
+            }
+        }
+        finishDecisions(requests, qValues);
+        decisionScheduler.recycle(requests);
+    }
+    
+    /**
+     * Pack features exactly as selectActionWithAdvancedML would build them
+     * (entity-driven decisions have no player target, so no visual features)
+     */
+    private float[] packFeatures(List<DecisionScheduler.Request> requests, float[] features, DoubleDQN dqn) {
+        for (int i = 0; i < requests.size(); i++) {
+            DecisionScheduler.Request request = requests.get(i);
+            int handle = mobHandles.lookup(request.mobId);
+            if (handle == MobHandleRegistry.NO_HANDLE) {
+                DoubleDQN.packState(null, features, i);  // Released - finishDecisions skips the row
+                continue;
+            }
+            GeneticBehaviorEvolution.BehaviorGenome genome = genomeFor(handle);
+            // Same difficulty the per-mob path would write into out[8]; kept for finishDecisions
+            request.difficulty = decisionDifficulty(request.mobEntity);
+            float originalDifficulty = difficultyMultiplier;
+            difficultyMultiplier = request.difficulty;
+            try {
+                combineFeatures(request.state, null, genome, featureScratch);
+            } finally {
+                difficultyMultiplier = originalDifficulty;
+            }
+            DoubleDQN.packState(featureScratch, features, i);
+        }
+        return features;
+    }
+    
+    /**
+     * Complete each request using its row of batched Q-values (null = per-mob path)
+     * Requests whose mob was released or removed while the batch was in flight are
+     * dropped, so they never re-acquire a handle for a dead mob
+     */
+    private void finishDecisions(List<DecisionScheduler.Request> requests, float[] qValues) {
+        batchedQValues = qValues;
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                DecisionScheduler.Request request = requests.get(i);
+                if (mobHandles.lookup(request.mobId) == MobHandleRegistry.NO_HANDLE
+                        || (request.mobEntity != null && request.mobEntity.isRemoved())) {
+                    continue;
+                }
+                batchedRow = i;
+                String action;
+                try {
+                    // Batched rows were packed with request.difficulty - decide with the same value
+                    float difficulty = qValues != null ? request.difficulty : decisionDifficulty(request.mobEntity);
+                    action = selectWithDifficulty(request.mobType, request.state, request.mobId, difficulty);
+                } catch (Exception e) {
+                    int cached = lastActionCache[mobHandle(request.mobId)];
+                    action = cached != ActionRegistry.NO_ACTION ? ActionRegistry.name(cached) : "default_attack";
+                }
+                decisionScheduler.complete(request.mobId, action);
+            }
+        } finally {
+            batchedQValues = null;
+            batchedRow = -1;
+        }
+    }
+    
+    /**
+     * Decision batch being evaluated on the inference thread
+     */
+    private static final class InFlightBatch {
+        final List<DecisionScheduler.Request> requests;
+        final float[] qValues;
+        final java.util.concurrent.Future<?> future;
+        
+        InFlightBatch(List<DecisionScheduler.Request> requests, float[] qValues, java.util.concurrent.Future<?> future) {
+            this.requests = requests;
+            this.qValues = qValues;
+            this.future = future;
+        }
         
-        return action;
+        boolean succeeded() {
+            try {
+                future.get();
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+    }
+    
+    /**
+     * Enable/disable pipelined (off-thread) inference for batched decisions
+     */
+    public void setAsyncInference(boolean enabled) {
+        this.asyncInferenceEnabled = enabled;
+    }
+    
+    /**
+     * Configure the MSPT-aware think budget
+     * @param budgetMs AI decision time allowed per tick while the server is healthy
+     */
+    public void setThinkBudget(boolean enabled, float budgetMs) {
+        thinkBudget.configure(enabled, budgetMs);
+    }
+    
+    /**
+     * Multiplier for goal re-think intervals (1 when the server is healthy)
+     */
+    public float getThinkIntervalScale() {
+        return thinkBudget.intervalScale();
+    }
+    
+    /**
+     * Enable/disable per-tick batched decisions (disabled = decide synchronously per goal)
+     */
+    public void setBatchedDecisions(boolean enabled) {
+        this.batchedDecisionsEnabled = enabled;
     }
 
     /**
      * Advanced ML-based action selection combining all systems
      */
-    private String selectActionWithAdvancedML(MobBehaviorProfile profile, MobState state, 
-                                              VisualPerception.VisualState visual,
-                                              GeneticBehaviorEvolution.BehaviorGenome genome,
-                                              String mobId) {
-        List<String> validActions = getValidActions(profile, state);
+    private int selectActionWithAdvancedML(MobBehaviorProfile profile, MobState state, 
+                                           VisualPerception.VisualState visual,
+                                           GeneticBehaviorEvolution.BehaviorGenome genome,
+                                           String mobId) {
+        BitSet validActions = validActionScratch;
+        getValidActions(profile, state, validActions);
         if (validActions.isEmpty()) {
-            return "default_attack";
+            return ActionRegistry.DEFAULT_ATTACK;
         }
         
         // Apply curriculum learning filter
-        validActions = curriculum.filterActionsByStage(validActions);
+        curriculum.filterActionsByStage(validActions);
+        int validCount = validActions.cardinality();
         
         // Get visual recommendations
-        List<String> visualRecommendations = new ArrayList<>();
+        BitSet visualRecommendations = visualRecommendationScratch;
+        visualRecommendations.clear();
         if (visual != null) {
-            visualRecommendations = visualPerception.getRecommendedActions(visual);
+            visualPerception.getRecommendedActions(visual, visualRecommendations);
         }
         
         // Check for team coordination
         List<String> teamMembers = multiAgent.getTeamMembers(mobId);
         if (teamMembers != null && teamMembers.size() > 1) {
             // Share experiences with teammates
-            for (String teammateId : teamMembers) {
+            for (int t = 0; t < teamMembers.size(); t++) {
+                String teammateId = teamMembers.get(t);
                 if (!teammateId.equals(mobId)) {
-                    MobState teammateState = lastStateCache.get(teammateId);
-                    String teammateAction = lastActionCache.get(teammateId);
-                    if (teammateState != null && teammateAction != null) {
+                    int teammate = mobHandles.lookup(teammateId);
+                    if (teammate == MobHandleRegistry.NO_HANDLE) {
+                        continue;
+                    }
+                    MobState teammateState = lastStateCache[teammate];
+                    int teammateAction = lastActionCache[teammate];
+                    if (teammateState != null && teammateAction != ActionRegistry.NO_ACTION) {
                         // Consider teammate's recent experience
-                        float[] teammateFeatures = combineFeatures(teammateState, visual, genome);
-                        int actionIndex = validActions.indexOf(teammateAction);
-                        if (actionIndex >= 0) {
+                        if (validActions.get(teammateAction)) {
                             // Teammate used this action recently
                         }
                     }
@@ -1281,12 +1717,20 @@ public class MobBehaviorAI {
             }
         }
         
-        // Combine all feature sources
-        float[] combinedFeatures = combineFeatures(state, visual, genome);
+        // Combine all feature sources (into the reusable feature buffer)
+        float[] combinedFeatures = combineFeatures(state, visual, genome, featureScratch);
         
         // CRITICAL FIX #2: Use cached Q-values (80% CPU reduction)
+        // Batched decisions already evaluated this row with every other mob this tick
         float[] qValues = null;
-        if (performanceOptimizer != null) {
+        if (batchedQValues != null && batchedRow >= 0 && doubleDQN != null) {
+            int width = doubleDQN.getOutputSize();
+            if (qValueScratch.length != width) {
+                qValueScratch = new float[width];
+            }
+            System.arraycopy(batchedQValues, batchedRow * width, qValueScratch, 0, width);
+            qValues = qValueScratch;
+        } else if (performanceOptimizer != null) {
             qValues = performanceOptimizer.getCachedQValues(mobId, combinedFeatures);
         }
         
@@ -1295,28 +1739,28 @@ public class MobBehaviorAI {
         
         // 1. Random Forest (ensemble learning, handles non-linear patterns well)
         if (randomForest != null && randomForest.isAvailable()) {
-            double[] features = new double[combinedFeatures.length];
+            double[] features = forestFeatureScratch;
             for (int i = 0; i < combinedFeatures.length; i++) {
                 features[i] = combinedFeatures[i];
             }
             actionIndex = randomForest.predictTactic(features);
             
-            // Record this tactic for future training
-            if (actionIndex >= 0 && actionIndex < validActions.size()) {
-                randomForest.recordTactic("unknown", features, actionIndex);
+            // Record this tactic for future training (the training example keeps its own copy)
+            if (actionIndex >= 0 && actionIndex < validCount) {
+                randomForest.recordTactic("unknown", features.clone(), actionIndex);
             }
         }
         
         // 2. XGBoost (fast gradient boosting) if Random Forest unavailable
         if (actionIndex < 0 && xgboost != null && xgboost.isAvailable()) {
-            actionIndex = xgboost.predictTactic(combinedFeatures, validActions.size());
+            actionIndex = xgboost.predictTactic(combinedFeatures, validCount);
         }
         
         // 3. Fall back to cached Q-values if neither available
         if (actionIndex < 0 && qValues != null) {
             // Find best action from cached Q-values
             float maxQ = Float.NEGATIVE_INFINITY;
-            for (int i = 0; i < Math.min(qValues.length, validActions.size()); i++) {
+            for (int i = 0; i < Math.min(qValues.length, validCount); i++) {
                 if (qValues[i] > maxQ) {
                     maxQ = qValues[i];
                     actionIndex = i;
@@ -1329,15 +1773,15 @@ public class MobBehaviorAI {
             actionIndex = doubleDQN.selectActionIndex(combinedFeatures);
         }
         
-        // Map index to valid action
-        if (actionIndex >= validActions.size()) {
-            actionIndex = actionIndex % validActions.size();
+        // Map index to valid action (n-th valid action in profile order)
+        if (actionIndex >= validCount) {
+            actionIndex = actionIndex % validCount;
         }
-        String selectedAction = validActions.get(Math.max(0, actionIndex));
+        int selectedAction = ActionRegistry.nth(validOrder, validOrderLength, validActions, Math.max(0, actionIndex));
         
         // Apply genetic modifiers
-        if (genome.actionWeights.containsKey(selectedAction)) {
-            float weight = genome.actionWeights.get(selectedAction);
+        if (genome.hasWeight(selectedAction)) {
+            float weight = genome.weight(selectedAction, 1.0f);
             // Bias toward genetically preferred actions
             if (random.nextFloat() > weight && !validActions.isEmpty()) {
                 // Sometimes override with genome preference
@@ -1350,7 +1794,7 @@ public class MobBehaviorAI {
         selectedAction = maybeOverrideWithVisualTacticalBias(selectedAction, validActions, qValues, visualRecommendations, visual);
         
         // Boost visually recommended actions
-        if (visualRecommendations.contains(selectedAction)) {
+        if (visualRecommendations.get(selectedAction)) {
             // This action is tactically sound based on player equipment
             profile.recordAction(selectedAction, state);
         }
@@ -1364,20 +1808,17 @@ public class MobBehaviorAI {
      * Goal: make perception (especially Epic Fight state) influence real action selection without
      * introducing new actions or hard dependencies.
      */
-    private String maybeOverrideWithVisualTacticalBias(
-            String selectedAction,
-            List<String> validActions,
+    private int maybeOverrideWithVisualTacticalBias(
+            int selectedAction,
+            BitSet validActions,
             float[] qValues,
-            List<String> visualRecommendations,
+            BitSet visualRecommendations,
             VisualPerception.VisualState visual
     ) {
-        if (selectedAction == null || validActions == null || validActions.isEmpty()) {
+        if (selectedAction == ActionRegistry.NO_ACTION || validActions.isEmpty()) {
             return selectedAction;
         }
-        if (visualRecommendations == null || visualRecommendations.isEmpty()) {
-            return selectedAction;
-        }
-        if (visualRecommendations.contains(selectedAction)) {
+        if (visualRecommendations.isEmpty() || visualRecommendations.get(selectedAction)) {
             return selectedAction;
         }
 
@@ -1394,30 +1835,31 @@ public class MobBehaviorAI {
             }
         }
 
-        String bestRecommended = null;
+        int bestRecommended = ActionRegistry.NO_ACTION;
         float bestScore = Float.NEGATIVE_INFINITY;
 
-        for (String recommended : visualRecommendations) {
-            if (!validActions.contains(recommended)) {
+        for (int recommended = visualRecommendations.nextSetBit(0); recommended >= 0;
+                recommended = visualRecommendations.nextSetBit(recommended + 1)) {
+            if (!validActions.get(recommended)) {
                 continue;
             }
 
             // Prefer the highest-Q recommended action when Q-values are available.
             float score = 0.0f;
             if (qValues != null) {
-                int idx = validActions.indexOf(recommended);
+                int idx = ActionRegistry.rank(validOrder, validOrderLength, validActions, recommended);
                 if (idx >= 0 && idx < qValues.length) {
                     score = qValues[idx];
                 }
             }
 
-            if (bestRecommended == null || score > bestScore) {
+            if (bestRecommended == ActionRegistry.NO_ACTION || score > bestScore) {
                 bestRecommended = recommended;
                 bestScore = score;
             }
         }
 
-        if (bestRecommended == null) {
+        if (bestRecommended == ActionRegistry.NO_ACTION) {
             return selectedAction;
         }
 
@@ -1427,79 +1869,104 @@ public class MobBehaviorAI {
     /**
      * Select action weighted by genetic genome preferences
      */
-    private String selectWeightedAction(List<String> actions, GeneticBehaviorEvolution.BehaviorGenome genome) {
+    private int selectWeightedAction(BitSet actions, GeneticBehaviorEvolution.BehaviorGenome genome) {
         float totalWeight = 0.0f;
-        for (String action : actions) {
-            totalWeight += genome.actionWeights.getOrDefault(action, 1.0f);
+        for (int action = actions.nextSetBit(0); action >= 0; action = actions.nextSetBit(action + 1)) {
+            totalWeight += genome.weight(action, 1.0f);
         }
         
         float rand = random.nextFloat() * totalWeight;
         float cumulative = 0.0f;
         
-        for (String action : actions) {
-            cumulative += genome.actionWeights.getOrDefault(action, 1.0f);
+        for (int action = actions.nextSetBit(0); action >= 0; action = actions.nextSetBit(action + 1)) {
+            cumulative += genome.weight(action, 1.0f);
             if (cumulative >= rand) {
                 return action;
             }
         }
         
-        return actions.get(0);
+        return actions.nextSetBit(0);
     }
     
     /**
-     * Combine state, visual, and genetic features into single vector
+     * Combine state, visual, and genetic features into a new vector
+     * (learning path - replay buffers keep the arrays they are given)
      */
     private float[] combineFeatures(MobState state, VisualPerception.VisualState visual, 
                                     GeneticBehaviorEvolution.BehaviorGenome genome) {
-        float[] stateFeatures = stateToFeatureVector(state);
-        float[] visualFeatures = visual != null ? visual.toFeatureVector() : new float[9];
-        
+        return combineFeatures(state, visual, genome, new float[FEATURE_COUNT]);
+    }
+    
+    /**
+     * Combine state, visual, and genetic features into out (think cycle - no allocation)
+     */
+    private float[] combineFeatures(MobState state, VisualPerception.VisualState visual, 
+                                    GeneticBehaviorEvolution.BehaviorGenome genome, float[] out) {
         // Combine: [state(10) + visual(9) + genome(3)] = 22 features
-        float[] combined = new float[22];
-        System.arraycopy(stateFeatures, 0, combined, 0, 10);
-        System.arraycopy(visualFeatures, 0, combined, 10, 9);
-        combined[19] = genome.aggression;
-        combined[20] = genome.caution;
-        combined[21] = genome.teamwork;
+        writeStateFeatures(state, out);
+        if (visual != null) {
+            visual.writeFeatures(out, 10);
+        } else {
+            Arrays.fill(out, 10, 19, 0.0f);
+        }
+        out[19] = genome.aggression;
+        out[20] = genome.caution;
+        out[21] = genome.teamwork;
         
-        return combined;
+        return out;
     }
     
     /**
-     * Convert MobState to feature vector for neural network input
+     * Write the MobState features for neural network input into out[0..9]
      */
-    private float[] stateToFeatureVector(MobState state) {
-        return new float[] {
-            state.health,                                    // 0: Mob health (0-1)
-            state.targetHealth,                              // 1: Player health (0-1)
-            state.distanceToTarget / 20.0f,                  // 2: Distance normalized
-            state.hasHighGround ? 1.0f : 0.0f,              // 3: Height advantage
-            state.canClimbWalls ? 1.0f : 0.0f,              // 4: Climbing ability
-            state.nearbyAlliesCount / 10.0f,                // 5: Nearby allies normalized
-            state.isNight ? 1.0f : 0.0f,                    // 6: Time of day
-            state.biome.hashCode() % 100 / 100.0f,          // 7: Biome encoding
-            difficultyMultiplier / 3.0f,                    // 8: Difficulty setting
-            state.combatTime / 100.0f                       // 9: Combat duration
-        };
+    private void writeStateFeatures(MobState state, float[] out) {
+        out[0] = state.health;                                    // 0: Mob health (0-1)
+        out[1] = state.targetHealth;                              // 1: Player health (0-1)
+        out[2] = state.distanceToTarget / 20.0f;                  // 2: Distance normalized
+        out[3] = state.hasHighGround ? 1.0f : 0.0f;               // 3: Height advantage
+        out[4] = state.canClimbWalls ? 1.0f : 0.0f;               // 4: Climbing ability
+        out[5] = state.nearbyAlliesCount / 10.0f;                 // 5: Nearby allies normalized
+        out[6] = state.isNight ? 1.0f : 0.0f;                     // 6: Time of day
+        out[7] = state.biome.hashCode() % 100 / 100.0f;           // 7: Biome encoding
+        out[8] = difficultyMultiplier / 3.0f;                     // 8: Difficulty setting
+        out[9] = state.combatTime / 100.0f;                       // 9: Combat duration
     }
     
     /**
-     * Get list of valid actions for current state
+     * Fill out with the ordinals of the actions valid in the current state
      * REVOLUTIONARY: Includes borrowed tactics from other mob types if cross-mob learning enabled
      */
-    private List<String> getValidActions(MobBehaviorProfile profile, MobState state) {
-        List<String> actions = new ArrayList<>(profile.getActions());
+    private void getValidActions(MobBehaviorProfile profile, MobState state, BitSet out) {
+        out.clear();
+        out.or(profile.getActionSet());
+        int[] profileOrder = profile.getActionOrdinals();
+        validOrderLength = 0;
+        for (int ordinal : profileOrder) {
+            appendValidOrder(ordinal);
+        }
         
         // EMERGENT LEARNING: Add successful tactics from other mob types
         if (crossMobLearningEnabled && federatedLearning != null && federatedLearning.isEnabled()) {
-            List<FederatedLearning.GlobalTactic> bestGlobalTactics = federatedLearning.getBestGlobalTactics(20);
+            // The global pool only changes on federation sync - re-rank it periodically, not per decision
+            if (borrowedTacticsTick == NEVER_THOUGHT || globalTick - borrowedTacticsTick >= BORROWED_REFRESH_TICKS) {
+                borrowedTactics = federatedLearning.getBestGlobalTactics(20);
+                borrowedTacticsTick = globalTick;
+            }
+            List<FederatedLearning.GlobalTactic> bestGlobalTactics = borrowedTactics;
             
-            for (FederatedLearning.GlobalTactic tactic : bestGlobalTactics) {
+            for (int t = 0; t < bestGlobalTactics.size(); t++) {
+                FederatedLearning.GlobalTactic tactic = bestGlobalTactics.get(t);
                 // Only borrow high-performing tactics (reward > 2.0)
-                if (tactic.avgReward > 2.0f && !actions.contains(tactic.action)) {
+                if (tactic.avgReward > 2.0f) {
+                    // Federated names are untrusted - only borrow actions some local profile already knows
+                    int borrowed = ActionRegistry.ordinalOf(tactic.action);
+                    if (borrowed == ActionRegistry.NO_ACTION) {
+                        continue;
+                    }
                     // Check if this mob can physically perform the borrowed action
-                    if (canMobPerformAction(profile.getMobType(), tactic.action, state)) {
-                        actions.add(tactic.action);
+                    if (!out.get(borrowed) && canMobPerformAction(profile.getMobType(), tactic.action, state)) {
+                        out.set(borrowed);
+                        appendValidOrder(borrowed);
                         LOGGER.debug("{} borrowed '{}' from {} (reward: {:.2f})",
                             profile.getMobType(), tactic.action, tactic.originalMobType, tactic.avgReward);
                     }
@@ -1507,38 +1974,38 @@ public class MobBehaviorAI {
             }
         }
         
-        // Filter to only valid actions for current state
-        List<String> validActions = new ArrayList<>();
-        for (String action : actions) {
-            if (isActionValid(action, state)) {
-                validActions.add(action);
-            }
+        // Filter to only valid actions for current state (keep everything if nothing survives)
+        allActionScratch.clear();
+        allActionScratch.or(out);
+        removeInvalidActions(out, state);
+        if (out.isEmpty()) {
+            out.or(allActionScratch);
         }
-        
-        return validActions.isEmpty() ? actions : validActions;
+    }
+
+    private void appendValidOrder(int ordinal) {
+        if (validOrderLength == validOrder.length) {
+            validOrder = Arrays.copyOf(validOrder, validOrder.length * 2);
+        }
+        validOrder[validOrderLength++] = ordinal;
     }
 
     /**
      * Rule-based action selection with adaptive behavior
      */
-    private String selectActionRuleBased(MobBehaviorProfile profile, MobState state) {
-        List<String> actions = profile.getActions();
-        
+    private int selectActionRuleBased(MobBehaviorProfile profile, MobState state) {
         // Filter actions based on state
-        List<String> validActions = new ArrayList<>();
-        
-        for (String action : actions) {
-            if (isActionValid(action, state)) {
-                validActions.add(action);
-            }
-        }
+        BitSet validActions = validActionScratch;
+        validActions.clear();
+        validActions.or(profile.getActionSet());
+        removeInvalidActions(validActions, state);
         
         if (validActions.isEmpty()) {
-            return "default_attack";
+            return ActionRegistry.DEFAULT_ATTACK;
         }
         
         // Weight actions based on situation
-        String selectedAction = weightedActionSelection(validActions, state, profile);
+        int selectedAction = weightedActionSelection(validActions, state, profile);
         
         // Learn from this decision
         profile.recordAction(selectedAction, state);
@@ -1547,50 +2014,43 @@ public class MobBehaviorAI {
     }
 
     /**
-     * Check if an action is valid in current state
-     */
-    private boolean isActionValid(String action, MobState state) {
-        switch (action) {
-            case "kite_backward":
-            case "retreat_reload":
-                return state.distanceToTarget > 3.0f;
-            case "suicide_rush":
-            case "group_rush":
-                return state.distanceToTarget < 10.0f;
-            case "find_high_ground":
-                return !state.hasHighGround;
-            case "ceiling_drop":
-            case "wall_climb_attack":
-                return state.canClimbWalls;
-            default:
-                return true;
-        }
+     * Drop actions that are invalid in the current state
+     * (distance-gated, high-ground and wall-climb actions - see ActionRegistry.removeInvalid)
+     */
+    private static void removeInvalidActions(BitSet actions, MobState state) {
+        ActionRegistry.removeInvalid(actions, state.distanceToTarget, state.hasHighGround, state.canClimbWalls);
     }
 
     /**
      * Select action with weighted probability based on state
      */
-    private String weightedActionSelection(List<String> actions, MobState state, MobBehaviorProfile profile) {
-        Map<String, Float> weights = new HashMap<>();
+    private int weightedActionSelection(BitSet actions, MobState state, MobBehaviorProfile profile) {
+        int count = actions.cardinality();
+        if (actionWeightScratch.length < count) {
+            actionWeightScratch = new float[Math.max(count, actionWeightScratch.length * 2)];
+        }
         
-        for (String action : actions) {
+        float totalWeight = 0f;
+        int i = 0;
+        for (int action = actions.nextSetBit(0); action >= 0; action = actions.nextSetBit(action + 1)) {
             float weight = calculateActionWeight(action, state, profile);
-            weights.put(action, weight);
+            actionWeightScratch[i++] = weight;
+            totalWeight += weight;
         }
         
         // Weighted random selection
-        float totalWeight = weights.values().stream().reduce(0f, Float::sum);
         float randomValue = random.nextFloat() * totalWeight;
         
         float currentWeight = 0f;
-        for (Map.Entry<String, Float> entry : weights.entrySet()) {
-            currentWeight += entry.getValue();
+        i = 0;
+        for (int action = actions.nextSetBit(0); action >= 0; action = actions.nextSetBit(action + 1)) {
+            currentWeight += actionWeightScratch[i++];
             if (randomValue <= currentWeight) {
-                return entry.getKey();
+                return action;
             }
         }
         
-        return actions.get(0);
+        return actions.nextSetBit(0);
     }
 
     /**
@@ -1600,13 +2060,14 @@ public class MobBehaviorAI {
      * - VETERAN (1.0x): Baseline tactical intelligence
      * - ROOKIE (0.5x): Makes worse tactical decisions (halved weight for smart moves)
      */
-    private float calculateActionWeight(String action, MobState state, MobBehaviorProfile profile) {
+    private float calculateActionWeight(int action, MobState state, MobBehaviorProfile profile) {
         float baseWeight = 1.0f;
+        int flags = ActionRegistry.flags(action);
         
         // Adjust weight based on player health
         if (state.targetHealth < 0.3f) {
             // Player is low health - aggressive actions
-            if (action.contains("rush") || action.contains("charge")) {
+            if ((flags & ActionRegistry.FLAG_AGGRESSIVE) != 0) {
                 baseWeight *= 2.0f;
             }
         }
@@ -1614,18 +2075,18 @@ public class MobBehaviorAI {
         // Adjust based on mob health
         if (state.health < 0.3f) {
             // Mob is low health - defensive actions
-            if (action.contains("retreat") || action.contains("kite")) {
+            if ((flags & ActionRegistry.FLAG_DEFENSIVE) != 0) {
                 baseWeight *= 2.0f;
             }
         }
         
         // Adjust based on distance
         if (state.distanceToTarget < 3.0f) {
-            if (action.contains("melee") || action.contains("rush")) {
+            if ((flags & ActionRegistry.FLAG_CLOSE) != 0) {
                 baseWeight *= 1.5f;
             }
         } else if (state.distanceToTarget > 8.0f) {
-            if (action.contains("range") || action.contains("approach")) {
+            if ((flags & ActionRegistry.FLAG_RANGED) != 0) {
                 baseWeight *= 1.5f;
             }
         }
@@ -1648,14 +2109,23 @@ public class MobBehaviorAI {
     public void recordCombatOutcome(String mobId, boolean playerDied, boolean mobDied, MobState finalState, 
                                     float damageDealt, float damageTaken, net.minecraft.world.entity.Mob mobEntity) {
         // Get cached state and action
-        MobState initialState = lastStateCache.remove(mobId);
-        String action = lastActionCache.remove(mobId);
-        VisualPerception.VisualState visual = lastVisualCache.remove(mobId);
-        GeneticBehaviorEvolution.BehaviorGenome genome = activeGenomes.remove(mobId);
+        int handle = mobHandles.lookup(mobId);
+        if (handle == MobHandleRegistry.NO_HANDLE) {
+            return;  // No cached data for this mob
+        }
+        MobState initialState = lastStateCache[handle];
+        int actionOrdinal = lastActionCache[handle];
+        VisualPerception.VisualState visual = lastVisualCache[handle];
+        GeneticBehaviorEvolution.BehaviorGenome genome = activeGenomes[handle];
+        lastStateCache[handle] = null;
+        lastActionCache[handle] = ActionRegistry.NO_ACTION;
+        lastVisualCache[handle] = null;
+        activeGenomes[handle] = null;
         
-        if (initialState == null || action == null) {
+        if (initialState == null || actionOrdinal == ActionRegistry.NO_ACTION) {
             return;  // No cached data for this mob
         }
+        String action = ActionRegistry.name(actionOrdinal);
 
         if (!learningEnabled) {
             return;
@@ -1693,7 +2163,7 @@ public class MobBehaviorAI {
         
         // REVOLUTIONARY: Huge bonus for successfully using borrowed tactics from other mob types
         if (crossMobLearningEnabled && federatedLearning != null) {
-            if (mobType != null && !isMobsNativeAction(mobType, action)) {
+            if (mobType != null && !isMobsNativeAction(mobType, actionOrdinal)) {
                 // This mob used a tactic it borrowed from another species!
                 float originalReward = reward;
                 reward *= crossMobRewardMultiplier;
@@ -1716,10 +2186,8 @@ public class MobBehaviorAI {
             float[] initialFeatures = combineFeatures(initialState, visual, genome != null ? genome : new GeneticBehaviorEvolution.BehaviorGenome());
             float[] finalFeatures = combineFeatures(finalState, visual, genome != null ? genome : new GeneticBehaviorEvolution.BehaviorGenome());
             
-            // Convert action to index
-            List<String> allActions = getAllPossibleActions();
-            int actionIndex = allActions.indexOf(action);
-            if (actionIndex < 0) actionIndex = 0;
+            // Convert action to DQN output index
+            int actionIndex = Math.max(0, ActionRegistry.coreIndex(actionOrdinal));
             
             boolean episodeDone = playerDied || mobDied;
             
@@ -1737,10 +2205,8 @@ public class MobBehaviorAI {
             float[] finalFeatures = combineFeatures(finalState, visual, genome != null ? genome : new GeneticBehaviorEvolution.BehaviorGenome());
             boolean episodeDone = playerDied || mobDied;
             
-            // Convert action to index
-            List<String> allActions = getAllPossibleActions();
-            int actionIndex = allActions.indexOf(action);
-            if (actionIndex < 0) actionIndex = 0;
+            // Convert action to DQN output index
+            int actionIndex = Math.max(0, ActionRegistry.coreIndex(actionOrdinal));
             
             // Add to prioritized replay buffer
             replayBuffer.add(initialFeatures, actionIndex, reward, finalFeatures, episodeDone);
@@ -1753,7 +2219,7 @@ public class MobBehaviorAI {
             // Sample and train Double DQN with prioritized experiences
             if (replayBuffer.size() >= 32) {
                 PrioritizedReplayBuffer.SampledBatch batch = replayBuffer.sample(32);
-                float[] tdErrors = doubleDQN.trainBatch(batch.experiences);
+                float[] tdErrors = doubleDQN.trainBatch(batch);  // One batched update, IS-weighted
                 
                 // Update priorities based on TD errors
                 List<Float> tdErrorList = new ArrayList<>();
@@ -1835,6 +2301,7 @@ public class MobBehaviorAI {
         // Update experience
         int newExp = currentExp + expGain;
         globalCombatExperience.put(familyBase, newExp);
+        shardDirtyFlags.markDirty(familyBase);
         
         // Check for tier progression
         AITier newTier = AITier.fromExperience(newExp);
@@ -1854,12 +2321,7 @@ public class MobBehaviorAI {
      * Get the family base type for a mob (e.g., "drowned" -> "zombie")
      */
     private String getFamilyBase(String mobType) {
-        for (Map.Entry<String, List<String>> family : VARIANT_FAMILIES.entrySet()) {
-            if (family.getValue().contains(mobType)) {
-                return family.getKey();
-            }
-        }
-        return mobType;  // Not in a family, use as-is
+        return FAMILY_BASE_OF.getOrDefault(mobType, mobType);  // Not in a family, use as-is
     }
     
     /**
@@ -1875,6 +2337,7 @@ public class MobBehaviorAI {
             if (!variant.equals(familyBase)) {
                 int currentExp = globalCombatExperience.getOrDefault(variant, 0);
                 globalCombatExperience.put(variant, currentExp + expToShare);
+                shardDirtyFlags.markDirty(variant);
             }
         }
     }
@@ -1976,6 +2439,7 @@ public class MobBehaviorAI {
                 int currentExp = globalCombatExperience.getOrDefault(entry.getKey(), 0);
                 if (entry.getValue() > currentExp) {
                     globalCombatExperience.put(entry.getKey(), entry.getValue());
+                    shardDirtyFlags.markDirty(entry.getKey());
                     
                     // Recalculate tier
                     AITier newTier = AITier.fromExperience(entry.getValue());
@@ -2022,24 +2486,6 @@ public class MobBehaviorAI {
         return reward * difficultyMultiplier;
     }
     
-    /**
-     * Get all possible actions across all mob types
-     */
-    private List<String> getAllPossibleActions() {
-        List<String> allActions = new ArrayList<>();
-        allActions.add("straight_charge");
-        allActions.add("circle_strafe");
-        allActions.add("kite_backward");
-        allActions.add("retreat");
-        allActions.add("ambush");
-        allActions.add("group_rush");
-        allActions.add("find_cover");
-        allActions.add("strafe_shoot");
-        allActions.add("leap_attack");
-        allActions.add("fake_retreat");
-        return allActions;
-    }
-    
     /**
      * Form a team of mobs for coordinated tactics
      */
@@ -2053,14 +2499,131 @@ public class MobBehaviorAI {
     
     /**
      * Save the trained ML model (call on server shutdown)
+     * Captures a final save without upload and queues it behind any auto-save still
+     * running; pair with awaitPendingSaves(), which waits for it and reports the result
      */
     public void saveModel() {
         // Shutdown performance optimizer gracefully
         if (performanceOptimizer != null) {
             performanceOptimizer.shutdown();
         }
-        // Models are saved automatically during training
-        LOGGER.info("ML systems persisted");
+        if (modelPersistence != null) {
+            autoSave.submitFinal(modelPersistence, doubleDQN, replayBuffer, shardDirtyFlags, this::captureShards,
+                weightJournal);
+        }
+    }
+    
+    /**
+     * Periodic save (server thread): captures references and ring positions only, then
+     * serializes and fsyncs on the auto-save thread, which then syncs with Cloudflare
+     * on the upload thread (bounded wait, skipped once the server is stopping)
+     * 
+     * @return false if the previous save is still running (try again later)
+     */
+    public boolean requestAutoSave() {
+        if (modelPersistence == null) {
+            return true;
+        }
+        return autoSave.submit(modelPersistence, doubleDQN, replayBuffer, shardDirtyFlags, this::captureShards,
+            weightJournal, this::syncWithCloudflare);
+    }
+    
+    /**
+     * Block until background model writes, including the final save, have finished (server stopping)
+     */
+    public void awaitPendingSaves() {
+        boolean saved = autoSave.awaitIdle();
+        if (weightJournal != null) {
+            weightJournal.sync(5_000L);
+        }
+        if (saved) {
+            LOGGER.info("ML systems persisted");
+        } else {
+            LOGGER.error("Final ML save finished with errors - learning since the last good save may be lost");
+        }
+    }
+    
+    /**
+     * Build the persisted shard of each dirty key (server thread, auto-save capture)
+     * Mob type keys copy only that type's weight rows and experience; knowledge keys
+     * copy only that knowledge-base category's entries
+     */
+    private List<ModelShard> captureShards(Set<String> keys, long journalGeneration) {
+        TacticalWeightAggregator.Frozen weights = tacticalAggregator != null ? tacticalAggregator.freeze() : null;
+        List<ModelShard> shards = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            String category = ModelShard.knowledgeCategory(key);
+            if (category != null) {
+                shards.add(new ModelShard(key, Collections.emptyMap(), -1,
+                    tacticKnowledgeBase != null ? tacticKnowledgeBase.exportEntries(category) : Collections.emptyList(),
+                    journalGeneration));
+                continue;
+            }
+            Integer experience = globalCombatExperience.get(key);
+            shards.add(new ModelShard(key,
+                weights != null ? weights.exportWeights(key) : Collections.emptyMap(),
+                experience != null ? experience : -1,
+                Collections.emptyList(),
+                journalGeneration));
+        }
+        return shards;
+    }
+    
+    /**
+     * Apply locally saved shards: weights replace the seeded rows, tier experience and
+     * knowledge entries replace the defaults; journaled updates newer than each shard
+     * are then replayed on top
+     * Knowledge shards are keyed "knowledge:<category>"; older shards kept knowledge
+     * under the bare category name, which is still accepted
+     */
+    private void restoreShards() {
+        if (modelPersistence == null) {
+            return;
+        }
+        Object2LongOpenHashMap<String> shardGenerations = new Object2LongOpenHashMap<>();
+        boolean restoreKnowledge = tacticKnowledgeBase != null && !knowledgeRestored;
+        knowledgeRestored |= restoreKnowledge;
+        List<ModelShard> knowledgeShards = new ArrayList<>();
+        for (ModelShard shard : modelPersistence.loadShards()) {
+            if (ModelShard.knowledgeCategory(shard.mobType) != null) {
+                knowledgeShards.add(shard);  // Applied last, over any legacy bare-category shard
+                continue;
+            }
+            shardGenerations.put(shard.mobType, shard.journalGeneration);
+            if (tacticalAggregator != null && !shard.tacticWeights.isEmpty()) {
+                tacticalAggregator.restoreWeights(Collections.singletonMap(shard.mobType, shard.tacticWeights));
+            }
+            if (shard.combatExperience >= 0) {
+                globalCombatExperience.put(shard.mobType, shard.combatExperience);
+                mobTypeTiers.put(shard.mobType, AITier.fromExperience(shard.combatExperience));
+            }
+            if (restoreKnowledge) {
+                tacticKnowledgeBase.restoreEntries(shard.mobType, shard.knowledge);
+            }
+        }
+        if (restoreKnowledge) {
+            for (ModelShard shard : knowledgeShards) {
+                tacticKnowledgeBase.restoreEntries(ModelShard.knowledgeCategory(shard.mobType), shard.knowledge);
+            }
+        }
+        recoverJournal(shardGenerations);
+    }
+    
+    /**
+     * Replay the weight journal over the restored shards
+     * Episodes are replayed only for segments newer than the mob type's shard, and mark
+     * it dirty so the next save folds them in
+     */
+    private void recoverJournal(Object2LongMap<String> shardGenerations) {
+        if (weightJournal == null) {
+            return;
+        }
+        weightJournal.recover((generation, mobType, globalRow, situationalRows) -> {
+            if (tacticalAggregator != null && generation > shardGenerations.getLong(mobType)) {
+                tacticalAggregator.replayEpisode(mobType, globalRow, situationalRows);
+                shardDirtyFlags.markDirty(mobType);
+            }
+        });
     }
     
     /**
@@ -2080,16 +2643,55 @@ public class MobBehaviorAI {
         
         String perfStats = performanceOptimizer != null ? performanceOptimizer.getPerformanceStats() : "No perf data";
         
-        return String.format("Advanced ML | Gen: %d | Stage: %s | Replay: %d | Teams: %d | Best: %.2f | %s",
+        return String.format("Advanced ML | Gen: %d | Stage: %s | Replay: %d | Teams: %d | Best: %.2f | %s | %s | %s | %s | %s | %s | %s | %s",
             geneticEvolution != null ? geneticEvolution.getGenerationNumber() : 0,
             curriculum != null ? curriculum.getCurrentStage() : "UNKNOWN",
             replayBuffer != null ? replayBuffer.size() : 0,
             multiAgent != null ? multiAgent.getTeamCount() : 0,
             geneticEvolution != null ? geneticEvolution.getBestFitness() : 0.0f,
-            perfStats
+            perfStats,
+            doubleDQN.getInferenceStats(),
+            decisionScheduler.getStats(),
+            thinkBudget.getStats(),
+            autoSave.getStats(),
+            weightJournal != null ? weightJournal.getStats() : "Weight journal: off",
+            CombatSpatialGrid.getStats(),
+            TerrainCoverCache.getStats()
         );
     }
     
+    /**
+     * One full batched think for a mob regardless of its think interval
+     * (enqueue -> drain -> batched forward pass -> select -> poll)
+     * Throwaway instances only (see ThinkAllocationTest): it learns like a real decision
+     */
+    String thinkNow(String mobType, MobState state, String mobId) {
+        if (persistent) {
+            throw new IllegalStateException("thinkNow is only for throwaway instances");
+        }
+        mobLastThinkTick[mobHandle(mobId)] = NEVER_THOUGHT;
+        decisionScheduler.enqueue(mobType, state, mobId, null);
+        decideOnServerThread(decisionScheduler.drain(), doubleDQN);
+        return decisionScheduler.poll(mobId);
+    }
+    
+    /**
+     * Put a throwaway instance on the ML decision path with the given model
+     * Only the systems the batched think reads are created: no DJL probe, persistence,
+     * ensembles or performance optimizer (see ThinkAllocationTest)
+     */
+    void attachModel(DoubleDQN model) {
+        if (persistent) {
+            throw new IllegalStateException("attachModel is only for throwaway instances");
+        }
+        doubleDQN = model;
+        multiAgent = new MultiAgentLearning();
+        curriculum = new CurriculumLearning();
+        visualPerception = new VisualPerception();
+        geneticEvolution = new GeneticBehaviorEvolution();
+        mlEnabled = true;
+    }
+    
     /**
      * Get per-mob learning statistics for player-facing stats display
      * Shows interaction counts, learned tactics, top performers, tier progress
@@ -2109,8 +2711,9 @@ public class MobBehaviorAI {
             Map<String, Float> tacticRewards = new HashMap<>();
             
             for (String action : profile.getActions()) {
-                int successes = profile.actionSuccessCount.getOrDefault(action, 1);
-                int failures = profile.actionFailureCount.getOrDefault(action, 1);
+                int ordinal = ActionRegistry.intern(action);
+                int successes = profile.getSuccessCount(ordinal);
+                int failures = profile.getFailureCount(ordinal);
                 
                 // Subtract initial values (profiles start with 1/1 for each action)
                 int actualSuccesses = Math.max(0, successes - 1);
@@ -2137,8 +2740,9 @@ public class MobBehaviorAI {
             String bestTactic = topTactics.isEmpty() ? "none" : topTactics.get(0);
             float bestSuccessRate = 0.0f;
             if (!bestTactic.equals("none")) {
-                int successes = profile.actionSuccessCount.getOrDefault(bestTactic, 1) - 1;
-                int failures = profile.actionFailureCount.getOrDefault(bestTactic, 1) - 1;
+                int ordinal = ActionRegistry.intern(bestTactic);
+                int successes = profile.getSuccessCount(ordinal) - 1;
+                int failures = profile.getFailureCount(ordinal) - 1;
                 int total = successes + failures;
                 bestSuccessRate = total > 0 ? (float) successes / total : 0.0f;
             }
@@ -2310,9 +2914,9 @@ public class MobBehaviorAI {
     /**
      * Check if an action is native to a mob type (not borrowed)
      */
-    private boolean isMobsNativeAction(String mobType, String action) {
+    private boolean isMobsNativeAction(String mobType, int action) {
         MobBehaviorProfile profile = behaviorProfiles.get(mobType.toLowerCase());
-        return profile != null && profile.getActions().contains(action);
+        return profile != null && profile.getActionSet().get(action);
     }
     
     /**
@@ -2322,13 +2926,12 @@ public class MobBehaviorAI {
         if (mobId == null) return null;
         
         // Try to extract from cached state first
-        for (Map.Entry<String, MobState> entry : lastStateCache.entrySet()) {
-            if (entry.getKey().equals(mobId)) {
-                // Try to match against known profiles
-                for (String mobType : behaviorProfiles.keySet()) {
-                    if (mobId.toLowerCase().startsWith(mobType)) {
-                        return mobType;
-                    }
+        int handle = mobHandles.lookup(mobId);
+        if (handle != MobHandleRegistry.NO_HANDLE && lastStateCache[handle] != null) {
+            // Try to match against known profiles
+            for (String mobType : behaviorProfiles.keySet()) {
+                if (mobId.toLowerCase().startsWith(mobType)) {
+                    return mobType;
                 }
             }
         }
@@ -2344,6 +2947,7 @@ public class MobBehaviorAI {
 
     /**
      * Represents the current state of a mob during combat
+     * Mutable so callers can keep one instance per mob and refill it (see set / copyFrom)
      */
     public static class MobState {
         public float health;
@@ -2368,6 +2972,38 @@ public class MobBehaviorAI {
             this.combatTime = 0.0f;
         }
         
+        /**
+         * Refill this state in place (remaining fields back to their defaults)
+         */
+        public MobState set(float health, float targetHealth, float distance) {
+            this.health = health;
+            this.targetHealth = targetHealth;
+            this.distanceToTarget = distance;
+            this.hasHighGround = false;
+            this.canClimbWalls = false;
+            this.nearbyAlliesCount = 0;
+            this.biome = "plains";
+            this.isNight = false;
+            this.combatTime = 0.0f;
+            return this;
+        }
+        
+        /**
+         * Overwrite this state with another one (reusable caching, no allocation)
+         */
+        public MobState copyFrom(MobState other) {
+            this.health = other.health;
+            this.targetHealth = other.targetHealth;
+            this.distanceToTarget = other.distanceToTarget;
+            this.hasHighGround = other.hasHighGround;
+            this.canClimbWalls = other.canClimbWalls;
+            this.nearbyAlliesCount = other.nearbyAlliesCount;
+            this.biome = other.biome;
+            this.isNight = other.isNight;
+            this.combatTime = other.combatTime;
+            return this;
+        }
+        
         /**
          * Create a copy of this state (for caching)
          */
@@ -2389,26 +3025,43 @@ public class MobBehaviorAI {
     private static class MobBehaviorProfile {
         private final String mobType;
         private final List<String> actions;
+        private final BitSet actionSet;       // Action ordinals
+        private final int[] actionOrdinals;   // Same actions in profile order
         private final float aggressionLevel;
-        private final Map<String, Integer> actionSuccessCount = new HashMap<>();
-        private final Map<String, Integer> actionFailureCount = new HashMap<>();
+        // Outcome counters indexed by action ordinal (start at 1/1 = 50%)
+        private int[] actionSuccessCount;
+        private int[] actionFailureCount;
 
         public MobBehaviorProfile(String mobType, List<String> actions, float aggression) {
             this.mobType = mobType;
             this.actions = new ArrayList<>(actions);
             this.aggressionLevel = aggression;
+            this.actionOrdinals = new int[actions.size()];
+            for (int i = 0; i < actionOrdinals.length; i++) {
+                actionOrdinals[i] = ActionRegistry.intern(actions.get(i));
+            }
+            this.actionSet = ActionRegistry.setOf(actions);
             
             // Initialize counters
-            for (String action : actions) {
-                actionSuccessCount.put(action, 1);
-                actionFailureCount.put(action, 1);
-            }
+            actionSuccessCount = newIntSlots(ActionRegistry.size(), 1);
+            actionFailureCount = newIntSlots(ActionRegistry.size(), 1);
         }
 
         public List<String> getActions() {
             return new ArrayList<>(actions);
         }
         
+        /**
+         * Native action ordinals - shared, callers must not modify
+         */
+        public BitSet getActionSet() {
+            return actionSet;
+        }
+        
+        public int[] getActionOrdinals() {
+            return actionOrdinals;
+        }
+        
         public String getMobType() {
             return mobType;
         }
@@ -2417,23 +3070,43 @@ public class MobBehaviorAI {
             return aggressionLevel;
         }
 
-        public void recordAction(String action, MobState state) {
+        public void recordAction(int action, MobState state) {
             // Track action usage
         }
 
-        public void recordOutcome(String action, boolean success) {
+        public void recordOutcome(int action, boolean success) {
+            ensureCounters(action);
             if (success) {
-                actionSuccessCount.put(action, actionSuccessCount.getOrDefault(action, 0) + 1);
+                actionSuccessCount[action]++;
             } else {
-                actionFailureCount.put(action, actionFailureCount.getOrDefault(action, 0) + 1);
+                actionFailureCount[action]++;
             }
         }
+        
+        public int getSuccessCount(int action) {
+            return action >= 0 && action < actionSuccessCount.length ? actionSuccessCount[action] : 1;
+        }
+        
+        public int getFailureCount(int action) {
+            return action >= 0 && action < actionFailureCount.length ? actionFailureCount[action] : 1;
+        }
 
-        public float getActionSuccessRate(String action) {
-            int successes = actionSuccessCount.getOrDefault(action, 1);
-            int failures = actionFailureCount.getOrDefault(action, 1);
+        public float getActionSuccessRate(int action) {
+            int successes = getSuccessCount(action);
+            int failures = getFailureCount(action);
             return (float) successes / (successes + failures);
         }
+        
+        private void ensureCounters(int action) {
+            if (action >= actionSuccessCount.length) {
+                int oldLength = actionSuccessCount.length;
+                int capacity = Math.max(action + 1, ActionRegistry.size());
+                actionSuccessCount = Arrays.copyOf(actionSuccessCount, capacity);
+                actionFailureCount = Arrays.copyOf(actionFailureCount, capacity);
+                Arrays.fill(actionSuccessCount, oldLength, capacity, 1);
+                Arrays.fill(actionFailureCount, oldLength, capacity, 1);
+            }
+        }
     }
     
     /**
@@ -2449,7 +3122,8 @@ public class MobBehaviorAI {
     }
     
     /**
-     * Sync learned tactics with Cloudflare Worker (called during auto-save)
+     * Sync learned tactics with Cloudflare Worker (called during auto-save, on the
+     * upload thread - blocks on the network, interrupted if the server stops)
      */
     public void syncWithCloudflare() {
         if (federatedLearning == null || !federatedLearning.isEnabled()) {
@@ -2523,15 +3197,16 @@ public class MobBehaviorAI {
      * Start tracking a combat sequence for a mob
      */
     public void startCombatSequence(String mobId) {
-        activeSequences.put(mobId, new ArrayList<>());
-        combatStartTimes.put(mobId, System.currentTimeMillis());
+        int handle = mobHandle(mobId);
+        activeSequences.put(handle, new ArrayList<>());
+        combatStartTimes[handle] = System.currentTimeMillis();
     }
     
     /**
      * Track an action in the current combat sequence
      */
     public void trackActionInSequence(String mobId, String action, double reward) {
-        List<ActionRecord> sequence = activeSequences.get(mobId);
+        List<ActionRecord> sequence = activeSequences.get(mobHandles.lookup(mobId));
         if (sequence != null && sequence.size() < MAX_SEQUENCE_LENGTH) {
             sequence.add(new ActionRecord(action, reward));
         }
@@ -2569,10 +3244,15 @@ public class MobBehaviorAI {
      * End combat sequence and submit to Cloudflare for analysis
      */
     public void endCombatSequence(String mobId, String mobType, String outcome) {
-        List<ActionRecord> sequence = activeSequences.remove(mobId);
-        Long startTime = combatStartTimes.remove(mobId);
+        int handle = mobHandles.lookup(mobId);
+        if (handle == MobHandleRegistry.NO_HANDLE) {
+            return;
+        }
+        List<ActionRecord> sequence = activeSequences.remove(handle);
+        long startTime = combatStartTimes[handle];
+        combatStartTimes[handle] = 0L;
         
-        if (sequence != null && sequence.size() >= 2 && startTime != null) {
+        if (sequence != null && sequence.size() >= 2 && startTime != 0L) {
             long duration = System.currentTimeMillis() - startTime;
             
             // Submit to Cloudflare asynchronously
@@ -2643,8 +3323,9 @@ public class MobBehaviorAI {
         
         CombatEpisode episode = new CombatEpisode(mobId, mobType);
         episode.setStartTick(currentTick);
-        activeEpisodes.put(mobId, episode);
-        episodeTickCounters.put(mobId, 0);
+        int handle = mobHandle(mobId);
+        activeEpisodes.put(handle, episode);
+        episodeTickCounters[handle] = 0;
         
         LOGGER.info("Started tactical episode for {} ({})", mobType, mobId.substring(0, 8));
     }
@@ -2660,15 +3341,15 @@ public class MobBehaviorAI {
             return;
         }
         
-        CombatEpisode episode = activeEpisodes.get(mobId);
+        int handle = mobHandles.lookup(mobId);
+        CombatEpisode episode = activeEpisodes.get(handle);
         if (episode == null) {
             LOGGER.warn("No episode found for {} during sample recording", mobId.substring(0, 8));
             return;  // Episode not started
         }
         
         // Throttle sampling - only every N ticks
-        int tickCounter = episodeTickCounters.getOrDefault(mobId, 0) + 1;
-        episodeTickCounters.put(mobId, tickCounter);
+        int tickCounter = ++episodeTickCounters[handle];
         
         if (tickCounter % episodeSampleInterval != 0) {
             return;  // Not time to sample yet
@@ -2678,10 +3359,9 @@ public class MobBehaviorAI {
         TacticalActionSpace.TacticalState state = 
             TacticalActionSpace.TacticalState.fromGameState(mobEntity, target);
         
-        // Get current action (translate from legacy action to tactical)
-        String legacyAction = lastActionCache.get(mobId);
+        // Get current action (legacy -> tactical translation is precomputed per ordinal)
         TacticalActionSpace.TacticalAction tacticalAction = 
-            translateToTacticalAction(legacyAction, state);
+            ActionRegistry.toTactical(lastActionCache[handle]);
         
         // Record sample
         episode.recordTacticalSample(state, tacticalAction, damageThisTick);
@@ -2697,7 +3377,7 @@ public class MobBehaviorAI {
             return;
         }
         
-        CombatEpisode episode = activeEpisodes.get(mobId);
+        CombatEpisode episode = activeEpisodes.get(mobHandles.lookup(mobId));
         if (episode != null) {
             episode.recordDamageTaken(damage);
         }
@@ -2713,8 +3393,11 @@ public class MobBehaviorAI {
             return;
         }
         
-        CombatEpisode episode = activeEpisodes.remove(mobId);
-        episodeTickCounters.remove(mobId);
+        int handle = mobHandles.lookup(mobId);
+        CombatEpisode episode = activeEpisodes.remove(handle);
+        if (handle != MobHandleRegistry.NO_HANDLE) {
+            episodeTickCounters[handle] = 0;
+        }
         
         if (episode == null) {
             LOGGER.warn("No active episode found for {} when ending", mobId.substring(0, 8));
@@ -2738,6 +3421,9 @@ public class MobBehaviorAI {
         
         // Aggregate episode into tactical weights
         tacticalAggregator.aggregateEpisode(episode, outcome, playerId != null ? playerId : "server");
+        if (episode.isReadyForLearning()) {
+            shardDirtyFlags.markDirty(episode.getMobType());
+        }
         
         // Lazy-initialize federation if not yet started (handles singleplayer integrated servers)
         if (federatedLearning == null) {
@@ -2767,9 +3453,8 @@ public class MobBehaviorAI {
             return available.get(random.nextInt(available.size()));
         }
         
-        // Get available actions for this mob type
-        List<TacticalActionSpace.TacticalAction> availableActions = 
-            TacticalActionSpace.getAvailableActions(mobType);
+        // Available actions for this mob type as a TacticalAction ordinal bitmask
+        long availableActions = TacticalActionSpace.getAvailableActionMask(mobType);
         
         // Use aggregator to select best tactic
         return tacticalAggregator.selectTactic(mobType, state, availableActions);
@@ -2783,50 +3468,6 @@ public class MobBehaviorAI {
         TacticalActionSpace.executeTacticalAction(mobEntity, target, action);
     }
     
-    /**
-     * Translate legacy action to tactical action (for backward compatibility)
-     */
-    private TacticalActionSpace.TacticalAction translateToTacticalAction(String legacyAction, 
-                                                                         TacticalActionSpace.TacticalState state) {
-        if (legacyAction == null) {
-            return TacticalActionSpace.TacticalAction.DEFAULT_MELEE;
-        }
-        
-        // Map legacy actions to tactical equivalents
-        switch (legacyAction.toLowerCase()) {
-            case "aggressive_chase":
-            case "rush":
-                return TacticalActionSpace.TacticalAction.RUSH_PLAYER;
-                
-            case "circle_strafe":
-            case "flank":
-                return TacticalActionSpace.TacticalAction.STRAFE_AGGRESSIVE;
-                
-            case "retreat":
-            case "flee":
-                return TacticalActionSpace.TacticalAction.RETREAT_AND_HEAL;
-                
-            case "shield_counter":
-                return TacticalActionSpace.TacticalAction.PUNISH_SHIELD_DROP;
-                
-            case "dodge":
-                return TacticalActionSpace.TacticalAction.DODGE_WEAVE;
-                
-            case "group_call":
-                return TacticalActionSpace.TacticalAction.CALL_REINFORCEMENTS;
-                
-            case "feint":
-                return TacticalActionSpace.TacticalAction.FEINT_RETREAT;
-                
-            case "defensive_wait":
-            case "patient":
-                return TacticalActionSpace.TacticalAction.WAIT_FOR_OPENING;
-                
-            default:
-                return TacticalActionSpace.TacticalAction.DEFAULT_MELEE;
-        }
-    }
-    
     /**
      * Get tactical aggregator statistics
      */
@@ -2853,6 +3494,9 @@ public class MobBehaviorAI {
     public void importTacticalWeights(Map<String, Map<String, Float>> weights) {
         if (tacticalAggregator != null && weights != null) {
             tacticalAggregator.importWeights(weights);
+            for (String mobType : weights.keySet()) {
+                shardDirtyFlags.markDirty(mobType);
+            }
         }
     }
     
@@ -2864,6 +3508,7 @@ public class MobBehaviorAI {
         if (enabled && tacticalAggregator == null) {
             tacticalAggregator = new TacticalWeightAggregator();
             HeuristicTacticSeeding.seedWithDifficulty(tacticalAggregator, difficultyMultiplier);
+            tacticalAggregator.setJournal(weightJournal);
         }
     }
     
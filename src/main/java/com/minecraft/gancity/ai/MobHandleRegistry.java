@@ -0,0 +1,88 @@
+package com.minecraft.gancity.ai;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Dense int handles for live mobs
+ *
+ * PERFORMANCE: The string mob ID is hashed once per call at the API boundary;
+ * everything behind it is indexed by a small int slot
+ * - per-mob state lives in parallel arrays (see MobBehaviorAI) instead of
+ *   HashMap&lt;String, ...&gt; tables with boxed Integer / Long values
+ * - released slots are recycled, so arrays stay as large as the peak live population
+ *
+ * NOT thread-safe: server thread only.
+ */
+public class MobHandleRegistry {
+
+    public static final int NO_HANDLE = -1;
+
+    private final Object2IntOpenHashMap<String> handles = new Object2IntOpenHashMap<>();
+    private final IntArrayList freeSlots = new IntArrayList();
+    private String[] ids;
+    private int highWater = 0;  // Slots [0, highWater) have been handed out at least once
+
+    public MobHandleRegistry(int initialCapacity) {
+        this.ids = new String[Math.max(16, initialCapacity)];
+        handles.defaultReturnValue(NO_HANDLE);
+    }
+
+    /**
+     * Handle for a mob, assigning a slot on first sight
+     */
+    public int acquire(String mobId) {
+        int handle = handles.getInt(mobId);
+        if (handle != NO_HANDLE) {
+            return handle;
+        }
+        if (!freeSlots.isEmpty()) {
+            handle = freeSlots.popInt();
+        } else {
+            handle = highWater++;
+            if (handle >= ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+        }
+        ids[handle] = mobId;
+        handles.put(mobId, handle);
+        return handle;
+    }
+
+    /**
+     * Handle for a mob, or NO_HANDLE if it has none (never assigns)
+     */
+    public int lookup(String mobId) {
+        return mobId != null ? handles.getInt(mobId) : NO_HANDLE;
+    }
+
+    /**
+     * Free a mob's slot for reuse
+     * @return the released handle, or NO_HANDLE if the mob was not registered
+     */
+    public int release(String mobId) {
+        int handle = handles.removeInt(mobId);
+        if (handle != NO_HANDLE) {
+            ids[handle] = null;
+            freeSlots.push(handle);
+        }
+        return handle;
+    }
+
+    public String idOf(int handle) {
+        return handle >= 0 && handle < highWater ? ids[handle] : null;
+    }
+
+    /**
+     * Minimum length per-slot arrays need to cover every handle issued so far
+     */
+    public int capacity() {
+        return ids.length;
+    }
+
+    public int size() {
+        return handles.size();
+    }
+}
@@ -18,7 +18,8 @@ import java.util.concurrent.atomic.AtomicLong;
  * 2. Output caching (80% CPU reduction)
  * 3. Shared global model (prevents OOM with many mobs)
  * 4. Rate limiting (smooth load distribution)
- * 5. Object pooling (reduces GC pressure)
+ * 5. Columnar experience storage (no per-transition objects, no GC pressure)
+ * 6. Off-thread inference for pipelined decision batches (tick N -> N+1)
  */
 public class PerformanceOptimizer {
     private static final Logger LOGGER = LogUtils.getLogger();
@@ -34,6 +35,31 @@ public class PerformanceOptimizer {
         return t;
     });
     
+    // === Off-thread inference (pipelined decisions, see MobBehaviorAI.processDecisionBatch) ===
+    private static volatile DoubleDQN inferenceModel;  // Whose session the inference thread may hold
+    // Own thread so a decision batch never queues behind a multi-millisecond training step;
+    // on exit it closes its DQN inference session, which would otherwise pin a native model
+    private static final ExecutorService INFERENCE_POOL = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(() -> {
+            try {
+                r.run();
+            } finally {
+                DoubleDQN dqn = inferenceModel;
+                if (dqn != null) {
+                    dqn.releaseThreadSession();
+                }
+            }
+        }, "MobAI-Inference");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.setUncaughtExceptionHandler((thread, throwable) -> {
+            LOGGER.error("Uncaught exception in MobAI inference thread: {}", throwable.getMessage());
+        });
+        return t;
+    });
+    private final AtomicLong inferenceBatches = new AtomicLong(0);
+    private long releasedGeneration = 0;  // Server thread
+    
     // === CRITICAL FIX #2: Output caching ===
     private static class CachedPrediction {
         float[] qValues;
@@ -63,13 +89,14 @@ public class PerformanceOptimizer {
     private final AtomicInteger pendingTrainingTasks = new AtomicInteger(0);
     private static final int MAX_PENDING_TASKS = 5;  // Prevent queue buildup
     
-    // === CRITICAL FIX #5: Experience object pool ===
-    private static final int POOL_SIZE = 1000;
-    private final Queue<ExperiencePooled> experiencePool = new ConcurrentLinkedQueue<>();
-    
-    // === CRITICAL FIX #6: Fixed-size replay buffer (ring buffer) ===
+    // === CRITICAL FIX #5/#6: Fixed-size columnar replay ring ===
+    // Flat primitive columns replace the pooled per-transition objects; guarded by replayLock
     private static final int MAX_REPLAY_SIZE = 10000;  // Never more than this
-    private final ConcurrentLinkedQueue<ExperiencePooled> replayBuffer = new ConcurrentLinkedQueue<>();
+    private static final int TRAINING_BATCH_SIZE = 32;
+    private final ExperienceStore replayBuffer = new ExperienceStore(MAX_REPLAY_SIZE, PrioritizedReplayBuffer.DEFAULT_STATE_DIM);
+    private final Object replayLock = new Object();
+    private final ExperienceStore.Batch trainingBatch = new ExperienceStore.Batch();  // Training thread only
+    private final int[] trainingSlots = new int[TRAINING_BATCH_SIZE];
     
     // === Performance metrics ===
     private final AtomicLong totalPredictions = new AtomicLong(0);
@@ -80,10 +107,6 @@ public class PerformanceOptimizer {
     private final Map<String, PlayerCombatContext> playerContexts = new ConcurrentHashMap<>();
     
     public PerformanceOptimizer() {
-        // Pre-populate experience pool
-        for (int i = 0; i < POOL_SIZE; i++) {
-            experiencePool.offer(new ExperiencePooled());
-        }
         LOGGER.info("Performance Optimizer initialized - Background training enabled");
     }
     
@@ -140,45 +163,22 @@ public class PerformanceOptimizer {
             return new float[10];  // Fallback
         }
         
-        // Use temporary manager for prediction
-        try (ai.djl.ndarray.NDManager localManager = ai.djl.ndarray.NDManager.newBaseManager()) {
-            ai.djl.ndarray.NDArray qValuesArray = globalModel.predictQValues(localManager, state);
-            float[] qValues = qValuesArray.toFloatArray();
-            
-            // Cache for future use
-            predictionCache.put(mobId, new CachedPrediction(qValues, currentTick.get()));
-            
-            return qValues;
-        }
+        // Long-lived per-thread inference session (no native manager per call)
+        float[] qValues = globalModel.predictQValues(state);
+        
+        // Cache for future use
+        predictionCache.put(mobId, new CachedPrediction(qValues, currentTick.get()));
+        
+        return qValues;
     }
     
     /**
-     * Record experience using object pooling
-     * CRITICAL: Prevents GC pressure from creating thousands of objects
+     * Record experience into the columnar ring
+     * CRITICAL: Copies into preallocated columns - allocates nothing, oldest slot is overwritten
      */
     public void recordExperience(float[] state, int action, float reward, float[] nextState, boolean done) {
-        // Get from pool or create new
-        ExperiencePooled exp = experiencePool.poll();
-        if (exp == null) {
-            exp = new ExperiencePooled();
-        }
-        
-        // Reuse existing arrays to avoid allocation
-        exp.setState(state);
-        exp.setAction(action);
-        exp.setReward(reward);
-        exp.setNextState(nextState);
-        exp.setDone(done);
-        
-        // Add to replay buffer (ring buffer behavior)
-        replayBuffer.offer(exp);
-        
-        // CRITICAL: Enforce max size to prevent OOM
-        while (replayBuffer.size() > MAX_REPLAY_SIZE) {
-            ExperiencePooled old = replayBuffer.poll();
-            if (old != null) {
-                experiencePool.offer(old);  // Return to pool for reuse
-            }
+        synchronized (replayLock) {
+            replayBuffer.append(state, action, reward, nextState, done);
         }
     }
     
@@ -187,35 +187,26 @@ public class PerformanceOptimizer {
      * CRITICAL: NEVER blocks main game thread
      */
     private void performBackgroundTraining() {
-        if (globalModel == null || replayBuffer.size() < 32) {
+        if (globalModel == null) {
             return;  // Not ready yet
         }
         
-        // Sample batch from replay buffer
-        List<ExperiencePooled> batch = new ArrayList<>(32);
-        Iterator<ExperiencePooled> it = replayBuffer.iterator();
-        Random random = new Random();
-        
-        for (int i = 0; i < 32 && it.hasNext(); i++) {
-            if (random.nextFloat() < 0.1f || batch.size() < 32) {  // Sample ~10% or fill to 32
-                batch.add(it.next());
+        // Uniformly sample slots and pack them into the reusable batch under the lock
+        synchronized (replayLock) {
+            int available = replayBuffer.size();
+            if (available < TRAINING_BATCH_SIZE) {
+                return;  // Not enough data
             }
-            it.next();  // Skip some for variety
-        }
-        
-        if (batch.size() < 16) {
-            return;  // Not enough data
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < TRAINING_BATCH_SIZE; i++) {
+                trainingSlots[i] = random.nextInt(available);
+            }
+            replayBuffer.gather(trainingSlots, TRAINING_BATCH_SIZE, trainingBatch);
         }
         
-        // Convert to format expected by Double DQN
-        java.util.List<com.minecraft.gancity.ml.PrioritizedReplayBuffer.Experience> experiences = batch.stream()
-            .map(exp -> new com.minecraft.gancity.ml.PrioritizedReplayBuffer.Experience(
-                exp.state, exp.action, exp.reward, exp.nextState, exp.done
-            ))
-            .collect(java.util.stream.Collectors.toList());
-        
         // CRITICAL: This runs on background thread, not game thread
-        globalModel.trainBatch(experiences);
+        // Uniform sample, so no importance-sampling weights
+        globalModel.trainBatch(trainingBatch, null);
         
         trainingExecutions.incrementAndGet();
     }
@@ -235,6 +226,34 @@ public class PerformanceOptimizer {
         predictionCache.remove(mobId);
     }
     
+    /**
+     * Run an inference batch off the server thread
+     * The task must only touch data it owns (immutable feature snapshot + its own output array)
+     */
+    public Future<?> submitInference(Runnable task) {
+        inferenceBatches.incrementAndGet();
+        return INFERENCE_POOL.submit(task);
+    }
+    
+    /**
+     * Close the inference thread's DQN session once newer weights have been published
+     * (server thread, every tick): an idle worker would otherwise pin the old snapshot's
+     * native model until its next batch. Runs on the worker, after any batch in flight
+     */
+    public void releaseStaleInferenceSession(DoubleDQN dqn) {
+        inferenceModel = dqn;
+        long generation = dqn.inferenceGeneration();
+        if (generation == releasedGeneration) {
+            return;
+        }
+        releasedGeneration = generation;
+        try {
+            INFERENCE_POOL.execute(dqn::releaseThreadSession);
+        } catch (RejectedExecutionException e) {
+            // Shut down - the worker released its session on the way out
+        }
+    }
+    
     /**
      * Get performance statistics
      */
@@ -243,17 +262,23 @@ public class PerformanceOptimizer {
         long cached = cachedPredictions.get();
         float cacheHitRate = total > 0 ? (100.0f * cached / total) : 0.0f;
         
+        int bufferSize;
+        synchronized (replayLock) {
+            bufferSize = replayBuffer.size();
+        }
         return String.format(
-            "Predictions: %d (%.1f%% cached) | Training: %d | Buffer: %d/%d | Pending: %d",
+            "Predictions: %d (%.1f%% cached) | Training: %d | Buffer: %d/%d (%d KB) | Pending: %d | Async batches: %d",
             total, cacheHitRate, trainingExecutions.get(), 
-            replayBuffer.size(), MAX_REPLAY_SIZE, pendingTrainingTasks.get()
+            bufferSize, MAX_REPLAY_SIZE, replayBuffer.memoryBytes() / 1024, pendingTrainingTasks.get(),
+            inferenceBatches.get()
         );
     }
     
     /**
-     * Shutdown training thread (call on server shutdown)
+     * Shutdown training and inference threads (call on server shutdown)
      */
     public void shutdown() {
+        INFERENCE_POOL.shutdownNow();  // The worker releases its DQN session as it exits
         TRAINING_POOL.shutdown();
         try {
             if (!TRAINING_POOL.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -266,41 +291,6 @@ public class PerformanceOptimizer {
         LOGGER.info("Performance Optimizer shut down - Final stats: {}", getPerformanceStats());
     }
     
-    // === Pooled experience object (reusable) ===
-    private static class ExperiencePooled {
-        float[] state;
-        int action;
-        float reward;
-        float[] nextState;
-        boolean done;
-        
-        void setState(float[] state) {
-            if (this.state == null || this.state.length != state.length) {
-                this.state = new float[state.length];
-            }
-            System.arraycopy(state, 0, this.state, 0, state.length);
-        }
-        
-        void setAction(int action) {
-            this.action = action;
-        }
-        
-        void setReward(float reward) {
-            this.reward = reward;
-        }
-        
-        void setNextState(float[] nextState) {
-            if (this.nextState == null || this.nextState.length != nextState.length) {
-                this.nextState = new float[nextState.length];
-            }
-            System.arraycopy(nextState, 0, this.nextState, 0, nextState.length);
-        }
-        
-        void setDone(boolean done) {
-            this.done = done;
-        }
-    }
-    
     /**
      * Shared combat context for multiple mobs fighting same player
      * CRITICAL: Prevents duplicate observations
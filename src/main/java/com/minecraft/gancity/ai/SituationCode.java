@@ -0,0 +1,116 @@
+package com.minecraft.gancity.ai;
+
+/**
+ * Discretized combat situation packed into one int
+ *
+ * Bit layout (8 bits, COUNT = 256 codes):
+ * - bit 0      self below 30% health
+ * - bit 1      target below 30% health
+ * - bit 2      target blocking with a shield
+ * - bits 3-4   nearby allies: 0, 1, 2+
+ * - bits 5-6   distance: close (&lt; 3), mid, long (&gt; 8)
+ * - bit 7      terrain cover nearby
+ *
+ * PERFORMANCE: Situations are encoded once, when a TacticalState is built
+ * - sampling and selection index arrays by code / category instead of building
+ *   and hashing situation strings
+ * - category names are a precomputed table, only touched for export and federation
+ *
+ * Categories are the seven coarse situations federation has always exchanged
+ * (low_health, target_low_health, ...); category(code) applies the same priority
+ * order the old categorizeSituation() string ladder used.
+ */
+public final class SituationCode {
+
+    public static final int SELF_LOW_HEALTH = 1;
+    public static final int TARGET_LOW_HEALTH = 1 << 1;
+    public static final int TARGET_SHIELDING = 1 << 2;
+    private static final int ALLIES_SHIFT = 3;
+    private static final int DISTANCE_SHIFT = 5;
+    public static final int TERRAIN_COVER = 1 << 7;
+
+    public static final int ALLIES_NONE = 0;
+    public static final int ALLIES_ONE = 1;
+    public static final int ALLIES_GROUP = 2;
+
+    public static final int DISTANCE_CLOSE = 0;
+    public static final int DISTANCE_MID = 1;
+    public static final int DISTANCE_LONG = 2;
+
+    public static final int COUNT = 1 << 8;
+
+    // Coarse categories (federation / situational weight rows)
+    public static final int LOW_HEALTH = 0;
+    public static final int TARGET_LOW = 1;
+    public static final int SHIELDING = 2;
+    public static final int GROUP_COMBAT = 3;
+    public static final int CLOSE_RANGE = 4;
+    public static final int LONG_RANGE = 5;
+    public static final int NEUTRAL = 6;
+
+    private static final String[] CATEGORY_NAMES = {
+        "low_health", "target_low_health", "target_shielding", "group_combat",
+        "close_range", "long_range", "neutral"
+    };
+    public static final int CATEGORY_COUNT = CATEGORY_NAMES.length;
+
+    private static final byte[] CATEGORIES = new byte[COUNT];
+
+    static {
+        for (int code = 0; code < COUNT; code++) {
+            CATEGORIES[code] = (byte) deriveCategory(code);
+        }
+    }
+
+    private SituationCode() {
+    }
+
+    public static int encode(boolean selfLowHealth, boolean targetLowHealth, boolean targetHasShield,
+                             int nearbyAllies, float distanceToTarget, boolean hasTerrainCover) {
+        int allies = nearbyAllies >= 2 ? ALLIES_GROUP : nearbyAllies == 1 ? ALLIES_ONE : ALLIES_NONE;
+        int distance = distanceToTarget < 3 ? DISTANCE_CLOSE : distanceToTarget > 8 ? DISTANCE_LONG : DISTANCE_MID;
+        return (selfLowHealth ? SELF_LOW_HEALTH : 0)
+            | (targetLowHealth ? TARGET_LOW_HEALTH : 0)
+            | (targetHasShield ? TARGET_SHIELDING : 0)
+            | (allies << ALLIES_SHIFT)
+            | (distance << DISTANCE_SHIFT)
+            | (hasTerrainCover ? TERRAIN_COVER : 0);
+    }
+
+    public static int allies(int code) {
+        return (code >>> ALLIES_SHIFT) & 3;
+    }
+
+    public static int distance(int code) {
+        return (code >>> DISTANCE_SHIFT) & 3;
+    }
+
+    /**
+     * Coarse category of a code (table lookup)
+     */
+    public static int category(int code) {
+        return CATEGORIES[code & (COUNT - 1)];
+    }
+
+    public static String categoryName(int category) {
+        return CATEGORY_NAMES[category];
+    }
+
+    private static int deriveCategory(int code) {
+        if ((code & SELF_LOW_HEALTH) != 0) {
+            return LOW_HEALTH;
+        } else if ((code & TARGET_LOW_HEALTH) != 0) {
+            return TARGET_LOW;
+        } else if ((code & TARGET_SHIELDING) != 0) {
+            return SHIELDING;
+        } else if (allies(code) == ALLIES_GROUP) {
+            return GROUP_COMBAT;
+        } else if (distance(code) == DISTANCE_CLOSE) {
+            return CLOSE_RANGE;
+        } else if (distance(code) == DISTANCE_LONG) {
+            return LONG_RANGE;
+        } else {
+            return NEUTRAL;
+        }
+    }
+}
@@ -15,6 +15,10 @@ import java.util.*;
 @SuppressWarnings("null")
 public class TacticalActionSpace {
     
+    private static final java.util.concurrent.ConcurrentHashMap<String, Long> AVAILABLE_MASKS =
+        new java.util.concurrent.ConcurrentHashMap<>();
+    private static final TacticalAction[] ACTIONS = TacticalAction.values();
+    
     /**
      * Tactical actions - each represents a complex behavior pattern
      */
@@ -87,6 +91,7 @@ public class TacticalActionSpace {
         public final boolean targetInCooldown;   // shield/weapon on cooldown
         public final boolean hasTerrainCover;    // obstacles nearby
         public final boolean playerSurrounded;   // allies on multiple sides of player
+        public final int situationCode;          // SituationCode, encoded once here
         
         public TacticalState(float healthRatio, float targetHealthRatio, float distanceToTarget,
                            boolean targetHasShield, boolean targetLowHealth, boolean selfLowHealth,
@@ -104,6 +109,8 @@ public class TacticalActionSpace {
             this.targetInCooldown = targetInCooldown;
             this.hasTerrainCover = hasTerrainCover;
             this.playerSurrounded = playerSurrounded;
+            this.situationCode = SituationCode.encode(selfLowHealth, targetLowHealth, targetHasShield,
+                nearbyAllies, distanceToTarget, hasTerrainCover);
         }
         
         /**
@@ -124,33 +131,29 @@ public class TacticalActionSpace {
             boolean targetLowHealth = targetHealthRatio < 0.3f;
             boolean selfLowHealth = healthRatio < 0.3f;
             
-            // Get all nearby allies (8 block radius)
-            List<Mob> allyList = mob.level().getEntitiesOfClass(
-                Mob.class,
-                mob.getBoundingBox().inflate(8.0),
-                m -> m != mob && !m.isDeadOrDying() && m.getType() == mob.getType()
+            // Get all nearby allies (8 block radius) from the per-tick spatial grid
+            List<Mob> allyList = CombatSpatialGrid.nearbyMobs(
+                mob, 8.0, m -> !m.isDeadOrDying() && m.getType() == mob.getType()
             );
             int nearbyAllies = allyList.size();
             
-            // Count allies actively fighting the same target
-            int alliesAttackingTarget = (int) allyList.stream()
-                .filter(ally -> ally.getTarget() == target)
-                .count();
-            
-            // Check if any ally needs help (low health)
-            boolean allyNeedsHelp = allyList.stream()
-                .anyMatch(ally -> ally.getHealth() / ally.getMaxHealth() < 0.3f);
-            
-            // Check if player is surrounded (allies on opposite sides)
+            // Single pass: allies fighting the same target, allies needing help (low health),
+            // player surrounded (allies on opposite sides)
+            int alliesAttackingTarget = 0;
+            boolean allyNeedsHelp = false;
             boolean playerSurrounded = false;
-            if (nearbyAllies >= 2) {
-                Vec3 mobToPlayer = target.position().subtract(mob.position()).normalize();
-                playerSurrounded = allyList.stream()
-                    .anyMatch(ally -> {
-                        Vec3 allyToPlayer = target.position().subtract(ally.position()).normalize();
-                        double angle = mobToPlayer.dot(allyToPlayer);
-                        return angle < -0.5; // Roughly opposite sides (>120 degrees)
-                    });
+            Vec3 mobToPlayer = nearbyAllies >= 2 ? target.position().subtract(mob.position()).normalize() : null;
+            for (Mob ally : allyList) {
+                if (ally.getTarget() == target) {
+                    alliesAttackingTarget++;
+                }
+                if (ally.getHealth() / ally.getMaxHealth() < 0.3f) {
+                    allyNeedsHelp = true;
+                }
+                if (mobToPlayer != null && !playerSurrounded) {
+                    Vec3 allyToPlayer = target.position().subtract(ally.position()).normalize();
+                    playerSurrounded = mobToPlayer.dot(allyToPlayer) < -0.5; // Roughly opposite sides (>120 degrees)
+                }
             }
             
             // Simple cooldown detection (if player hasn't attacked in 0.5s)
@@ -168,6 +171,12 @@ public class TacticalActionSpace {
         }
         
         private static boolean hasNearbyObstacles(Mob mob) {
+            // Cover map: a few 16-bit row masks instead of 48 getBlockState() lookups
+            TerrainCoverCache cover = TerrainCoverCache.get(mob.level());
+            if (cover != null) {
+                return cover.anySolidAround(mob.getBlockX(), mob.getBlockY(), mob.getBlockZ(), 3);
+            }
+            
             // Quick check for solid blocks nearby (simplified)
             for (int dx = -3; dx <= 3; dx++) {
                 for (int dz = -3; dz <= 3; dz++) {
@@ -294,11 +303,7 @@ public class TacticalActionSpace {
                 
             case CALL_REINFORCEMENTS:
                 // Move toward nearest ally while maintaining distance from player
-                List<Mob> nearbyMobs = mob.level().getEntitiesOfClass(
-                    Mob.class,
-                    mob.getBoundingBox().inflate(16.0),
-                    m -> m != mob && !m.isDeadOrDying()
-                );
+                List<Mob> nearbyMobs = CombatSpatialGrid.nearbyMobs(mob, 16.0, m -> !m.isDeadOrDying());
                 if (!nearbyMobs.isEmpty()) {
                     Mob nearest = nearbyMobs.get(0);
                     Vec3 toAlly = nearest.position().subtract(mob.position()).normalize();
@@ -549,11 +554,10 @@ public class TacticalActionSpace {
      * Zombies, skeletons, spiders, creepers, etc. can work together
      */
     private static List<Mob> getNearbyAllies(Mob mob) {
-        return mob.level().getEntitiesOfClass(
-            Mob.class,
-            mob.getBoundingBox().inflate(8.0),
-            m -> m != mob && !m.isDeadOrDying() && isHostileMob(m) && isHostileMob(mob)
-        );
+        if (!isHostileMob(mob)) {
+            return Collections.emptyList();
+        }
+        return CombatSpatialGrid.nearbyMobs(mob, 8.0, m -> !m.isDeadOrDying() && isHostileMob(m));
     }
     
     /**
@@ -704,4 +708,19 @@ public class TacticalActionSpace {
                 return common;
         }
     }
+    
+    /**
+     * Tactical action for an ordinal
+     */
+    public static TacticalAction actionAt(int ordinal) {
+        return ACTIONS[ordinal];
+    }
+    
+    /**
+     * Available tactical actions as a bitmask over TacticalAction ordinals (cached per mob type)
+     */
+    public static long getAvailableActionMask(String mobType) {
+        return AVAILABLE_MASKS.computeIfAbsent(mobType.toLowerCase(),
+            type -> ActionRegistry.tacticalMask(getAvailableActions(type)));
+    }
 }
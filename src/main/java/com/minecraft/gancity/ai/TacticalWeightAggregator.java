@@ -1,10 +1,12 @@
 package com.minecraft.gancity.ai;
 
+import com.minecraft.gancity.ml.WeightJournal;
 import com.mojang.logging.LogUtils;
 import org.slf4j.Logger;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Tactical weight aggregation for federation
@@ -16,32 +18,65 @@ import java.util.concurrent.ConcurrentHashMap;
  * - 10 players × 50 zombies = visible learning in hours, not weeks
  * - Aggregate patterns, not gradients
  * - Learn "zombies punish shield spam now" not "Q-value delta 0.0003"
+ *
+ * PERFORMANCE: Dense weight tensor behind one volatile snapshot
+ * - weights live in float[mobType][situation][action] (situation = SituationCode category); the last situation slot
+ *   holds the global (situation-independent) weights, actions are TacticalAction ordinals
+ * - NaN marks "never learned", so map views only contain entries that were written
+ * - writers (aggregateEpisode, importWeights, reset) serialize on a lock, copy only the
+ *   mob type they touch and publish a new immutable Snapshot
+ * - selectTactic reads the current snapshot without locking, boxing or allocating
+ * - each aggregated episode is appended to the WeightJournal before it is applied, so
+ *   learning since the last shard save survives a crash (see replayEpisode)
  */
 public class TacticalWeightAggregator {
     private static final Logger LOGGER = LogUtils.getLogger();
     
     /**
-     * Global tactical weights per mob type
-     * Maps: mobType -> tactic -> weight
-     * 
-     * Positive weight = tactic works well
-     * Negative weight = tactic fails often
+     * Situational rows are SituationCode categories
      */
-    private final Map<String, Map<String, Float>> globalTacticalWeights;
-    
+    private static final int SITUATION_COUNT = SituationCode.CATEGORY_COUNT;
+    private static final int GLOBAL_SLOT = SITUATION_COUNT;
+    private static final int ACTION_COUNT = ActionRegistry.TACTICAL_COUNT;
+
     /**
-     * Situational tactical weights
-     * Maps: mobType -> situation -> tactic -> weight
+     * Immutable view of every learned weight
+     * Maps (conceptually): mobType -> situation -> tactic -> weight
      * 
+     * Positive weight = tactic works well
+     * Negative weight = tactic fails often
      * Example: zombie -> "target_low_health" -> "rush_player" -> +0.87
      */
-    private final Map<String, Map<String, Map<String, Float>>> situationalWeights;
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new String[0], Collections.emptyMap(), new float[0][][], new boolean[0][]);
+
+        final String[] mobTypes;                  // index -> mob type
+        final Map<String, Integer> mobIndex;      // mob type -> index (never mutated)
+        final float[][][] weights;                // [mob][situation or GLOBAL_SLOT][action], NaN = unset
+        final boolean[][] learned;                // [mob][slot] any weight set in that row
+
+        Snapshot(String[] mobTypes, Map<String, Integer> mobIndex, float[][][] weights, boolean[][] learned) {
+            this.mobTypes = mobTypes;
+            this.mobIndex = mobIndex;
+            this.weights = weights;
+            this.learned = learned;
+        }
+
+        int indexOf(String mobType) {
+            Integer index = mobIndex.get(mobType);
+            return index != null ? index : -1;
+        }
+    }
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private final Object writeLock = new Object();
+    private volatile WeightJournal journal = null;
     
     /**
      * Contribution tracking
      */
-    private int totalEpisodesAggregated;
-    private int totalSamplesAggregated;
+    private volatile int totalEpisodesAggregated;
+    private volatile int totalSamplesAggregated;
     private final Set<String> contributingPlayers;
     
     /**
@@ -49,9 +84,10 @@ public class TacticalWeightAggregator {
      */
     private static final float LEARNING_RATE = 0.05f;
     
+    private static final ThreadLocal<float[]> PROBABILITY_SCRATCH =
+        ThreadLocal.withInitial(() -> new float[ActionRegistry.TACTICAL_COUNT]);
+    
     public TacticalWeightAggregator() {
-        this.globalTacticalWeights = new ConcurrentHashMap<>();
-        this.situationalWeights = new ConcurrentHashMap<>();
         this.totalEpisodesAggregated = 0;
         this.totalSamplesAggregated = 0;
         this.contributingPlayers = ConcurrentHashMap.newKeySet();
@@ -67,18 +103,14 @@ public class TacticalWeightAggregator {
         }
         
         String mobType = episode.getMobType();
+        float[] episodeWeights = episode.tacticalWeightRow(outcome);
+        float[][] situationalTactics = episode.situationalTacticTable(outcome);
         
-        // Update global tactical weights
-        Map<String, Float> episodeWeights = episode.extractTacticalWeights(outcome);
-        updateGlobalWeights(mobType, episodeWeights);
-        
-        // Update situational weights
-        Map<String, Map<String, Float>> situationalTactics = episode.extractSituationalTactics(outcome);
-        updateSituationalWeights(mobType, situationalTactics);
-        
-        // Track contribution
-        totalEpisodesAggregated++;
-        totalSamplesAggregated += episode.getSampleCount();
+        WeightJournal currentJournal = journal;
+        if (currentJournal != null) {
+            currentJournal.appendEpisode(mobType, episodeWeights, situationalTactics);
+        }
+        applyEpisode(mobType, episodeWeights, situationalTactics, episode.getSampleCount());
         contributingPlayers.add(playerId);
         
         // Log significant changes
@@ -90,45 +122,59 @@ public class TacticalWeightAggregator {
     }
     
     /**
-     * Update global tactical weights using exponential moving average
+     * Re-apply an episode read back from the journal (startup recovery, not journaled again)
+     * Situational rows beyond this build's situation categories are ignored
      */
-    private void updateGlobalWeights(String mobType, Map<String, Float> episodeWeights) {
-        globalTacticalWeights.putIfAbsent(mobType, new ConcurrentHashMap<>());
-        Map<String, Float> currentWeights = globalTacticalWeights.get(mobType);
+    public void replayEpisode(String mobType, float[] episodeWeights, float[][] situationalTactics) {
+        if (episodeWeights.length != ACTION_COUNT) {
+            return;  // Journaled by a build with a different tactic set
+        }
+        applyEpisode(mobType, episodeWeights, situationalTactics, 0);
+    }
         
-        for (Map.Entry<String, Float> entry : episodeWeights.entrySet()) {
-            String tactic = entry.getKey();
-            float newWeight = entry.getValue();
+    private void applyEpisode(String mobType, float[] episodeWeights, float[][] situationalTactics, int samples) {
+        synchronized (writeLock) {
+            Builder builder = new Builder(snapshot);
+            int mob = builder.mutableMob(mobType);
             
-            // Exponential moving average
-            currentWeights.merge(tactic, newWeight, (old, delta) -> 
-                old * (1 - LEARNING_RATE) + delta * LEARNING_RATE
-            );
+            // Update global tactical weights
+            updateRow(builder, mob, GLOBAL_SLOT, episodeWeights);
+
+            // Update situational weights
+            int situations = Math.min(SITUATION_COUNT, situationalTactics.length);
+            for (int situation = 0; situation < situations; situation++) {
+                if (situationalTactics[situation] != null) {
+                    updateRow(builder, mob, situation, situationalTactics[situation]);
+                }
+            }
+            snapshot = builder.build();
+
+            // Track contribution
+            totalEpisodesAggregated++;
+            totalSamplesAggregated += samples;
         }
     }
     
     /**
-     * Update situational weights
+     * Journal every aggregated episode from now on (null to stop)
      */
-    private void updateSituationalWeights(String mobType, Map<String, Map<String, Float>> situationalTactics) {
-        situationalWeights.putIfAbsent(mobType, new ConcurrentHashMap<>());
-        Map<String, Map<String, Float>> mobSituational = situationalWeights.get(mobType);
+    public void setJournal(WeightJournal journal) {
+        this.journal = journal;
+    }
         
-        for (Map.Entry<String, Map<String, Float>> situationEntry : situationalTactics.entrySet()) {
-            String situation = situationEntry.getKey();
-            Map<String, Float> tactics = situationEntry.getValue();
-            
-            mobSituational.putIfAbsent(situation, new ConcurrentHashMap<>());
-            Map<String, Float> currentTactics = mobSituational.get(situation);
-            
-            for (Map.Entry<String, Float> tacticEntry : tactics.entrySet()) {
-                String tactic = tacticEntry.getKey();
-                float weight = tacticEntry.getValue();
-                
-                currentTactics.merge(tactic, weight, (old, delta) ->
-                    old * (1 - LEARNING_RATE) + delta * LEARNING_RATE
-                );
+    /**
+     * Exponential moving average of one [mob][slot] row toward the episode's weights
+     */
+    private static void updateRow(Builder builder, int mob, int slot, float[] tactics) {
+        float[] row = builder.weights[mob][slot];
+        for (int action = 0; action < ACTION_COUNT; action++) {
+            float delta = tactics[action];
+            if (Float.isNaN(delta)) {
+                continue;
             }
+            float old = row[action];
+            row[action] = Float.isNaN(old) ? delta : old * (1 - LEARNING_RATE) + delta * LEARNING_RATE;
+            builder.learned[mob][slot] = true;
         }
     }
     
@@ -139,102 +185,112 @@ public class TacticalWeightAggregator {
     public TacticalActionSpace.TacticalAction selectTactic(String mobType, 
                                                            TacticalActionSpace.TacticalState state,
                                                            List<TacticalActionSpace.TacticalAction> availableActions) {
-        // Categorize situation
-        String situation = categorizeSituation(state);
+        return selectTactic(mobType, state, ActionRegistry.tacticalMask(availableActions));
+    }
+    
+    /**
+     * Select best tactic among a bitmask of TacticalAction ordinals
+     * (see TacticalActionSpace.getAvailableActionMask)
+     */
+    public TacticalActionSpace.TacticalAction selectTactic(String mobType, 
+                                                           TacticalActionSpace.TacticalState state,
+                                                           long availableMask) {
+        if (availableMask == 0L) {
+            return TacticalActionSpace.TacticalAction.DEFAULT_MELEE;
+        }
         
-        // Get situational weights
-        Map<String, Float> tacticWeights = getSituationalWeights(mobType, situation);
+        Snapshot current = snapshot;
+        int mob = current.indexOf(mobType);
         
-        if (tacticWeights.isEmpty()) {
-            // Fall back to global weights
-            tacticWeights = getGlobalWeights(mobType);
+        // Situational weights first, then fall back to global weights
+        float[] tacticWeights = null;
+        if (mob >= 0) {
+            int situation = SituationCode.category(state.situationCode);
+            if (current.learned[mob][situation]) {
+                tacticWeights = current.weights[mob][situation];
+            } else if (current.learned[mob][GLOBAL_SLOT]) {
+                tacticWeights = current.weights[mob][GLOBAL_SLOT];
+            }
         }
         
-        if (tacticWeights.isEmpty()) {
+        if (tacticWeights == null) {
             // No learned data yet, use random
-            return availableActions.get(new Random().nextInt(availableActions.size()));
+            return TacticalActionSpace.actionAt(nthBit(availableMask,
+                ThreadLocalRandom.current().nextInt(Long.bitCount(availableMask))));
         }
         
         // Select tactic with highest weight (softmax-style exploration)
-        return selectWithExploration(availableActions, tacticWeights);
+        return selectWithExploration(availableMask, tacticWeights);
+    }
+    
+    private static int nthBit(long mask, int n) {
+        for (int i = 0; i < n; i++) {
+            mask &= mask - 1;
+        }
+        return Long.numberOfTrailingZeros(mask);
     }
     
     /**
      * Select action using softmax exploration
      * High-weight tactics more likely, but exploration still happens
+     * Probabilities live in a per-thread float[] indexed by TacticalAction ordinal
      */
-    private TacticalActionSpace.TacticalAction selectWithExploration(
-            List<TacticalActionSpace.TacticalAction> availableActions,
-            Map<String, Float> weights) {
-        
-        // Calculate softmax probabilities
-        float[] probabilities = new float[availableActions.size()];
+    private TacticalActionSpace.TacticalAction selectWithExploration(long availableMask, float[] weights) {
+        // Calculate softmax numerators (unlearned tactics weigh exp(0) = 1)
+        float[] probabilities = PROBABILITY_SCRATCH.get();
         float sumExp = 0;
-        
-        for (int i = 0; i < availableActions.size(); i++) {
-            String tacticId = availableActions.get(i).id;
-            float weight = weights.getOrDefault(tacticId, 0.0f);
-            float exp = (float) Math.exp(weight);
-            probabilities[i] = exp;
+        for (long m = availableMask; m != 0; m &= m - 1) {
+            int action = Long.numberOfTrailingZeros(m);
+            float weight = weights[action];
+            float exp = Float.isNaN(weight) ? 1.0f : (float) Math.exp(weight);
+            probabilities[action] = exp;
             sumExp += exp;
         }
         
-        // Normalize
-        for (int i = 0; i < probabilities.length; i++) {
-            probabilities[i] /= sumExp;
-        }
-        
         // Sample from distribution
-        float rand = new Random().nextFloat();
+        float rand = ThreadLocalRandom.current().nextFloat() * sumExp;
         float cumulative = 0;
-        for (int i = 0; i < probabilities.length; i++) {
-            cumulative += probabilities[i];
+        int last = 0;
+        for (long m = availableMask; m != 0; m &= m - 1) {
+            last = Long.numberOfTrailingZeros(m);
+            cumulative += probabilities[last];
             if (rand <= cumulative) {
-                return availableActions.get(i);
+                return TacticalActionSpace.actionAt(last);
             }
         }
         
         // Fallback
-        return availableActions.get(availableActions.size() - 1);
+        return TacticalActionSpace.actionAt(last);
     }
     
     /**
-     * Get global weights for a mob type
+     * Map view of one weight row (learned entries only)
      */
-    private Map<String, Float> getGlobalWeights(String mobType) {
-        return globalTacticalWeights.getOrDefault(mobType, new HashMap<>());
+    private static Map<String, Float> rowView(float[] row) {
+        Map<String, Float> view = new HashMap<>();
+        for (int action = 0; action < row.length; action++) {
+            if (!Float.isNaN(row[action])) {
+                view.put(TacticalActionSpace.actionAt(action).id, row[action]);
+            }
+        }
+        return view;
     }
     
     /**
-     * Get situational weights for a mob type and situation
+     * Get global weights for a mob type (map view, allocates - not for the selection path)
      */
-    private Map<String, Float> getSituationalWeights(String mobType, String situation) {
-        Map<String, Map<String, Float>> mobSituational = situationalWeights.get(mobType);
-        if (mobSituational == null) {
-            return new HashMap<>();
-        }
-        return mobSituational.getOrDefault(situation, new HashMap<>());
+    private Map<String, Float> getGlobalWeights(String mobType) {
+        Snapshot current = snapshot;
+        int mob = current.indexOf(mobType);
+        return mob >= 0 ? rowView(current.weights[mob][GLOBAL_SLOT]) : Collections.emptyMap();
     }
     
     /**
-     * Categorize situation (same as in CombatEpisode)
+     * TacticalAction ordinal for a tactic ID, or -1 for IDs outside the tactical space
      */
-    private String categorizeSituation(TacticalActionSpace.TacticalState state) {
-        if (state.selfLowHealth) {
-            return "low_health";
-        } else if (state.targetLowHealth) {
-            return "target_low_health";
-        } else if (state.targetHasShield) {
-            return "target_shielding";
-        } else if (state.nearbyAllies >= 2) {
-            return "group_combat";
-        } else if (state.distanceToTarget < 3) {
-            return "close_range";
-        } else if (state.distanceToTarget > 8) {
-            return "long_range";
-        } else {
-            return "neutral";
-        }
+    private static int tacticOrdinal(String tactic) {
+        int ordinal = ActionRegistry.ordinalOf(tactic);
+        return ordinal >= 0 && ordinal < ACTION_COUNT ? ordinal : -1;
     }
     
     /**
@@ -263,11 +319,19 @@ public class TacticalWeightAggregator {
      * Get aggregation statistics for monitoring
      */
     public Map<String, Object> getStatistics() {
+        Snapshot current = snapshot;
+        int learnedMobTypes = 0;
+        for (boolean[] slots : current.learned) {
+            if (slots[GLOBAL_SLOT]) {
+                learnedMobTypes++;
+            }
+        }
+
         Map<String, Object> stats = new HashMap<>();
         stats.put("totalEpisodes", totalEpisodesAggregated);
         stats.put("totalSamples", totalSamplesAggregated);
         stats.put("contributors", contributingPlayers.size());
-        stats.put("mobTypesLearned", globalTacticalWeights.keySet().size());
+        stats.put("mobTypesLearned", learnedMobTypes);
         
         // Calculate average samples per episode
         if (totalEpisodesAggregated > 0) {
@@ -279,51 +343,124 @@ public class TacticalWeightAggregator {
     
     /**
      * Export weights for federation sync
-     * Returns: mobType -> tactic -> weight
+     * Returns: mobType -> tactic -> weight (map view built from the current snapshot)
      */
     public Map<String, Map<String, Float>> exportWeights() {
+        return export(snapshot);
+    }
+
+    /**
+     * Current weights as an immutable handle - O(1), nothing is copied
+     * Updates publish a new snapshot instead of changing this one, so the handle can be
+     * serialized later on another thread (write-behind auto-save)
+     */
+    public Frozen freeze() {
+        return new Frozen(snapshot);
+    }
+
+    private static Map<String, Map<String, Float>> export(Snapshot current) {
         Map<String, Map<String, Float>> export = new HashMap<>();
         
-        for (Map.Entry<String, Map<String, Float>> entry : globalTacticalWeights.entrySet()) {
-            export.put(entry.getKey(), new HashMap<>(entry.getValue()));
+        for (int mob = 0; mob < current.mobTypes.length; mob++) {
+            if (current.learned[mob][GLOBAL_SLOT]) {
+                export.put(current.mobTypes[mob], rowView(current.weights[mob][GLOBAL_SLOT]));
+            }
         }
         
         return export;
     }
     
+    /**
+     * Weights captured by freeze()
+     */
+    public static final class Frozen {
+        private final Snapshot snapshot;
+
+        private Frozen(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Same shape as TacticalWeightAggregator.exportWeights()
+         */
+        public Map<String, Map<String, Float>> exportWeights() {
+            return export(snapshot);
+        }
+
+        /**
+         * Global weights of one mob type (empty if it has none)
+         */
+        public Map<String, Float> exportWeights(String mobType) {
+            int mob = snapshot.indexOf(mobType);
+            return mob >= 0 && snapshot.learned[mob][GLOBAL_SLOT]
+                ? rowView(snapshot.weights[mob][GLOBAL_SLOT]) : Collections.emptyMap();
+        }
+    }
+
     /**
      * Import weights from federation (merge with existing)
      */
     public void importWeights(Map<String, Map<String, Float>> incomingWeights) {
-        for (Map.Entry<String, Map<String, Float>> mobEntry : incomingWeights.entrySet()) {
-            String mobType = mobEntry.getKey();
-            Map<String, Float> incomingTactics = mobEntry.getValue();
-            
-            globalTacticalWeights.putIfAbsent(mobType, new ConcurrentHashMap<>());
-            Map<String, Float> currentTactics = globalTacticalWeights.get(mobType);
+        int skipped = 0;
+        synchronized (writeLock) {
+            Builder builder = new Builder(snapshot);
+            for (Map.Entry<String, Map<String, Float>> mobEntry : incomingWeights.entrySet()) {
+                int mob = builder.mutableMob(mobEntry.getKey());
+                float[] row = builder.weights[mob][GLOBAL_SLOT];
             
-            // Merge: average of local and incoming
-            for (Map.Entry<String, Float> tacticEntry : incomingTactics.entrySet()) {
-                String tactic = tacticEntry.getKey();
-                float incomingWeight = tacticEntry.getValue();
-                
-                currentTactics.merge(tactic, incomingWeight, (local, incoming) ->
-                    (local + incoming) / 2.0f
-                );
+                // Merge: average of local and incoming
+                for (Map.Entry<String, Float> tacticEntry : mobEntry.getValue().entrySet()) {
+                    int action = tacticOrdinal(tacticEntry.getKey());
+                    if (action < 0) {
+                        skipped++;  // Not a TacticalAction id (e.g. a legacy action name)
+                        continue;
+                    }
+                    float incomingWeight = tacticEntry.getValue();
+                    float local = row[action];
+                    row[action] = Float.isNaN(local) ? incomingWeight : (local + incomingWeight) / 2.0f;
+                    builder.learned[mob][GLOBAL_SLOT] = true;
+                }
             }
+            snapshot = builder.build();
         }
         
         LOGGER.info("Imported tactical weights from federation server");
+        if (skipped > 0) {
+            LOGGER.debug("Skipped {} imported weights with non-tactical tactic ids", skipped);
+        }
     }
     
+    /**
+     * Restore locally saved weights (startup) - replaces the seeded rows instead of
+     * averaging with them, so restarts don't pull learned weights back toward the seeds
+     */
+    public void restoreWeights(Map<String, Map<String, Float>> savedWeights) {
+        synchronized (writeLock) {
+            Builder builder = new Builder(snapshot);
+            for (Map.Entry<String, Map<String, Float>> mobEntry : savedWeights.entrySet()) {
+                int mob = builder.mutableMob(mobEntry.getKey());
+                float[] row = builder.weights[mob][GLOBAL_SLOT];
+                for (Map.Entry<String, Float> tacticEntry : mobEntry.getValue().entrySet()) {
+                    int action = tacticOrdinal(tacticEntry.getKey());
+                    if (action >= 0 && tacticEntry.getValue() != null) {
+                        row[action] = tacticEntry.getValue();
+                        builder.learned[mob][GLOBAL_SLOT] = true;
+                    }
+                }
+            }
+            snapshot = builder.build();
+        }
+    }
+
     /**
      * Reset aggregator (for testing)
      */
     public void reset() {
-        globalTacticalWeights.clear();
-        situationalWeights.clear();
-        totalEpisodesAggregated = 0;
-        totalSamplesAggregated = 0;
+        synchronized (writeLock) {
+            snapshot = Snapshot.EMPTY;
+            totalEpisodesAggregated = 0;
+            totalSamplesAggregated = 0;
+        }
         contributingPlayers.clear();
     }
     
@@ -331,8 +468,9 @@ public class TacticalWeightAggregator {
      * Check if a mob type has learned tactical knowledge
      */
     public boolean hasLearnedTactics(String mobType) {
-        Map<String, Float> weights = getGlobalWeights(mobType);
-        return !weights.isEmpty() && totalEpisodesAggregated >= 10;
+        Snapshot current = snapshot;
+        int mob = current.indexOf(mobType);
+        return mob >= 0 && current.learned[mob][GLOBAL_SLOT] && totalEpisodesAggregated >= 10;
     }
     
     /**
@@ -340,17 +478,87 @@ public class TacticalWeightAggregator {
      * Returns delta magnitude to show if learning is happening
      */
     public float getDeltaMagnitude(String mobType) {
-        Map<String, Float> weights = getGlobalWeights(mobType);
-        if (weights.isEmpty()) {
+        Snapshot current = snapshot;
+        int mob = current.indexOf(mobType);
+        if (mob < 0) {
             return 0.0f;
         }
         
         // Sum absolute values of weights (proxy for learning activity)
         float magnitude = 0;
-        for (float weight : weights.values()) {
-            magnitude += Math.abs(weight);
+        int count = 0;
+        for (float weight : current.weights[mob][GLOBAL_SLOT]) {
+            if (!Float.isNaN(weight)) {
+                magnitude += Math.abs(weight);
+                count++;
+            }
         }
         
-        return magnitude / weights.size();
+        return count > 0 ? magnitude / count : 0.0f;
+    }
+
+    /**
+     * Copy-on-write editor for a snapshot: mob rows are shared until first written
+     * Only used under writeLock
+     */
+    private static final class Builder {
+        String[] mobTypes;
+        Map<String, Integer> mobIndex;
+        float[][][] weights;
+        boolean[][] learned;
+        private final boolean[] copied;
+        private boolean indexCopied = false;
+
+        Builder(Snapshot base) {
+            this.mobTypes = base.mobTypes;
+            this.mobIndex = base.mobIndex;
+            this.weights = base.weights.clone();
+            this.learned = base.learned.clone();
+            this.copied = new boolean[base.mobTypes.length];
+        }
+
+        /**
+         * Index of a mob type whose rows may be written (adding the type if new)
+         */
+        int mutableMob(String mobType) {
+            Integer existing = mobIndex.get(mobType);
+            if (existing != null) {
+                int mob = existing;
+                if (mob < copied.length && !copied[mob]) {
+                    float[][] rows = new float[weights[mob].length][];
+                    for (int slot = 0; slot < rows.length; slot++) {
+                        rows[slot] = weights[mob][slot].clone();
+                    }
+                    weights[mob] = rows;
+                    learned[mob] = learned[mob].clone();
+                    copied[mob] = true;
+                }
+                return mob;
+            }
+
+            if (!indexCopied) {
+                mobIndex = new HashMap<>(mobIndex);
+                indexCopied = true;
+            }
+            int mob = mobTypes.length;
+            mobTypes = Arrays.copyOf(mobTypes, mob + 1);
+            mobTypes[mob] = mobType;
+            mobIndex.put(mobType, mob);
+
+            float[][] rows = new float[SITUATION_COUNT + 1][ACTION_COUNT];
+            for (float[] row : rows) {
+                Arrays.fill(row, Float.NaN);
+            }
+            weights = Arrays.copyOf(weights, mob + 1);
+            weights[mob] = rows;
+            learned = Arrays.copyOf(learned, mob + 1);
+            learned[mob] = new boolean[SITUATION_COUNT + 1];
+            return mob;
+        }
+
+        Snapshot build() {
+            return new Snapshot(mobTypes, indexCopied ? Collections.unmodifiableMap(mobIndex) : mobIndex,
+                weights, learned);
+        }
     }
 }
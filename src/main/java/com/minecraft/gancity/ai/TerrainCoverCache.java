@@ -0,0 +1,339 @@
+package com.minecraft.gancity.ai;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Per-level cover map: two 4096-bit sets per 16x16x16 chunk section
+ * - solid: BlockState.isSolidRender (full opaque cover)
+ * - occupied: any non-air block
+ *
+ * PERFORMANCE: Terrain queries become bit tests instead of getBlockState() walks
+ * - a section is scanned once, on first query, straight from the loaded chunk
+ *   (never forces a chunk load; unloaded terrain reads as open)
+ * - block changes (NeighborNotifyEvent) drop the affected section only when the
+ *   block's cover bits actually changed, so redstone and other neighbour updates
+ *   that leave solid/occupied as they were never trigger a rescan; chunk unloads
+ *   drop the whole column; sections older than STALE_TICKS are rescanned as a
+ *   safety net for silent setBlock calls
+ * - bit layout is (y << 8 | z << 4 | x), so a 16-block X row is 16 contiguous bits
+ *
+ * NOT thread-safe: server thread only.
+ */
+public final class TerrainCoverCache {
+
+    private static final int STALE_TICKS = 600;
+    private static final int MAX_LINE_STEPS = 256;
+    private static final long[] EMPTY = new long[64];
+    private static final Map<Level, TerrainCoverCache> CACHES = new WeakHashMap<>();
+
+    private static long scans = 0;
+    private static long queries = 0;
+    private static long invalidations = 0;
+
+    private final Level level;
+    private final Long2ObjectOpenHashMap<Section> sections = new Long2ObjectOpenHashMap<>();
+    private final BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
+
+    // One-entry memo: consecutive lookups almost always hit the same section
+    private long lastKey = Long.MIN_VALUE;
+    private Section lastSection;
+
+    private static final class Section {
+        final long[] solid;
+        final long[] occupied;
+        final long scannedAt;
+
+        Section(long[] solid, long[] occupied, long scannedAt) {
+            this.solid = solid;
+            this.occupied = occupied;
+            this.scannedAt = scannedAt;
+        }
+    }
+
+    private TerrainCoverCache(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * Cover map for a server level, or null on the client
+     */
+    public static TerrainCoverCache get(Level level) {
+        if (level == null || level.isClientSide()) {
+            return null;
+        }
+        return CACHES.computeIfAbsent(level, TerrainCoverCache::new);
+    }
+
+    /**
+     * A block was updated - forget the section containing it if the block's cover bits
+     * no longer match its current state
+     */
+    public static void invalidate(LevelAccessor level, BlockPos pos, BlockState state) {
+        TerrainCoverCache cache = CACHES.get(level);
+        if (cache == null) {
+            return;
+        }
+        long key = SectionPos.asLong(
+            SectionPos.blockToSectionCoord(pos.getX()),
+            SectionPos.blockToSectionCoord(pos.getY()),
+            SectionPos.blockToSectionCoord(pos.getZ()));
+        Section section = cache.sections.get(key);
+        if (section == null) {
+            return;  // Not scanned yet - the first query reads the new state anyway
+        }
+        int x = pos.getX();
+        int y = pos.getY();
+        int z = pos.getZ();
+        if (test(section.occupied, x, y, z) == !state.isAir()
+                && test(section.solid, x, y, z) == state.isSolidRender(cache.level, pos)) {
+            return;
+        }
+        cache.forget(key);
+    }
+
+    /**
+     * A chunk unloaded - forget every section in its column
+     */
+    public static void unloadChunk(LevelAccessor level, int chunkX, int chunkZ) {
+        TerrainCoverCache cache = CACHES.get(level);
+        if (cache != null) {
+            for (int sy = cache.level.getMinSection(); sy < cache.level.getMaxSection(); sy++) {
+                cache.forget(SectionPos.asLong(chunkX, sy, chunkZ));
+            }
+        }
+    }
+
+    public static void clear() {
+        CACHES.clear();
+    }
+
+    private void forget(long key) {
+        if (sections.remove(key) != null) {
+            invalidations++;
+        }
+        if (key == lastKey) {
+            lastKey = Long.MIN_VALUE;
+            lastSection = null;
+        }
+    }
+
+    public boolean isSolid(int x, int y, int z) {
+        Section section = section(x, y, z);
+        return section != null && test(section.solid, x, y, z);
+    }
+
+    public boolean isOccupied(int x, int y, int z) {
+        Section section = section(x, y, z);
+        return section != null && test(section.occupied, x, y, z);
+    }
+
+    /**
+     * Any solid block in the square of the given radius around (x, z) at height y,
+     * excluding the centre column - whole 16-bit X rows are masked at once
+     */
+    public boolean anySolidAround(int x, int y, int z, int radius) {
+        queries++;
+        for (int dz = -radius; dz <= radius; dz++) {
+            int rowZ = z + dz;
+            int fromX = x - radius;
+            int toX = x + radius;
+            while (fromX <= toX) {
+                int sectionEnd = Math.min(toX, (fromX & ~15) + 15);
+                Section section = section(fromX, y, rowZ);
+                if (section != null) {
+                    long mask = rowMask(fromX & 15, sectionEnd & 15);
+                    if (dz == 0 && x >= fromX && x <= sectionEnd) {
+                        mask &= ~(1L << (x & 15));
+                    }
+                    if ((row(section.solid, y, rowZ) & mask) != 0) {
+                        return true;
+                    }
+                }
+                fromX = sectionEnd + 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the segment crosses any non-air block (3D DDA over block cells)
+     * Conservative: a true answer may still miss every outline shape, and
+     * unloaded terrain counts as occupied so callers fall through to a real raycast
+     */
+    public boolean lineOccupied(Vec3 from, Vec3 to) {
+        queries++;
+        int x = floor(from.x);
+        int y = floor(from.y);
+        int z = floor(from.z);
+        int endX = floor(to.x);
+        int endY = floor(to.y);
+        int endZ = floor(to.z);
+
+        double dx = to.x - from.x;
+        double dy = to.y - from.y;
+        double dz = to.z - from.z;
+        int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+        int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+        double deltaX = stepX != 0 ? Math.abs(1.0 / dx) : Double.MAX_VALUE;
+        double deltaY = stepY != 0 ? Math.abs(1.0 / dy) : Double.MAX_VALUE;
+        double deltaZ = stepZ != 0 ? Math.abs(1.0 / dz) : Double.MAX_VALUE;
+        double maxX = stepX > 0 ? (x + 1 - from.x) * deltaX : stepX < 0 ? (from.x - x) * deltaX : Double.MAX_VALUE;
+        double maxY = stepY > 0 ? (y + 1 - from.y) * deltaY : stepY < 0 ? (from.y - y) * deltaY : Double.MAX_VALUE;
+        double maxZ = stepZ > 0 ? (z + 1 - from.z) * deltaZ : stepZ < 0 ? (from.z - z) * deltaZ : Double.MAX_VALUE;
+
+        for (int steps = 0; steps < MAX_LINE_STEPS; steps++) {
+            Section section = section(x, y, z);
+            if (section == null ? !outOfHeight(y) : test(section.occupied, x, y, z)) {
+                return true;
+            }
+            if (x == endX && y == endY && z == endZ) {
+                return false;
+            }
+            if (maxX < maxY && maxX < maxZ) {
+                x += stepX;
+                maxX += deltaX;
+            } else if (maxY < maxZ) {
+                y += stepY;
+                maxY += deltaY;
+            } else {
+                z += stepZ;
+                maxZ += deltaZ;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Nearest standable spot raised minRise..maxRise blocks above around
+     * (solid floor, two open blocks above), searched ring by ring out to radius
+     * @return null if there is none
+     */
+    public BlockPos findHighGround(BlockPos around, int radius, int minRise, int maxRise) {
+        queries++;
+        for (int r = 0; r <= radius; r++) {
+            for (int dx = -r; dx <= r; dx++) {
+                for (int dz = -r; dz <= r; dz++) {
+                    if (Math.max(Math.abs(dx), Math.abs(dz)) != r) {
+                        continue;  // Ring only - inner squares were already searched
+                    }
+                    int x = around.getX() + dx;
+                    int z = around.getZ() + dz;
+                    for (int rise = maxRise; rise >= minRise; rise--) {
+                        int y = around.getY() + rise;
+                        if (isSolid(x, y - 1, z) && !isOccupied(x, y, z) && !isOccupied(x, y + 1, z)) {
+                            return new BlockPos(x, y, z);
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private Section section(int x, int y, int z) {
+        int sx = SectionPos.blockToSectionCoord(x);
+        int sy = SectionPos.blockToSectionCoord(y);
+        int sz = SectionPos.blockToSectionCoord(z);
+        long key = SectionPos.asLong(sx, sy, sz);
+        long now = level.getGameTime();
+        if (key == lastKey && now - lastSection.scannedAt < STALE_TICKS) {
+            return lastSection;
+        }
+        Section section = sections.get(key);
+        if (section == null || now - section.scannedAt >= STALE_TICKS) {
+            section = scan(sx, sy, sz, now);
+            if (section == null) {
+                return null;
+            }
+            sections.put(key, section);
+        }
+        lastKey = key;
+        lastSection = section;
+        return section;
+    }
+
+    private Section scan(int sx, int sy, int sz, long now) {
+        if (outOfHeight(SectionPos.sectionToBlockCoord(sy))) {
+            return null;
+        }
+        LevelChunk chunk = level.getChunkSource().getChunkNow(sx, sz);
+        if (chunk == null) {
+            return null;
+        }
+        scans++;
+        LevelChunkSection chunkSection = chunk.getSection(chunk.getSectionIndexFromSectionY(sy));
+        if (chunkSection.hasOnlyAir()) {
+            return new Section(EMPTY, EMPTY, now);
+        }
+
+        long[] solid = new long[64];
+        long[] occupied = new long[64];
+        int baseX = SectionPos.sectionToBlockCoord(sx);
+        int baseY = SectionPos.sectionToBlockCoord(sy);
+        int baseZ = SectionPos.sectionToBlockCoord(sz);
+        for (int ly = 0; ly < 16; ly++) {
+            for (int lz = 0; lz < 16; lz++) {
+                for (int lx = 0; lx < 16; lx++) {
+                    BlockState state = chunkSection.getBlockState(lx, ly, lz);
+                    if (state.isAir()) {
+                        continue;
+                    }
+                    int index = (ly << 8) | (lz << 4) | lx;
+                    occupied[index >>> 6] |= 1L << (index & 63);
+                    cursor.set(baseX + lx, baseY + ly, baseZ + lz);
+                    if (state.isSolidRender(level, cursor)) {
+                        solid[index >>> 6] |= 1L << (index & 63);
+                    }
+                }
+            }
+        }
+        return new Section(solid, occupied, now);
+    }
+
+    private boolean outOfHeight(int y) {
+        return y < level.getMinBuildHeight() || y >= level.getMaxBuildHeight();
+    }
+
+    private static boolean test(long[] bits, int x, int y, int z) {
+        int index = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        return (bits[index >>> 6] & (1L << (index & 63))) != 0;
+    }
+
+    /**
+     * The 16 bits of one X row (four rows share a long)
+     */
+    private static long row(long[] bits, int y, int z) {
+        int index = ((y & 15) << 8) | ((z & 15) << 4);
+        return (bits[index >>> 6] >>> (index & 63)) & 0xFFFFL;
+    }
+
+    private static long rowMask(int fromLocalX, int toLocalX) {
+        return ((1L << (toLocalX - fromLocalX + 1)) - 1) << fromLocalX;
+    }
+
+    private static int floor(double v) {
+        int i = (int) v;
+        return v < i ? i - 1 : i;
+    }
+
+    public static String getStats() {
+        int cached = 0;
+        for (TerrainCoverCache cache : CACHES.values()) {
+            cached += cache.sections.size();
+        }
+        return String.format("Cover map: %d sections | %d scans, %d queries, %d invalidations",
+            cached, scans, queries, invalidations);
+    }
+}
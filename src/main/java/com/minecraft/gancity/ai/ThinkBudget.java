@@ -0,0 +1,134 @@
+package com.minecraft.gancity.ai;
+
+/**
+ * Per-tick AI decision quota driven by server MSPT and measured decision cost
+ *
+ * PERFORMANCE: AI work backs off when the server falls behind
+ * - decision work is timed every tick; an EMA of nanoseconds per decision turns the
+ *   per-tick AI time budget into a decision quota
+ * - the budget is full below SOFT_MSPT and shrinks linearly to MIN_BUDGET_FRACTION
+ *   as the average tick time approaches 50 ms (HARD_MSPT)
+ * - DecisionScheduler hands out at most quota() requests per tick, closest / highest
+ *   tier first; the rest stay queued and keep their current action
+ * - under pressure, goal re-think intervals are stretched by intervalScale()
+ *
+ * The quota is sized once per tick by the end-of-tick decision pass (beginTick) and
+ * also caps unbatched decisions made during the following tick (tryAcquire).
+ *
+ * NOT thread-safe: server thread only.
+ */
+public final class ThinkBudget {
+
+    // Average tick time at which the AI budget starts shrinking / reaches its floor
+    static final float SOFT_MSPT = 40.0f;
+    static final float HARD_MSPT = 50.0f;
+
+    private static final float MIN_BUDGET_FRACTION = 0.1f;
+    private static final float MAX_INTERVAL_SCALE = 4.0f;
+    private static final int MIN_QUOTA = 2;
+    private static final int MAX_QUOTA = 1024;
+    private static final double COST_EMA_ALPHA = 0.1;
+
+    private boolean enabled = true;
+    private long maxBudgetNanos = 5_000_000L;  // 5 ms = 10% of a 50 ms tick
+
+    private float mspt = 0.0f;
+    private float pressure = 0.0f;             // 0 = healthy, 1 = at or over HARD_MSPT
+    private long budgetNanos = maxBudgetNanos;
+    private double nanosPerDecision = 100_000.0;  // conservative until measured
+    private int quota = MAX_QUOTA;
+    private int usedThisTick = 0;
+    private long spentThisTick = 0;
+    private long spentLastTick = 0;
+
+    private long ticks = 0;
+    private long throttledTicks = 0;
+    private long deferred = 0;
+    private int deferredLastTick = 0;
+
+    /**
+     * @param budgetMs AI time allowed per tick while the server is healthy
+     */
+    public void configure(boolean enabled, float budgetMs) {
+        this.enabled = enabled;
+        this.maxBudgetNanos = Math.max(100_000L, (long) (budgetMs * 1_000_000L));
+        this.budgetNanos = maxBudgetNanos;
+    }
+
+    /**
+     * Start of the end-of-tick decision pass: sample MSPT and size this tick's quota
+     * @param averageTickMs MinecraftServer.getAverageTickTime() (0 if unknown)
+     */
+    void beginTick(float averageTickMs) {
+        ticks++;
+        spentLastTick = spentThisTick;
+        spentThisTick = 0;
+        usedThisTick = 0;
+        deferredLastTick = 0;
+        mspt = averageTickMs;
+
+        pressure = Math.max(0.0f, Math.min(1.0f, (mspt - SOFT_MSPT) / (HARD_MSPT - SOFT_MSPT)));
+        budgetNanos = (long) (maxBudgetNanos * (1.0f - pressure * (1.0f - MIN_BUDGET_FRACTION)));
+        if (!enabled) {
+            quota = Integer.MAX_VALUE;
+            return;
+        }
+        quota = (int) Math.max(MIN_QUOTA, Math.min(MAX_QUOTA, budgetNanos / nanosPerDecision));
+        if (pressure > 0.0f) {
+            throttledTicks++;
+        }
+    }
+
+    /**
+     * Decisions still allowed this tick
+     */
+    int remaining() {
+        return Math.max(0, quota - usedThisTick);
+    }
+
+    /**
+     * Claim one unbatched decision slot
+     * @return false if the quota is used up (the caller keeps its current action)
+     */
+    boolean tryAcquire() {
+        if (usedThisTick >= quota) {
+            recordDeferred(1);
+            return false;
+        }
+        usedThisTick++;
+        return true;
+    }
+
+    /**
+     * Account measured decision work; batched passes also consume quota here
+     */
+    void recordDecisions(int decisions, long nanos, boolean batched) {
+        spentThisTick += nanos;
+        if (batched) {
+            usedThisTick += decisions;
+        }
+        if (decisions > 0) {
+            double sample = (double) nanos / decisions;
+            nanosPerDecision += (sample - nanosPerDecision) * COST_EMA_ALPHA;
+        }
+    }
+
+    void recordDeferred(int count) {
+        deferred += count;
+        deferredLastTick += count;
+    }
+
+    /**
+     * Multiplier for goal re-think intervals (1 when healthy, up to MAX_INTERVAL_SCALE)
+     */
+    public float intervalScale() {
+        return enabled ? 1.0f + pressure * (MAX_INTERVAL_SCALE - 1.0f) : 1.0f;
+    }
+
+    public String getStats() {
+        return String.format("Think budget: %.1f mspt, AI %.2f/%.2f ms, quota %d (%.0f us/decision) | %d deferred (%d last tick), %d/%d ticks throttled",
+            mspt, spentLastTick / 1_000_000.0, budgetNanos / 1_000_000.0,
+            enabled ? quota : -1, nanosPerDecision / 1000.0,
+            deferred, deferredLastTick, throttledTicks, ticks);
+    }
+}
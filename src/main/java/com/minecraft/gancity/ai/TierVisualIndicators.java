@@ -1,6 +1,7 @@
 package com.minecraft.gancity.ai;
 
 import com.minecraft.gancity.ai.MobBehaviorAI.AITier;
+import com.minecraft.gancity.network.TierParticleBatcher;
 import net.minecraft.core.particles.DustParticleOptions;
 import net.minecraft.core.particles.ParticleTypes;
 import net.minecraft.server.level.ServerLevel;
@@ -18,6 +19,7 @@ public class TierVisualIndicators {
     /**
      * Spawn tier particle effects around a mob
      * Called periodically (every few seconds) to show mob intelligence level
+     * Queued and sent once per player per tick by TierParticleBatcher (client draws the ring)
      */
     public static void spawnTierParticles(Mob mob, AITier tier, ServerLevel level) {
         if (mob == null || tier == null || level == null) {
@@ -29,42 +31,14 @@ public class TierVisualIndicators {
             return;
         }
         
-        Vec3 pos = mob.position().add(0, mob.getBbHeight() / 2.0, 0);
-        DustParticleOptions particleData = getTierParticleColor(tier);
-        
-        // Number of particles based on tier
-        int particleCount = getParticleCount(tier);
-        
-        // Spawn particles in a ring around the mob
-        for (int i = 0; i < particleCount; i++) {
-            double angle = (2 * Math.PI * i) / particleCount;
-            double radius = 0.5;
-            
-            double xOffset = Math.cos(angle) * radius;
-            double zOffset = Math.sin(angle) * radius;
-            double yOffset = (Math.random() - 0.5) * 0.3;
-            
-            level.sendParticles(
-                particleData,
-                pos.x + xOffset,
-                pos.y + yOffset,
-                pos.z + zOffset,
-                1,  // count
-                0, 0, 0,  // offset
-                0.02  // speed
-            );
-        }
-        
-        // MASTER tier gets extra glow effect
-        if (tier == AITier.MASTER) {
-            spawnGlowEffect(mob, level);
-        }
+        // Ring (plus MASTER glow) is drawn client-side from the batched packet
+        TierParticleBatcher.queueAITier(level, mob, tier);
     }
     
     /**
      * Get particle color based on tier
      */
-    private static DustParticleOptions getTierParticleColor(AITier tier) {
+    public static DustParticleOptions getTierParticleColor(AITier tier) {
         Vector3f color;
         float size = 1.0f;
         
@@ -100,7 +74,7 @@ public class TierVisualIndicators {
     /**
      * Get number of particles based on tier
      */
-    private static int getParticleCount(AITier tier) {
+    public static int getParticleCount(AITier tier) {
         switch (tier) {
             case UNTRAINED:
                 return 0;
@@ -117,30 +91,6 @@ public class TierVisualIndicators {
         }
     }
     
-    /**
-     * Spawn special glow effect for MASTER tier mobs
-     */
-    private static void spawnGlowEffect(Mob mob, ServerLevel level) {
-        Vec3 pos = mob.position().add(0, mob.getBbHeight() / 2.0, 0);
-        
-        // Spawn enchantment glint particles
-        for (int i = 0; i < 2; i++) {
-            double xOffset = (Math.random() - 0.5) * mob.getBbWidth();
-            double yOffset = (Math.random() - 0.5) * mob.getBbHeight();
-            double zOffset = (Math.random() - 0.5) * mob.getBbWidth();
-            
-            level.sendParticles(
-                ParticleTypes.ENCHANT,
-                pos.x + xOffset,
-                pos.y + yOffset,
-                pos.z + zOffset,
-                1,
-                0, 0.1, 0,
-                0.5
-            );
-        }
-    }
-    
     /**
      * Spawn celebration particles when a mob tiers up
      */
@@ -0,0 +1,151 @@
+package com.minecraft.gancity.ai;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.level.Level;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Per-level registry of mobs that have been assigned a TacticTier
+ *
+ * PERFORMANCE: Replaces level.getAllEntities() scans + persistent NBT reads
+ * - membership is maintained by entity join/leave events (see MobTierAssignmentHandler
+ *   and GANCityMod.onEntityLeaveLevel), levels are held weakly
+ * - the tier is cached when the mob joins, so tier lookups are a hash probe
+ *   instead of getPersistentData().getString() + TacticTier.fromName()
+ * - ELITE mobs are also kept in a dense array, so the particle pass can walk
+ *   them in round-robin slices (forEachEliteSlice) instead of all at once
+ *
+ * NOT thread-safe: server thread only.
+ */
+public final class TieredMobRegistry {
+
+    private static final Map<Level, TieredMobRegistry> REGISTRIES = new WeakHashMap<>();
+
+    private final Reference2ObjectOpenHashMap<Mob, TacticTier> tiers = new Reference2ObjectOpenHashMap<>();
+    // Elites in a dense array (swap-remove) + their positions, for sliced iteration
+    private final Reference2IntOpenHashMap<Mob> eliteIndex = new Reference2IntOpenHashMap<>();
+    private Mob[] elites = new Mob[16];
+    private int eliteCount = 0;
+    private int cursor = 0;
+
+    private TieredMobRegistry() {
+        eliteIndex.defaultReturnValue(-1);
+    }
+
+    /**
+     * Record a mob's tier (EntityJoinLevelEvent, after the tier is known)
+     */
+    public static void register(Mob mob, TacticTier tier) {
+        Level level = mob.level();
+        if (level.isClientSide()) {
+            return;
+        }
+        TieredMobRegistry registry = REGISTRIES.computeIfAbsent(level, l -> new TieredMobRegistry());
+        TacticTier previous = registry.tiers.put(mob, tier);
+        if (previous == TacticTier.ELITE && tier != TacticTier.ELITE) {
+            registry.removeElite(mob);
+        } else if (tier == TacticTier.ELITE && previous != TacticTier.ELITE) {
+            registry.addElite(mob);
+        }
+    }
+
+    /**
+     * Forget a mob (EntityLeaveLevelEvent)
+     */
+    public static void unregister(Mob mob) {
+        TieredMobRegistry registry = REGISTRIES.get(mob.level());
+        if (registry != null && registry.tiers.remove(mob) == TacticTier.ELITE) {
+            registry.removeElite(mob);
+        }
+    }
+
+    /**
+     * Cached tier of a mob, or null if it is not registered
+     */
+    public static TacticTier tierOf(Mob mob) {
+        TieredMobRegistry registry = REGISTRIES.get(mob.level());
+        return registry != null ? registry.tiers.get(mob) : null;
+    }
+
+    public static void clear() {
+        REGISTRIES.clear();
+    }
+
+    /**
+     * Registry for a level, or null if no tiered mob has joined it
+     */
+    public static TieredMobRegistry get(Level level) {
+        return REGISTRIES.get(level);
+    }
+
+    public int eliteCount() {
+        return eliteCount;
+    }
+
+    /**
+     * Elite at a dense index in [0, eliteCount()); order changes as elites leave
+     */
+    public Mob elite(int index) {
+        return elites[index];
+    }
+
+    /**
+     * Visit the next slice of a level's elites, so that every elite is visited once
+     * per sliceCount calls
+     */
+    public static void forEachEliteSlice(Level level, int sliceCount, Consumer<Mob> action) {
+        TieredMobRegistry registry = REGISTRIES.get(level);
+        if (registry == null || registry.eliteCount == 0) {
+            return;
+        }
+        int count = registry.eliteCount;
+        int slice = (count + sliceCount - 1) / sliceCount;
+        for (int i = 0; i < slice && registry.eliteCount > 0; i++) {
+            if (registry.cursor >= registry.eliteCount) {
+                registry.cursor = 0;
+            }
+            Mob mob = registry.elites[registry.cursor++];
+            if (!mob.isRemoved()) {
+                action.accept(mob);
+            }
+        }
+    }
+
+    private void addElite(Mob mob) {
+        if (eliteCount == elites.length) {
+            elites = Arrays.copyOf(elites, elites.length * 2);
+        }
+        eliteIndex.put(mob, eliteCount);
+        elites[eliteCount++] = mob;
+    }
+
+    private void removeElite(Mob mob) {
+        int index = eliteIndex.removeInt(mob);
+        if (index < 0) {
+            return;
+        }
+        Mob last = elites[--eliteCount];
+        elites[eliteCount] = null;
+        if (index != eliteCount) {
+            elites[index] = last;
+            eliteIndex.put(last, index);
+        }
+    }
+
+    public static String getStats() {
+        int tiered = 0;
+        int elite = 0;
+        for (TieredMobRegistry registry : REGISTRIES.values()) {
+            tiered += registry.tiers.size();
+            elite += registry.eliteCount;
+        }
+        return String.format("Tier registry: %d tiered mobs (%d elite) in %d levels",
+            tiered, elite, REGISTRIES.size());
+    }
+}
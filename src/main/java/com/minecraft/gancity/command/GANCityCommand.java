@@ -1,10 +1,13 @@
 package com.minecraft.gancity.command;
 
 import com.minecraft.gancity.GANCityMod;
+import com.minecraft.gancity.ai.ElitePackCoordinator;
 import com.minecraft.gancity.ai.MobBehaviorAI;
+import com.minecraft.gancity.ai.TieredMobRegistry;
 import com.minecraft.gancity.ai.VillagerDialogueAI;
 import com.minecraft.gancity.compat.ModCompatibility;
 import com.minecraft.gancity.mca.MCAIntegration;
+import com.minecraft.gancity.network.TierParticleBatcher;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
@@ -204,6 +207,15 @@ public class GANCityCommand {
             source.sendSuccess(() -> Component.literal("  Status: §cDisabled§r"), false);
         }
         
+        source.sendSuccess(() -> Component.literal(""), false);
+        source.sendSuccess(() -> Component.literal("§eMob Tiers:§r"), false);
+        String tierStats = TieredMobRegistry.getStats();
+        source.sendSuccess(() -> Component.literal("  " + tierStats), false);
+        String particleStats = TierParticleBatcher.getStats();
+        source.sendSuccess(() -> Component.literal("  " + particleStats), false);
+        String packStats = ElitePackCoordinator.getStats();
+        source.sendSuccess(() -> Component.literal("  " + packStats), false);
+        
         if (MCAIntegration.isMCALoaded() && dialogueAI != null) {
             source.sendSuccess(() -> Component.literal(""), false);
             source.sendSuccess(() -> Component.literal("§eVillager Dialogue AI:§r"), false);
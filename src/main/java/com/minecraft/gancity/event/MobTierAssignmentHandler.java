@@ -1,10 +1,12 @@
 package com.minecraft.gancity.event;
 
 import com.minecraft.gancity.GANCityMod;
+import com.minecraft.gancity.ai.ElitePackCoordinator;
 import com.minecraft.gancity.ai.GenericRangedWeaponGoal;
 import com.minecraft.gancity.ai.TacticTier;
+import com.minecraft.gancity.ai.TieredMobRegistry;
+import com.minecraft.gancity.network.TierParticleBatcher;
 import com.mojang.logging.LogUtils;
-import net.minecraft.core.particles.ParticleTypes;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.entity.Entity;
@@ -23,9 +25,7 @@ import net.minecraftforge.fml.ModList;
 import net.minecraftforge.fml.common.Mod;
 import org.slf4j.Logger;
 
-import java.util.Comparator;
 import java.util.EnumSet;
-import java.util.List;
 import java.util.Random;
 
 /**
@@ -82,6 +82,9 @@ public class MobTierAssignmentHandler {
     private static final String UNIVERSAL_WEAPONS_TAG = "AdaptiveMobAI_UniversalWeapons";
     private static final String GENERIC_RANGED_GOAL_TAG = "AdaptiveMobAI_GenericRangedGoal";
     
+    // Ticks between particle bursts for each elite mob (0.5 seconds)
+    private static final int PARTICLE_INTERVAL = 10;
+    
     // Compatibility status logged on first use (lazy initialization prevents classloading deadlock)
     
     /**
@@ -116,6 +119,7 @@ public class MobTierAssignmentHandler {
             // Even if tier is already assigned, we still want to apply universal weapon capability
             // exactly once for older mobs that predate the feature.
             applyUniversalWeaponRulesOnce(mob);
+            TieredMobRegistry.register(mob, readTier(mob));
             return;
         }
         
@@ -131,6 +135,7 @@ public class MobTierAssignmentHandler {
         CompoundTag persistentData = mob.getPersistentData();
         persistentData.putString(TIER_TAG, tier.getName());
         persistentData.putBoolean(TIER_ASSIGNED_TAG, true);
+        TieredMobRegistry.register(mob, tier);
         
         // Apply difficulty multiplier to mob stats
         applyTierModifiers(mob, tier);
@@ -317,9 +322,14 @@ public class MobTierAssignmentHandler {
     }
     
     /**
-     * Get tier from mob entity
+     * Get tier from mob entity (cached by TieredMobRegistry, NBT fallback)
      */
     public static TacticTier getTierFromMob(Mob mob) {
+        TacticTier cached = TieredMobRegistry.tierOf(mob);
+        return cached != null ? cached : readTier(mob);
+    }
+    
+    private static TacticTier readTier(Mob mob) {
         CompoundTag data = mob.getPersistentData();
         
         if (data.contains(TIER_TAG)) {
@@ -342,7 +352,8 @@ public class MobTierAssignmentHandler {
     /**
      * AI Goal that makes elite mobs coordinate with nearby allies
      * Elite mobs will stick together and focus fire on targets
-     * Player-aware: packs form around the closest player target
+     * Player-aware: packs form around the player their leader is hunting
+     * (pack membership and leader come from ElitePackCoordinator)
      */
     static class ElitePackCoordinationGoal extends Goal {
         private final Mob mob;
@@ -364,68 +375,28 @@ public class MobTierAssignmentHandler {
             }
             coordinationCooldown = 20;
             
-            // First, determine our current target player (if any)
-            LivingEntity currentTarget = mob.getTarget();
-            Player focusPlayer = null;
-            
-            if (currentTarget instanceof Player) {
-                focusPlayer = (Player) currentTarget;
-            } else {
-                // If we don't have a player target, find the nearest player
-                focusPlayer = mob.level().getNearestPlayer(mob, 16.0);
-            }
-            
-            // If no player nearby, don't coordinate
-            if (focusPlayer == null) {
+            // Packs are clustered once per tick for the whole level - just read our assignment
+            ElitePackCoordinator packs = ElitePackCoordinator.get(mob.level());
+            if (packs == null) {
                 return false;
             }
             
-            final Player finalFocusPlayer = focusPlayer;
-            
-            // Find nearby elite allies within 16 blocks that are also focused on the same player
-            // or don't have a target yet (can join our pack)
-            List<Mob> nearbyAllies = mob.level().getEntitiesOfClass(
-                Mob.class,
-                mob.getBoundingBox().inflate(16.0),
-                ally -> {
-                    if (ally == mob || !(ally instanceof Enemy) || !hasTier(ally) || 
-                        getTierFromMob(ally) != TacticTier.ELITE || ally.isDeadOrDying()) {
-                        return false;
-                    }
-                    
-                    // Only form pack with allies focused on same player or without target
-                    LivingEntity allyTarget = ally.getTarget();
-                    return allyTarget == null || 
-                           allyTarget == finalFocusPlayer ||
-                           (allyTarget instanceof Player && 
-                            ally.distanceToSqr(finalFocusPlayer) < ally.distanceToSqr(allyTarget));
-                }
-            );
-            
-            if (nearbyAllies.isEmpty()) {
+            // No pack, or we lead it (don't join a pack, let others follow us)
+            Mob leader = packs.leaderOf(mob);
+            if (leader == null || !(leader.getTarget() instanceof Player leaderTarget)) {
                 return false;
             }
             
-            // Find the strongest nearby elite as pack leader (must be targeting same player)
-            packLeader = nearbyAllies.stream()
-                .filter(ally -> ally.getTarget() == finalFocusPlayer)
-                .max(Comparator.comparingDouble(Mob::getHealth))
-                .orElse(null);
-            
-            // If no pack leader has the target yet, become the leader yourself
-            if (packLeader == null && mob.getTarget() == finalFocusPlayer) {
-                // Don't join a pack, let others follow us
+            // Same bounds canContinueToUse enforces, so the goal doesn't start only to stop
+            if (mob.distanceToSqr(leader) >= 256.0 || mob.distanceToSqr(leaderTarget) >= 576.0) {
                 return false;
             }
             
-            // Share target with pack leader if they have one
-            if (packLeader != null && packLeader.getTarget() instanceof Player) {
-                sharedTarget = packLeader.getTarget();
-                targetPlayer = (Player) sharedTarget;
-                return true;
-            }
-            
-            return false;
+            // Share target with pack leader
+            packLeader = leader;
+            sharedTarget = leaderTarget;
+            targetPlayer = leaderTarget;
+            return true;
         }
         
         @Override
@@ -486,11 +457,14 @@ public class MobTierAssignmentHandler {
      * Check if mob has been assigned a tier
      */
     public static boolean hasTier(Mob mob) {
-        return mob.getPersistentData().getBoolean(TIER_ASSIGNED_TAG);
+        return TieredMobRegistry.tierOf(mob) != null || mob.getPersistentData().getBoolean(TIER_ASSIGNED_TAG);
     }
     
     /**
-     * Spawn particles around elite mobs every few ticks
+     * Spawn particles around elite mobs
+     * Each elite gets particles every PARTICLE_INTERVAL ticks (0.5 seconds); the registry's
+     * elites are walked in round-robin slices so the work is spread evenly over those ticks
+     * Flames are drawn client-side from TierParticleBatcher's per-player packet
      */
     @SubscribeEvent
     public static void onServerTick(TickEvent.ServerTickEvent event) {
@@ -498,39 +472,12 @@ public class MobTierAssignmentHandler {
             return;
         }
         
-        // Only check every 10 ticks (0.5 seconds) for performance
-        if (event.getServer().getTickCount() % 10 != 0) {
-            return;
-        }
-        
-        // Spawn particles for all elite mobs in all dimensions
+        // Spawn particles for this tick's slice of elite mobs in all dimensions
         for (ServerLevel level : event.getServer().getAllLevels()) {
-            for (Entity entity : level.getAllEntities()) {
-                if (entity instanceof Mob mob && hasTier(mob)) {
-                    TacticTier tier = getTierFromMob(mob);
-                    
-                    if (tier == TacticTier.ELITE) {
-                        // Spawn red flame particles in a circle around elite mobs
-                        double radius = 0.5;
-                        for (int i = 0; i < 3; i++) {
-                            double angle = RANDOM.nextDouble() * Math.PI * 2;
-                            double offsetX = Math.cos(angle) * radius;
-                            double offsetZ = Math.sin(angle) * radius;
-                            double offsetY = RANDOM.nextDouble() * mob.getBbHeight();
-                            
-                            level.sendParticles(
-                                ParticleTypes.FLAME,
-                                mob.getX() + offsetX,
-                                mob.getY() + offsetY,
-                                mob.getZ() + offsetZ,
-                                1, // particle count
-                                0.0, 0.05, 0.0, // velocity spread
-                                0.01 // speed
-                            );
-                        }
-                    }
-                }
-            }
+            TieredMobRegistry.forEachEliteSlice(level, PARTICLE_INTERVAL, mob -> TierParticleBatcher.queueElite(level, mob));
         }
+        
+        // One packet per player for everything queued this tick
+        TierParticleBatcher.flush();
     }
 }
@@ -1,5 +1,7 @@
 package com.minecraft.gancity.mixin;
 
+import com.minecraft.gancity.ai.CombatGoalBridge;
+import com.minecraft.gancity.ai.TerrainCoverCache;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.entity.Mob;
 import net.minecraft.world.entity.ai.goal.Goal;
@@ -46,18 +48,14 @@ public abstract class MobAIEnhancementMixin {
     // Forge classes can crash the game before Forge is initialized.
     private static Boolean iceAndFireLoaded = null;
     
-    // Reflection helpers to avoid importing MobBehaviorAI (which imports ml.* which imports DJL)
-    private static Class<?> mobStateClass = null;
-    private static java.lang.reflect.Constructor<?> mobStateConstructor = null;
-    
-    private static void initReflection() {
-        if (mobStateClass == null) {
-            try {
-                mobStateClass = Class.forName("com.minecraft.gancity.ai.MobBehaviorAI$MobState");
-                mobStateConstructor = mobStateClass.getConstructor(float.class, float.class, float.class);
-            } catch (Exception e) {
-                System.err.println("Failed to initialize MobBehaviorAI reflection: " + e);
-            }
+    // Typed bridge into MobBehaviorAI (resolved reflectively once per goal so this
+    // mixin never links MobBehaviorAI, which imports ml.* which imports DJL)
+    private static CombatGoalBridge tryGetGoalBridge() {
+        try {
+            Class<?> bridgeClass = Class.forName("com.minecraft.gancity.ai.AIBridge");
+            return (CombatGoalBridge) bridgeClass.getMethod("goalBridge").invoke(null);
+        } catch (Throwable ignored) {
+            return null;
         }
     }
 
@@ -176,12 +174,16 @@ public abstract class MobAIEnhancementMixin {
         private int ticksUntilNextAction;
         private int ticksUntilNextAIUpdate;  // CRITICAL: Throttle AI decisions
         private String currentAction = "straight_charge";
-        private final Object behaviorAI;  // MobBehaviorAI instance (use Object to avoid import)
+        private final CombatGoalBridge behaviorAI;  // Resolved once; no reflection on the hot path
         private final String mobId;  // Unique ID for this mob instance
         private String persistentProfile = null;  // Villager's permanent tactical profile (MCA or vanilla)
         private float initialMobHealth;
         private float initialTargetHealth;
         private int combatTicks = 0;
+        private String pendingMobType = null;  // Set while a batched decision is outstanding
+        private final String classMobType;      // getSimpleName().toLowerCase(), computed once
+        private Object cachedBiomeHolder = null;
+        private String cachedBiome = "unknown";
         
         private static final int AI_UPDATE_INTERVAL = 20; // AI updates every 20 ticks (1 second)
         
@@ -193,10 +195,9 @@ public abstract class MobAIEnhancementMixin {
             this.enableEnvironmentalTactics = enableEnvironmental;
             this.isVillager = isVillager;
             this.setFlags(EnumSet.of(Goal.Flag.MOVE, Goal.Flag.LOOK));
-            this.behaviorAI = tryGetMobBehaviorAI();
+            this.behaviorAI = tryGetGoalBridge();
             this.mobId = mob.getUUID().toString();
-            
-            initReflection();  // Initialize reflection for MobState creation
+            this.classMobType = mob.getClass().getSimpleName().toLowerCase();
             
             // VILLAGERS: Assign permanent tactical profile on creation (MCA or vanilla)
             if (isVillager) {
@@ -276,14 +277,9 @@ public abstract class MobAIEnhancementMixin {
             
             if (behaviorAI != null) {
                 try {
-                    // Start sequence tracking for advanced ML (old system)
-                    java.lang.reflect.Method startSeqMethod = behaviorAI.getClass().getMethod("startCombatSequence", String.class);
-                    startSeqMethod.invoke(behaviorAI, mobId);
-                    
-                    // Start tactical episode tracking (NEW SYSTEM)
+                    // Start sequence tracking (old system) and tactical episode (NEW SYSTEM)
                     String mobType = mob.getType().getDescription().getString().toLowerCase();
-                    java.lang.reflect.Method startEpisodeMethod = behaviorAI.getClass().getMethod("startCombatEpisode", String.class, String.class, int.class);
-                    startEpisodeMethod.invoke(behaviorAI, mobId, mobType, mob.tickCount);
+                    behaviorAI.startCombat(mobId, mobType, mob.tickCount);
                 } catch (Exception e) {
                     // Silently fail
                 }
@@ -302,8 +298,6 @@ public abstract class MobAIEnhancementMixin {
                     // End sequence tracking and submit to Cloudflare (old system)
                     String mobType = mob.getType().getDescription().getString().toLowerCase();
                     String outcome = determineOutcome();
-                    java.lang.reflect.Method endSeqMethod = behaviorAI.getClass().getMethod("endCombatSequence", String.class, String.class, String.class);
-                    endSeqMethod.invoke(behaviorAI, mobId, mobType, outcome);
                     
                     // End tactical episode (NEW SYSTEM)
                     boolean mobKilled = !mob.isAlive();
@@ -311,8 +305,7 @@ public abstract class MobAIEnhancementMixin {
                     String playerId = (target instanceof net.minecraft.world.entity.player.Player) 
                         ? target.getUUID().toString() 
                         : "npc";
-                    java.lang.reflect.Method endEpisodeMethod = behaviorAI.getClass().getMethod("endCombatEpisode", String.class, boolean.class, boolean.class, int.class, String.class);
-                    endEpisodeMethod.invoke(behaviorAI, mobId, targetKilled, mobKilled, mob.tickCount, playerId);
+                    behaviorAI.endCombat(mobId, mobType, outcome, targetKilled, mobKilled, mob.tickCount, playerId);
                 } catch (Exception e) {
                     // Silently fail
                 }
@@ -321,6 +314,7 @@ public abstract class MobAIEnhancementMixin {
             this.target = null;
             this.mob.getNavigation().stop();
             this.combatTicks = 0;
+            this.pendingMobType = null;
         }
         
         /**
@@ -346,11 +340,15 @@ public abstract class MobAIEnhancementMixin {
             
             this.mob.getLookControl().setLookAt(this.target, 30.0F, 30.0F);
             
+            // Collect the batched decision queued on an earlier tick
+            if (pendingMobType != null) {
+                pollPendingAction();
+            }
+            
             // TACTICAL EPISODE: Sample every 10 ticks (0.5s)
             if (behaviorAI != null && combatTicks % 10 == 0 && target instanceof net.minecraft.world.entity.player.Player) {
                 try {
-                    java.lang.reflect.Method recordSampleMethod = behaviorAI.getClass().getMethod("recordTacticalSample", String.class, Mob.class, net.minecraft.world.entity.player.Player.class, int.class);
-                    recordSampleMethod.invoke(behaviorAI, mobId, mob, (net.minecraft.world.entity.player.Player) target, 0);
+                    behaviorAI.recordTacticalSample(mobId, mob, (net.minecraft.world.entity.player.Player) target, 0.0f);
                 } catch (Exception e) {
                     // Silently fail
                 }
@@ -364,7 +362,10 @@ public abstract class MobAIEnhancementMixin {
                     this.ticksUntilNextAction = 20 + mob.getRandom().nextInt(20); // 1-2 seconds
                 }
                 
-                this.ticksUntilNextAIUpdate = AI_UPDATE_INTERVAL;
+                // Stretched by the think budget while the server is behind
+                this.ticksUntilNextAIUpdate = behaviorAI != null
+                    ? (int) (AI_UPDATE_INTERVAL * behaviorAI.thinkIntervalScale())
+                    : AI_UPDATE_INTERVAL;
             }
             
             // Execute current action (lightweight, can run every tick)
@@ -378,38 +379,35 @@ public abstract class MobAIEnhancementMixin {
             if (behaviorAI == null || target == null) return;
             
             try {
-                // Build final state using reflection
-                Object finalState = mobStateConstructor.newInstance(
-                    mob.getHealth() / mob.getMaxHealth(),
-                    target.getHealth() / target.getMaxHealth(),
-                    (float) mob.distanceTo(target)
-                );
-                
-                // Set fields using reflection
-                java.lang.reflect.Field combatTimeField = mobStateClass.getField("combatTime");
-                combatTimeField.set(finalState, combatTicks / 20.0f);
-                
-                java.lang.reflect.Field isNightField = mobStateClass.getField("isNight");
-                isNightField.set(finalState, !mob.level().isDay());
-                
-                java.lang.reflect.Field biomeField = mobStateClass.getField("biome");
-                biomeField.set(finalState, mob.level().getBiome(mob.blockPosition()).toString());
-                
                 // Check outcomes
                 boolean mobDied = !mob.isAlive();
                 boolean playerDied = !target.isAlive();
                 
                 // Record for learning with mob entity for attribute correlation tracking
-                java.lang.reflect.Method recordMethod = behaviorAI.getClass().getMethod(
-                    "recordCombatOutcome", String.class, boolean.class, boolean.class, 
-                    mobStateClass, float.class, float.class, Mob.class
-                );
-                recordMethod.invoke(behaviorAI, mobId, playerDied, mobDied, finalState, 0.0f, 0.0f, mob);
+                behaviorAI.recordCombatOutcome(mobId, mob, playerDied, mobDied,
+                    mob.getHealth() / mob.getMaxHealth(),
+                    target.getHealth() / target.getMaxHealth(),
+                    (float) mob.distanceTo(target),
+                    !mob.level().isDay(),
+                    currentBiome(),
+                    combatTicks / 20.0f);
             } catch (Exception e) {
                 // Silently fail - don't break gameplay
             }
         }
         
+        /**
+         * Biome string for the mob's position, only rebuilt when the biome holder changes
+         */
+        private String currentBiome() {
+            Object holder = mob.level().getBiome(mob.blockPosition());
+            if (holder != cachedBiomeHolder) {
+                cachedBiomeHolder = holder;
+                cachedBiome = holder.toString();
+            }
+            return cachedBiome;
+        }
+        
         /**
          * Select next action using AI with mob instance tracking
          * VILLAGERS: Use persistent profile for consistent behavior (MCA or vanilla)
@@ -418,29 +416,6 @@ public abstract class MobAIEnhancementMixin {
             if (target == null || behaviorAI == null) return;
             
             try {
-                // Build current state using reflection
-                Object state = mobStateConstructor.newInstance(
-                    mob.getHealth() / mob.getMaxHealth(),
-                    target.getHealth() / target.getMaxHealth(),
-                    (float) mob.distanceTo(target)
-                );
-                
-                // Set fields
-                java.lang.reflect.Field isNightField = mobStateClass.getField("isNight");
-                isNightField.set(state, !mob.level().isDay());
-                
-                java.lang.reflect.Field biomeField = mobStateClass.getField("biome");
-                biomeField.set(state, mob.level().getBiome(mob.blockPosition()).toString());
-                
-                java.lang.reflect.Field combatTimeField = mobStateClass.getField("combatTime");
-                combatTimeField.set(state, combatTicks / 20.0f);
-                
-                // Special abilities
-                if (mob instanceof Spider) {
-                    java.lang.reflect.Field canClimbField = mobStateClass.getField("canClimbWalls");
-                    canClimbField.set(state, true);
-                }
-                
                 // Get mob type
                 String mobType;
                 if (isVillager && persistentProfile != null) {
@@ -448,38 +423,60 @@ public abstract class MobAIEnhancementMixin {
                     mobType = persistentProfile;
                 } else {
                     // Regular mobs use class-based type
-                    mobType = mob.getClass().getSimpleName().toLowerCase();
+                    mobType = classMobType;
                 }
                 
                 // AI selects action with contextual difficulty (pass mob entity for environmental context)
-                String previousAction = currentAction;
-                java.lang.reflect.Method selectMethod = behaviorAI.getClass().getMethod(
-                    "selectMobActionWithEntity", String.class, mobStateClass, String.class, Mob.class
-                );
-                currentAction = (String) selectMethod.invoke(behaviorAI, mobType, state, mobId, mob);
-                
-                // Track action in sequence (calculate reward based on health changes)
-                if (previousAction != null && !previousAction.equals(currentAction)) {
-                    double reward = calculateActionReward();
-                    java.lang.reflect.Method trackMethod = behaviorAI.getClass().getMethod(
-                        "trackActionInSequence", String.class, String.class, double.class
-                    );
-                    trackMethod.invoke(behaviorAI, mobId, previousAction, reward);
-
-                    // Federated learning: also record per-action outcomes (if supported).
-                    // Kept reflection-safe for backwards compatibility.
-                    try {
-                        java.lang.reflect.Method perAction = behaviorAI.getClass().getMethod(
-                            "recordPerActionOutcome", String.class, String.class, double.class, Mob.class
-                        );
-                        perAction.invoke(behaviorAI, mobType, previousAction, reward, mob);
-                    } catch (Exception ignored) {
-                        // Optional method; ignore if not present
-                    }
+                // Batched: the request is evaluated with every other mob at the end of this tick
+                // and picked up by pollPendingAction(); keep the current action until then
+                String action = behaviorAI.requestAction(mobType, mobId, mob,
+                    mob.getHealth() / mob.getMaxHealth(),
+                    target.getHealth() / target.getMaxHealth(),
+                    (float) mob.distanceTo(target),
+                    !mob.level().isDay(),
+                    currentBiome(),
+                    combatTicks / 20.0f,
+                    mob instanceof Spider);  // Special abilities
+                if (action != null) {
+                    applyAction(action, mobType);
+                } else {
+                    pendingMobType = mobType;
                 }
             } catch (Exception e) {
                 // Silently fail - use default action
                 currentAction = "straight_charge";
+                pendingMobType = null;
+            }
+        }
+        
+        /**
+         * Apply a finished batched decision, if it is ready
+         */
+        private void pollPendingAction() {
+            try {
+                String action = behaviorAI.pollAction(mobId);
+                if (action != null) {
+                    String mobType = pendingMobType;
+                    pendingMobType = null;
+                    applyAction(action, mobType);
+                }
+            } catch (Exception e) {
+                pendingMobType = null;
+            }
+        }
+        
+        /**
+         * Switch to a newly selected action and credit the one it replaces
+         */
+        private void applyAction(String action, String mobType) {
+            String previousAction = currentAction;
+            currentAction = action;
+            
+            // Track action in sequence (calculate reward based on health changes)
+            if (previousAction != null && !previousAction.equals(currentAction)) {
+                double reward = calculateActionReward();
+                // Sequence tracking + federated per-action outcome
+                behaviorAI.trackAction(mobId, mobType, previousAction, reward, mob);
             }
         }
         
@@ -661,6 +658,13 @@ public abstract class MobAIEnhancementMixin {
             // Find blocks in line of sight
             net.minecraft.world.phys.Vec3 start = mob.position();
             net.minecraft.world.phys.Vec3 end = target.position();
+            
+            // Cover map: skip the raycast when every cell on the line is air
+            TerrainCoverCache cover = TerrainCoverCache.get(serverLevel);
+            if (cover != null && !cover.lineOccupied(start, end)) {
+                return;
+            }
+            
             net.minecraft.world.phys.BlockHitResult hit = serverLevel.clip(
                 new net.minecraft.world.level.ClipContext(start, end, 
                     net.minecraft.world.level.ClipContext.Block.OUTLINE,
@@ -710,8 +714,11 @@ public abstract class MobAIEnhancementMixin {
         private void climbToAdvantage() {
             if (target == null) return;
             
-            // Find higher ground near target
-            net.minecraft.core.BlockPos targetPos = target.blockPosition().above(3);
+            // Find higher ground near target: a real ledge from the cover map if there is one
+            TerrainCoverCache cover = TerrainCoverCache.get(mob.level());
+            net.minecraft.core.BlockPos ledge = cover != null
+                ? cover.findHighGround(target.blockPosition(), 4, 2, 4) : null;
+            net.minecraft.core.BlockPos targetPos = ledge != null ? ledge : target.blockPosition().above(3);
             mob.getNavigation().moveTo(targetPos.getX(), targetPos.getY(), targetPos.getZ(), speedModifier * 1.2);
         }
         
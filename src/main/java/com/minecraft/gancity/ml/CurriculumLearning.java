@@ -1,5 +1,6 @@
 package com.minecraft.gancity.ml;
 
+import com.minecraft.gancity.ai.ActionRegistry;
 import com.mojang.logging.LogUtils;
 import org.slf4j.Logger;
 
@@ -17,6 +18,7 @@ public class CurriculumLearning {
     private static final int STAGE_THRESHOLD = 200;  // Experiences per stage
     
     private final Map<Stage, List<String>> stageActions = new HashMap<>();
+    private final Map<Stage, BitSet> stageActionSets = new EnumMap<>(Stage.class);
     private final Map<Stage, Float> stageDifficulty = new HashMap<>();
     
     public enum Stage {
@@ -79,6 +81,10 @@ public class CurriculumLearning {
         ));
         stageDifficulty.put(Stage.EXPERT, 2.0f);
         
+        for (Map.Entry<Stage, List<String>> entry : stageActions.entrySet()) {
+            stageActionSets.put(entry.getKey(), ActionRegistry.setOf(entry.getValue()));
+        }
+        
         LOGGER.info("Curriculum learning initialized at stage: {}", currentStage);
     }
     
@@ -90,19 +96,14 @@ public class CurriculumLearning {
     }
     
     /**
-     * Filter actions based on current curriculum stage
+     * Filter an action ordinal set to the current curriculum stage, in place
+     * Leaves the set untouched if the stage would remove every action
      */
-    public List<String> filterActionsByStage(List<String> allActions) {
-        List<String> stageAvailable = getCurrentStageActions();
-        List<String> filtered = new ArrayList<>();
-        
-        for (String action : allActions) {
-            if (stageAvailable.contains(action)) {
-                filtered.add(action);
-            }
+    public void filterActionsByStage(BitSet actions) {
+        BitSet stageAvailable = stageActionSets.get(currentStage);
+        if (stageAvailable != null && actions.intersects(stageAvailable)) {
+            actions.and(stageAvailable);
         }
-        
-        return filtered.isEmpty() ? allActions : filtered;
     }
     
     /**
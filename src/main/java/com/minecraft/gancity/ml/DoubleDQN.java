@@ -12,33 +12,90 @@ import ai.djl.training.tracker.Tracker;
 import ai.djl.ndarray.NDArray;
 import ai.djl.ndarray.NDList;
 import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.index.NDIndex;
+import ai.djl.ndarray.types.DataType;
 import ai.djl.ndarray.types.Shape;
+import ai.djl.training.GradientCollector;
+import ai.djl.training.ParameterStore;
 import com.mojang.logging.LogUtils;
 import org.slf4j.Logger;
 
 import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Double DQN implementation - separate policy and target networks
  * Reduces overestimation bias and improves learning stability
+ *
+ * PERFORMANCE: Mini-batch training
+ * - batch is stacked into [B, stateDim] tensors (one bulk copy each)
+ * - one policy forward over [states; nextStates], one target forward over nextStates
+ * - IS-weighted squared TD loss, real gradient step via trainer.step()
+ *
+ * PERFORMANCE: Inference sessions
+ * - action selection runs on an immutable copy of the policy weights
+ * - the copy is rebuilt and swapped atomically on every target sync
+ * - each thread keeps one InferenceSession (bound Predictor + input buffer)
+ *   and rebinds only when the weight generation changes
+ * - optional pure-Java backend: each snapshot is also exported to a FlatQNetwork,
+ *   so decisions can skip the native engine entirely (training stays on DJL)
+ *
+ * PERFORMANCE: Saving
+ * - checkpoint() copies the parameters (~6k floats per network) under the training
+ *   lock at auto-save capture; Checkpoint.save() serializes the copy on the auto-save
+ *   thread without the lock, so a slow disk never stalls training or the server tick
  */
 public class DoubleDQN {
     private static final Logger LOGGER = LogUtils.getLogger();
     
-    private static final int INPUT_SIZE = 10;
+    // state(10) + visual(9) + genome(3) - must match MobBehaviorAI.combineFeatures
+    private static final int INPUT_SIZE = PrioritizedReplayBuffer.DEFAULT_STATE_DIM;
     private static final int HIDDEN_SIZE = 64;
     private static final int OUTPUT_SIZE = 10;
     private static final float LEARNING_RATE = 0.001f;
+    private static final float GAMMA = 0.99f;
     
     private Model policyNetwork;
     private Model targetNetwork;
     private NDManager manager;
     private Trainer trainer;
-    private int updateCounter = 0;
+    private volatile int updateCounter = 0;
     private static final int TARGET_UPDATE_FREQUENCY = 100;
-    private boolean initialized = false;
+    private volatile boolean initialized = false;
+    private final Object trainLock = new Object();  // Server thread and MobAI-Training may both train
+    
+    // Inference weights, published atomically after each target sync
+    private volatile InferenceSnapshot inferenceSnapshot;
+    private long snapshotGeneration = 0;
+    private final ThreadLocal<InferenceSession> inferenceSessions = new ThreadLocal<>();
+    private final AtomicLong inferenceCalls = new AtomicLong();
+    private final AtomicLong inferenceNanos = new AtomicLong();
+    
+    // Pure-Java inference (selected by config, falls back to DJL until weights exist)
+    private volatile InferenceBackend inferenceBackend = InferenceBackend.DJL;
+    private volatile FlatQNetwork flatPolicy;
+    private Path pendingLoad;  // Saved DJL networks not loaded yet (guarded by this)
+    
+    /**
+     * Where action selection runs
+     */
+    public enum InferenceBackend {
+        DJL,   // Native PyTorch via DJL predictor
+        JAVA;  // FlatQNetwork exported from the policy weights
+        
+        public static InferenceBackend fromConfig(String value) {
+            if (value != null && value.trim().equalsIgnoreCase("java")) {
+                return JAVA;
+            }
+            return DJL;
+        }
+    }
     
     public DoubleDQN() {
         // Lazy initialization - only create when first needed
@@ -49,14 +106,24 @@ public class DoubleDQN {
             synchronized (this) {
                 if (!initialized) {
                     manager = NDManager.newBaseManager();
-                    createNetworks();
+                    Path deferred = pendingLoad;
+                    pendingLoad = null;
+                    // Fresh weights are only published when no saved weights are about to replace them
+                    createNetworks(deferred == null);
+                    if (deferred != null) {
+                        loadDeferred(deferred);
+                    }
                     initialized = true;
                 }
             }
         }
     }
     
-    private void createNetworks() {
+    /**
+     * @param publish copy the fresh policy to the target network and publish it for
+     *                inference (false when a deferred load will replace both right away)
+     */
+    private void createNetworks(boolean publish) {
         // Policy network (actively trained)
         policyNetwork = Model.newInstance("policy-network");
         Block policyBlock = buildNetwork();
@@ -75,12 +142,14 @@ public class DoubleDQN {
         trainer.initialize(new Shape(1, INPUT_SIZE));
         
         // Copy initial weights to target network
-        syncTargetNetwork();
+        if (publish) {
+            syncTargetNetwork();
+        }
         
         LOGGER.info("Double DQN initialized with separate policy and target networks");
     }
     
-    private Block buildNetwork() {
+    private static Block buildNetwork() {
         return new SequentialBlock()
             .add(Linear.builder().setUnits(HIDDEN_SIZE).build())
             .add(ai.djl.nn.Activation::relu)
@@ -121,19 +190,150 @@ public class DoubleDQN {
     public void updateStep() {
         updateCounter++;
         if (updateCounter % TARGET_UPDATE_FREQUENCY == 0) {
-            syncTargetNetwork();
+            synchronized (trainLock) {
+                syncTargetNetwork();
+            }
             LOGGER.debug("Target network synced at step {}", updateCounter);
         }
     }
     
     private void syncTargetNetwork() {
+        syncTargetNetwork(true);
+    }
+    
+    /**
+     * @param exportFlat also replace the flat policy with the synced weights
+     */
+    private void syncTargetNetwork(boolean exportFlat) {
         try {
             // Copy policy network weights to target network
             Path tempPath = Files.createTempDirectory("ddqn");
-            policyNetwork.save(tempPath, "policy");
-            targetNetwork.load(tempPath, "policy");
-            Files.walk(tempPath)
-                .sorted((a, b) -> -a.compareTo(b))
+            try {
+                policyNetwork.save(tempPath, "policy");
+                targetNetwork.load(tempPath, "policy");
+                publishInferenceSnapshot(tempPath, exportFlat);
+            } finally {
+                deleteTempDir(tempPath);
+            }
+        } catch (IOException | ai.djl.MalformedModelException e) {
+            LOGGER.error("Failed to sync target network", e);
+        }
+    }
+    
+    /**
+     * Rebuild inference weights from the current policy network
+     */
+    private void refreshInferenceSnapshot() {
+        try {
+            Path tempPath = Files.createTempDirectory("ddqn");
+            try {
+                policyNetwork.save(tempPath, "policy");
+                publishInferenceSnapshot(tempPath, true);
+            } finally {
+                deleteTempDir(tempPath);
+            }
+        } catch (IOException | ai.djl.MalformedModelException e) {
+            LOGGER.error("Failed to refresh inference weights", e);
+        }
+    }
+    
+    /**
+     * Load saved policy weights into a fresh model and swap it in atomically
+     * Threads still predicting on the old weights keep them alive until they rebind
+     *
+     * @param exportFlat also replace the flat policy (false while it holds better weights)
+     */
+    private void publishInferenceSnapshot(Path savedPolicy, boolean exportFlat)
+            throws IOException, ai.djl.MalformedModelException {
+        Model inferenceModel = Model.newInstance("policy-inference");
+        inferenceModel.setBlock(buildNetwork());
+        try {
+            inferenceModel.load(savedPolicy, "policy");
+        } catch (IOException | ai.djl.MalformedModelException | RuntimeException e) {
+            inferenceModel.close();
+            throw e;
+        }
+        
+        // Export the same weights for the pure-Java backend
+        if (exportFlat) {
+            try {
+                flatPolicy = exportFlatPolicy(inferenceModel);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not export flat policy weights: {}", e.getMessage());
+            }
+        }
+        
+        InferenceSnapshot previous;
+        synchronized (this) {
+            previous = inferenceSnapshot;
+            inferenceSnapshot = new InferenceSnapshot(inferenceModel, ++snapshotGeneration);
+        }
+        if (previous != null) {
+            previous.release();  // Drop the publisher's reference
+        }
+    }
+    
+    /**
+     * Copy Linear layer parameters (weight [out, in], bias [out]) into flat arrays
+     */
+    private static FlatQNetwork exportFlatPolicy(Model model) {
+        List<float[]> weights = new java.util.ArrayList<>();
+        List<float[]> biases = new java.util.ArrayList<>();
+        List<int[]> shapes = new java.util.ArrayList<>();
+        
+        for (ai.djl.util.Pair<String, ai.djl.nn.Parameter> entry : model.getBlock().getParameters()) {
+            ai.djl.nn.Parameter parameter = entry.getValue();
+            NDArray array = parameter.getArray();
+            if (parameter.getType() == ai.djl.nn.Parameter.Type.WEIGHT) {
+                Shape shape = array.getShape();
+                shapes.add(new int[] {(int) shape.get(1), (int) shape.get(0)});
+                weights.add(array.toFloatArray());
+            } else if (parameter.getType() == ai.djl.nn.Parameter.Type.BIAS) {
+                biases.add(array.toFloatArray());
+            }
+        }
+        
+        int layers = weights.size();
+        int[] in = new int[layers];
+        int[] out = new int[layers];
+        for (int l = 0; l < layers; l++) {
+            in[l] = shapes.get(l)[0];
+            out[l] = shapes.get(l)[1];
+        }
+        return new FlatQNetwork(weights.toArray(new float[0][]), biases.toArray(new float[0][]), in, out);
+    }
+    
+    public void setInferenceBackend(InferenceBackend backend) {
+        this.inferenceBackend = backend != null ? backend : InferenceBackend.DJL;
+        LOGGER.info("DQN inference backend: {}", this.inferenceBackend);
+    }
+    
+    public InferenceBackend getInferenceBackend() {
+        return inferenceBackend;
+    }
+    
+    /**
+     * Install pure-Java weights (e.g. loaded from disk before the native engine is touched)
+     */
+    public void setFlatPolicy(FlatQNetwork network) {
+        if (network != null && (network.inputSize() != INPUT_SIZE || network.outputSize() != OUTPUT_SIZE)) {
+            LOGGER.warn("Ignoring flat policy with shape {}->{} (expected {}->{})",
+                network.inputSize(), network.outputSize(), INPUT_SIZE, OUTPUT_SIZE);
+            return;
+        }
+        this.flatPolicy = network;
+    }
+    
+    /**
+     * Flat policy to use right now, or null when decisions should go through DJL
+     */
+    private FlatQNetwork activeFlatPolicy() {
+        return inferenceBackend == InferenceBackend.JAVA ? flatPolicy : null;
+    }
+    
+    private static void deleteTempDir(Path tempPath) throws IOException {
+        try (java.util.stream.Stream<Path> paths = Files.walk(tempPath)) {
+            paths.sorted((a, b) -> -a.compareTo(b))
                 .forEach(path -> {
                     try {
                         Files.deleteIfExists(path);
@@ -141,8 +341,186 @@ public class DoubleDQN {
                         // Ignore
                     }
                 });
-        } catch (IOException | ai.djl.MalformedModelException e) {
-            LOGGER.error("Failed to sync target network", e);
+        }
+    }
+    
+    /**
+     * This thread's inference session, rebound if newer weights were published
+     */
+    private InferenceSession currentSession() {
+        InferenceSession session = inferenceSessions.get();
+        while (true) {
+            InferenceSnapshot snapshot = inferenceSnapshot;
+            if (snapshot == null) {
+                return null;
+            }
+            if (session != null && session.getVersion() == snapshot.generation) {
+                return session;
+            }
+            if (!snapshot.retain()) {
+                continue;  // Retired between read and retain - pick up the newer one
+            }
+            if (session != null) {
+                session.close();
+            }
+            session = new InferenceSession(snapshot.model, INPUT_SIZE, snapshot.generation, snapshot::release);
+            inferenceSessions.set(session);
+            return session;
+        }
+    }
+    
+    /**
+     * Q-values for one state on the current inference weights
+     * Falls back to a direct policy forward before the first snapshot exists
+     */
+    public float[] predictQValues(float[] state) {
+        long start = System.nanoTime();
+        try {
+            FlatQNetwork flat = activeFlatPolicy();
+            if (flat != null) {
+                return flat.predict(state);  // No native engine involved
+            }
+            ensureInitialized();
+            InferenceSession session = currentSession();
+            if (session != null) {
+                return session.predict(state);
+            }
+            try (NDManager localManager = manager.newSubManager()) {
+                return predictQValues(localManager, padState(state)).toFloatArray();
+            }
+        } catch (ai.djl.translate.TranslateException e) {
+            LOGGER.error("Inference failed: {}", e.getMessage());
+            return new float[OUTPUT_SIZE];
+        } finally {
+            inferenceNanos.addAndGet(System.nanoTime() - start);
+            inferenceCalls.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Q-values for n states in one forward pass (per-tick batched decisions)
+     * Rows should be packed with {@link #packState} so they are padded and finite
+     *
+     * @param states row-major [n * getInputSize()]
+     * @param out receives row-major [n * getOutputSize()]
+     */
+    public void predictQValuesBatch(float[] states, int n, float[] out) {
+        if (n <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            FlatQNetwork flat = activeFlatPolicy();
+            if (flat != null) {
+                flat.forwardBatch(states, n, out);
+                return;
+            }
+            ensureInitialized();
+            InferenceSession session = currentSession();
+            if (session != null) {
+                session.predictBatch(states, n, out);
+                return;
+            }
+            try (NDManager localManager = manager.newSubManager()) {
+                NDArray input = localManager.create(FloatBuffer.wrap(states, 0, n * INPUT_SIZE), new Shape(n, INPUT_SIZE));
+                float[] qValues = policyNetwork.getBlock().forward(
+                    new ParameterStore(localManager, false),
+                    new NDList(input),
+                    false
+                ).singletonOrThrow().toFloatArray();
+                System.arraycopy(qValues, 0, out, 0, qValues.length);
+            }
+        } catch (ai.djl.translate.TranslateException e) {
+            LOGGER.error("Batched inference failed: {}", e.getMessage());
+            java.util.Arrays.fill(out, 0, n * OUTPUT_SIZE, 0.0f);
+        } finally {
+            inferenceNanos.addAndGet(System.nanoTime() - start);
+            inferenceCalls.addAndGet(n);
+        }
+    }
+    
+    /**
+     * Copy a state into row `row` of a packed batch matrix (zero-padded, NaN/Inf scrubbed)
+     */
+    public static void packState(float[] state, float[] matrix, int row) {
+        int offset = row * INPUT_SIZE;
+        copyPadded(state, matrix, offset);
+        for (int i = offset; i < offset + INPUT_SIZE; i++) {
+            float v = matrix[i];
+            if (Float.isNaN(v) || Float.isInfinite(v)) {
+                matrix[i] = 0.0f;
+            }
+        }
+    }
+    
+    public int getInputSize() {
+        return INPUT_SIZE;
+    }
+    
+    public int getOutputSize() {
+        return OUTPUT_SIZE;
+    }
+    
+    private static float[] padState(float[] state) {
+        if (state != null && state.length == INPUT_SIZE) {
+            return state;
+        }
+        float[] padded = new float[INPUT_SIZE];
+        copyPadded(state, padded, 0);
+        return padded;
+    }
+    
+    /**
+     * Generation of the published inference weights (0 before the first publish)
+     * Threads holding a session bound to an older generation pin its native model
+     */
+    public long inferenceGeneration() {
+        InferenceSnapshot snapshot = inferenceSnapshot;
+        return snapshot != null ? snapshot.generation : 0L;
+    }
+    
+    /**
+     * Inference latency summary for /amai stats
+     */
+    public String getInferenceStats() {
+        long calls = inferenceCalls.get();
+        double avgMicros = calls > 0 ? (inferenceNanos.get() / 1000.0) / calls : 0.0;
+        InferenceSnapshot snapshot = inferenceSnapshot;
+        return String.format("Inference[%s]: %d calls, %.1fus avg, weights gen %d",
+            activeFlatPolicy() != null ? "java" : "djl",
+            calls, avgMicros, snapshot != null ? snapshot.generation : 0);
+    }
+    
+    /**
+     * Immutable inference weights with a reference count
+     * The model is closed once the publisher and every bound session have released it
+     */
+    private static final class InferenceSnapshot {
+        final Model model;
+        final long generation;
+        private final AtomicInteger refs = new AtomicInteger(1);  // Publisher's reference
+        
+        InferenceSnapshot(Model model, long generation) {
+            this.model = model;
+            this.generation = generation;
+        }
+        
+        boolean retain() {
+            while (true) {
+                int current = refs.get();
+                if (current <= 0) {
+                    return false;
+                }
+                if (refs.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+        
+        void release() {
+            if (refs.decrementAndGet() == 0) {
+                model.close();
+            }
         }
     }
     
@@ -158,40 +536,126 @@ public class DoubleDQN {
      * Select action index based on Q-values (epsilon-greedy)
      */
     public int selectActionIndex(float[] state) {
-        ensureInitialized();
-        try (NDManager localManager = NDManager.newBaseManager()) {
-            NDArray qValues = predictQValues(localManager, state);
-            return (int) qValues.argMax().getLong();
+        FlatQNetwork flat = activeFlatPolicy();
+        if (flat != null) {
+            long start = System.nanoTime();
+            int best = flat.argMax(state);
+            inferenceNanos.addAndGet(System.nanoTime() - start);
+            inferenceCalls.incrementAndGet();
+            return best;
         }
+        float[] qValues = predictQValues(state);
+        int best = 0;
+        for (int i = 1; i < qValues.length; i++) {
+            if (qValues[i] > qValues[best]) {
+                best = i;
+            }
+        }
+        return best;
     }
     
     /**
-     * Train on a batch of experiences
+     * Train on a batch of experiences (legacy object list, uniform weights)
+     * Packs the list into columns and delegates to the batched path
      */
-    public float[] trainBatch(java.util.List<PrioritizedReplayBuffer.Experience> experiences) {
-        ensureInitialized();
+    public float[] trainBatch(List<PrioritizedReplayBuffer.Experience> experiences) {
         if (experiences.isEmpty()) {
             return new float[0];
         }
         
-        float[] tdErrors = new float[experiences.size()];
+        int n = experiences.size();
+        ExperienceStore.Batch batch = new ExperienceStore.Batch();
+        batch.ensureCapacity(n, INPUT_SIZE);
+        for (int i = 0; i < n; i++) {
+            PrioritizedReplayBuffer.Experience exp = experiences.get(i);
+            copyPadded(exp.state, batch.states, i * INPUT_SIZE);
+            copyPadded(exp.nextState, batch.nextStates, i * INPUT_SIZE);
+            batch.actions[i] = exp.action;
+            batch.rewards[i] = exp.reward;
+            batch.dones[i] = exp.done;
+        }
+        batch.size = n;
         
-        try (NDManager localManager = NDManager.newBaseManager()) {
-            for (int i = 0; i < experiences.size(); i++) {
-                PrioritizedReplayBuffer.Experience exp = experiences.get(i);
+        return trainBatch(batch, null);
+    }
+    
+    /**
+     * Train on a prioritized sample, weighting the loss by its importance-sampling weights
+     * Returned TD errors line up with sample.prioritizedExperiences for updatePriorities
+     */
+    public float[] trainBatch(PrioritizedReplayBuffer.SampledBatch sample) {
+        int n = sample.batch.size;
+        float[] weights = new float[n];
+        for (int i = 0; i < n; i++) {
+            weights[i] = sample.weights.get(i);
+        }
+        return trainBatch(sample.batch, weights);
+    }
+    
+    /**
+     * Batched Double DQN update - two network forwards per batch instead of two per sample
+     * 
+     * target = r + gamma * (1 - done) * Q_target(s', argmax_a Q_policy(s', a))
+     * loss   = mean(w * (target - Q_policy(s, a))^2)
+     * 
+     * @param batch packed transitions, stateDim must equal the network input size
+     * @param isWeights importance-sampling weights per row, or null for uniform
+     * @return absolute TD error per row (for priority updates)
+     */
+    public float[] trainBatch(ExperienceStore.Batch batch, float[] isWeights) {
+        ensureInitialized();
+        int n = batch.size;
+        if (n == 0) {
+            return new float[0];
+        }
+        if (batch.stateDim != INPUT_SIZE) {
+            throw new IllegalArgumentException("Batch state width " + batch.stateDim + " != network input " + INPUT_SIZE);
+        }
+        
+        float[] tdErrors;
+        synchronized (trainLock) {
+            try (NDManager batchManager = manager.newSubManager()) {
+                // Single bulk copy per column
+                NDArray states = batchManager.create(batch.stateBuffer(), new Shape(n, INPUT_SIZE));
+                NDArray nextStates = batchManager.create(batch.nextStateBuffer(), new Shape(n, INPUT_SIZE));
+                NDArray actions = batchManager.create(IntBuffer.wrap(batch.actions, 0, n), new Shape(n));
+                NDArray rewards = batchManager.create(FloatBuffer.wrap(batch.rewards, 0, n), new Shape(n));
+                float[] notDone = new float[n];
+                for (int i = 0; i < n; i++) {
+                    notDone[i] = batch.dones[i] ? 0.0f : 1.0f;
+                }
+                NDArray notDoneMask = batchManager.create(notDone);
+                NDArray weights = isWeights != null
+                    ? batchManager.create(FloatBuffer.wrap(isWeights, 0, n), new Shape(n))
+                    : batchManager.ones(new Shape(n));
                 
-                // Compute target Q-value
-                NDArray currentQ = predictQValues(localManager, exp.state);
-                NDArray nextQ = getTargetQValues(localManager, exp.nextState);
+                // Target network: one forward over next states (no gradient)
+                NDArray targetNextQ = targetNetwork.getBlock().forward(
+                    new ParameterStore(batchManager, false),
+                    new NDList(nextStates),
+                    false
+                ).singletonOrThrow();
                 
-                float target = exp.reward;
-                if (!exp.done) {
-                    target += 0.99f * nextQ.max().getFloat();
+                try (GradientCollector collector = trainer.newGradientCollector()) {
+                    // Policy network: one forward over [states; nextStates]
+                    NDArray allQ = trainer.forward(new NDList(states.concat(nextStates, 0))).singletonOrThrow();
+                    NDArray currentQ = allQ.get(new NDIndex("0:{}", n));
+                    NDArray nextPolicyQ = allQ.get(new NDIndex("{}:", n));
+                    
+                    // Double DQN: policy picks the next action, target evaluates it
+                    // argMax yields indices, so no gradient flows through the target
+                    NDArray nextActions = nextPolicyQ.argMax(1);
+                    NDArray nextValues = targetNextQ.mul(nextActions.oneHot(OUTPUT_SIZE)).sum(new int[] {1});
+                    NDArray targets = rewards.add(nextValues.mul(notDoneMask).mul(GAMMA));
+                    
+                    NDArray takenQ = currentQ.mul(actions.oneHot(OUTPUT_SIZE)).sum(new int[] {1});
+                    NDArray td = targets.sub(takenQ);
+                    NDArray loss = td.square().mul(weights).mean();
+                    
+                    collector.backward(loss);
+                    tdErrors = td.abs().toFloatArray();
                 }
-                
-                // TD error for prioritization
-                float currentQValue = currentQ.getFloat(exp.action);
-                tdErrors[i] = Math.abs(target - currentQValue);
+                trainer.step();
             }
         }
         
@@ -199,17 +663,197 @@ public class DoubleDQN {
         return tdErrors;
     }
     
+    private static void copyPadded(float[] src, float[] dst, int offset) {
+        int len = src != null ? Math.min(src.length, INPUT_SIZE) : 0;
+        if (len > 0) {
+            System.arraycopy(src, 0, dst, offset, len);
+        }
+        java.util.Arrays.fill(dst, offset + len, offset + INPUT_SIZE, 0.0f);
+    }
+    
+    /**
+     * Write both networks (and flat weights) as they are now
+     */
     public void save(Path path) throws IOException {
-        policyNetwork.save(path, "policy");
-        targetNetwork.save(path, "target");
+        checkpoint().save(path);
     }
     
+    /**
+     * Copy both networks' parameters and the flat weights (cheap; call at save capture)
+     * Before the native engine has started only the flat weights are captured - there has
+     * been no training, and starting PyTorch just to save would defeat the java backend
+     */
+    public Checkpoint checkpoint() {
+        FlatQNetwork flat = flatPolicy;
+        if (!initialized) {
+            return new Checkpoint(null, null, flat);
+        }
+        synchronized (trainLock) {
+            return new Checkpoint(copyParameters(policyNetwork), copyParameters(targetNetwork), flat);
+        }
+    }
+    
+    private static float[][] copyParameters(Model model) {
+        ai.djl.util.PairList<String, ai.djl.nn.Parameter> parameters = model.getBlock().getParameters();
+        float[][] copy = new float[parameters.size()][];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = parameters.valueAt(i).getArray().toFloatArray();
+        }
+        return copy;
+    }
+    
+    /**
+     * Parameter copy of both networks, taken at capture time
+     * save() rebuilds throwaway models from it, so it needs no lock and never touches
+     * the live networks
+     */
+    public static final class Checkpoint {
+        private final float[][] policy;  // null before the native engine started
+        private final float[][] target;
+        private final FlatQNetwork flat;
+        
+        private Checkpoint(float[][] policy, float[][] target, FlatQNetwork flat) {
+            this.policy = policy;
+            this.target = target;
+            this.flat = flat;
+        }
+        
+        public void save(Path path) throws IOException {
+            if (policy != null) {
+                write(path, "policy", policy);
+                write(path, "target", target);
+            }
+            if (flat != null) {
+                flat.save(path.resolve(FlatQNetwork.FILE_NAME));
+            }
+        }
+        
+        private static void write(Path path, String name, float[][] parameters) throws IOException {
+            try (Model model = Model.newInstance(name)) {
+                Block block = buildNetwork();
+                model.setBlock(block);
+                block.initialize(model.getNDManager(), DataType.FLOAT32, new Shape(1, INPUT_SIZE));
+                ai.djl.util.PairList<String, ai.djl.nn.Parameter> params = block.getParameters();
+                if (params.size() != parameters.length) {
+                    throw new IOException("Checkpoint has " + parameters.length + " parameters, network has " + params.size());
+                }
+                for (int i = 0; i < parameters.length; i++) {
+                    params.valueAt(i).getArray().set(FloatBuffer.wrap(parameters[i]));
+                }
+                model.save(path, name);
+            }
+        }
+    }
+    
+    /**
+     * Training steps taken so far (auto-save skips the networks if this has not moved)
+     */
+    public int trainingSteps() {
+        return updateCounter;
+    }
+    
+    /**
+     * Load saved networks
+     * With the java backend and flat weights already in place (ModelPersistence loads
+     * those first) the native load is deferred until training or a DJL forward pass
+     * first needs the engine, so a server that only makes decisions never starts PyTorch
+     */
     public void load(Path path) throws IOException, ai.djl.MalformedModelException {
+        synchronized (this) {
+            if (!initialized && inferenceBackend == InferenceBackend.JAVA && flatPolicy != null) {
+                pendingLoad = path;
+                LOGGER.info("Deferring DJL network load until first native use (java inference backend)");
+                return;
+            }
+        }
+        ensureInitialized();
         policyNetwork.load(path, "policy");
         targetNetwork.load(path, "target");
+        refreshInferenceSnapshot();
+    }
+    
+    /**
+     * Close the calling thread's inference session, if it has one
+     * Threads that predicted and are about to exit must call this: the session pins
+     * its snapshot's native model until closed
+     */
+    public void releaseThreadSession() {
+        InferenceSession session = inferenceSessions.get();
+        if (session != null) {
+            session.close();
+            inferenceSessions.remove();
+        }
+    }
+    
+    /**
+     * Deferred part of load(), run once the networks exist and before anything is published
+     * A failure here can no longer disable ML: the networks are seeded from the flat
+     * policy that was loaded instead, and the flat policy itself is never replaced by
+     * fresh weights
+     */
+    private void loadDeferred(Path path) {
+        boolean trained;
+        try {
+            policyNetwork.load(path, "policy");
+            targetNetwork.load(path, "target");
+            trained = true;
+            LOGGER.info("Loaded deferred DoubleDQN networks from {}", path);
+        } catch (IOException | ai.djl.MalformedModelException | RuntimeException e) {
+            trained = seedFromFlatPolicy();
+            LOGGER.error(trained
+                ? "Failed to load saved DoubleDQN networks, continuing from the flat policy weights"
+                : "Failed to load saved DoubleDQN networks, continuing with fresh networks (flat policy kept)", e);
+        }
+        if (trained) {
+            refreshInferenceSnapshot();
+        } else {
+            syncTargetNetwork(false);
+        }
+    }
+    
+    /**
+     * Copy the flat policy into both networks (same layout as exportFlatPolicy)
+     *
+     * @return false if there is no flat policy or its layers do not fit the networks
+     */
+    private boolean seedFromFlatPolicy() {
+        FlatQNetwork flat = flatPolicy;
+        if (flat == null) {
+            return false;
+        }
+        try {
+            copyFlatPolicy(flat, policyNetwork);
+            copyFlatPolicy(flat, targetNetwork);
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not seed networks from flat policy weights: {}", e.getMessage());
+            return false;
+        }
+    }
+    
+    private static void copyFlatPolicy(FlatQNetwork flat, Model model) {
+        int weightLayer = 0;
+        int biasLayer = 0;
+        for (ai.djl.util.Pair<String, ai.djl.nn.Parameter> entry : model.getBlock().getParameters()) {
+            ai.djl.nn.Parameter parameter = entry.getValue();
+            if (parameter.getType() == ai.djl.nn.Parameter.Type.WEIGHT) {
+                parameter.getArray().set(FloatBuffer.wrap(flat.layerWeights(weightLayer++)));
+            } else if (parameter.getType() == ai.djl.nn.Parameter.Type.BIAS) {
+                parameter.getArray().set(FloatBuffer.wrap(flat.layerBiases(biasLayer++)));
+            }
+        }
+        if (weightLayer != flat.layerCount() || biasLayer != flat.layerCount()) {
+            throw new IllegalStateException("Flat policy has " + flat.layerCount() + " layers, network has " + weightLayer);
+        }
     }
     
     public void close() {
+        releaseThreadSession();
+        InferenceSnapshot snapshot = inferenceSnapshot;
+        inferenceSnapshot = null;
+        if (snapshot != null) {
+            snapshot.release();
+        }
         if (trainer != null) trainer.close();
         if (policyNetwork != null) policyNetwork.close();
         if (targetNetwork != null) targetNetwork.close();
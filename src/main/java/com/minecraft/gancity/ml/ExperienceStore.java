@@ -0,0 +1,257 @@
+package com.minecraft.gancity.ml;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Columnar (struct-of-arrays) ring storage for replay transitions
+ *
+ * PERFORMANCE: One flat primitive column per field instead of one object per transition
+ * - state / next-state: float[capacity * stateDim], row-major by slot
+ * - action: int[], reward: float[], done: BitSet
+ * - append() copies into the columns and allocates nothing
+ * - transitions are addressed by int slot (index-based views)
+ * - gather() packs a batch into a reusable {@link Batch} whose state columns
+ *   can be handed to DJL's NDManager.create(Buffer, Shape) as a single bulk copy
+ *
+ * NOT thread-safe: owners (PrioritizedReplayBuffer, PerformanceOptimizer) guard access.
+ */
+public class ExperienceStore {
+
+    private final int capacity;
+    private final int stateDim;
+    private final float[] states;
+    private final float[] nextStates;
+    private final int[] actions;
+    private final float[] rewards;
+    private final BitSet done;
+    private int writeIndex = 0;
+    private int count = 0;
+
+    public ExperienceStore(int capacity, int stateDim) {
+        if (capacity <= 0 || stateDim <= 0) {
+            throw new IllegalArgumentException("Invalid experience store shape: " + capacity + "x" + stateDim);
+        }
+        this.capacity = capacity;
+        this.stateDim = stateDim;
+        this.states = new float[capacity * stateDim];
+        this.nextStates = new float[capacity * stateDim];
+        this.actions = new int[capacity];
+        this.rewards = new float[capacity];
+        this.done = new BitSet(capacity);
+    }
+
+    /**
+     * Append a transition, overwriting the oldest slot when full
+     * Inputs shorter than stateDim are zero-padded, longer ones truncated
+     *
+     * @return slot the transition was written to
+     */
+    public int append(float[] state, int action, float reward, float[] nextState, boolean isDone) {
+        int slot = writeIndex;
+        write(slot, state, action, reward, nextState, isDone);
+        writeIndex = (writeIndex + 1) % capacity;
+        if (count < capacity) {
+            count++;
+        }
+        return slot;
+    }
+
+    /**
+     * Overwrite a specific slot (used when restoring persisted data)
+     */
+    public void write(int slot, float[] state, int action, float reward, float[] nextState, boolean isDone) {
+        copyRow(state, states, slot);
+        copyRow(nextState, nextStates, slot);
+        actions[slot] = action;
+        rewards[slot] = reward;
+        done.set(slot, isDone);
+    }
+
+    /**
+     * Append a transition whose state rows are read from src at the given byte offsets
+     * (absolute little-endian reads, e.g. from a loaded replay file - no intermediate arrays)
+     *
+     * @return slot the transition was written to
+     */
+    public int appendFrom(ByteBuffer src, int stateOffset, int nextStateOffset,
+                          int action, float reward, boolean isDone) {
+        int slot = writeIndex;
+        int base = slot * stateDim;
+        for (int k = 0; k < stateDim; k++) {
+            states[base + k] = src.getFloat(stateOffset + 4 * k);
+            nextStates[base + k] = src.getFloat(nextStateOffset + 4 * k);
+        }
+        actions[slot] = action;
+        rewards[slot] = reward;
+        done.set(slot, isDone);
+        writeIndex = (writeIndex + 1) % capacity;
+        if (count < capacity) {
+            count++;
+        }
+        return slot;
+    }
+
+    private void copyRow(float[] src, float[] column, int slot) {
+        int base = slot * stateDim;
+        int len = src != null ? Math.min(src.length, stateDim) : 0;
+        if (len > 0) {
+            System.arraycopy(src, 0, column, base, len);
+        }
+        if (len < stateDim) {
+            Arrays.fill(column, base + len, base + stateDim, 0.0f);
+        }
+    }
+
+    public int action(int slot) {
+        return actions[slot];
+    }
+
+    public float reward(int slot) {
+        return rewards[slot];
+    }
+
+    public boolean isDone(int slot) {
+        return done.get(slot);
+    }
+
+    /**
+     * Copy one state row into dst at dstOffset
+     */
+    public void copyState(int slot, float[] dst, int dstOffset) {
+        System.arraycopy(states, slot * stateDim, dst, dstOffset, stateDim);
+    }
+
+    /**
+     * Copy one next-state row into dst at dstOffset
+     */
+    public void copyNextState(int slot, float[] dst, int dstOffset) {
+        System.arraycopy(nextStates, slot * stateDim, dst, dstOffset, stateDim);
+    }
+
+    /**
+     * Pack the given slots into a reusable batch (rows in slot-list order)
+     */
+    public void gather(int[] slots, int n, Batch out) {
+        out.ensureCapacity(n, stateDim);
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            System.arraycopy(states, slot * stateDim, out.states, i * stateDim, stateDim);
+            System.arraycopy(nextStates, slot * stateDim, out.nextStates, i * stateDim, stateDim);
+            out.actions[i] = actions[slot];
+            out.rewards[i] = rewards[slot];
+            out.dones[i] = done.get(slot);
+        }
+        out.size = n;
+    }
+
+    /**
+     * Materialize a slot as a standalone Experience (legacy callers only - allocates)
+     */
+    public PrioritizedReplayBuffer.Experience toExperience(int slot) {
+        int base = slot * stateDim;
+        return new PrioritizedReplayBuffer.Experience(
+            Arrays.copyOfRange(states, base, base + stateDim),
+            actions[slot],
+            rewards[slot],
+            Arrays.copyOfRange(nextStates, base, base + stateDim),
+            done.get(slot)
+        );
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int stateDim() {
+        return stateDim;
+    }
+
+    /**
+     * Slot holding the age-th oldest live transition (0 = oldest)
+     */
+    public int slotByAge(int age) {
+        return (writeIndex - count + age + capacity) % capacity;
+    }
+
+    /**
+     * Slot that the next append() will overwrite
+     */
+    public int writeIndex() {
+        return writeIndex;
+    }
+
+    public void clear() {
+        writeIndex = 0;
+        count = 0;
+        done.clear();
+    }
+
+    /**
+     * Approximate heap footprint of the columns in bytes
+     */
+    public long memoryBytes() {
+        return 4L * states.length + 4L * nextStates.length + 4L * actions.length
+            + 4L * rewards.length + (capacity + 7) / 8;
+    }
+
+    /**
+     * Reusable, densely packed mini-batch
+     * states/nextStates are [size * stateDim] row-major, ready for a [size, stateDim] tensor
+     */
+    public static class Batch {
+        public float[] states = new float[0];
+        public float[] nextStates = new float[0];
+        public int[] actions = new int[0];
+        public float[] rewards = new float[0];
+        public boolean[] dones = new boolean[0];
+        public int size;
+        public int stateDim;
+
+        void ensureCapacity(int n, int dim) {
+            if (actions.length < n || stateDim != dim) {
+                int rows = Math.max(n, actions.length);
+                states = new float[rows * dim];
+                nextStates = new float[rows * dim];
+                actions = new int[rows];
+                rewards = new float[rows];
+                dones = new boolean[rows];
+            }
+            stateDim = dim;
+        }
+
+        /**
+         * Buffer view over the packed states (no copy) for NDManager.create(Buffer, Shape)
+         */
+        public FloatBuffer stateBuffer() {
+            return FloatBuffer.wrap(states, 0, size * stateDim);
+        }
+
+        /**
+         * Buffer view over the packed next-states (no copy)
+         */
+        public FloatBuffer nextStateBuffer() {
+            return FloatBuffer.wrap(nextStates, 0, size * stateDim);
+        }
+
+        /**
+         * Materialize a row as a standalone Experience (legacy callers only - allocates)
+         */
+        public PrioritizedReplayBuffer.Experience toExperience(int row) {
+            int base = row * stateDim;
+            return new PrioritizedReplayBuffer.Experience(
+                Arrays.copyOfRange(states, base, base + stateDim),
+                actions[row],
+                rewards[row],
+                Arrays.copyOfRange(nextStates, base, base + stateDim),
+                dones[row]
+            );
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.minecraft.gancity.ml;
 
+import com.minecraft.gancity.ai.ActionRegistry;
 import com.mojang.logging.LogUtils;
 import org.slf4j.Logger;
 
@@ -141,9 +142,8 @@ public class GeneticBehaviorEvolution {
         Random rand = new Random();
         
         // Crossover action weights
-        for (String action : parent1.actionWeights.keySet()) {
-            child.actionWeights.put(action, 
-                rand.nextBoolean() ? parent1.actionWeights.get(action) : parent2.actionWeights.get(action));
+        for (int i = 0; i < child.actionWeights.length; i++) {
+            child.actionWeights[i] = rand.nextBoolean() ? parent1.actionWeights[i] : parent2.actionWeights[i];
         }
         
         // Crossover traits
@@ -161,11 +161,10 @@ public class GeneticBehaviorEvolution {
         Random rand = new Random();
         
         // Mutate action weights
-        for (String action : genome.actionWeights.keySet()) {
+        for (int i = 0; i < genome.actionWeights.length; i++) {
             if (rand.nextFloat() < MUTATION_RATE) {
                 float delta = (rand.nextFloat() - 0.5f) * 0.4f;
-                float newWeight = Math.max(0.0f, Math.min(2.0f, genome.actionWeights.get(action) + delta));
-                genome.actionWeights.put(action, newWeight);
+                genome.actionWeights[i] = Math.max(0.0f, Math.min(2.0f, genome.actionWeights[i] + delta));
             }
         }
         
@@ -202,7 +201,8 @@ public class GeneticBehaviorEvolution {
      * Genome representing behavior parameters
      */
     public static class BehaviorGenome implements Cloneable {
-        public Map<String, Float> actionWeights = new HashMap<>();
+        // Weights for the core legacy actions, indexed by ActionRegistry.coreIndex()
+        public float[] actionWeights = new float[ActionRegistry.CORE_COUNT];
         public float aggression = 1.0f;
         public float caution = 1.0f;
         public float teamwork = 1.0f;
@@ -213,14 +213,8 @@ public class GeneticBehaviorEvolution {
             Random rand = new Random();
             
             // Initialize random action weights
-            String[] actions = {
-                "straight_charge", "circle_strafe", "kite_backward", "retreat",
-                "ambush", "group_rush", "find_cover", "strafe_shoot",
-                "leap_attack", "fake_retreat"
-            };
-            
-            for (String action : actions) {
-                actionWeights.put(action, rand.nextFloat() * 2.0f);
+            for (int i = 0; i < actionWeights.length; i++) {
+                actionWeights[i] = rand.nextFloat() * 2.0f;
             }
             
             aggression = rand.nextFloat() * 2.0f;
@@ -231,7 +225,7 @@ public class GeneticBehaviorEvolution {
         @Override
         public BehaviorGenome clone() {
             BehaviorGenome copy = new BehaviorGenome();
-            copy.actionWeights = new HashMap<>(this.actionWeights);
+            copy.actionWeights = this.actionWeights.clone();
             copy.aggression = this.aggression;
             copy.caution = this.caution;
             copy.teamwork = this.teamwork;
@@ -239,5 +233,20 @@ public class GeneticBehaviorEvolution {
             copy.combatCount = 0;
             return copy;
         }
+        
+        /**
+         * Whether the genome carries a weight for this action ordinal
+         */
+        public boolean hasWeight(int ordinal) {
+            return ActionRegistry.coreIndex(ordinal) != ActionRegistry.NO_ACTION;
+        }
+        
+        /**
+         * Weight for an action ordinal, or fallback for actions outside the genome
+         */
+        public float weight(int ordinal, float fallback) {
+            int index = ActionRegistry.coreIndex(ordinal);
+            return index != ActionRegistry.NO_ACTION ? actionWeights[index] : fallback;
+        }
     }
 }
@@ -0,0 +1,189 @@
+package com.minecraft.gancity.ml;
+
+import ai.djl.Model;
+import ai.djl.inference.Predictor;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.TranslateException;
+import ai.djl.translate.Translator;
+import ai.djl.translate.TranslatorContext;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Long-lived single-thread inference handle for a small Q-network
+ *
+ * PERFORMANCE: Replaces NDManager.newBaseManager() per decision
+ * - DJL Predictor bound once to the model (per-call arrays live in the
+ *   predictor's scoped sub-manager and are freed when the call returns)
+ * - reusable input buffer: states are padded/truncated and NaN-scrubbed in place
+ * - predictBatch() runs many states through one [n, inputSize] forward
+ * - latency counters for in-game benchmarking
+ *
+ * NOT thread-safe: hold one session per thread (see DoubleDQN / MobLearningModel).
+ */
+public final class InferenceSession implements AutoCloseable {
+
+    private final int inputSize;
+    private final long version;
+    private final float[] inputBuffer;
+    private final Model model;
+    private final Predictor<float[], float[]> predictor;
+    private Predictor<FloatBuffer, float[]> batchPredictor;  // Created on first batched call
+    private final Runnable onClose;
+    private boolean closed = false;
+
+    private long calls = 0;
+    private long totalNanos = 0;
+
+    /**
+     * @param model initialized model to bind to
+     * @param inputSize network input width
+     * @param version weight generation this session was bound to
+     * @param onClose invoked once on close (e.g. release a snapshot reference), may be null
+     */
+    public InferenceSession(Model model, int inputSize, long version, Runnable onClose) {
+        this.inputSize = inputSize;
+        this.version = version;
+        this.inputBuffer = new float[inputSize];
+        this.onClose = onClose;
+        this.model = model;
+        this.predictor = model.newPredictor(new QValueTranslator(inputSize));
+    }
+
+    /**
+     * Q-values for one state
+     * The input array is copied into the session buffer, so callers may reuse it
+     */
+    public float[] predict(float[] state) throws TranslateException {
+        long start = System.nanoTime();
+        int len = state != null ? Math.min(state.length, inputSize) : 0;
+        for (int i = 0; i < len; i++) {
+            float v = state[i];
+            inputBuffer[i] = (Float.isNaN(v) || Float.isInfinite(v)) ? 0.0f : v;
+        }
+        for (int i = len; i < inputSize; i++) {
+            inputBuffer[i] = 0.0f;
+        }
+
+        float[] qValues = predictor.predict(inputBuffer);
+
+        totalNanos += System.nanoTime() - start;
+        calls++;
+        return qValues;
+    }
+
+    /**
+     * Q-values for n packed states in a single forward pass
+     * Rows must already be inputSize wide and finite (see DoubleDQN.copyPadded)
+     *
+     * @param states row-major [n * inputSize]
+     * @param out receives row-major [n * outputSize]
+     */
+    public void predictBatch(float[] states, int n, float[] out) throws TranslateException {
+        long start = System.nanoTime();
+        if (batchPredictor == null) {
+            batchPredictor = model.newPredictor(new BatchQValueTranslator(inputSize));
+        }
+        float[] qValues = batchPredictor.predict(FloatBuffer.wrap(states, 0, n * inputSize));
+        System.arraycopy(qValues, 0, out, 0, qValues.length);
+
+        totalNanos += System.nanoTime() - start;
+        calls += n;
+    }
+
+    /**
+     * Index of the best Q-value for one state
+     */
+    public int argMax(float[] state) throws TranslateException {
+        float[] qValues = predict(state);
+        int best = 0;
+        for (int i = 1; i < qValues.length; i++) {
+            if (qValues[i] > qValues[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public double getAverageMicros() {
+        return calls > 0 ? (totalNanos / 1000.0) / calls : 0.0;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        predictor.close();
+        if (batchPredictor != null) {
+            batchPredictor.close();
+        }
+        if (onClose != null) {
+            onClose.run();
+        }
+    }
+
+    /**
+     * float[] state -> [1, inputSize] tensor -> float[] Q-values
+     */
+    private static final class QValueTranslator implements Translator<float[], float[]> {
+        private final int inputSize;
+
+        QValueTranslator(int inputSize) {
+            this.inputSize = inputSize;
+        }
+
+        @Override
+        public NDList processInput(TranslatorContext ctx, float[] input) {
+            return new NDList(ctx.getNDManager().create(input).reshape(1, inputSize));
+        }
+
+        @Override
+        public float[] processOutput(TranslatorContext ctx, NDList list) {
+            return list.singletonOrThrow().toFloatArray();
+        }
+
+        @Override
+        public Batchifier getBatchifier() {
+            return null;  // Input is already shaped [1, inputSize]
+        }
+    }
+
+    /**
+     * [n * inputSize] buffer -> [n, inputSize] tensor -> flat [n * outputSize] Q-values
+     */
+    private static final class BatchQValueTranslator implements Translator<FloatBuffer, float[]> {
+        private final int inputSize;
+
+        BatchQValueTranslator(int inputSize) {
+            this.inputSize = inputSize;
+        }
+
+        @Override
+        public NDList processInput(TranslatorContext ctx, FloatBuffer input) {
+            int rows = input.remaining() / inputSize;
+            return new NDList(ctx.getNDManager().create(input, new Shape(rows, inputSize)));
+        }
+
+        @Override
+        public float[] processOutput(TranslatorContext ctx, NDList list) {
+            return list.singletonOrThrow().toFloatArray();
+        }
+
+        @Override
+        public Batchifier getBatchifier() {
+            return null;  // Input is already shaped [n, inputSize]
+        }
+    }
+}
@@ -29,6 +29,7 @@ import java.util.concurrent.*;
  * Learns optimal actions based on combat state and outcomes
  * 
  * CRITICAL FIX: Training now runs in background thread to prevent tick lag
+ * PERFORMANCE: Action selection uses a per-thread InferenceSession instead of a sub-manager per call
  */
 public class MobLearningModel {
     private static final Logger LOGGER = LogUtils.getLogger();
@@ -62,6 +63,8 @@ public class MobLearningModel {
     private final Map<String, Integer> actionIndexMap = new HashMap<>();
     private final List<String> indexToAction = new ArrayList<>();
     
+    private final ThreadLocal<InferenceSession> inferenceSessions = new ThreadLocal<>();
+    
     private int trainingSteps = 0;
     private float epsilon = 1.0f;  // Exploration rate
     private static final float EPSILON_DECAY = 0.995f;
@@ -151,23 +154,17 @@ public class MobLearningModel {
         state = sanitizeState(state);
         
         // Exploration: random action
-        if (Math.random() < epsilon) {
-            return validActions.get(new Random().nextInt(validActions.size()));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextFloat() < epsilon) {
+            return validActions.get(random.nextInt(validActions.size()));
         }
         
         // Exploitation: use Q-network
-        try (NDManager subManager = manager.newSubManager()) {
-            NDArray stateArray = subManager.create(state).reshape(1, INPUT_SIZE);
-            
-            // Forward pass through network
-            NDArray qValues = model.getBlock().forward(
-                new ai.djl.training.ParameterStore(subManager, false),
-                new NDList(stateArray),
-                false
-            ).singletonOrThrow();
+        try {
+            // Forward pass through this thread's bound predictor
+            float[] qValuesArray = inferenceSession().predict(state);
             
             // Find best valid action
-            float[] qValuesArray = qValues.toFloatArray();
             float maxQ = Float.NEGATIVE_INFINITY;
             String bestAction = validActions.get(0);
             
@@ -189,6 +186,18 @@ public class MobLearningModel {
         }
     }
 
+    /**
+     * This thread's inference session (model weights are trained in place, so no rebinding)
+     */
+    private InferenceSession inferenceSession() {
+        InferenceSession session = inferenceSessions.get();
+        if (session == null) {
+            session = new InferenceSession(model, INPUT_SIZE, 0, null);
+            inferenceSessions.set(session);
+        }
+        return session;
+    }
+
     /**
      * Store experience for replay learning
      * CRITICAL: Sanitizes state vectors to prevent NaN corruption
@@ -378,6 +387,11 @@ public class MobLearningModel {
             TRAINING_EXECUTOR.shutdownNow();
         }
         
+        InferenceSession session = inferenceSessions.get();
+        if (session != null) {
+            session.close();
+            inferenceSessions.remove();
+        }
         if (trainer != null) {
             trainer.close();
         }
@@ -4,10 +4,11 @@ import com.mojang.logging.LogUtils;
 import org.slf4j.Logger;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.util.*;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * Model Persistence System - Save/load ML models across restarts
@@ -19,6 +20,14 @@ import java.util.zip.GZIPOutputStream;
  * - Transfer learning support
  * - Compression for smaller file sizes
  * - Backup system for safety
+ * - Replay buffer in a binary record format (ReplayBufferFile), read back with bulk channel reads on startup
+ * - Tactical weights, tier experience and knowledge-base entries sharded by mob type
+ *   (ModelShard, one file each + manifest) - only changed mob types are rewritten
+ * - Shards in a compact binary format (ModelShardFile); Java-serialized shards from
+ *   older versions are converted on load
+ *
+ * Save methods block on disk I/O; periodic saves call them from the auto-save
+ * thread (see ai.AutoSavePipeline), never from the server tick.
  */
 @SuppressWarnings("unused")
 public class ModelPersistence {
@@ -29,8 +38,14 @@ public class ModelPersistence {
     private static final String BACKUP_DIR = "models/ai_enhanced/backups";
     private static final String DOUBLE_DQN_FILE = "double_dqn_policy.model";
     private static final String TARGET_NETWORK_FILE = "double_dqn_target.model";
-    private static final String REPLAY_BUFFER_FILE = "prioritized_replay.dat";
-    private static final String KNOWLEDGE_BASE_FILE = "tactic_knowledge.dat";
+    private static final String LEGACY_REPLAY_BUFFER_FILE = "prioritized_replay.dat";  // size only, never restorable
+    private static final String LEGACY_KNOWLEDGE_BASE_FILE = "tactic_knowledge.dat";  // stats only, never restorable
+    private static final String LEGACY_TACTICAL_WEIGHTS_FILE = "tactical_weights.dat";  // single file, before shards
+    private static final String SHARD_DIR = "shards";
+    private static final String SHARD_MANIFEST_FILE = "manifest.properties";
+    private static final String SHARD_KEY_PREFIX = "shard.";
+    private static final String LEGACY_SHARD_EXTENSION = ".shard";  // Java serialization, converted on load
+    private static final String SHARD_FORMAT = "2";
     private static final String METADATA_FILE = "model_metadata.properties";
     
     // Configuration
@@ -102,10 +117,22 @@ public class ModelPersistence {
     /**
      * Save DoubleDQN model
      * CRITICAL FIX: Atomic write with .tmp -> rename pattern
+     * 
+     * @return false if the save failed
      */
-    public void saveDoubleDQN(DoubleDQN dqn) {
+    public boolean saveDoubleDQN(DoubleDQN dqn) {
         if (dqn == null) {
-            return;
+            return false;
+        }
+        return saveDoubleDQN(dqn.checkpoint());
+    }
+    
+    /**
+     * Save a DQN checkpoint taken earlier (auto-save thread: no training lock held)
+     */
+    public boolean saveDoubleDQN(DoubleDQN.Checkpoint checkpoint) {
+        if (checkpoint == null) {
+            return false;
         }
         
         try {
@@ -118,7 +145,7 @@ public class ModelPersistence {
             
             try {
                 // Save both policy and target networks to temp directory
-                dqn.save(tmpDir);
+                checkpoint.save(tmpDir);
                 
                 // Atomic move from tmp to final location
                 Path tmpPolicy = tmpDir.resolve(DOUBLE_DQN_FILE);
@@ -130,6 +157,11 @@ public class ModelPersistence {
                 if (Files.exists(tmpTarget)) {
                     Files.move(tmpTarget, targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
                 }
+                Path tmpFlat = tmpDir.resolve(FlatQNetwork.FILE_NAME);
+                if (Files.exists(tmpFlat)) {
+                    Files.move(tmpFlat, modelDirectory.resolve(FlatQNetwork.FILE_NAME),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
                 
             } finally {
                 // Cleanup temp directory
@@ -138,9 +170,11 @@ public class ModelPersistence {
             
             LOGGER.info("Saved DoubleDQN model to {}", modelDirectory);
             updateMetadata("double_dqn", System.currentTimeMillis());
+            return true;
             
         } catch (IOException e) {
             LOGGER.error("Failed to save DoubleDQN model", e);
+            return false;
         }
     }
     
@@ -154,6 +188,17 @@ public class ModelPersistence {
         
         Path modelPath = modelDirectory.resolve(DOUBLE_DQN_FILE);
         
+        // Pure-Java weights first: lets the java backend serve decisions without the native engine
+        Path flatPath = modelDirectory.resolve(FlatQNetwork.FILE_NAME);
+        if (Files.exists(flatPath)) {
+            try {
+                dqn.setFlatPolicy(FlatQNetwork.load(flatPath));
+                LOGGER.info("Loaded flat policy weights from {}", flatPath);
+            } catch (IOException e) {
+                LOGGER.warn("Ignoring unreadable flat policy {}: {}", flatPath, e.getMessage());
+            }
+        }
+        
         try {
             if (!Files.exists(modelPath)) {
                 LOGGER.info("No saved DoubleDQN model found, starting fresh");
@@ -180,54 +225,237 @@ public class ModelPersistence {
     
     /**
      * Save prioritized replay buffer
+     * Streams the rows of a save mark taken earlier (markForSave) - the caller may be
+     * on any thread; training keeps using the buffer while rows are copied out
+     * 
+     * @return false if the save failed
      */
-    public void saveReplayBuffer(PrioritizedReplayBuffer buffer) {
-        if (buffer == null) {
-            return;
+    public boolean saveReplayBuffer(PrioritizedReplayBuffer buffer, PrioritizedReplayBuffer.SaveMark mark) {
+        if (buffer == null || mark == null) {
+            return false;
         }
         
+        Path bufferPath = modelDirectory.resolve(ReplayBufferFile.FILE_NAME);
+        long start = System.nanoTime();
         try {
-            Path bufferPath = modelDirectory.resolve(REPLAY_BUFFER_FILE);
-            
-            try (ObjectOutputStream oos = createOutputStream(bufferPath)) {
-                // Save buffer size and experiences
-                oos.writeInt(buffer.size());
-                
-                // Note: Full buffer serialization would require
-                // implementing Serializable on Experience class
-                LOGGER.info("Saved replay buffer metadata");
-            }
-            
+            int written = ReplayBufferFile.write(buffer, mark, bufferPath);
+            LOGGER.info("Saved replay buffer: {} transitions in {} ms",
+                written, (System.nanoTime() - start) / 1_000_000);
             updateMetadata("replay_buffer", System.currentTimeMillis());
-            
+            return true;
         } catch (IOException e) {
             LOGGER.error("Failed to save replay buffer", e);
+            return false;
         }
     }
     
     /**
-     * Save tactic knowledge base
+     * Restore the replay buffer saved by saveReplayBuffer (one bulk read, no mapping)
      */
-    public void saveKnowledgeBase(TacticKnowledgeBase kb) {
-        if (kb == null) {
+    public void loadReplayBuffer(PrioritizedReplayBuffer buffer) {
+        if (buffer == null) {
             return;
         }
         
         try {
-            Path kbPath = modelDirectory.resolve(KNOWLEDGE_BASE_FILE);
-            
-            try (ObjectOutputStream oos = createOutputStream(kbPath)) {
-                Map<String, Object> stats = kb.getStats();
-                oos.writeObject(stats);
-                
-                LOGGER.info("Saved knowledge base with {} tactics", stats.get("total_tactics"));
+            Files.deleteIfExists(modelDirectory.resolve(LEGACY_REPLAY_BUFFER_FILE));
+        } catch (IOException e) {
+            LOGGER.debug("Could not remove legacy replay metadata: {}", e.getMessage());
+        }
+        
+        Path bufferPath = modelDirectory.resolve(ReplayBufferFile.FILE_NAME);
+        if (!Files.exists(bufferPath)) {
+            LOGGER.info("No saved replay buffer found, starting empty");
+            return;
+        }
+        
+        long start = System.nanoTime();
+        try {
+            int restored = ReplayBufferFile.load(bufferPath, buffer);
+            LOGGER.info("Restored {} replay transitions in {} ms", restored,
+                String.format("%.1f", (System.nanoTime() - start) / 1_000_000.0));
+        } catch (IOException e) {
+            LOGGER.warn("Ignoring unreadable replay buffer {}: {}", bufferPath, e.getMessage());
+        }
+    }
+    
+    /**
+     * Write one file per shard, then the manifest (mob type -> file)
+     * Mob types without a shard here keep their existing files untouched
+     *
+     * @return mob types whose shard was written (callers mark only these clean)
+     */
+    public synchronized Set<String> saveShards(List<ModelShard> shards) {
+        if (shards == null || shards.isEmpty()) {
+            return Collections.emptySet();
+        }
+        
+        Path shardDirectory = modelDirectory.resolve(SHARD_DIR);
+        Properties manifest = loadShardManifest();
+        Set<String> written = new HashSet<>();
+        long bytes = 0;
+        try {
+            Files.createDirectories(shardDirectory);
+        } catch (IOException e) {
+            LOGGER.error("Failed to create shard directory", e);
+            return written;
+        }
+        
+        List<String> replacedFiles = new ArrayList<>();
+        for (ModelShard shard : shards) {
+            String fileName = shardFileName(shard.mobType);
+            Path shardPath = shardDirectory.resolve(fileName);
+            try {
+                bytes += ModelShardFile.write(shard, shardPath);
+                Object previous = manifest.setProperty(SHARD_KEY_PREFIX + shard.mobType, fileName);
+                if (previous != null && !fileName.equals(previous)) {
+                    replacedFiles.add((String) previous);
+                }
+                written.add(shard.mobType);
+            } catch (IOException e) {
+                LOGGER.error("Failed to save shard for {}", shard.mobType, e);
             }
-            
-            updateMetadata("knowledge_base", System.currentTimeMillis());
-            
+        }
+        
+        if (!written.isEmpty()) {
+            try {
+                writeShardManifest(manifest);
+            } catch (IOException e) {
+                // Shards are in place but unreachable without the manifest: keep them dirty
+                LOGGER.error("Failed to save shard manifest", e);
+                return Collections.emptySet();
+            }
+            updateMetadata("shards", System.currentTimeMillis());
+        }
+        // Files the manifest no longer points to (older format)
+        for (String fileName : replacedFiles) {
+            try {
+                Files.deleteIfExists(shardDirectory.resolve(fileName));
+            } catch (IOException e) {
+                LOGGER.debug("Could not remove replaced shard {}: {}", fileName, e.getMessage());
+            }
+        }
+        LOGGER.info("Saved {} of {} mob type shards ({} KB)", written.size(), shards.size(), bytes / 1024);
+        return written;
+    }
+    
+    /**
+     * Load every shard listed in the manifest; a legacy single weights file is
+     * converted to shards first, Java-serialized shards are rewritten in the binary format
+     */
+    public synchronized List<ModelShard> loadShards() {
+        try {
+            Files.deleteIfExists(modelDirectory.resolve(LEGACY_KNOWLEDGE_BASE_FILE));
+        } catch (IOException e) {
+            LOGGER.debug("Could not remove legacy knowledge base stats: {}", e.getMessage());
+        }
+        migrateLegacyTacticalWeights();
+        
+        Path shardDirectory = modelDirectory.resolve(SHARD_DIR);
+        Properties manifest = loadShardManifest();
+        List<ModelShard> shards = new ArrayList<>();
+        List<ModelShard> legacyShards = new ArrayList<>();
+        for (String key : manifest.stringPropertyNames()) {
+            if (!key.startsWith(SHARD_KEY_PREFIX)) {
+                continue;
+            }
+            String fileName = manifest.getProperty(key);
+            Path shardPath = shardDirectory.resolve(fileName);
+            if (fileName.endsWith(LEGACY_SHARD_EXTENSION)) {
+                try (ObjectInputStream ois = createInputStream(shardPath)) {
+                    ModelShard shard = (ModelShard) ois.readObject();
+                    shards.add(shard);
+                    legacyShards.add(shard);
+                } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                    LOGGER.warn("Ignoring unreadable shard {}: {}", shardPath, e.getMessage());
+                }
+                continue;
+            }
+            try {
+                shards.add(ModelShardFile.load(shardPath));
+            } catch (IOException e) {
+                LOGGER.warn("Ignoring unreadable shard {}: {}", shardPath, e.getMessage());
+            }
+        }
+        if (!legacyShards.isEmpty()) {
+            int converted = saveShards(legacyShards).size();
+            LOGGER.info("Converted {} of {} shards to the binary shard format", converted, legacyShards.size());
+        }
+        if (!shards.isEmpty()) {
+            LOGGER.info("Loaded {} mob type shards", shards.size());
+        }
+        return shards;
+    }
+    
+    /**
+     * Split a tactical_weights.dat written before sharding into weight-only shards
+     */
+    @SuppressWarnings("unchecked")
+    private void migrateLegacyTacticalWeights() {
+        Path legacyPath = modelDirectory.resolve(LEGACY_TACTICAL_WEIGHTS_FILE);
+        if (!Files.exists(legacyPath)) {
+            return;
+        }
+        
+        try (ObjectInputStream ois = createInputStream(legacyPath)) {
+            Map<String, Map<String, Float>> weights = (Map<String, Map<String, Float>>) ois.readObject();
+            List<ModelShard> shards = new ArrayList<>(weights.size());
+            for (Map.Entry<String, Map<String, Float>> entry : weights.entrySet()) {
+                shards.add(new ModelShard(entry.getKey(), entry.getValue(), -1, Collections.emptyList(), 0L));
+            }
+            if (saveShards(shards).size() < shards.size()) {
+                return;  // Keep the legacy file until every mob type has its shard
+            }
+            LOGGER.info("Migrated tactical weights for {} mob types to shards", shards.size());
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOGGER.warn("Ignoring unreadable tactical weights {}: {}", legacyPath, e.getMessage());
+        }
+        try {
+            Files.deleteIfExists(legacyPath);
         } catch (IOException e) {
-            LOGGER.error("Failed to save knowledge base", e);
+            LOGGER.debug("Could not remove legacy tactical weights: {}", e.getMessage());
+        }
+    }
+    
+    private Properties loadShardManifest() {
+        Properties manifest = new Properties();
+        Path manifestPath = modelDirectory.resolve(SHARD_DIR).resolve(SHARD_MANIFEST_FILE);
+        if (Files.exists(manifestPath)) {
+            try (InputStream is = Files.newInputStream(manifestPath)) {
+                manifest.load(is);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to load shard manifest", e);
+            }
         }
+        return manifest;
+    }
+    
+    private void writeShardManifest(Properties manifest) throws IOException {
+        Path manifestPath = modelDirectory.resolve(SHARD_DIR).resolve(SHARD_MANIFEST_FILE);
+        Path tmp = manifestPath.resolveSibling(SHARD_MANIFEST_FILE + ".tmp");
+        manifest.setProperty("format", SHARD_FORMAT);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream os = Channels.newOutputStream(channel);
+            manifest.store(os, "AI Enhanced model shards (mob type -> file)");
+            os.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * File name for a mob type: lower-case [a-z0-9_] plus a hash, so names like
+     * "minecraft:zombie" and "minecraft_zombie" never share a file
+     */
+    private static String shardFileName(String mobType) {
+        StringBuilder name = new StringBuilder(mobType.length() + 16);
+        for (int i = 0; i < mobType.length() && name.length() < 48; i++) {
+            char c = Character.toLowerCase(mobType.charAt(i));
+            name.append((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') ? c : '_');
+        }
+        name.append('-').append(Integer.toHexString(mobType.hashCode()));
+        return name.append(ModelShardFile.EXTENSION).toString();
     }
     
     /**
@@ -247,7 +475,7 @@ public class ModelPersistence {
     /**
      * Save all models with backup
      */
-    public void saveAll(DoubleDQN dqn, PrioritizedReplayBuffer buffer, TacticKnowledgeBase kb) {
+    public void saveAll(DoubleDQN dqn, PrioritizedReplayBuffer buffer, List<ModelShard> shards) {
         LOGGER.info("Starting full model save...");
         
         // Create backup of existing models
@@ -255,8 +483,10 @@ public class ModelPersistence {
         
         // Save models
         saveDoubleDQN(dqn);
-        saveReplayBuffer(buffer);
-        saveKnowledgeBase(kb);
+        if (buffer != null) {
+            saveReplayBuffer(buffer, buffer.markForSave());
+        }
+        saveShards(shards);
         
         // Update save time
         lastSaveTime = System.currentTimeMillis();
@@ -271,6 +501,7 @@ public class ModelPersistence {
         LOGGER.info("Loading saved models...");
         
         loadDoubleDQN(dqn);
+        loadReplayBuffer(buffer);
         // Load other components as needed
         
         LOGGER.info("Model load completed");
@@ -291,7 +522,8 @@ public class ModelPersistence {
             Files.list(modelDirectory)
                 .filter(path -> !path.equals(backupDirectory))
                 .filter(path -> path.toString().endsWith(".model") || 
-                               path.toString().endsWith(".dat"))
+                               path.toString().endsWith(".dat") ||
+                               path.toString().endsWith(".bin"))
                 .forEach(path -> {
                     try {
                         Path target = backupDir.resolve(path.getFileName());
@@ -377,7 +609,7 @@ public class ModelPersistence {
     /**
      * Update metadata file
      */
-    private void updateMetadata(String component, long timestamp) {
+    private synchronized void updateMetadata(String component, long timestamp) {
         Path metadataPath = modelDirectory.resolve(METADATA_FILE);
         Properties props = new Properties();
         
@@ -402,19 +634,6 @@ public class ModelPersistence {
         }
     }
     
-    /**
-     * Create output stream with optional compression
-     */
-    private ObjectOutputStream createOutputStream(Path path) throws IOException {
-        OutputStream os = Files.newOutputStream(path);
-        
-        if (COMPRESS_MODELS) {
-            os = new GZIPOutputStream(os);
-        }
-        
-        return new ObjectOutputStream(os);
-    }
-    
     /**
      * Create input stream with optional decompression
      */
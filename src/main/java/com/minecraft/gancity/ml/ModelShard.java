@@ -0,0 +1,79 @@
+package com.minecraft.gancity.ml;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persisted learning for one key - one file per shard (see ModelPersistence.saveShards)
+ *
+ * A mob type key holds that mob type's tactical weights and tier experience; a
+ * "knowledge:<category>" key (see knowledgeKey) holds one knowledge-base category's
+ * entries, since the knowledge base groups entries by category, not by mob type.
+ * Shards written before that split may carry knowledge under a bare category key.
+ * Built on the server thread from copies, so it can be written on the auto-save thread.
+ * journalGeneration is the newest WeightJournal segment already folded into the shard;
+ * recovery replays only newer segments over it.
+ */
+public final class ModelShard implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String KNOWLEDGE_PREFIX = "knowledge:";
+
+    public final String mobType;                       // or KNOWLEDGE_PREFIX + category
+    public final Map<String, Float> tacticWeights;     // tactic id -> weight
+    public final int combatExperience;                 // -1 if the mob type has no tier data
+    public final List<KnowledgeRecord> knowledge;
+    public final long journalGeneration;               // 0 if written before journaling
+
+    public ModelShard(String mobType, Map<String, Float> tacticWeights, int combatExperience,
+                      List<KnowledgeRecord> knowledge, long journalGeneration) {
+        this.mobType = mobType;
+        this.tacticWeights = new HashMap<>(tacticWeights);
+        this.combatExperience = combatExperience;
+        this.knowledge = new ArrayList<>(knowledge);
+        this.journalGeneration = journalGeneration;
+    }
+
+    /**
+     * Shard / dirty-flag key of a knowledge-base category
+     */
+    public static String knowledgeKey(String category) {
+        return KNOWLEDGE_PREFIX + category;
+    }
+
+    /**
+     * Knowledge-base category of a knowledge key, or null for a mob type key
+     */
+    public static String knowledgeCategory(String key) {
+        return key.startsWith(KNOWLEDGE_PREFIX) ? key.substring(KNOWLEDGE_PREFIX.length()) : null;
+    }
+
+    /**
+     * Value copy of a TacticKnowledgeBase.TacticEntry
+     */
+    public static final class KnowledgeRecord implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public final String name;
+        public final String description;
+        public final List<String> conditions;
+        public final float successRate;
+        public final String type;
+        public final long lastUsed;
+        public final int timesUsed;
+
+        public KnowledgeRecord(String name, String description, List<String> conditions, float successRate,
+                               String type, long lastUsed, int timesUsed) {
+            this.name = name;
+            this.description = description;
+            this.conditions = new ArrayList<>(conditions);
+            this.successRate = successRate;
+            this.type = type;
+            this.lastUsed = lastUsed;
+            this.timesUsed = timesUsed;
+        }
+    }
+}
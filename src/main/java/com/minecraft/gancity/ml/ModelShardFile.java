@@ -0,0 +1,410 @@
+package com.minecraft.gancity.ml;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary format for ModelShard (replaces Java serialization of shards)
+ *
+ * Layout (little-endian, varint = unsigned LEB128, zigzag for signed values):
+ * - header: magic, version (2 x int32)
+ * - string table: varint count, then per string varint byte length + UTF-8
+ *   (mob type, tactic names, knowledge names, descriptions, types and conditions,
+ *   each stored once and referenced by index)
+ * - mob type (string index), journal generation (varint), combat experience (zigzag)
+ * - tactic weights: varint n, tactic name indices varint[n], weights float32[n]
+ * - knowledge: varint k, then columns name varint[k], description varint[k],
+ *   type varint[k], condition count varint[k], condition indices varint[sum],
+ *   last used varint[k], times used varint[k], success rate float32[k]
+ * - trailer: CRC32 of everything before it (int32)
+ *
+ * PERFORMANCE:
+ * - no class descriptors, reflection or per-field object graph: a shard is one
+ *   encode into a single heap buffer and one write, fsynced and renamed atomically
+ * - repeated strings (conditions, types) cost one varint each after the first use
+ * - View reads straight from the file's bytes (one read into a heap buffer, never
+ *   mapped, so an open View cannot block the next atomic rename on Windows):
+ *   float32 columns are absolute reads, strings are decoded only when asked for
+ *
+ * write/load keep no shared state and are safe from any thread; a View is single-reader.
+ */
+public final class ModelShardFile {
+
+    public static final String EXTENSION = ".amshard";
+    private static final int MAGIC = 0x4853_4D41;  // "AMSH" little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int TRAILER_BYTES = 4;
+
+    private ModelShardFile() {
+    }
+
+    /**
+     * Encode a shard and write it durably (tmp file + fsync + atomic move)
+     *
+     * @return bytes written
+     */
+    public static int write(ModelShard shard, Path path) throws IOException {
+        ByteBuffer encoded = encode(shard);
+        int size = encoded.remaining();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (encoded.hasRemaining()) {
+                channel.write(encoded);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
+
+    /**
+     * Read a file written by {@link #write} and decode it into a shard
+     */
+    public static ModelShard load(Path path) throws IOException {
+        return open(path).toShard();
+    }
+
+    /**
+     * Read a shard file into a heap buffer and validate it without decoding strings
+     */
+    public static View open(Path path) throws IOException {
+        long size = Files.size(path);
+        if (size < HEADER_BYTES + TRAILER_BYTES || size > Integer.MAX_VALUE) {
+            throw new IOException("Not a model shard file: " + path);
+        }
+        return new View(ByteBuffer.wrap(Files.readAllBytes(path)), path.toString());
+    }
+
+    /**
+     * Encode a shard into a buffer ready to write (position 0, limit = size)
+     */
+    static ByteBuffer encode(ModelShard shard) {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        int mobType = intern(strings, shard.mobType);
+        int weightCount = shard.tacticWeights.size();
+        int[] tactics = new int[weightCount];
+        float[] weights = new float[weightCount];
+        int n = 0;
+        for (Map.Entry<String, Float> entry : shard.tacticWeights.entrySet()) {
+            tactics[n] = intern(strings, entry.getKey());
+            weights[n] = entry.getValue() != null ? entry.getValue() : Float.NaN;
+            n++;
+        }
+        int knowledgeCount = shard.knowledge.size();
+        int[] names = new int[knowledgeCount];
+        int[] descriptions = new int[knowledgeCount];
+        int[] types = new int[knowledgeCount];
+        int[][] conditions = new int[knowledgeCount][];
+        for (int i = 0; i < knowledgeCount; i++) {
+            ModelShard.KnowledgeRecord record = shard.knowledge.get(i);
+            names[i] = intern(strings, record.name);
+            descriptions[i] = intern(strings, record.description);
+            types[i] = intern(strings, record.type);
+            conditions[i] = new int[record.conditions.size()];
+            for (int c = 0; c < conditions[i].length; c++) {
+                conditions[i][c] = intern(strings, record.conditions.get(c));
+            }
+        }
+
+        Encoder out = new Encoder(256 + 16 * weightCount + 64 * knowledgeCount);
+        out.buffer.putInt(MAGIC).putInt(VERSION);
+        out.varint(strings.size());
+        for (String value : strings.keySet()) {
+            out.string(value);
+        }
+        out.varint(mobType);
+        out.varlong(shard.journalGeneration);
+        out.varint((shard.combatExperience << 1) ^ (shard.combatExperience >> 31));
+
+        out.varint(weightCount);
+        for (int tactic : tactics) {
+            out.varint(tactic);
+        }
+        out.ensure(4 * weightCount);
+        for (float weight : weights) {
+            out.buffer.putFloat(weight);
+        }
+
+        out.varint(knowledgeCount);
+        for (int name : names) {
+            out.varint(name);
+        }
+        for (int description : descriptions) {
+            out.varint(description);
+        }
+        for (int type : types) {
+            out.varint(type);
+        }
+        for (int[] recordConditions : conditions) {
+            out.varint(recordConditions.length);
+        }
+        for (int[] recordConditions : conditions) {
+            for (int condition : recordConditions) {
+                out.varint(condition);
+            }
+        }
+        for (ModelShard.KnowledgeRecord record : shard.knowledge) {
+            out.varlong(Math.max(0L, record.lastUsed));
+        }
+        for (ModelShard.KnowledgeRecord record : shard.knowledge) {
+            out.varint(Math.max(0, record.timesUsed));
+        }
+        out.ensure(4 * knowledgeCount + TRAILER_BYTES);
+        for (ModelShard.KnowledgeRecord record : shard.knowledge) {
+            out.buffer.putFloat(record.successRate);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(out.buffer.array(), 0, out.buffer.position());
+        out.buffer.putInt((int) crc.getValue());
+        return out.buffer.flip();
+    }
+
+    private static int intern(Map<String, Integer> strings, String value) {
+        return strings.computeIfAbsent(value != null ? value : "", k -> strings.size());
+    }
+
+    /**
+     * Growable little-endian heap buffer with varint writers
+     */
+    private static final class Encoder {
+        ByteBuffer buffer;
+
+        Encoder(int capacity) {
+            buffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+        }
+
+        void varint(int value) {
+            varlong(value & 0xFFFF_FFFFL);
+        }
+
+        void varlong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void string(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length);
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    /**
+     * Zero-copy reader over a shard file's bytes
+     * Index columns are decoded once on open; float columns and strings stay in the buffer
+     */
+    public static final class View {
+        private final ByteBuffer buffer;
+        private int position;
+
+        private final int[] stringOffsets;
+        private final int[] stringLengths;
+        private final int mobType;
+        private final long journalGeneration;
+        private final int combatExperience;
+        private final int[] tactics;
+        private final int weightColumn;
+        private final int[] names;
+        private final int[] descriptions;
+        private final int[] types;
+        private final int[] conditionStarts;  // k + 1 entries into conditions
+        private final int[] conditions;
+        private final long[] lastUsed;
+        private final int[] timesUsed;
+        private final int successColumn;
+
+        View(ByteBuffer data, String source) throws IOException {
+            this.buffer = data.order(ByteOrder.LITTLE_ENDIAN);
+            int limit = buffer.capacity() - TRAILER_BYTES;
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a model shard file: " + source);
+            }
+            int version = buffer.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported model shard version " + version);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(0).limit(limit));
+            if ((int) crc.getValue() != buffer.getInt(limit)) {
+                throw new IOException("Corrupt model shard file (checksum): " + source);
+            }
+
+            try {
+                position = HEADER_BYTES;
+                int stringCount = count(limit);
+                stringOffsets = new int[stringCount];
+                stringLengths = new int[stringCount];
+                for (int i = 0; i < stringCount; i++) {
+                    stringLengths[i] = count(limit);
+                    stringOffsets[i] = position;
+                    position += stringLengths[i];
+                }
+                mobType = index(stringCount);
+                journalGeneration = varlong();
+                int zigzag = varint();
+                combatExperience = (zigzag >>> 1) ^ -(zigzag & 1);
+
+                int weightCount = count(limit);
+                tactics = indices(weightCount, stringCount);
+                weightColumn = position;
+                position += 4 * weightCount;
+
+                int knowledgeCount = count(limit);
+                names = indices(knowledgeCount, stringCount);
+                descriptions = indices(knowledgeCount, stringCount);
+                types = indices(knowledgeCount, stringCount);
+                conditionStarts = new int[knowledgeCount + 1];
+                for (int i = 0; i < knowledgeCount; i++) {
+                    conditionStarts[i + 1] = conditionStarts[i] + count(limit);
+                }
+                conditions = indices(conditionStarts[knowledgeCount], stringCount);
+                lastUsed = new long[knowledgeCount];
+                for (int i = 0; i < knowledgeCount; i++) {
+                    lastUsed[i] = varlong();
+                }
+                timesUsed = new int[knowledgeCount];
+                for (int i = 0; i < knowledgeCount; i++) {
+                    timesUsed[i] = varint();
+                }
+                successColumn = position;
+                position += 4 * knowledgeCount;
+            } catch (IndexOutOfBoundsException e) {
+                throw new IOException("Truncated model shard file: " + source);
+            }
+            if (position != limit) {
+                throw new IOException("Corrupt model shard file (length): " + source);
+            }
+        }
+
+        private int varint() {
+            return (int) varlong();
+        }
+
+        private long varlong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get(position++);
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IndexOutOfBoundsException("varint too long");
+        }
+
+        /**
+         * A count or length that must fit in the rest of the file (guards allocations)
+         */
+        private int count(int limit) {
+            int value = varint();
+            if (value < 0 || value > limit - position) {
+                throw new IndexOutOfBoundsException("count " + value);
+            }
+            return value;
+        }
+
+        private int index(int stringCount) {
+            int value = varint();
+            if (value < 0 || value >= stringCount) {
+                throw new IndexOutOfBoundsException("string index " + value);
+            }
+            return value;
+        }
+
+        private int[] indices(int count, int stringCount) {
+            int[] values = new int[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = index(stringCount);
+            }
+            return values;
+        }
+
+        /**
+         * Decode one entry of the string table
+         */
+        public String string(int index) {
+            byte[] bytes = new byte[stringLengths[index]];
+            buffer.get(stringOffsets[index], bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        public String mobType() {
+            return string(mobType);
+        }
+
+        public int weightCount() {
+            return tactics.length;
+        }
+
+        public String tactic(int i) {
+            return string(tactics[i]);
+        }
+
+        public float weight(int i) {
+            return buffer.getFloat(weightColumn + 4 * i);
+        }
+
+        public int knowledgeCount() {
+            return names.length;
+        }
+
+        public float successRate(int i) {
+            return buffer.getFloat(successColumn + 4 * i);
+        }
+
+        /**
+         * Decode everything into a ModelShard (each table string decoded once)
+         */
+        public ModelShard toShard() {
+            String[] table = new String[stringOffsets.length];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = string(i);
+            }
+            Map<String, Float> weights = new HashMap<>(tactics.length * 2);
+            for (int i = 0; i < tactics.length; i++) {
+                weights.put(table[tactics[i]], weight(i));
+            }
+            List<ModelShard.KnowledgeRecord> knowledge = new ArrayList<>(names.length);
+            for (int i = 0; i < names.length; i++) {
+                List<String> recordConditions = new ArrayList<>(conditionStarts[i + 1] - conditionStarts[i]);
+                for (int c = conditionStarts[i]; c < conditionStarts[i + 1]; c++) {
+                    recordConditions.add(table[conditions[c]]);
+                }
+                knowledge.add(new ModelShard.KnowledgeRecord(table[names[i]], table[descriptions[i]],
+                    recordConditions, successRate(i), table[types[i]], lastUsed[i], timesUsed[i]));
+            }
+            return new ModelShard(table[mobType], weights, combatExperience, knowledge, journalGeneration);
+        }
+    }
+}
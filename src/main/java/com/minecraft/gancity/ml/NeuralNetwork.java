@@ -3,168 +3,260 @@ package com.minecraft.gancity.ml;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
  * Simple feedforward neural network - Pure Java implementation
  * 2-layer network with ReLU activation
+ *
+ * PERFORMANCE: Flat row-major storage, allocation-free hot paths
+ * - weights1 is [hidden][input] flattened, weights2 is [output][hidden] flattened,
+ *   so every dot product walks contiguous memory
+ * - forward(input, output) writes into caller buffers; hidden activations,
+ *   gradients and accumulators are preallocated per instance
+ * - trainBatch() accumulates gradients over the batch and applies one averaged update
+ *
+ * NOT thread-safe: scratch buffers are per instance.
  */
 public class NeuralNetwork implements Serializable {
-    private static final long serialVersionUID = 1L;
-    
+    private static final long serialVersionUID = 2L;
+
     private final int inputSize;
     private final int hiddenSize;
     private final int outputSize;
     private final float learningRate;
-    
-    // Layer 1: input -> hidden
-    private float[][] weights1;
-    private float[] biases1;
-    
-    // Layer 2: hidden -> output  
-    private float[][] weights2;
-    private float[] biases2;
-    
-    // Cached activations for backprop
+
+    // Layer 1: input -> hidden, row-major [hidden][input]
+    private final float[] weights1;
+    private final float[] biases1;
+
+    // Layer 2: hidden -> output, row-major [output][hidden]
+    private final float[] weights2;
+    private final float[] biases2;
+
+    // Scratch buffers (rebuilt lazily after deserialization)
     private transient float[] hiddenActivations;
-    
-    private Random random;
-    
+    private transient float[] outputScratch;
+    private transient float[] outputGradients;
+    private transient float[] hiddenGradients;
+    private transient float[] gradWeights1;
+    private transient float[] gradBiases1;
+    private transient float[] gradWeights2;
+    private transient float[] gradBiases2;
+
     public NeuralNetwork(int inputSize, int hiddenSize, int outputSize, float learningRate) {
         this.inputSize = inputSize;
         this.hiddenSize = hiddenSize;
         this.outputSize = outputSize;
         this.learningRate = learningRate;
-        this.random = new Random();
-        
-        initializeWeights();
+        this.weights1 = new float[hiddenSize * inputSize];
+        this.biases1 = new float[hiddenSize];
+        this.weights2 = new float[outputSize * hiddenSize];
+        this.biases2 = new float[outputSize];
+
+        initializeWeights(new Random());
     }
-    
-    private void initializeWeights() {
+
+    private void initializeWeights(Random random) {
         // Xavier/Glorot initialization
         float scale1 = (float) Math.sqrt(2.0 / inputSize);
         float scale2 = (float) Math.sqrt(2.0 / hiddenSize);
-        
-        weights1 = new float[inputSize][hiddenSize];
-        biases1 = new float[hiddenSize];
-        
-        for (int i = 0; i < inputSize; i++) {
-            for (int j = 0; j < hiddenSize; j++) {
-                weights1[i][j] = (random.nextFloat() - 0.5f) * 2 * scale1;
-            }
+
+        for (int i = 0; i < weights1.length; i++) {
+            weights1[i] = (random.nextFloat() - 0.5f) * 2 * scale1;
         }
-        
-        weights2 = new float[hiddenSize][outputSize];
-        biases2 = new float[outputSize];
-        
-        for (int i = 0; i < hiddenSize; i++) {
-            for (int j = 0; j < outputSize; j++) {
-                weights2[i][j] = (random.nextFloat() - 0.5f) * 2 * scale2;
-            }
+        for (int i = 0; i < weights2.length; i++) {
+            weights2[i] = (random.nextFloat() - 0.5f) * 2 * scale2;
         }
     }
-    
+
+    private void ensureScratch() {
+        if (hiddenActivations == null) {
+            hiddenActivations = new float[hiddenSize];
+            outputScratch = new float[outputSize];
+            outputGradients = new float[outputSize];
+            hiddenGradients = new float[hiddenSize];
+            gradWeights1 = new float[weights1.length];
+            gradBiases1 = new float[hiddenSize];
+            gradWeights2 = new float[weights2.length];
+            gradBiases2 = new float[outputSize];
+        }
+    }
+
     /**
-     * Forward pass
+     * Forward pass (allocates the result - prefer forward(input, output) on hot paths)
      */
     public float[] forward(float[] input) {
-        if (input.length != inputSize) {
+        float[] output = new float[outputSize];
+        forward(input, 0, output);
+        return output;
+    }
+
+    /**
+     * Forward pass into a caller-supplied output buffer (no allocation)
+     */
+    public void forward(float[] input, float[] output) {
+        forward(input, 0, output);
+    }
+
+    /**
+     * Forward pass reading one row of a packed [n * inputSize] input matrix
+     * Leaves hidden activations in the instance scratch for backprop
+     */
+    private void forward(float[] inputs, int inputOffset, float[] output) {
+        if (inputs.length - inputOffset < inputSize) {
             throw new IllegalArgumentException("Input size mismatch");
         }
-        
+        ensureScratch();
+
         // Layer 1: input -> hidden (with ReLU)
-        hiddenActivations = new float[hiddenSize];
         for (int j = 0; j < hiddenSize; j++) {
             float sum = biases1[j];
+            int row = j * inputSize;
             for (int i = 0; i < inputSize; i++) {
-                sum += input[i] * weights1[i][j];
+                sum += weights1[row + i] * inputs[inputOffset + i];
             }
-            hiddenActivations[j] = relu(sum);
+            hiddenActivations[j] = sum > 0 ? sum : 0;
         }
-        
+
         // Layer 2: hidden -> output
-        float[] output = new float[outputSize];
-        for (int j = 0; j < outputSize; j++) {
-            float sum = biases2[j];
-            for (int i = 0; i < hiddenSize; i++) {
-                sum += hiddenActivations[i] * weights2[i][j];
+        for (int k = 0; k < outputSize; k++) {
+            float sum = biases2[k];
+            int row = k * hiddenSize;
+            for (int j = 0; j < hiddenSize; j++) {
+                sum += weights2[row + j] * hiddenActivations[j];
             }
-            output[j] = sum;  // No activation on output layer for Q-values
+            output[k] = sum;  // No activation on output layer for Q-values
         }
-        
-        return output;
     }
-    
+
     /**
-     * Train on single sample using backpropagation
+     * Train on single sample using backpropagation (plain SGD, no allocation)
      */
     public void train(float[] input, float[] target) {
-        // Forward pass
-        float[] output = forward(input);
-        
-        // Compute output layer gradients (MSE loss)
-        float[] outputGradients = new float[outputSize];
-        for (int i = 0; i < outputSize; i++) {
-            outputGradients[i] = 2 * (output[i] - target[i]);
+        ensureScratch();
+        clearGradients();
+        accumulateGradients(input, 0, target, 0);
+        applyGradients(1.0f);
+    }
+
+    /**
+     * Mini-batch training: gradients are accumulated over all n samples and
+     * applied once, averaged over the batch
+     *
+     * @param inputs packed row-major [n * inputSize]
+     * @param targets packed row-major [n * outputSize]
+     * @param n number of samples
+     * @return mean squared error over the batch (before the update)
+     */
+    public float trainBatch(float[] inputs, float[] targets, int n) {
+        if (n <= 0) {
+            return 0.0f;
         }
-        
-        // Backprop to hidden layer
-        float[] hiddenGradients = new float[hiddenSize];
-        for (int i = 0; i < hiddenSize; i++) {
-            float sum = 0;
-            for (int j = 0; j < outputSize; j++) {
-                sum += outputGradients[j] * weights2[i][j];
-            }
-            // ReLU derivative
-            hiddenGradients[i] = hiddenActivations[i] > 0 ? sum : 0;
+        if (inputs.length < n * inputSize || targets.length < n * outputSize) {
+            throw new IllegalArgumentException("Batch arrays smaller than n=" + n);
         }
-        
-        // Update weights and biases (layer 2)
-        for (int i = 0; i < hiddenSize; i++) {
-            for (int j = 0; j < outputSize; j++) {
-                weights2[i][j] -= learningRate * outputGradients[j] * hiddenActivations[i];
-            }
+        ensureScratch();
+        clearGradients();
+
+        float loss = 0.0f;
+        for (int s = 0; s < n; s++) {
+            loss += accumulateGradients(inputs, s * inputSize, targets, s * outputSize);
         }
-        for (int i = 0; i < outputSize; i++) {
-            biases2[i] -= learningRate * outputGradients[i];
+        applyGradients(1.0f / n);
+        return loss / (n * outputSize);
+    }
+
+    private void clearGradients() {
+        Arrays.fill(gradWeights1, 0.0f);
+        Arrays.fill(gradBiases1, 0.0f);
+        Arrays.fill(gradWeights2, 0.0f);
+        Arrays.fill(gradBiases2, 0.0f);
+    }
+
+    /**
+     * Forward + backprop for one sample, adding into the gradient accumulators
+     * @return summed squared error for the sample
+     */
+    private float accumulateGradients(float[] inputs, int inputOffset, float[] targets, int targetOffset) {
+        forward(inputs, inputOffset, outputScratch);
+
+        // Output layer gradients (MSE loss)
+        float loss = 0.0f;
+        for (int k = 0; k < outputSize; k++) {
+            float diff = outputScratch[k] - targets[targetOffset + k];
+            outputGradients[k] = 2 * diff;
+            loss += diff * diff;
         }
-        
-        // Update weights and biases (layer 1)
-        for (int i = 0; i < inputSize; i++) {
+
+        // Backprop to hidden layer (ReLU derivative)
+        Arrays.fill(hiddenGradients, 0.0f);
+        for (int k = 0; k < outputSize; k++) {
+            float g = outputGradients[k];
+            int row = k * hiddenSize;
             for (int j = 0; j < hiddenSize; j++) {
-                weights1[i][j] -= learningRate * hiddenGradients[j] * input[i];
+                hiddenGradients[j] += g * weights2[row + j];
+                gradWeights2[row + j] += g * hiddenActivations[j];
+            }
+            gradBiases2[k] += g;
+        }
+        for (int j = 0; j < hiddenSize; j++) {
+            if (hiddenActivations[j] <= 0) {
+                hiddenGradients[j] = 0;
             }
         }
+
+        // Layer 1 gradients
+        for (int j = 0; j < hiddenSize; j++) {
+            float g = hiddenGradients[j];
+            if (g == 0) {
+                continue;
+            }
+            int row = j * inputSize;
+            for (int i = 0; i < inputSize; i++) {
+                gradWeights1[row + i] += g * inputs[inputOffset + i];
+            }
+            gradBiases1[j] += g;
+        }
+        return loss;
+    }
+
+    private void applyGradients(float scale) {
+        float step = learningRate * scale;
+        for (int i = 0; i < weights1.length; i++) {
+            weights1[i] -= step * gradWeights1[i];
+        }
         for (int i = 0; i < hiddenSize; i++) {
-            biases1[i] -= learningRate * hiddenGradients[i];
+            biases1[i] -= step * gradBiases1[i];
+        }
+        for (int i = 0; i < weights2.length; i++) {
+            weights2[i] -= step * gradWeights2[i];
+        }
+        for (int i = 0; i < outputSize; i++) {
+            biases2[i] -= step * gradBiases2[i];
         }
     }
-    
+
     /**
      * Copy weights from another network
      */
     public void copyWeightsFrom(NeuralNetwork other) {
-        for (int i = 0; i < inputSize; i++) {
-            System.arraycopy(other.weights1[i], 0, this.weights1[i], 0, hiddenSize);
+        if (other.inputSize != inputSize || other.hiddenSize != hiddenSize || other.outputSize != outputSize) {
+            throw new IllegalArgumentException("Network shape mismatch");
         }
+        System.arraycopy(other.weights1, 0, this.weights1, 0, weights1.length);
         System.arraycopy(other.biases1, 0, this.biases1, 0, hiddenSize);
-        
-        for (int i = 0; i < hiddenSize; i++) {
-            System.arraycopy(other.weights2[i], 0, this.weights2[i], 0, outputSize);
-        }
+        System.arraycopy(other.weights2, 0, this.weights2, 0, weights2.length);
         System.arraycopy(other.biases2, 0, this.biases2, 0, outputSize);
     }
-    
-    private float relu(float x) {
-        return Math.max(0, x);
-    }
-    
+
     public void save(Path path) throws IOException {
         try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(path))) {
             oos.writeObject(this);
         }
     }
-    
+
     public void load(Path path) throws IOException {
         try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(path))) {
             NeuralNetwork loaded = (NeuralNetwork) ois.readObject();
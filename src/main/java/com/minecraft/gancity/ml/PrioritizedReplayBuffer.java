@@ -1,163 +1,335 @@
 package com.minecraft.gancity.ml;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Prioritized Experience Replay - samples important experiences more frequently
  * Uses Sum Tree data structure for efficient priority-based sampling
- * 
+ *
+ * PERFORMANCE: Ring-indexed sum-tree + min-tree
+ * - add / evict / priority update are O(log n) leaf updates
+ * - sampling walks the tree once per item (stratified segments)
+ * - p^alpha is stored in the tree, never recomputed while sampling
+ * - min-tree gives the max importance weight without a full scan
+ * - transitions live in a columnar ExperienceStore (no per-transition objects)
+ *
  * CRITICAL FIX: Thread-safe with read-write locks for concurrent training
  */
 public class PrioritizedReplayBuffer {
-    
+
     private final int capacity;
-    private final Queue<Experience> buffer = new ConcurrentLinkedQueue<>();
-    private final PriorityQueue<PrioritizedExperience> priorityQueue;
+    private final int treeCapacity;          // Leaf count (power of two >= capacity)
+    private final ExperienceStore store;     // Columnar ring storage, slot i == tree leaf i
+    private final long[] slotStamps;         // Add sequence per slot (detects overwritten samples)
+    private long addSequence = 0;
+    private final double[] sumTree;          // Sum of p^alpha per subtree
+    private final double[] minTree;          // Min of p^alpha per subtree
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private float alpha = 0.6f;  // Priority exponent
-    private float beta = 0.4f;   // Importance sampling exponent
+    private float beta = 0.4f;   // Importance sampling exponent (initial)
     private float betaIncrement = 0.001f;
     private float maxPriority = 1.0f;
-    private int addCounter = 0;
-    private static final int CLEANUP_FREQUENCY = 100; // Cleanup every 100 adds
-    
+    private final AtomicLong sampleCalls = new AtomicLong();
+
+    /**
+     * Default state width: state(10) + visual(9) + genome(3), see MobBehaviorAI.combineFeatures
+     */
+    public static final int DEFAULT_STATE_DIM = 22;
+
     public PrioritizedReplayBuffer(int capacity) {
+        this(capacity, DEFAULT_STATE_DIM);
+    }
+
+    public PrioritizedReplayBuffer(int capacity, int stateDim) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Replay capacity must be positive: " + capacity);
+        }
         this.capacity = capacity;
-        this.priorityQueue = new PriorityQueue<>(
-            (a, b) -> Float.compare(b.priority, a.priority)
-        );
+        int leaves = 1;
+        while (leaves < capacity) {
+            leaves <<= 1;
+        }
+        this.treeCapacity = leaves;
+        this.store = new ExperienceStore(capacity, stateDim);
+        this.slotStamps = new long[capacity];
+        this.sumTree = new double[2 * leaves];
+        this.minTree = new double[2 * leaves];
+        Arrays.fill(minTree, Double.POSITIVE_INFINITY);
     }
-    
+
     /**
      * Add experience with default maximum priority
+     * Overwrites the oldest slot once the ring is full (O(log n) eviction)
+     * Arrays are copied into the store, so callers may reuse their buffers
      * Thread-safe with write lock
      */
     public void add(float[] state, int action, float reward, float[] nextState, boolean done) {
-        Experience exp = new Experience(state, action, reward, nextState, done);
-        
         lock.writeLock().lock();
         try {
-            // Remove oldest if at capacity
-            while (buffer.size() >= capacity) {
-                Experience removed = buffer.poll();
-                // Also remove from priority queue
-                priorityQueue.removeIf(pExp -> pExp.experience == removed);
-            }
-            
-            buffer.offer(exp);
-            
-            // Add to priority queue with max priority (new experiences are important)
-            PrioritizedExperience pExp = new PrioritizedExperience(exp, maxPriority);
-            priorityQueue.offer(pExp);
-            
-            // Periodic cleanup to prevent memory bloat
-            addCounter++;
-            if (addCounter % CLEANUP_FREQUENCY == 0) {
-                cleanupQueue();
-            }
+            int slot = store.append(state, action, reward, nextState, done);
+            slotStamps[slot] = ++addSequence;
+            // New experiences get max priority so they are replayed at least once
+            setLeaf(slot, Math.pow(maxPriority, alpha));
         } finally {
             lock.writeLock().unlock();
         }
     }
-    
-    /**
-     * Remove stale entries from priority queue
-     */
-    private void cleanupQueue() {
-        Set<Experience> validExperiences = new HashSet<>(buffer);
-        priorityQueue.removeIf(pExp -> !validExperiences.contains(pExp.experience));
-    }
-    
+
     /**
      * Sample batch based on priorities with importance sampling weights
+     * Stratified: the total priority mass is split into batchSize segments
+     * and one leaf is drawn from each, giving lower variance than i.i.d. draws
      * Thread-safe with read lock
      */
     public SampledBatch sample(int batchSize) {
+        return sample(batchSize, new ExperienceStore.Batch());
+    }
+
+    /**
+     * Sample into a caller-owned reusable batch (packed columns, no per-transition objects)
+     * The batch is gathered under the lock, so it stays consistent even if slots are
+     * overwritten before training runs
+     */
+    public SampledBatch sample(int batchSize, ExperienceStore.Batch into) {
+        // Increase beta over time (anneal to 1.0) without mutating shared state under the read lock
+        float currentBeta = Math.min(1.0f, beta + betaIncrement * sampleCalls.incrementAndGet());
+
         lock.readLock().lock();
         try {
-            List<Experience> experiences = new ArrayList<>();
-            List<Float> weights = new ArrayList<>();
-            
-            // Increase beta over time (anneal to 1.0)
-            beta = Math.min(1.0f, beta + betaIncrement);
-            
-            // Calculate total priority
-            float totalPriority = 0.0f;
-            for (PrioritizedExperience pExp : priorityQueue) {
-                totalPriority += Math.pow(pExp.priority, alpha);
-            }
-            
-            // Sample experiences based on priority
-            List<PrioritizedExperience> sampledList = new ArrayList<>();
-            Random rand = new Random();
-            
-            for (int i = 0; i < Math.min(batchSize, priorityQueue.size()); i++) {
-                float randValue = rand.nextFloat() * totalPriority;
-                float cumSum = 0.0f;
-                
-                for (PrioritizedExperience pExp : priorityQueue) {
-                    cumSum += Math.pow(pExp.priority, alpha);
-                    if (cumSum >= randValue) {
-                        experiences.add(pExp.experience);
-                        sampledList.add(pExp);
-                        
-                        // Calculate importance sampling weight
-                        float probability = (float) (Math.pow(pExp.priority, alpha) / totalPriority);
-                        float weight = (float) Math.pow(buffer.size() * probability, -beta);
-                        weights.add(weight);
-                        break;
-                    }
-                }
+            int count = store.size();
+            int n = Math.min(batchSize, count);
+            List<Float> weights = new ArrayList<>(Math.max(n, 0));
+            List<PrioritizedExperience> sampledList = new ArrayList<>(Math.max(n, 0));
+
+            double total = sumTree[1];
+            if (n <= 0 || total <= 0.0) {
+                into.size = 0;
+                return new SampledBatch(into, weights, sampledList);
             }
-            
-            // Normalize weights
-            if (!weights.isEmpty()) {
-                float maxWeight = Collections.max(weights);
-                for (int i = 0; i < weights.size(); i++) {
-                    weights.set(i, weights.get(i) / maxWeight);
-                }
+
+            // Max weight comes from the smallest priority (min-tree root)
+            double minProbability = minTree[1] / total;
+            double maxWeight = Math.pow(count * minProbability, -currentBeta);
+
+            ThreadLocalRandom rand = ThreadLocalRandom.current();
+            double segment = total / n;
+            int[] sampledSlots = new int[n];
+
+            for (int i = 0; i < n; i++) {
+                double target = segment * (i + rand.nextDouble());
+                int slot = findLeaf(target, count);
+                double leafPriority = sumTree[treeCapacity + slot];
+
+                sampledSlots[i] = slot;
+                sampledList.add(new PrioritizedExperience(slot, slotStamps[slot], (float) leafPriority));
+
+                // Importance sampling weight, normalized by the max possible weight
+                double probability = leafPriority / total;
+                double weight = Math.pow(count * probability, -currentBeta) / maxWeight;
+                weights.add((float) weight);
             }
-            
-            return new SampledBatch(experiences, weights, sampledList);
+
+            store.gather(sampledSlots, n, into);
+            return new SampledBatch(into, weights, sampledList);
         } finally {
             lock.readLock().unlock();
         }
     }
-    
+
     /**
      * Update priorities based on TD errors
+     * Entries whose slot was overwritten since sampling are skipped
      */
     public void updatePriorities(List<PrioritizedExperience> experiences, List<Float> tdErrors) {
-        for (int i = 0; i < experiences.size(); i++) {
-            PrioritizedExperience pExp = experiences.get(i);
-            float tdError = Math.abs(tdErrors.get(i)) + 1e-6f;  // Small constant to avoid zero priority
-            pExp.priority = tdError;
-            maxPriority = Math.max(maxPriority, tdError);
-        }
-        
-        // Rebuild priority queue
-        List<PrioritizedExperience> tempList = new ArrayList<>(priorityQueue);
-        priorityQueue.clear();
-        priorityQueue.addAll(tempList);
-    }
-    
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < experiences.size(); i++) {
+                PrioritizedExperience pExp = experiences.get(i);
+                float tdError = Math.abs(tdErrors.get(i)) + 1e-6f;  // Small constant to avoid zero priority
+                pExp.priority = tdError;
+                maxPriority = Math.max(maxPriority, tdError);
+
+                if (slotStamps[pExp.index] == pExp.stamp) {
+                    setLeaf(pExp.index, Math.pow(tdError, alpha));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     public int size() {
-        return buffer.size();
+        lock.readLock().lock();
+        try {
+            return store.size();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
-    
+
+    /**
+     * Ring position for a write-behind save - O(1) under the read lock
+     * Rows are copied later, chunk by chunk, by copyForSave (see ReplayBufferFile.write)
+     */
+    public SaveMark markForSave() {
+        lock.readLock().lock();
+        try {
+            int n = store.size();
+            return new SaveMark(n > 0 ? store.slotByAge(0) : 0, n, addSequence);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copy the next rows of a marked save into chunk, oldest first, with their priorities
+     * Holds the read lock for one chunk only, so training is never blocked for the
+     * whole buffer; rows overwritten since the mark are skipped
+     *
+     * @return the age to continue from (mark.count once every row has been visited)
+     */
+    int copyForSave(SaveMark mark, int fromAge, SaveChunk chunk) {
+        chunk.count = 0;
+        int dim = store.stateDim();
+        double inverseAlpha = 1.0 / alpha;
+        // Stamp the row at age 0 had when the mark was taken; stamps are consecutive
+        long firstStamp = mark.sequence - mark.count + 1;
+        int age = fromAge;
+        lock.readLock().lock();
+        try {
+            while (age < mark.count && chunk.count < chunk.capacity) {
+                int slot = (mark.oldestSlot + age) % capacity;
+                if (slotStamps[slot] == firstStamp + age) {
+                    int row = chunk.count++;
+                    store.copyState(slot, chunk.states, row * dim);
+                    store.copyNextState(slot, chunk.nextStates, row * dim);
+                    chunk.actions[row] = store.action(slot);
+                    chunk.rewards[row] = store.reward(slot);
+                    chunk.dones[row] = store.isDone(slot);
+                    chunk.priorities[row] = (float) Math.pow(sumTree[treeCapacity + slot], inverseAlpha);
+                }
+                age++;
+            }
+            return age;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the contents with persisted records (oldest first); when there are more
+     * records than capacity only the newest are kept
+     *
+     * @return number of transitions restored
+     */
+    int restore(ReplayBufferFile.Records records) {
+        lock.writeLock().lock();
+        try {
+            store.clear();
+            Arrays.fill(sumTree, 0.0);
+            Arrays.fill(minTree, Double.POSITIVE_INFINITY);
+            Arrays.fill(slotStamps, 0L);
+            maxPriority = 1.0f;
+            int first = Math.max(0, records.count - capacity);
+            for (int i = first; i < records.count; i++) {
+                int slot = store.appendFrom(records.buffer, records.stateOffset(i), records.nextStateOffset(i),
+                    records.action(i), records.reward(i), records.done(i));
+                slotStamps[slot] = ++addSequence;
+                float priority = records.priority(i);
+                if (!(priority > 0.0f) || Float.isInfinite(priority)) {
+                    priority = 1.0f;
+                }
+                maxPriority = Math.max(maxPriority, priority);
+                double leaf = Math.pow(priority, alpha);
+                sumTree[treeCapacity + slot] = leaf;
+                minTree[treeCapacity + slot] = leaf;
+            }
+            // Leaves first, then one bottom-up pass - O(n) instead of O(n log n) setLeaf calls
+            for (int node = treeCapacity - 1; node >= 1; node--) {
+                int left = node << 1;
+                sumTree[node] = sumTree[left] + sumTree[left + 1];
+                minTree[node] = Math.min(minTree[left], minTree[left + 1]);
+            }
+            return records.count - first;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     /**
      * Get top N experiences by reward (for Cloudflare sync)
      */
     public List<Experience> getTopExperiences(int n) {
-        return buffer.stream()
-            .sorted((e1, e2) -> Float.compare(e2.reward, e1.reward))
-            .limit(n)
-            .collect(java.util.stream.Collectors.toList());
+        lock.readLock().lock();
+        try {
+            return java.util.stream.IntStream.range(0, store.size())
+                .boxed()
+                .sorted((a, b) -> Float.compare(store.reward(b), store.reward(a)))
+                .limit(n)
+                .map(store::toExperience)
+                .collect(java.util.stream.Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int stateDim() {
+        return store.stateDim();
     }
-    
+
+    /**
+     * Memory footprint of the replay columns and trees
+     */
+    public String getMemoryStats() {
+        lock.readLock().lock();
+        try {
+            long treeBytes = 8L * (sumTree.length + minTree.length) + 8L * slotStamps.length;
+            return String.format("Replay: %d/%d transitions | columns: %d KB | trees: %d KB",
+                store.size(), capacity, store.memoryBytes() / 1024, treeBytes / 1024);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Set leaf value and propagate sums/mins to the root - O(log n)
+     */
+    private void setLeaf(int slot, double value) {
+        int node = treeCapacity + slot;
+        sumTree[node] = value;
+        minTree[node] = value;
+        node >>= 1;
+        while (node >= 1) {
+            int left = node << 1;
+            sumTree[node] = sumTree[left] + sumTree[left + 1];
+            minTree[node] = Math.min(minTree[left], minTree[left + 1]);
+            node >>= 1;
+        }
+    }
+
+    /**
+     * Descend the sum-tree to the leaf whose prefix range contains target - O(log n)
+     */
+    private int findLeaf(double target, int count) {
+        int node = 1;
+        while (node < treeCapacity) {
+            int left = node << 1;
+            if (target <= sumTree[left] || sumTree[left + 1] <= 0.0) {
+                node = left;
+            } else {
+                target -= sumTree[left];
+                node = left + 1;
+            }
+        }
+        int slot = node - treeCapacity;
+        // Floating point drift can land on an empty leaf past the filled region
+        return Math.min(slot, count - 1);
+    }
+
     public static class Experience {
         final float[] state;
         final int action;
@@ -173,27 +345,86 @@ public class PrioritizedReplayBuffer {
             this.done = done;
         }
     }
-    
+
+    /**
+     * Ring position captured by markForSave(): the oldest slot, the live row count and
+     * the add sequence of the newest row
+     */
+    public static final class SaveMark {
+        final int oldestSlot;
+        public final int count;
+        final long sequence;
+
+        SaveMark(int oldestSlot, int count, long sequence) {
+            this.oldestSlot = oldestSlot;
+            this.count = count;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Reusable block of rows filled by copyForSave()
+     * states / nextStates are [capacity * stateDim] row-major
+     */
+    static final class SaveChunk {
+        final int capacity;
+        int count;
+        final float[] states;
+        final float[] nextStates;
+        final int[] actions;
+        final float[] rewards;
+        final boolean[] dones;
+        final float[] priorities;
+
+        SaveChunk(int capacity, int stateDim) {
+            this.capacity = capacity;
+            this.states = new float[capacity * stateDim];
+            this.nextStates = new float[capacity * stateDim];
+            this.actions = new int[capacity];
+            this.rewards = new float[capacity];
+            this.dones = new boolean[capacity];
+            this.priorities = new float[capacity];
+        }
+    }
+
     private static class PrioritizedExperience {
-        final Experience experience;
+        final int index;     // Ring slot / tree leaf at sample time
+        final long stamp;    // Slot add sequence at sample time
         float priority;
 
-        PrioritizedExperience(Experience experience, float priority) {
-            this.experience = experience;
+        PrioritizedExperience(int index, long stamp, float priority) {
+            this.index = index;
+            this.stamp = stamp;
             this.priority = priority;
         }
     }
-    
+
     public static class SampledBatch {
+        public final ExperienceStore.Batch batch;
         public final List<Experience> experiences;
         public final List<Float> weights;
         public final List<PrioritizedExperience> prioritizedExperiences;
 
-        public SampledBatch(List<Experience> experiences, List<Float> weights, 
+        public SampledBatch(ExperienceStore.Batch batch, List<Float> weights,
                            List<PrioritizedExperience> prioritizedExperiences) {
-            this.experiences = experiences;
+            this.batch = batch;
             this.weights = weights;
             this.prioritizedExperiences = prioritizedExperiences;
+            // Legacy object view, materialized lazily per row from the packed batch
+            this.experiences = new AbstractList<Experience>() {
+                @Override
+                public Experience get(int index) {
+                    if (index < 0 || index >= batch.size) {
+                        throw new IndexOutOfBoundsException(index);
+                    }
+                    return batch.toExperience(index);
+                }
+
+                @Override
+                public int size() {
+                    return batch.size;
+                }
+            };
         }
     }
 }
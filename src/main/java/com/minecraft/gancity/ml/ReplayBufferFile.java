@@ -0,0 +1,197 @@
+package com.minecraft.gancity.ml;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary persistence for the prioritized replay buffer
+ *
+ * Layout (little-endian):
+ * - header: magic, version, stateDim, recordBytes, count, reserved (6 x int32)
+ * - count fixed-width records, oldest first:
+ *   state float32[stateDim], action int32, reward float32, nextState float32[stateDim],
+ *   priority float32, done uint8, 3 bytes padding
+ *
+ * PERFORMANCE:
+ * - write() copies rows out of the live buffer in CHUNK_ROWS blocks (short read locks,
+ *   see PrioritizedReplayBuffer.copyForSave) and streams them through one 64 KB direct
+ *   buffer - no per-transition objects, no full-buffer copy - then fsyncs and renames
+ *   atomically; the header count is patched in once the rows are written
+ * - load() reads the file into one heap buffer with bulk channel reads and restores
+ *   from it with absolute reads - a 100k-transition buffer (~18 MB) restores in
+ *   milliseconds
+ *
+ * load() deliberately does not memory-map: a mapping stays open until it is collected,
+ * and on Windows an open mapping makes the next save's atomic rename over the file fail.
+ */
+public final class ReplayBufferFile {
+
+    public static final String FILE_NAME = "prioritized_replay.bin";
+    private static final int MAGIC = 0x4252_4D41;  // "AMRB" little-endian
+    private static final int VERSION = 1;
+    static final int HEADER_BYTES = 24;
+    private static final int COUNT_OFFSET = 16;
+    private static final int CHUNK_ROWS = 1024;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+    private ReplayBufferFile() {
+    }
+
+    /**
+     * Bytes per record for a state width
+     */
+    static int recordBytes(int stateDim) {
+        return 8 * stateDim + 16;
+    }
+
+    /**
+     * Stream the rows of a save mark to disk (tmp file + fsync + atomic move)
+     * Meant for the I/O thread: rows overwritten after the mark are left out
+     *
+     * @return number of transitions written
+     */
+    public static int write(PrioritizedReplayBuffer buffer, PrioritizedReplayBuffer.SaveMark mark, Path path)
+            throws IOException {
+        int dim = buffer.stateDim();
+        int recordBytes = recordBytes(dim);
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        ByteBuffer out = ByteBuffer.allocateDirect(Math.max(WRITE_BUFFER_BYTES, recordBytes))
+            .order(ByteOrder.LITTLE_ENDIAN);
+        PrioritizedReplayBuffer.SaveChunk chunk = new PrioritizedReplayBuffer.SaveChunk(CHUNK_ROWS, dim);
+        int written = 0;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.putInt(MAGIC).putInt(VERSION).putInt(dim).putInt(recordBytes)
+                .putInt(0).putInt(0);
+            int age = 0;
+            while (age < mark.count) {
+                age = buffer.copyForSave(mark, age, chunk);
+                for (int i = 0; i < chunk.count; i++) {
+                    if (out.remaining() < recordBytes) {
+                        drain(out, channel);
+                    }
+                    int base = i * dim;
+                    for (int k = 0; k < dim; k++) {
+                        out.putFloat(chunk.states[base + k]);
+                    }
+                    out.putInt(chunk.actions[i]);
+                    out.putFloat(chunk.rewards[i]);
+                    for (int k = 0; k < dim; k++) {
+                        out.putFloat(chunk.nextStates[base + k]);
+                    }
+                    out.putFloat(chunk.priorities[i]);
+                    out.put(chunk.dones[i] ? (byte) 1 : (byte) 0);
+                    out.put((byte) 0).put((byte) 0).put((byte) 0);
+                }
+                written += chunk.count;
+            }
+            drain(out, channel);
+            out.putInt(written).flip();
+            channel.write(out, COUNT_OFFSET);
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    private static void drain(ByteBuffer out, FileChannel channel) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Read a file written by {@link #write} and restore it into buffer
+     * (newest records win if the file holds more than the buffer's capacity)
+     *
+     * @return number of transitions restored
+     */
+    public static int load(Path path, PrioritizedReplayBuffer buffer) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a replay buffer file: " + path);
+            }
+            data = ByteBuffer.allocate((int) size);
+            while (data.hasRemaining()) {
+                if (channel.read(data) < 0) {
+                    throw new IOException("Truncated or corrupt replay buffer file: " + path);
+                }
+            }
+        }
+        data.clear();
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        if (data.getInt(0) != MAGIC) {
+            throw new IOException("Not a replay buffer file: " + path);
+        }
+        int version = data.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported replay buffer version " + version);
+        }
+        int dim = data.getInt(8);
+        int recordBytes = data.getInt(12);
+        int count = data.getInt(COUNT_OFFSET);
+        if (dim != buffer.stateDim()) {
+            throw new IOException("Replay state width " + dim + " does not match buffer width " + buffer.stateDim());
+        }
+        if (recordBytes != recordBytes(dim) || count < 0
+                || (long) HEADER_BYTES + (long) count * recordBytes != data.capacity()) {
+            throw new IOException("Truncated or corrupt replay buffer file: " + path);
+        }
+        return buffer.restore(new Records(data, count, dim));
+    }
+
+    /**
+     * Read-only view of the records in a loaded file (absolute reads, no copies)
+     */
+    static final class Records {
+        final ByteBuffer buffer;
+        final int count;
+        final int stateDim;
+        private final int recordBytes;
+
+        Records(ByteBuffer buffer, int count, int stateDim) {
+            this.buffer = buffer;
+            this.count = count;
+            this.stateDim = stateDim;
+            this.recordBytes = recordBytes(stateDim);
+        }
+
+        int stateOffset(int record) {
+            return HEADER_BYTES + record * recordBytes;
+        }
+
+        int nextStateOffset(int record) {
+            return stateOffset(record) + 4 * stateDim + 8;
+        }
+
+        int action(int record) {
+            return buffer.getInt(stateOffset(record) + 4 * stateDim);
+        }
+
+        float reward(int record) {
+            return buffer.getFloat(stateOffset(record) + 4 * stateDim + 4);
+        }
+
+        float priority(int record) {
+            return buffer.getFloat(stateOffset(record) + 8 * stateDim + 8);
+        }
+
+        boolean done(int record) {
+            return buffer.get(stateOffset(record) + 8 * stateDim + 12) != 0;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.minecraft.gancity.ml;
 
+import com.minecraft.gancity.ai.DirtyFlagTracker;
 import com.minecraft.gancity.ai.FederatedLearning;
 import com.mojang.logging.LogUtils;
 import org.slf4j.Logger;
@@ -29,6 +30,9 @@ public class TacticKnowledgeBase {
     // Federated learning (optional)
     private FederatedLearning federatedLearning;
     
+    // Changed categories, saved as "knowledge:<category>" shards (optional)
+    private DirtyFlagTracker dirtyTracker;
+    
     // Configuration
     private static final int MAX_ENTRIES_PER_CATEGORY = 100;
     private static final float MIN_SUCCESS_RATE = 0.3f;
@@ -46,6 +50,13 @@ public class TacticKnowledgeBase {
         LOGGER.info("Federated learning enabled for knowledge base");
     }
     
+    /**
+     * Track changed categories for sharded saves (see ModelPersistence.saveShards)
+     */
+    public void setDirtyTracker(DirtyFlagTracker dirtyTracker) {
+        this.dirtyTracker = dirtyTracker;
+    }
+    
     /**
      * Initialize with baseline tactics
      */
@@ -168,6 +179,7 @@ public class TacticKnowledgeBase {
             }
         }
         
+        markDirty(category, tactic.name);
         LOGGER.debug("Added tactic '{}' to category '{}'", tactic.name, category);
     }
     
@@ -196,6 +208,7 @@ public class TacticKnowledgeBase {
                     entry.updateSuccessRate(newRate);
                     entry.timesUsed++;
                     category = catEntry.getKey();
+                    markDirty(category, entry.name);
                     
                     // Extract conditions for federated learning
                     for (String cond : entry.conditions) {
@@ -310,20 +323,76 @@ public class TacticKnowledgeBase {
     public void cleanup() {
         long currentTime = System.currentTimeMillis();
         
-        for (List<TacticEntry> entries : tacticsByCategory.values()) {
-            entries.removeIf(entry -> 
+        for (Map.Entry<String, List<TacticEntry>> catEntry : tacticsByCategory.entrySet()) {
+            boolean removed = catEntry.getValue().removeIf(entry -> 
                 (currentTime - entry.lastUsed) > ENTRY_EXPIRATION_MS &&
                 entry.successRate < MIN_SUCCESS_RATE
             );
+            if (removed) {
+                markDirty(catEntry.getKey(), null);
+            }
         }
         
         LOGGER.debug("Cleaned up old knowledge base entries");
     }
     
+    /**
+     * Copy a category's entries for a persisted shard (empty if the category is unknown)
+     */
+    public List<ModelShard.KnowledgeRecord> exportEntries(String category) {
+        List<TacticEntry> entries = tacticsByCategory.get(category);
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        List<ModelShard.KnowledgeRecord> records = new ArrayList<>(entries.size());
+        for (TacticEntry entry : entries) {
+            records.add(new ModelShard.KnowledgeRecord(entry.name, entry.description, entry.conditions,
+                entry.successRate, entry.type.name(), entry.lastUsed, entry.timesUsed));
+        }
+        return records;
+    }
+    
+    /**
+     * Replace a category's entries with persisted ones (startup)
+     */
+    public void restoreEntries(String category, List<ModelShard.KnowledgeRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        List<TacticEntry> entries = new ArrayList<>(records.size());
+        for (ModelShard.KnowledgeRecord record : records) {
+            TacticType type;
+            try {
+                type = TacticType.valueOf(record.type);
+            } catch (IllegalArgumentException e) {
+                type = TacticType.TACTICAL;
+            }
+            TacticEntry entry = new TacticEntry(record.name, record.description, record.conditions,
+                record.successRate, type);
+            entry.lastUsed = record.lastUsed;
+            entry.timesUsed = record.timesUsed;
+            entries.add(entry);
+        }
+        tacticsByCategory.put(category, entries);
+    }
+    
     /**
      * Helper methods
      */
     
+    private void markDirty(String category, String tacticName) {
+        DirtyFlagTracker tracker = dirtyTracker;
+        if (tracker == null) {
+            return;
+        }
+        String key = ModelShard.knowledgeKey(category);
+        if (tacticName != null) {
+            tracker.markDirty(key, tacticName);
+        } else {
+            tracker.markDirty(key);
+        }
+    }
+    
     private void addBaselineTactic(String category, TacticEntry tactic) {
         List<TacticEntry> entries = tacticsByCategory.computeIfAbsent(
             category, k -> new ArrayList<>()
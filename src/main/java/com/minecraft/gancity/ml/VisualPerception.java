@@ -1,5 +1,6 @@
 package com.minecraft.gancity.ml;
 
+import com.minecraft.gancity.ai.ActionRegistry;
 import com.minecraft.gancity.compat.CuriosIntegration;
 import com.minecraft.gancity.compat.EpicFightIntegration;
 import com.minecraft.gancity.compat.ModCompatibility;
@@ -23,6 +24,16 @@ public class VisualPerception {
     private static final long CACHE_DURATION_MS = 500; // Cache for 500ms
     private static final int MAX_CACHE_SIZE = 100; // Prevent memory bloat
     
+    // Recommended action ordinals (resolved once)
+    private static final int GROUP_RUSH = ActionRegistry.intern("group_rush");
+    private static final int STRAFE_SHOOT = ActionRegistry.intern("strafe_shoot");
+    private static final int CIRCLE_STRAFE = ActionRegistry.intern("circle_strafe");
+    private static final int AMBUSH = ActionRegistry.intern("ambush");
+    private static final int FLANK_ATTACK = ActionRegistry.intern("flank_attack");
+    private static final int KITE_BACKWARD = ActionRegistry.intern("kite_backward");
+    private static final int HIT_AND_RUN = ActionRegistry.intern("hit_and_run");
+    private static final int SURROUND = ActionRegistry.intern("surround");
+    
     /**
      * Analyze player visual state (with caching)
      */
@@ -96,57 +107,56 @@ public class VisualPerception {
     
     /**
      * Get tactical recommendations based on visual analysis
+     * Writes action ordinals into a caller-owned set (cleared first, no allocation)
      */
-    public List<String> getRecommendedActions(VisualState visual) {
-        List<String> recommendations = new ArrayList<>();
+    public void getRecommendedActions(VisualState visual, BitSet recommendations) {
+        recommendations.clear();
         
         // Counter heavily armored players
         if (visual.armorLevel > 0.8f) {
-            recommendations.add("group_rush");  // Overwhelm with numbers
-            recommendations.add("strafe_shoot"); // Wear down from range
+            recommendations.set(GROUP_RUSH);  // Overwhelm with numbers
+            recommendations.set(STRAFE_SHOOT); // Wear down from range
         }
         
         // Counter ranged weapons
         if (visual.hasRangedWeapon) {
-            recommendations.add("circle_strafe");  // Harder to hit
-            recommendations.add("ambush");         // Close distance quickly
+            recommendations.set(CIRCLE_STRAFE);  // Harder to hit
+            recommendations.set(AMBUSH);         // Close distance quickly
         }
         
         // Counter shield users
         if (visual.hasShield) {
-            recommendations.add("flank_attack");   // Attack from sides
-            recommendations.add("group_rush");     // Can't block multiple
+            recommendations.set(FLANK_ATTACK);   // Attack from sides
+            recommendations.set(GROUP_RUSH);     // Can't block multiple
         }
         
         // Counter melee weapons
         if (visual.weaponType.equals("melee")) {
-            recommendations.add("kite_backward");  // Maintain distance
-            recommendations.add("hit_and_run");    // Quick strikes
+            recommendations.set(KITE_BACKWARD);  // Maintain distance
+            recommendations.set(HIT_AND_RUN);    // Quick strikes
         }
         
         // Exploit vulnerable states
         if (visual.isSprinting) {
-            recommendations.add("ambush");         // Catch off guard
+            recommendations.set(AMBUSH);         // Catch off guard
         }
         
         if (visual.isSneaking) {
-            recommendations.add("surround");       // Can't see behind
+            recommendations.set(SURROUND);       // Can't see behind
         }
 
         // Epic Fight: if the target is in Epic Fight mode and actively charging/holding,
         // bias toward spacing and punishing low stamina.
         if (visual.epicFightDetected && visual.epicFightMode) {
             if (visual.epicFightHoldingSkill || visual.epicFightChargeRatio > 0.2f) {
-                recommendations.add("hit_and_run");
-                recommendations.add("kite_backward");
+                recommendations.set(HIT_AND_RUN);
+                recommendations.set(KITE_BACKWARD);
             }
 
             if (visual.epicFightStaminaRatio >= 0.0f && visual.epicFightStaminaRatio < 0.25f) {
-                recommendations.add("group_rush");
+                recommendations.set(GROUP_RUSH);
             }
         }
-        
-        return recommendations;
     }
     
     /**
@@ -257,17 +267,24 @@ public class VisualPerception {
         public int epicFightTicksSinceLastAction = 0;
         
         public float[] toFeatureVector() {
-            return new float[] {
-                armorLevel,
-                hasShield ? 1.0f : 0.0f,
-                weaponTier / 5.0f,
-                hasRangedWeapon ? 1.0f : 0.0f,
-                isSprinting ? 1.0f : 0.0f,
-                isSneaking ? 1.0f : 0.0f,
-                isBlocking ? 1.0f : 0.0f,
-                hasMagicalTrinkets ? 1.0f : 0.0f,
-                (curioEnhancement - 1.0f) / 0.3f  // Normalize 1.0-1.3 to 0.0-1.0
-            };
+            float[] features = new float[9];
+            writeFeatures(features, 0);
+            return features;
+        }
+        
+        /**
+         * Write the 9 visual features into out[offset..offset+8] (no allocation)
+         */
+        public void writeFeatures(float[] out, int offset) {
+            out[offset] = armorLevel;
+            out[offset + 1] = hasShield ? 1.0f : 0.0f;
+            out[offset + 2] = weaponTier / 5.0f;
+            out[offset + 3] = hasRangedWeapon ? 1.0f : 0.0f;
+            out[offset + 4] = isSprinting ? 1.0f : 0.0f;
+            out[offset + 5] = isSneaking ? 1.0f : 0.0f;
+            out[offset + 6] = isBlocking ? 1.0f : 0.0f;
+            out[offset + 7] = hasMagicalTrinkets ? 1.0f : 0.0f;
+            out[offset + 8] = (curioEnhancement - 1.0f) / 0.3f;  // Normalize 1.0-1.3 to 0.0-1.0
         }
     }
     
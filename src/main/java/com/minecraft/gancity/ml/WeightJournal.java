@@ -0,0 +1,540 @@
+package com.minecraft.gancity.ml;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of tactical learning updates between snapshots (write-ahead log)
+ *
+ * Segments are journal/weights-[generation].wal: magic + version, then records of
+ * int32 payload length, int32 CRC32 of the payload, payload (little-endian):
+ * - EPISODE: type, mob type, int16 row width, global row float32[width],
+ *   uint8 row count, then per row: uint8 situation, float32[width]
+ * Strings are int16 length + UTF-8. Records of unknown type are skipped.
+ *
+ * PERFORMANCE: Durability for microseconds per episode instead of a full save
+ * - appends encode into an in-memory buffer under a short lock (server thread)
+ * - the MobAI-Journal thread group-commits every COMMIT_INTERVAL_MS, or sooner once
+ *   GROUP_COMMIT_BYTES are pending: one write and one fsync for the whole group
+ * - a failed write keeps the unwritten chunks for the next commit (up to
+ *   MAX_RETAINED_BYTES) and truncates the torn tail it left, so later records stay readable
+ * - rotate() starts a new segment when a snapshot is captured; compact(generation)
+ *   deletes the segments that snapshot covers once it is safely on disk
+ * - recover() replays surviving segments in order and stops a segment at the first
+ *   torn or corrupt record, so a crash loses at most the last uncommitted group
+ *
+ * append / rotate are cheap and safe from any thread; file I/O happens only on MobAI-Journal.
+ */
+public final class WeightJournal {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final int MAGIC = 0x4C57_4D41;  // "AMWL" little-endian
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "weights-";
+    private static final String SEGMENT_EXTENSION = ".wal";
+    private static final long COMMIT_INTERVAL_MS = 200;
+    private static final int GROUP_COMMIT_BYTES = 32 * 1024;
+    private static final int MAX_RETAINED_BYTES = 8 * 1024 * 1024;
+
+    private static final byte EPISODE = 1;
+
+    /**
+     * Receives records during recover(), oldest first
+     */
+    public interface Replayer {
+        void episode(long generation, String mobType, float[] globalRow, float[][] situationalRows);
+    }
+
+    /**
+     * Encoded records bound for one segment
+     */
+    private static final class Chunk {
+        long generation;
+        ByteBuffer data = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private final Path directory;
+    private final ScheduledExecutorService committer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "MobAI-Journal");
+        t.setDaemon(true);
+        t.setUncaughtExceptionHandler((thread, throwable) -> {
+            LOGGER.error("Uncaught exception in MobAI journal thread: {}", throwable.getMessage());
+        });
+        return t;
+    });
+
+    // Guarded by lock
+    private final Object lock = new Object();
+    private Chunk active = new Chunk();
+    private final ArrayDeque<Chunk> sealed = new ArrayDeque<>();
+    private final ArrayDeque<Chunk> free = new ArrayDeque<>();
+    private final CRC32 appendCrc = new CRC32();
+    private boolean earlyCommitQueued = false;
+    private long records = 0;
+    private long bytes = 0;
+
+    // Committer thread only
+    private FileChannel channel = null;
+    private long channelGeneration = -1;
+    private volatile long commits = 0;
+    private volatile long syncNanos = 0;
+    private volatile long compactedSegments = 0;
+
+    public WeightJournal(Path directory) {
+        this.directory = directory;
+        long newest = 0;
+        try {
+            Files.createDirectories(directory);
+            for (long generation : listGenerations()) {
+                newest = Math.max(newest, generation);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to open weight journal at {}", directory, e);
+        }
+        // Never append to a segment that may end in a torn record
+        active.generation = newest + 1;
+        committer.scheduleWithFixedDelay(this::commitQuietly, COMMIT_INTERVAL_MS, COMMIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Journal one aggregated episode: the same rows TacticalWeightAggregator folds in
+     */
+    public void appendEpisode(String mobType, float[] globalRow, float[][] situationalRows) {
+        byte[] name = mobType.getBytes(StandardCharsets.UTF_8);
+        int width = globalRow.length;
+        int rows = 0;
+        for (float[] row : situationalRows) {
+            if (row != null) {
+                rows++;
+            }
+        }
+        int payload = 1 + 2 + name.length + 2 + 4 * width + 1 + rows * (1 + 4 * width);
+        synchronized (lock) {
+            ByteBuffer out = begin(payload);
+            out.put(EPISODE);
+            out.putShort((short) name.length).put(name);
+            out.putShort((short) width);
+            for (float value : globalRow) {
+                out.putFloat(value);
+            }
+            out.put((byte) rows);
+            for (int situation = 0; situation < situationalRows.length; situation++) {
+                float[] row = situationalRows[situation];
+                if (row == null) {
+                    continue;
+                }
+                out.put((byte) situation);
+                for (int i = 0; i < width; i++) {
+                    out.putFloat(i < row.length ? row[i] : Float.NaN);
+                }
+            }
+            end(payload);
+        }
+    }
+
+    private ByteBuffer begin(int payload) {
+        ByteBuffer out = active.data;
+        int needed = RECORD_HEADER_BYTES + payload;
+        if (out.remaining() < needed) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + needed))
+                .order(ByteOrder.LITTLE_ENDIAN);
+            out.flip();
+            grown.put(out);
+            active.data = grown;
+            out = grown;
+        }
+        out.putInt(payload).putInt(0);  // CRC patched in end()
+        return out;
+    }
+
+    private void end(int payload) {
+        ByteBuffer out = active.data;
+        int start = out.position() - payload;
+        appendCrc.reset();
+        appendCrc.update(out.array(), out.arrayOffset() + start, payload);
+        out.putInt(start - 4, (int) appendCrc.getValue());
+        records++;
+        bytes += RECORD_HEADER_BYTES + payload;
+        if (out.position() >= GROUP_COMMIT_BYTES && !earlyCommitQueued) {
+            earlyCommitQueued = true;
+            committer.execute(this::commitQuietly);
+        }
+    }
+
+    /**
+     * Close the current segment for new records (snapshot capture)
+     *
+     * @return generation of the closed segment: a snapshot taken now covers every
+     *         record in it and in older segments
+     */
+    public long rotate() {
+        synchronized (lock) {
+            long closed = active.generation;
+            sealActive(closed + 1);
+            return closed;
+        }
+    }
+
+    private void sealActive(long nextGeneration) {
+        Chunk next = free.isEmpty() ? new Chunk() : free.poll();
+        next.generation = nextGeneration;
+        if (active.data.position() > 0) {
+            sealed.add(active);
+        } else {
+            free.add(active);
+        }
+        active = next;
+    }
+
+    /**
+     * Delete segments up to and including generation once the snapshot that covers
+     * them is on disk (runs after any pending commit)
+     */
+    public void compact(long generation) {
+        committer.execute(() -> {
+            commitQuietly();
+            if (channelGeneration <= generation) {
+                closeChannel();
+            }
+            List<Long> generations;
+            try {
+                generations = listGenerations();
+            } catch (IOException e) {
+                LOGGER.warn("Weight journal compaction failed: {}", e.getMessage());
+                return;
+            }
+            // One failed delete (e.g. a segment still open elsewhere) must not keep the rest
+            for (long existing : generations) {
+                if (existing > generation) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(segmentPath(existing));
+                    compactedSegments++;
+                } catch (IOException e) {
+                    LOGGER.warn("Could not delete journal segment {}: {}", existing, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Commit everything appended so far and close the open segment, waiting up to
+     * timeoutMs (server stopping, and before recover)
+     */
+    public void sync(long timeoutMs) {
+        try {
+            committer.submit(() -> {
+                commitQuietly();
+                closeChannel();
+            }).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.warn("Weight journal sync did not finish: {}", e.getMessage());
+        }
+    }
+
+    private void commitQuietly() {
+        try {
+            commit();
+        } catch (IOException e) {
+            LOGGER.error("Weight journal commit failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Group commit: write every sealed chunk plus the active one, then one fsync
+     * On a failed write the chunk being written and every later one are kept, oldest
+     * first, for the next commit; chunks already handed to the OS are not written twice
+     */
+    private void commit() throws IOException {
+        List<Chunk> batch;
+        synchronized (lock) {
+            earlyCommitQueued = false;
+            if (active.data.position() > 0) {
+                sealActive(active.generation);
+            }
+            if (sealed.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(sealed);
+            sealed.clear();
+        }
+
+        long start = System.nanoTime();
+        int written = 0;
+        try {
+            for (Chunk chunk : batch) {
+                if (channelGeneration != chunk.generation) {
+                    openChannel(chunk.generation);
+                }
+                long segmentSize = channel.size();
+                ByteBuffer data = chunk.data;
+                data.flip();
+                try {
+                    while (data.hasRemaining()) {
+                        channel.write(data);
+                    }
+                } catch (IOException e) {
+                    data.position(data.limit()).limit(data.capacity());  // Back to appendable
+                    truncateTornTail(segmentSize);
+                    throw e;
+                }
+                written++;
+            }
+            channel.force(false);
+        } finally {
+            synchronized (lock) {
+                for (int i = 0; i < written; i++) {
+                    Chunk chunk = batch.get(i);
+                    chunk.data.clear();
+                    free.add(chunk);
+                }
+                retain(batch.subList(written, batch.size()));
+            }
+        }
+        commits++;
+        syncNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Put unwritten chunks back ahead of anything sealed since (caller holds lock)
+     * Beyond MAX_RETAINED_BYTES the oldest are dropped so a dead disk cannot grow the heap
+     */
+    private void retain(List<Chunk> unwritten) {
+        for (int i = unwritten.size() - 1; i >= 0; i--) {
+            sealed.addFirst(unwritten.get(i));
+        }
+        long retained = 0;
+        for (Chunk chunk : sealed) {
+            retained += chunk.data.position();
+        }
+        while (retained > MAX_RETAINED_BYTES && sealed.size() > 1) {
+            Chunk dropped = sealed.poll();
+            retained -= dropped.data.position();
+            LOGGER.error("Weight journal dropped {} KB of unwritten records (segment {})",
+                dropped.data.position() / 1024, dropped.generation);
+            dropped.data.clear();
+            free.add(dropped);
+        }
+    }
+
+    /**
+     * Cut a partially written chunk off the segment so the retry appends after whole records
+     * If that fails too the segment is closed; recovery then stops at the torn record
+     */
+    private void truncateTornTail(long segmentSize) {
+        try {
+            channel.truncate(segmentSize);
+        } catch (IOException e) {
+            LOGGER.warn("Could not truncate torn journal segment {}: {}", channelGeneration, e.getMessage());
+            closeChannel();
+        }
+    }
+
+    private void openChannel(long generation) throws IOException {
+        closeChannel();
+        channel = FileChannel.open(segmentPath(generation), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        channelGeneration = generation;
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close weight journal segment: {}", e.getMessage());
+        }
+        channel = null;
+        channelGeneration = -1;
+    }
+
+    /**
+     * Replay every surviving segment, oldest first; new records go to a newer segment
+     *
+     * @return number of records replayed
+     */
+    public int recover(Replayer replayer) {
+        sync(10_000L);
+        int replayed = 0;
+        long newest = 0;
+        long start = System.nanoTime();
+        try {
+            for (long generation : listGenerations()) {
+                newest = Math.max(newest, generation);
+                replayed += replaySegment(generation, replayer);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Weight journal recovery stopped early: {}", e.getMessage());
+        }
+        synchronized (lock) {
+            if (active.generation <= newest) {
+                sealActive(newest + 1);
+            }
+        }
+        if (replayed > 0) {
+            LOGGER.info("Replayed {} journaled learning updates in {} ms", replayed,
+                (System.nanoTime() - start) / 1_000_000);
+        }
+        return replayed;
+    }
+
+    private int replaySegment(long generation, Replayer replayer) throws IOException {
+        Path path = segmentPath(generation);
+        // Read, not mapped: a live mapping would stop compact() deleting the file on Windows
+        ByteBuffer data;
+        try (FileChannel segment = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = segment.size();
+            if (size < SEGMENT_HEADER_BYTES || size > Integer.MAX_VALUE) {
+                return 0;
+            }
+            data = ByteBuffer.allocate((int) size);
+            while (data.hasRemaining()) {
+                if (segment.read(data) < 0) {
+                    break;  // Shrank under us - the tail reads as a torn record
+                }
+            }
+        }
+        data.flip();
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        if (data.limit() < SEGMENT_HEADER_BYTES || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            LOGGER.warn("Skipping unrecognized journal segment {}", path);
+            return 0;
+        }
+
+        CRC32 crc = new CRC32();
+        int replayed = 0;
+        int position = SEGMENT_HEADER_BYTES;
+        int limit = data.limit();
+        while (position + RECORD_HEADER_BYTES <= limit) {
+            int payload = data.getInt(position);
+            int expected = data.getInt(position + 4);
+            int start = position + RECORD_HEADER_BYTES;
+            if (payload <= 0 || payload > limit - start) {
+                LOGGER.warn("Journal segment {} ends in a torn record, ignoring the tail", path);
+                break;
+            }
+            ByteBuffer record = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            record.position(start).limit(start + payload);
+            crc.reset();
+            crc.update(record.duplicate());
+            if ((int) crc.getValue() != expected) {
+                LOGGER.warn("Journal segment {} has a corrupt record, ignoring the tail", path);
+                break;
+            }
+            try {
+                if (replayRecord(generation, record, replayer)) {
+                    replayed++;
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Skipping unreadable journal record in {}: {}", path, e.getMessage());
+            }
+            position = start + payload;
+        }
+        return replayed;
+    }
+
+    /**
+     * @return false for a record of unknown type (skipped)
+     */
+    private static boolean replayRecord(long generation, ByteBuffer record, Replayer replayer) {
+        byte type = record.get();
+        if (type != EPISODE) {
+            return false;
+        }
+        String mobType = readString(record);
+        int width = record.getShort();
+        float[] globalRow = readRow(record, width);
+        int rows = record.get() & 0xFF;
+        float[][] situationalRows = new float[rows == 0 ? 0 : 256][];
+        int highest = -1;
+        for (int i = 0; i < rows; i++) {
+            int situation = record.get() & 0xFF;
+            situationalRows[situation] = readRow(record, width);
+            highest = Math.max(highest, situation);
+        }
+        float[][] trimmed = new float[highest + 1][];
+        System.arraycopy(situationalRows, 0, trimmed, 0, highest + 1);
+        replayer.episode(generation, mobType, globalRow, trimmed);
+        return true;
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getShort() & 0xFFFF];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static float[] readRow(ByteBuffer record, int width) {
+        float[] row = new float[width];
+        for (int i = 0; i < width; i++) {
+            row[i] = record.getFloat();
+        }
+        return row;
+    }
+
+    private List<Long> listGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_EXTENSION)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_EXTENSION.length())));
+                } catch (NumberFormatException e) {
+                    LOGGER.debug("Ignoring stray journal file {}", name);
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private Path segmentPath(long generation) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, generation, SEGMENT_EXTENSION));
+    }
+
+    public String getStats() {
+        long appended;
+        long appendedBytes;
+        synchronized (lock) {
+            appended = records;
+            appendedBytes = bytes;
+        }
+        long commitCount = commits;
+        return String.format("Weight journal: %d records (%d KB), %d group commits (%.2f ms avg), %d segments compacted",
+            appended, appendedBytes / 1024, commitCount,
+            commitCount > 0 ? syncNanos / 1_000_000.0 / commitCount : 0.0, compactedSegments);
+    }
+}
@@ -0,0 +1,92 @@
+package com.minecraft.gancity.network;
+
+import com.minecraft.gancity.ai.MobBehaviorAI.AITier;
+import com.minecraft.gancity.ai.TierVisualIndicators;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.particles.DustParticleOptions;
+import net.minecraft.core.particles.ParticleTypes;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.entity.Entity;
+
+/**
+ * Client-side particle spawning for TierParticlesPacket
+ * Mirrors the shapes the server used to send particle by particle
+ *
+ * CLIENT ONLY: referenced through DistExecutor so dedicated servers never load it.
+ */
+public final class ClientTierParticles {
+
+    private static final AITier[] AI_TIERS = AITier.values();
+
+    private ClientTierParticles() {
+    }
+
+    static void spawn(TierParticlesPacket packet) {
+        ClientLevel level = Minecraft.getInstance().level;
+        if (level == null) {
+            return;
+        }
+        RandomSource random = level.getRandom();
+        for (int i = 0; i < packet.count; i++) {
+            Entity entity = level.getEntity(packet.entityIds[i]);
+            if (entity == null || entity.isRemoved()) {
+                continue;
+            }
+            int kind = packet.kinds[i];
+            if (kind == TierParticlesPacket.KIND_ELITE) {
+                spawnEliteFlames(level, entity, random);
+            } else {
+                int tier = kind - TierParticlesPacket.KIND_AI_TIER;
+                if (tier >= 0 && tier < AI_TIERS.length) {
+                    spawnTierRing(level, entity, AI_TIERS[tier], random);
+                }
+            }
+        }
+    }
+
+    private static void spawnEliteFlames(ClientLevel level, Entity entity, RandomSource random) {
+        // Red flame particles in a circle around elite mobs
+        double radius = 0.5;
+        for (int i = 0; i < 3; i++) {
+            double angle = random.nextDouble() * Math.PI * 2;
+            level.addParticle(ParticleTypes.FLAME,
+                entity.getX() + Math.cos(angle) * radius,
+                entity.getY() + random.nextDouble() * entity.getBbHeight(),
+                entity.getZ() + Math.sin(angle) * radius,
+                0.0, 0.05, 0.0);
+        }
+    }
+
+    private static void spawnTierRing(ClientLevel level, Entity entity, AITier tier, RandomSource random) {
+        int particleCount = TierVisualIndicators.getParticleCount(tier);
+        if (particleCount == 0) {
+            return;
+        }
+        DustParticleOptions particleData = TierVisualIndicators.getTierParticleColor(tier);
+        double x = entity.getX();
+        double y = entity.getY() + entity.getBbHeight() / 2.0;
+        double z = entity.getZ();
+
+        // Ring around the mob
+        for (int i = 0; i < particleCount; i++) {
+            double angle = (2 * Math.PI * i) / particleCount;
+            level.addParticle(particleData,
+                x + Math.cos(angle) * 0.5,
+                y + (random.nextDouble() - 0.5) * 0.3,
+                z + Math.sin(angle) * 0.5,
+                0.0, 0.0, 0.0);
+        }
+
+        // MASTER tier gets extra glow effect
+        if (tier == AITier.MASTER) {
+            for (int i = 0; i < 2; i++) {
+                level.addParticle(ParticleTypes.ENCHANT,
+                    x + (random.nextDouble() - 0.5) * entity.getBbWidth(),
+                    y + (random.nextDouble() - 0.5) * entity.getBbHeight(),
+                    z + (random.nextDouble() - 0.5) * entity.getBbWidth(),
+                    0.0, 0.1, 0.0);
+            }
+        }
+    }
+}
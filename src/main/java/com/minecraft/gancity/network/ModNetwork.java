@@ -0,0 +1,61 @@
+package com.minecraft.gancity.network;
+
+import com.minecraft.gancity.GANCityMod;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.network.NetworkDirection;
+import net.minecraftforge.network.NetworkRegistry;
+import net.minecraftforge.network.PacketDistributor;
+import net.minecraftforge.network.simple.SimpleChannel;
+
+/**
+ * Mod network channel
+ *
+ * The mod is server-side first: vanilla clients (and clients without the mod) are
+ * accepted, and callers must check hasChannel() and fall back to vanilla packets.
+ */
+@SuppressWarnings("removal")
+public final class ModNetwork {
+
+    private static final String PROTOCOL_VERSION = "1";
+
+    public static final SimpleChannel CHANNEL = NetworkRegistry.newSimpleChannel(
+        new ResourceLocation(GANCityMod.MODID, "main"),
+        () -> PROTOCOL_VERSION,
+        NetworkRegistry.acceptMissingOr(PROTOCOL_VERSION),
+        NetworkRegistry.acceptMissingOr(PROTOCOL_VERSION)
+    );
+
+    private static boolean registered = false;
+
+    private ModNetwork() {
+    }
+
+    /**
+     * Register messages (FMLCommonSetupEvent)
+     */
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+
+        int id = 0;
+        CHANNEL.messageBuilder(TierParticlesPacket.class, id++, NetworkDirection.PLAY_TO_CLIENT)
+            .encoder(TierParticlesPacket::encode)
+            .decoder(TierParticlesPacket::decode)
+            .consumerMainThread(TierParticlesPacket::handle)
+            .add();
+    }
+
+    /**
+     * Whether the player's client has this mod's channel
+     */
+    public static boolean hasChannel(ServerPlayer player) {
+        return player.connection != null && CHANNEL.isRemotePresent(player.connection.connection);
+    }
+
+    public static void sendTo(ServerPlayer player, Object message) {
+        CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), message);
+    }
+}
@@ -0,0 +1,162 @@
+package com.minecraft.gancity.network;
+
+import com.minecraft.gancity.ai.MobBehaviorAI.AITier;
+import com.minecraft.gancity.ai.TierVisualIndicators;
+import net.minecraft.core.particles.ParticleTypes;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Mob;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Collects tier particle effects during a tick and sends them once per player
+ *
+ * PERFORMANCE: Replaces per-particle ServerLevel.sendParticles calls
+ * - sendParticles fans one ClientboundLevelParticlesPacket out to every nearby
+ *   player per particle, i.e. O(mobs x particles x players) packets
+ * - effects are queued as (mob, kind) and flushed at the end of the tick as one
+ *   TierParticlesPacket per player listing the mobs within particle range;
+ *   the client spawns the particles itself (ClientTierParticles)
+ * - players without the mod's channel get one vanilla packet per effect
+ *   (count + spread) instead of one per particle
+ *
+ * NOT thread-safe: server thread only.
+ */
+public final class TierParticleBatcher {
+
+    // Same cut-off vanilla uses for non-forced particles
+    private static final double PARTICLE_RANGE_SQ = 32.0 * 32.0;
+    private static final AITier[] AI_TIERS = AITier.values();
+
+    private static final Map<ServerLevel, TierParticleBatcher> PENDING = new WeakHashMap<>();
+
+    private static long packetsSent = 0;
+    private static long effectsSent = 0;
+    private static long vanillaFallbacks = 0;
+
+    private Mob[] mobs = new Mob[32];
+    private byte[] kinds = new byte[32];
+    private int size = 0;
+
+    // Per-player scratch, copied into each packet (packets may be encoded off-thread)
+    private int[] scratchIds = new int[32];
+    private byte[] scratchKinds = new byte[32];
+
+    private TierParticleBatcher() {
+    }
+
+    /**
+     * Queue elite (TacticTier.ELITE) flames around a mob for this tick
+     */
+    public static void queueElite(ServerLevel level, Mob mob) {
+        queue(level, mob, TierParticlesPacket.KIND_ELITE);
+    }
+
+    /**
+     * Queue an AI tier ring around a mob for this tick
+     */
+    public static void queueAITier(ServerLevel level, Mob mob, AITier tier) {
+        queue(level, mob, (byte) (TierParticlesPacket.KIND_AI_TIER + tier.ordinal()));
+    }
+
+    private static void queue(ServerLevel level, Mob mob, byte kind) {
+        TierParticleBatcher batch = PENDING.computeIfAbsent(level, l -> new TierParticleBatcher());
+        if (batch.size == batch.mobs.length) {
+            batch.mobs = Arrays.copyOf(batch.mobs, batch.size * 2);
+            batch.kinds = Arrays.copyOf(batch.kinds, batch.size * 2);
+        }
+        batch.mobs[batch.size] = mob;
+        batch.kinds[batch.size] = kind;
+        batch.size++;
+    }
+
+    /**
+     * Send everything queued this tick (end of server tick)
+     */
+    public static void flush() {
+        if (PENDING.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<ServerLevel, TierParticleBatcher> entry : PENDING.entrySet()) {
+            TierParticleBatcher batch = entry.getValue();
+            if (batch.size > 0) {
+                batch.send(entry.getKey());
+                Arrays.fill(batch.mobs, 0, batch.size, null);
+                batch.size = 0;
+            }
+        }
+    }
+
+    public static void clear() {
+        PENDING.clear();
+    }
+
+    private void send(ServerLevel level) {
+        for (ServerPlayer player : level.players()) {
+            boolean modded = ModNetwork.hasChannel(player);
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                Mob mob = mobs[i];
+                if (mob.isRemoved() || player.distanceToSqr(mob) >= PARTICLE_RANGE_SQ) {
+                    continue;
+                }
+                if (!modded) {
+                    sendVanilla(level, player, mob, kinds[i]);
+                    continue;
+                }
+                if (count == scratchIds.length) {
+                    scratchIds = Arrays.copyOf(scratchIds, count * 2);
+                    scratchKinds = Arrays.copyOf(scratchKinds, count * 2);
+                }
+                scratchIds[count] = mob.getId();
+                scratchKinds[count] = kinds[i];
+                count++;
+            }
+            if (count > 0) {
+                ModNetwork.sendTo(player, new TierParticlesPacket(count,
+                    Arrays.copyOf(scratchIds, count), Arrays.copyOf(scratchKinds, count)));
+                packetsSent++;
+                effectsSent += count;
+            }
+        }
+    }
+
+    /**
+     * Fallback for clients without the channel: one vanilla packet per effect,
+     * letting the client scatter count particles over the spread box
+     */
+    private static void sendVanilla(ServerLevel level, ServerPlayer player, Mob mob, byte kind) {
+        vanillaFallbacks++;
+        double centerY = mob.getY() + mob.getBbHeight() / 2.0;
+        if (kind == TierParticlesPacket.KIND_ELITE) {
+            level.sendParticles(player, ParticleTypes.FLAME, false,
+                mob.getX(), centerY, mob.getZ(),
+                3, 0.35, mob.getBbHeight() / 4.0, 0.35, 0.01);
+            return;
+        }
+        int tierIndex = kind - TierParticlesPacket.KIND_AI_TIER;
+        if (tierIndex < 0 || tierIndex >= AI_TIERS.length) {
+            return;
+        }
+        AITier tier = AI_TIERS[tierIndex];
+        int particleCount = TierVisualIndicators.getParticleCount(tier);
+        if (particleCount > 0) {
+            level.sendParticles(player, TierVisualIndicators.getTierParticleColor(tier), false,
+                mob.getX(), centerY, mob.getZ(),
+                particleCount, 0.35, 0.15, 0.35, 0.02);
+        }
+        if (tier == AITier.MASTER) {
+            level.sendParticles(player, ParticleTypes.ENCHANT, false,
+                mob.getX(), centerY, mob.getZ(),
+                2, mob.getBbWidth() / 2.0, mob.getBbHeight() / 2.0, mob.getBbWidth() / 2.0, 0.5);
+        }
+    }
+
+    public static String getStats() {
+        return String.format("Tier particles: %d packets, %d effects, %d vanilla fallbacks",
+            packetsSent, effectsSent, vanillaFallbacks);
+    }
+}
@@ -0,0 +1,55 @@
+package com.minecraft.gancity.network;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * One tick's tier particles for one player: (entity ID, effect kind) pairs
+ * The client looks each entity up and spawns the particles locally
+ *
+ * Wire format: varint count, then per entry varint entity ID + one kind byte
+ */
+public final class TierParticlesPacket {
+
+    // Effect kinds (see ClientTierParticles / TierParticleBatcher)
+    public static final byte KIND_ELITE = 0;        // TacticTier.ELITE flames
+    public static final byte KIND_AI_TIER = 1;      // + MobBehaviorAI.AITier ordinal: dust ring
+
+    final int count;
+    final int[] entityIds;
+    final byte[] kinds;
+
+    public TierParticlesPacket(int count, int[] entityIds, byte[] kinds) {
+        this.count = count;
+        this.entityIds = entityIds;
+        this.kinds = kinds;
+    }
+
+    public void encode(FriendlyByteBuf buf) {
+        buf.writeVarInt(count);
+        for (int i = 0; i < count; i++) {
+            buf.writeVarInt(entityIds[i]);
+            buf.writeByte(kinds[i]);
+        }
+    }
+
+    public static TierParticlesPacket decode(FriendlyByteBuf buf) {
+        int count = buf.readVarInt();
+        int[] entityIds = new int[count];
+        byte[] kinds = new byte[count];
+        for (int i = 0; i < count; i++) {
+            entityIds[i] = buf.readVarInt();
+            kinds[i] = buf.readByte();
+        }
+        return new TierParticlesPacket(count, entityIds, kinds);
+    }
+
+    public void handle(Supplier<NetworkEvent.Context> context) {
+        DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> ClientTierParticles.spawn(this));
+        context.get().setPacketHandled(true);
+    }
+}
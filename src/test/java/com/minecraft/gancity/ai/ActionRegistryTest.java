@@ -0,0 +1,44 @@
+package com.minecraft.gancity.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ActionRegistryTest {
+
+    @Test
+    void nthAndRankFollowProfileOrderNotOrdinalOrder() {
+        // Ordinals ascend in this order, the profile lists them the other way round
+        int first = ActionRegistry.intern("straight_charge");
+        int second = ActionRegistry.intern("retreat");
+        int third = ActionRegistry.intern("fake_retreat");
+        int[] order = {third, second, first};
+        BitSet valid = new BitSet();
+        valid.set(first);
+        valid.set(third);
+
+        assertEquals(third, ActionRegistry.nth(order, order.length, valid, 0));
+        assertEquals(first, ActionRegistry.nth(order, order.length, valid, 1));
+        assertEquals(ActionRegistry.NO_ACTION, ActionRegistry.nth(order, order.length, valid, 2));
+        assertEquals(0, ActionRegistry.rank(order, order.length, valid, third));
+        assertEquals(1, ActionRegistry.rank(order, order.length, valid, first));
+        assertEquals(ActionRegistry.NO_ACTION, ActionRegistry.rank(order, order.length, valid, second));
+    }
+
+    @Test
+    void unknownNamesAreNotInterned() {
+        int before = ActionRegistry.size();
+        assertEquals(ActionRegistry.NO_ACTION, ActionRegistry.ordinalOf("federated_garbage_tactic"));
+        assertEquals(before, ActionRegistry.size());
+    }
+
+    @Test
+    void unmappedActionsTranslateToDefaultMelee() {
+        assertEquals(TacticalActionSpace.TacticalAction.DEFAULT_MELEE,
+            ActionRegistry.toTactical(ActionRegistry.intern("ambush")));
+        assertEquals(TacticalActionSpace.TacticalAction.STRAFE_AGGRESSIVE,
+            ActionRegistry.toTactical(ActionRegistry.intern("circle_strafe")));
+    }
+}
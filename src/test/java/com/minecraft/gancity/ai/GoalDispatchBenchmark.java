@@ -0,0 +1,51 @@
+package com.minecraft.gancity.ai;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Per-call cost of the old reflective goal dispatch (getMethod + invoke every call)
+ * versus the resolved CombatGoalBridge, measured on pollAction (a cheap map lookup)
+ * Run with ./gradlew benchmark
+ */
+@Tag("benchmark")
+class GoalDispatchBenchmark {
+
+    private static final int ITERATIONS = 100000;
+    private static final String MOB_ID = "benchmark";
+
+    @Test
+    void reflectiveVersusBridge() throws ReflectiveOperationException {
+        MobBehaviorAI behaviorAI = new MobBehaviorAI(false);
+        CombatGoalBridge bridge = AIBridge.bridgeFor(behaviorAI);
+        assertNotNull(bridge);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            reflectivePoll(behaviorAI);
+            bridge.pollAction(MOB_ID);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            reflectivePoll(behaviorAI);
+        }
+        double reflectiveNanos = (double) (System.nanoTime() - start) / ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            bridge.pollAction(MOB_ID);
+        }
+        double bridgeNanos = (double) (System.nanoTime() - start) / ITERATIONS;
+
+        System.out.printf("Goal dispatch: reflective %.0fns/call | bridge %.0fns/call (%.1fx)%n",
+            reflectiveNanos, bridgeNanos, bridgeNanos > 0 ? reflectiveNanos / bridgeNanos : 0.0);
+    }
+
+    private static Object reflectivePoll(Object behaviorAI) throws ReflectiveOperationException {
+        Method method = behaviorAI.getClass().getMethod("pollMobAction", String.class);
+        return method.invoke(behaviorAI, MOB_ID);
+    }
+}
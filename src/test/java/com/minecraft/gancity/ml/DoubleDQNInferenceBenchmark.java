@@ -0,0 +1,76 @@
+package com.minecraft.gancity.ml;
+
+import ai.djl.ndarray.NDManager;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Per-decision DQN latency: legacy path (fresh base manager per call) versus the bound
+ * inference session and the pure-Java flat policy, all on the same weights
+ * Run with ./gradlew benchmark
+ */
+@Tag("benchmark")
+class DoubleDQNInferenceBenchmark {
+
+    private static final int ITERATIONS = 1000;
+    private static final int WARMUP = ITERATIONS / 10;
+
+    @Test
+    void legacyVersusSessionVersusJava() {
+        DoubleDQN dqn = new DoubleDQN();
+        try {
+            Random random = new Random(42);
+            float[] state = new float[dqn.getInputSize()];
+            for (int i = 0; i < state.length; i++) {
+                state[i] = random.nextFloat();
+            }
+
+            for (int i = 0; i < WARMUP; i++) {
+                legacyArgMax(dqn, state);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                legacyArgMax(dqn, state);
+            }
+            double legacyMicros = (System.nanoTime() - start) / 1000.0 / ITERATIONS;
+
+            dqn.setInferenceBackend(DoubleDQN.InferenceBackend.DJL);
+            float[] sessionQ = dqn.predictQValues(state);
+            for (int i = 0; i < WARMUP; i++) {
+                dqn.selectActionIndex(state);
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                dqn.selectActionIndex(state);
+            }
+            double sessionMicros = (System.nanoTime() - start) / 1000.0 / ITERATIONS;
+
+            dqn.setInferenceBackend(DoubleDQN.InferenceBackend.JAVA);
+            float[] javaQ = dqn.predictQValues(state);
+            for (int i = 0; i < WARMUP * 10; i++) {
+                dqn.selectActionIndex(state);
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                dqn.selectActionIndex(state);
+            }
+            double javaMicros = (System.nanoTime() - start) / 1000.0 / ITERATIONS;
+
+            assertArrayEquals(sessionQ, javaQ, 1e-4f, "java backend diverged from the DJL session");
+            System.out.printf("DQN inference: legacy %.1fus/call | session %.1fus/call | java %.2fus/call | speedup %.1fx%n",
+                legacyMicros, sessionMicros, javaMicros, sessionMicros > 0 ? legacyMicros / sessionMicros : 0.0);
+        } finally {
+            dqn.close();
+        }
+    }
+
+    private static int legacyArgMax(DoubleDQN dqn, float[] state) {
+        try (NDManager localManager = NDManager.newBaseManager()) {
+            return (int) dqn.predictQValues(localManager, state).argMax().getLong();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.minecraft.gancity.ml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trip of the binary shard format, and rejection of damaged files
+ * (checksum, truncation, string table, varints, trailing bytes)
+ */
+class ModelShardFileTest {
+
+    private static final int MAGIC = 0x4853_4D41;
+    private static final int VERSION = 1;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsEveryField() throws IOException {
+        ModelShard shard = sampleShard();
+        Path path = directory.resolve("zombie" + ModelShardFile.EXTENSION);
+        int size = ModelShardFile.write(shard, path);
+        assertEquals(size, Files.size(path));
+
+        ModelShard loaded = ModelShardFile.load(path);
+        assertEquals(shard.mobType, loaded.mobType);
+        assertEquals(shard.tacticWeights, loaded.tacticWeights);
+        assertEquals(shard.combatExperience, loaded.combatExperience);
+        assertEquals(shard.journalGeneration, loaded.journalGeneration);
+        assertEquals(shard.knowledge.size(), loaded.knowledge.size());
+        for (int i = 0; i < shard.knowledge.size(); i++) {
+            ModelShard.KnowledgeRecord expected = shard.knowledge.get(i);
+            ModelShard.KnowledgeRecord actual = loaded.knowledge.get(i);
+            assertEquals(expected.name, actual.name);
+            assertEquals(expected.description != null ? expected.description : "", actual.description);
+            assertEquals(expected.conditions, actual.conditions);
+            assertEquals(expected.successRate, actual.successRate);
+            assertEquals(expected.type, actual.type);
+            assertEquals(expected.lastUsed, actual.lastUsed);
+            assertEquals(expected.timesUsed, actual.timesUsed);
+        }
+
+        ModelShardFile.View view = ModelShardFile.open(path);
+        assertEquals("minecraft:zombie", view.mobType());
+        assertEquals(2, view.weightCount());
+        assertEquals(2, view.knowledgeCount());
+        assertEquals(0.75f, view.successRate(0));
+    }
+
+    @Test
+    void rewriteReplacesAnOpenFile() throws IOException {
+        Path path = directory.resolve("zombie" + ModelShardFile.EXTENSION);
+        ModelShardFile.write(sampleShard(), path);
+        ModelShardFile.View view = ModelShardFile.open(path);
+        ModelShardFile.write(sampleShard(), path);
+        assertEquals("minecraft:zombie", view.mobType());
+        assertEquals("minecraft:zombie", ModelShardFile.load(path).mobType);
+    }
+
+    @Test
+    void rejectsFlippedByte() throws IOException {
+        byte[] bytes = encoded(sampleShard());
+        bytes[20] ^= 1;
+        assertRejected(bytes, "checksum");
+    }
+
+    @Test
+    void rejectsTruncatedFile() throws IOException {
+        byte[] bytes = encoded(sampleShard());
+        assertRejected(Arrays.copyOf(bytes, bytes.length - 7), "checksum");
+        assertRejected(Arrays.copyOf(bytes, 10), "Not a model shard");
+
+        // Truncated body under a valid checksum: the decoder runs off the end
+        byte[] body = Arrays.copyOf(bytes, bytes.length - 4);
+        assertRejected(withChecksum(Arrays.copyOf(body, body.length - 9)), "model shard file");
+    }
+
+    @Test
+    void rejectsWrongMagicAndVersion() throws IOException {
+        byte[] bytes = encoded(sampleShard());
+        byte[] magic = bytes.clone();
+        magic[0] ^= 1;
+        assertRejected(magic, "Not a model shard");
+        byte[] version = bytes.clone();
+        version[4] = 9;
+        assertRejected(version, "version");
+    }
+
+    @Test
+    void rejectsStringCountLargerThanFile() throws IOException {
+        assertRejected(withChecksum(body(varint(1000))), "Truncated");
+    }
+
+    @Test
+    void rejectsStringIndexOutsideTable() throws IOException {
+        // One string "a", mob type index 1
+        assertRejected(withChecksum(body(varint(1), varint(1), new byte[] {'a'}, varint(1))), "Truncated");
+    }
+
+    @Test
+    void rejectsOverlongVarint() throws IOException {
+        byte[] overlong = new byte[11];
+        Arrays.fill(overlong, (byte) 0x80);
+        assertRejected(withChecksum(body(varint(1), varint(1), new byte[] {'a'}, varint(0), overlong)), "Truncated");
+    }
+
+    @Test
+    void rejectsTrailingBytes() throws IOException {
+        byte[] bytes = encoded(sampleShard());
+        byte[] body = Arrays.copyOf(bytes, bytes.length - 4 + 1);
+        assertRejected(withChecksum(body), "length");
+    }
+
+    private void assertRejected(byte[] bytes, String reason) throws IOException {
+        Path path = directory.resolve("damaged" + ModelShardFile.EXTENSION);
+        Files.write(path, bytes);
+        IOException e = assertThrows(IOException.class, () -> ModelShardFile.load(path));
+        assertTrue(e.getMessage().contains(reason), () -> "expected '" + reason + "' in: " + e.getMessage());
+    }
+
+    private static ModelShard sampleShard() {
+        return new ModelShard("minecraft:zombie", Map.of("rush", 0.5f, "flank", -1.25f), 42,
+            List.of(
+                new ModelShard.KnowledgeRecord("rush", "Rush in", List.of("night", "in_group"), 0.75f,
+                    "AGGRESSIVE", 1_700_000_000_123L, 7),
+                new ModelShard.KnowledgeRecord("wait", null, List.of(), 0.1f, "TACTICAL", 0L, 0)),
+            17L);
+    }
+
+    private static byte[] encoded(ModelShard shard) {
+        ByteBuffer buffer = ModelShardFile.encode(shard);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Header followed by the given parts (no trailer)
+     */
+    private static byte[] body(byte[]... parts) {
+        int size = 8;
+        for (byte[] part : parts) {
+            size += part.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        for (byte[] part : parts) {
+            buffer.put(part);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] withChecksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return ByteBuffer.allocate(body.length + 4).order(ByteOrder.LITTLE_ENDIAN)
+            .put(body).putInt((int) crc.getValue()).array();
+    }
+
+    private static byte[] varint(int value) {
+        ByteBuffer buffer = ByteBuffer.allocate(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+}
@@ -0,0 +1,125 @@
+package com.minecraft.gancity.ml;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Shard save / load time and size: binary ModelShardFile versus the gzip'd Java
+ * serialization it replaced, for synthetic shards shaped like live ones (fsync in both)
+ * Run with ./gradlew benchmark
+ */
+@Tag("benchmark")
+class ModelShardFormatBenchmark {
+
+    private static final int MOB_TYPES = 72;
+    private static final int ROUNDS = 5;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void binaryVersusSerialized() throws IOException, ClassNotFoundException {
+        List<ModelShard> shards = syntheticShards(MOB_TYPES);
+        long binarySave = 0, binaryLoad = 0, legacySave = 0, legacyLoad = 0;
+        long binaryBytes = 0, legacyBytes = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            binaryBytes = 0;
+            legacyBytes = 0;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < shards.size(); i++) {
+                binaryBytes += ModelShardFile.write(shards.get(i), directory.resolve(i + ModelShardFile.EXTENSION));
+            }
+            binarySave += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < shards.size(); i++) {
+                ModelShard loaded = ModelShardFile.load(directory.resolve(i + ModelShardFile.EXTENSION));
+                assertEquals(shards.get(i).tacticWeights, loaded.tacticWeights);
+            }
+            binaryLoad += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < shards.size(); i++) {
+                legacyBytes += writeSerialized(shards.get(i), directory.resolve(i + ".shard"));
+            }
+            legacySave += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < shards.size(); i++) {
+                readSerialized(directory.resolve(i + ".shard"));
+            }
+            legacyLoad += System.nanoTime() - start;
+        }
+        double perRound = ROUNDS * 1_000_000.0;
+        System.out.printf("Shard format (%d mob types): binary save %.2f ms / load %.2f ms / %d KB | " +
+                "serialized+gzip save %.2f ms / load %.2f ms / %d KB%n",
+            MOB_TYPES, binarySave / perRound, binaryLoad / perRound, binaryBytes / 1024,
+            legacySave / perRound, legacyLoad / perRound, legacyBytes / 1024);
+    }
+
+    private static long writeSerialized(ModelShard shard, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream os = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            GZIPOutputStream gzip = new GZIPOutputStream(os);
+            ObjectOutputStream oos = new ObjectOutputStream(gzip);
+            oos.writeObject(shard);
+            oos.flush();
+            gzip.finish();
+            os.flush();
+            channel.force(true);
+            return channel.size();
+        }
+    }
+
+    private static ModelShard readSerialized(Path path) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(
+                new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path))))) {
+            return (ModelShard) ois.readObject();
+        }
+    }
+
+    private static List<ModelShard> syntheticShards(int mobTypes) {
+        List<String> conditionPool = Arrays.asList("player_low_health", "player_has_shield", "night",
+            "in_group", "ranged_player", "near_water", "player_fleeing", "mob_low_health");
+        List<ModelShard> shards = new ArrayList<>(mobTypes);
+        for (int mob = 0; mob < mobTypes; mob++) {
+            Map<String, Float> weights = new HashMap<>();
+            for (int tactic = 0; tactic < 24; tactic++) {
+                weights.put("tactic_" + tactic, (float) Math.sin(mob * 31 + tactic));
+            }
+            List<ModelShard.KnowledgeRecord> knowledge = new ArrayList<>();
+            for (int entry = 0; entry < 30; entry++) {
+                List<String> conditions = new ArrayList<>(conditionPool.subList(entry % 5, entry % 5 + 3));
+                knowledge.add(new ModelShard.KnowledgeRecord("tactic_" + entry, "Learned tactic " + entry,
+                    conditions, (entry % 10) / 10.0f, "TACTICAL", 1_700_000_000_000L + entry, entry * 3));
+            }
+            shards.add(new ModelShard("minecraft:mob_" + mob, weights, mob * 100, knowledge,
+                mob % 3 == 0 ? 0L : mob));
+        }
+        return shards;
+    }
+}
@@ -0,0 +1,63 @@
+package com.minecraft.gancity.ml;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Throughput of NeuralNetwork.forward() and trainBatch() at the DQN shape (22 -> 64 -> 10)
+ * Run with ./gradlew benchmark
+ */
+@Tag("benchmark")
+class NeuralNetworkBenchmark {
+
+    private static final int HIDDEN_SIZE = 64;
+    private static final int OUTPUT_SIZE = 10;
+    private static final int BATCH = 32;
+    private static final int ITERATIONS = 10000;
+
+    @Test
+    void forwardAndTrainThroughput() {
+        int inputSize = PrioritizedReplayBuffer.DEFAULT_STATE_DIM;
+        NeuralNetwork network = new NeuralNetwork(inputSize, HIDDEN_SIZE, OUTPUT_SIZE, 0.001f);
+        Random random = new Random(42);
+        float[] inputs = new float[BATCH * inputSize];
+        float[] targets = new float[BATCH * OUTPUT_SIZE];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = random.nextFloat();
+        }
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = random.nextFloat();
+        }
+        float[] output = new float[OUTPUT_SIZE];
+
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            network.forward(inputs, output);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            network.forward(inputs, output);
+        }
+        double forwardsPerSec = ITERATIONS / ((System.nanoTime() - start) / 1e9);
+
+        int batches = ITERATIONS / BATCH;
+        for (int i = 0; i < batches / 10; i++) {
+            network.trainBatch(inputs, targets, BATCH);
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < batches; i++) {
+            network.trainBatch(inputs, targets, BATCH);
+        }
+        double samplesPerSec = (double) batches * BATCH / ((System.nanoTime() - start) / 1e9);
+
+        network.forward(inputs, output);
+        for (float q : output) {
+            assertTrue(Float.isFinite(q), "training diverged");
+        }
+        System.out.printf("NeuralNetwork %dx%dx%d: forward %.0f/s | train %.0f samples/s%n",
+            inputSize, HIDDEN_SIZE, OUTPUT_SIZE, forwardsPerSec, samplesPerSec);
+    }
+}
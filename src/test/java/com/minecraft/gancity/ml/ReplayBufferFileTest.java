@@ -0,0 +1,174 @@
+package com.minecraft.gancity.ml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Write / load round trip of the replay buffer file, capacity truncation on load,
+ * and rejection of damaged headers and bodies
+ */
+class ReplayBufferFileTest {
+
+    private static final int DIM = PrioritizedReplayBuffer.DEFAULT_STATE_DIM;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsRowsAndPriorities() throws IOException {
+        PrioritizedReplayBuffer original = filled(500, 300);
+        PrioritizedReplayBuffer.SampledBatch sample = original.sample(64);
+        List<Float> tdErrors = new ArrayList<>();
+        for (int i = 0; i < sample.prioritizedExperiences.size(); i++) {
+            tdErrors.add(0.25f + i);
+        }
+        original.updatePriorities(sample.prioritizedExperiences, tdErrors);
+
+        Path path = directory.resolve(ReplayBufferFile.FILE_NAME);
+        assertEquals(300, ReplayBufferFile.write(original, original.markForSave(), path));
+        assertEquals(ReplayBufferFile.HEADER_BYTES + 300L * ReplayBufferFile.recordBytes(DIM), Files.size(path));
+
+        PrioritizedReplayBuffer loaded = new PrioritizedReplayBuffer(500);
+        assertEquals(300, ReplayBufferFile.load(path, loaded));
+        assertEquals(300, loaded.size());
+
+        PrioritizedReplayBuffer.SaveChunk expected = rows(original);
+        PrioritizedReplayBuffer.SaveChunk actual = rows(loaded);
+        assertEquals(expected.count, actual.count);
+        assertArrayEquals(expected.states, actual.states);
+        assertArrayEquals(expected.nextStates, actual.nextStates);
+        assertArrayEquals(expected.actions, actual.actions);
+        assertArrayEquals(expected.rewards, actual.rewards);
+        assertArrayEquals(expected.dones, actual.dones);
+        assertArrayEquals(expected.priorities, actual.priorities, 1e-4f, "priorities changed on reload");
+    }
+
+    @Test
+    void keepsNewestRowsWhenFileExceedsCapacity() throws IOException {
+        PrioritizedReplayBuffer original = filled(500, 300);
+        Path path = directory.resolve(ReplayBufferFile.FILE_NAME);
+        ReplayBufferFile.write(original, original.markForSave(), path);
+
+        PrioritizedReplayBuffer small = new PrioritizedReplayBuffer(100);
+        assertEquals(100, ReplayBufferFile.load(path, small));
+        assertEquals(100, small.size());
+        PrioritizedReplayBuffer.SaveChunk rows = rows(small);
+        for (int i = 0; i < rows.count; i++) {
+            assertEquals(200 + i, rows.rewards[i]);
+        }
+    }
+
+    @Test
+    void writesOverAFileItLoaded() throws IOException {
+        Path path = directory.resolve(ReplayBufferFile.FILE_NAME);
+        PrioritizedReplayBuffer original = filled(200, 150);
+        ReplayBufferFile.write(original, original.markForSave(), path);
+        PrioritizedReplayBuffer loaded = new PrioritizedReplayBuffer(200);
+        ReplayBufferFile.load(path, loaded);
+        loaded.add(new float[DIM], 1, 999.0f, new float[DIM], true);
+        assertEquals(151, ReplayBufferFile.write(loaded, loaded.markForSave(), path));
+        assertEquals(151, ReplayBufferFile.load(path, new PrioritizedReplayBuffer(200)));
+    }
+
+    @Test
+    void rejectsDamagedHeader() throws IOException {
+        byte[] bytes = written(filled(64, 40));
+
+        byte[] magic = bytes.clone();
+        magic[0] ^= 1;
+        assertRejected(magic, "Not a replay buffer file");
+
+        byte[] version = bytes.clone();
+        header(version).putInt(4, 7);
+        assertRejected(version, "version");
+
+        byte[] recordBytes = bytes.clone();
+        header(recordBytes).putInt(12, ReplayBufferFile.recordBytes(DIM) + 4);
+        assertRejected(recordBytes, "corrupt");
+
+        byte[] count = bytes.clone();
+        header(count).putInt(16, 41);
+        assertRejected(count, "corrupt");
+
+        byte[] negative = bytes.clone();
+        header(negative).putInt(16, -1);
+        assertRejected(negative, "corrupt");
+
+        assertRejected(Arrays.copyOf(bytes, ReplayBufferFile.HEADER_BYTES - 1), "Not a replay buffer file");
+    }
+
+    @Test
+    void rejectsTruncatedBody() throws IOException {
+        byte[] bytes = written(filled(64, 40));
+        assertRejected(Arrays.copyOf(bytes, bytes.length - 5), "corrupt");
+    }
+
+    @Test
+    void rejectsOtherStateWidth() throws IOException {
+        Path path = directory.resolve(ReplayBufferFile.FILE_NAME);
+        Files.write(path, written(filled(64, 40)));
+        PrioritizedReplayBuffer wider = new PrioritizedReplayBuffer(64, DIM + 1);
+        IOException e = assertThrows(IOException.class, () -> ReplayBufferFile.load(path, wider));
+        assertTrue(e.getMessage().contains("width"), e.getMessage());
+        assertEquals(0, wider.size());
+    }
+
+    private void assertRejected(byte[] bytes, String reason) throws IOException {
+        Path path = directory.resolve("damaged.bin");
+        Files.write(path, bytes);
+        PrioritizedReplayBuffer target = filled(64, 10);
+        IOException e = assertThrows(IOException.class, () -> ReplayBufferFile.load(path, target));
+        assertTrue(e.getMessage().contains(reason), () -> "expected '" + reason + "' in: " + e.getMessage());
+        assertEquals(10, target.size(), "a rejected file must leave the buffer untouched");
+    }
+
+    private byte[] written(PrioritizedReplayBuffer buffer) throws IOException {
+        Path path = directory.resolve(ReplayBufferFile.FILE_NAME);
+        ReplayBufferFile.write(buffer, buffer.markForSave(), path);
+        return Files.readAllBytes(path);
+    }
+
+    private static ByteBuffer header(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Buffer holding rows 0..rows-1: state[0] = row, reward = row, action = row % 10
+     */
+    private static PrioritizedReplayBuffer filled(int capacity, int rows) {
+        PrioritizedReplayBuffer buffer = new PrioritizedReplayBuffer(capacity);
+        float[] state = new float[DIM];
+        float[] nextState = new float[DIM];
+        for (int i = 0; i < rows; i++) {
+            state[0] = i;
+            state[DIM - 1] = -i;
+            nextState[0] = i + 1;
+            buffer.add(state, i % 10, i, nextState, i % 7 == 0);
+        }
+        return buffer;
+    }
+
+    /**
+     * Every live row, oldest first
+     */
+    private static PrioritizedReplayBuffer.SaveChunk rows(PrioritizedReplayBuffer buffer) {
+        PrioritizedReplayBuffer.SaveMark mark = buffer.markForSave();
+        PrioritizedReplayBuffer.SaveChunk chunk = new PrioritizedReplayBuffer.SaveChunk(Math.max(1, mark.count), DIM);
+        buffer.copyForSave(mark, 0, chunk);
+        return chunk;
+    }
+}
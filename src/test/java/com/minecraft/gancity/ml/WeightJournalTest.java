@@ -0,0 +1,179 @@
+package com.minecraft.gancity.ml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Write / recover round trip of the weight journal, segment rotation and compaction,
+ * retry after a failed commit, and recovery from a torn or corrupt tail record
+ */
+class WeightJournalTest {
+
+    private static final long SYNC_TIMEOUT_MS = 10_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversEveryCommittedEpisode() {
+        WeightJournal journal = new WeightJournal(directory);
+        journal.appendEpisode("minecraft:zombie", row(1.0f), new float[][] {null, row(2.0f), null, row(3.0f)});
+        journal.appendEpisode("minecraft:skeleton", row(4.0f), new float[0][]);
+        journal.appendEpisode("minecraft:zombie", row(5.0f), new float[][] {new float[] {6.0f, 7.0f}});
+        journal.sync(SYNC_TIMEOUT_MS);
+
+        List<Episode> episodes = new ArrayList<>();
+        assertEquals(3, new WeightJournal(directory).recover(recordingInto(episodes)));
+        assertEquals(3, episodes.size());
+
+        Episode first = episodes.get(0);
+        assertEquals(1L, first.generation);
+        assertEquals("minecraft:zombie", first.mobType);
+        assertArrayEquals(row(1.0f), first.globalRow);
+        assertEquals(4, first.situationalRows.length);
+        assertNull(first.situationalRows[0]);
+        assertArrayEquals(row(2.0f), first.situationalRows[1]);
+        assertNull(first.situationalRows[2]);
+        assertArrayEquals(row(3.0f), first.situationalRows[3]);
+
+        assertEquals("minecraft:skeleton", episodes.get(1).mobType);
+        assertEquals(0, episodes.get(1).situationalRows.length);
+
+        // Situational rows shorter than the global row are padded with NaN
+        float[] shortRow = episodes.get(2).situationalRows[0];
+        assertEquals(6.0f, shortRow[0]);
+        assertEquals(7.0f, shortRow[1]);
+        assertTrue(Float.isNaN(shortRow[2]));
+    }
+
+    @Test
+    void compactDropsSegmentsCoveredBySnapshot() {
+        WeightJournal journal = new WeightJournal(directory);
+        journal.appendEpisode("minecraft:zombie", row(1.0f), new float[0][]);
+        long covered = journal.rotate();
+        journal.appendEpisode("minecraft:zombie", row(2.0f), new float[0][]);
+        journal.compact(covered);
+        journal.sync(SYNC_TIMEOUT_MS);  // Runs after the compaction on the journal thread
+
+        List<Episode> episodes = new ArrayList<>();
+        assertEquals(1, new WeightJournal(directory).recover(recordingInto(episodes)));
+        assertEquals(covered + 1, episodes.get(0).generation);
+        assertArrayEquals(row(2.0f), episodes.get(0).globalRow);
+    }
+
+    @Test
+    void keepsRecordsWhoseCommitFailed() throws IOException {
+        WeightJournal journal = new WeightJournal(directory);
+        Files.delete(directory);  // Segment cannot be created: the commit fails
+        journal.appendEpisode("minecraft:zombie", row(1.0f), new float[0][]);
+        journal.sync(SYNC_TIMEOUT_MS);
+
+        Files.createDirectories(directory);
+        journal.appendEpisode("minecraft:zombie", row(2.0f), new float[0][]);
+        journal.sync(SYNC_TIMEOUT_MS);
+
+        List<Episode> episodes = new ArrayList<>();
+        assertEquals(2, new WeightJournal(directory).recover(recordingInto(episodes)));
+        assertArrayEquals(row(1.0f), episodes.get(0).globalRow);
+        assertArrayEquals(row(2.0f), episodes.get(1).globalRow);
+    }
+
+    @Test
+    void ignoresTornTailRecord() throws IOException {
+        Path segment = writeThreeEpisodes();
+        byte[] bytes = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(bytes, bytes.length - 5));
+        assertRecoversFirstTwo();
+    }
+
+    @Test
+    void ignoresCorruptTailRecord() throws IOException {
+        Path segment = writeThreeEpisodes();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 3] ^= 1;
+        Files.write(segment, bytes);
+        assertRecoversFirstTwo();
+    }
+
+    @Test
+    void appendsAfterRecoveryGoToNewSegment() throws IOException {
+        Path segment = writeThreeEpisodes();
+        byte[] bytes = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(bytes, bytes.length - 5));
+
+        WeightJournal reopened = new WeightJournal(directory);
+        reopened.recover(recordingInto(new ArrayList<>()));
+        reopened.appendEpisode("minecraft:creeper", row(9.0f), new float[0][]);
+        reopened.sync(SYNC_TIMEOUT_MS);
+
+        List<Episode> episodes = new ArrayList<>();
+        assertEquals(3, new WeightJournal(directory).recover(recordingInto(episodes)));
+        assertEquals("minecraft:creeper", episodes.get(2).mobType);
+        assertTrue(episodes.get(2).generation > episodes.get(1).generation);
+    }
+
+    private Path writeThreeEpisodes() throws IOException {
+        WeightJournal journal = new WeightJournal(directory);
+        for (int i = 0; i < 3; i++) {
+            journal.appendEpisode("minecraft:zombie", row(i), new float[][] {row(10.0f + i)});
+        }
+        journal.sync(SYNC_TIMEOUT_MS);
+        List<Path> segments = segments();
+        assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    private void assertRecoversFirstTwo() {
+        List<Episode> episodes = new ArrayList<>();
+        assertEquals(2, new WeightJournal(directory).recover(recordingInto(episodes)));
+        for (int i = 0; i < 2; i++) {
+            assertArrayEquals(row(i), episodes.get(i).globalRow);
+            assertArrayEquals(row(10.0f + i), episodes.get(i).situationalRows[0]);
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.wal")) {
+            stream.forEach(segments::add);
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private static float[] row(float base) {
+        return new float[] {base, base + 0.5f, -base};
+    }
+
+    private static WeightJournal.Replayer recordingInto(List<Episode> episodes) {
+        return (generation, mobType, globalRow, situationalRows) ->
+            episodes.add(new Episode(generation, mobType, globalRow, situationalRows));
+    }
+
+    private static final class Episode {
+        final long generation;
+        final String mobType;
+        final float[] globalRow;
+        final float[][] situationalRows;
+
+        Episode(long generation, String mobType, float[] globalRow, float[][] situationalRows) {
+            this.generation = generation;
+            this.mobType = mobType;
+            this.globalRow = globalRow;
+            this.situationalRows = situationalRows;
+        }
+    }
+}